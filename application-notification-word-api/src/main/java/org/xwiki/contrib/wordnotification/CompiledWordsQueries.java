@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification;
+
+import java.util.Set;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Represents a set of query strings compiled once by a {@link MultiPatternAnalysisHelper} so that they can all be
+ * looked for in a single pass over each analyzed text.
+ * Instances are immutable and can be shared between analyzers and threads.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Unstable
+public interface CompiledWordsQueries
+{
+    /**
+     * @return the distinct query strings that have been compiled
+     */
+    Set<String> getQueries();
+}
@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Helper component for looking for many queries at once in a text.
+ * Where {@link PatternAnalysisHelper} scans the texts once per query, implementations of this role are expected to
+ * compile all queries together and to find the regions of every query with a single pass over each text, while
+ * producing exactly the same regions as {@link PatternAnalysisHelper} would for each query.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Unstable
+@Role
+public interface MultiPatternAnalysisHelper
+{
+    /**
+     * Compile the given queries so that they can be used with {@link #getRegions(CompiledWordsQueries, List,
+     * EntityReference)}. Duplicated queries are only compiled once.
+     *
+     * @param queries the query strings to compile
+     * @return the compiled queries
+     */
+    CompiledWordsQueries compile(Collection<String> queries);
+
+    /**
+     * Perform analysis of the texts and return the regions matching each of the compiled queries.
+     *
+     * @param queries the compiled queries to look for
+     * @param textsToAnalyze the texts to analyze
+     * @param localization the localization used for creation of the {@link WordsMentionLocalization}
+     * @return a map whose keys are the queries found at least once in the texts and whose values are the regions
+     *         where they have been found, in the same order as returned by
+     *         {@link PatternAnalysisHelper#getRegions(String, List, EntityReference)}: queries which have not been
+     *         found are not part of the map
+     */
+    Map<String, List<WordsMentionLocalization>> getRegions(CompiledWordsQueries queries, List<String> textsToAnalyze,
+        EntityReference localization);
+}
@@ -39,6 +39,7 @@ public class PartAnalysisResult
 {
     private final Set<WordsMentionLocalization> regions;
     private final String analyzerHint;
+    private String fingerprint;
 
     /**
      * Default constructor.
@@ -94,6 +95,31 @@ public class PartAnalysisResult
         return analyzerHint;
     }
 
+    /**
+     * The fingerprint is not part of the result itself: it's not taken into account by {@link #equals(Object)}.
+     *
+     * @return the fingerprint of the texts analyzed to produce this result, or {@code null} if the analyzer doesn't
+     *         provide fingerprints
+     * @see WordsMentionAnalyzer#getFingerprint(org.xwiki.bridge.DocumentModelBridge)
+     * @since 1.2.3
+     */
+    @Unstable
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the texts analyzed to produce this result
+     * @see WordsMentionAnalyzer#getFingerprint(org.xwiki.bridge.DocumentModelBridge)
+     * @since 1.2.3
+     */
+    @Unstable
+    public void setFingerprint(String fingerprint)
+    {
+        this.fingerprint = fingerprint;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -101,15 +127,16 @@ public class PartAnalysisResult
             return true;
         }
 
-        if (o == null || getClass() != o.getClass()) {
+        // Subclasses might compute their regions lazily, so we rely on the getters.
+        if (!(o instanceof PartAnalysisResult)) {
             return false;
         }
 
         PartAnalysisResult that = (PartAnalysisResult) o;
 
         return new EqualsBuilder()
-            .append(regions, that.regions)
-            .append(analyzerHint, that.analyzerHint)
+            .append(getRegions(), that.getRegions())
+            .append(getAnalyzerHint(), that.getAnalyzerHint())
             .isEquals();
     }
 
@@ -117,8 +144,8 @@ public class PartAnalysisResult
     public int hashCode()
     {
         return new HashCodeBuilder(17, 67)
-            .append(regions)
-            .append(analyzerHint)
+            .append(getRegions())
+            .append(getAnalyzerHint())
             .toHashCode();
     }
 
@@ -126,8 +153,8 @@ public class PartAnalysisResult
     public String toString()
     {
         return new XWikiToStringBuilder(this)
-            .append("regions", regions)
-            .append("analyzerHint", analyzerHint)
+            .append("regions", getRegions())
+            .append("analyzerHint", getAnalyzerHint())
             .toString();
     }
 }
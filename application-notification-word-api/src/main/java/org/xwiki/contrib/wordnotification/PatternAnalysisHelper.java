@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.stability.Unstable;
 
 /**
  * Helper component for performing analysis of a text.
@@ -45,4 +46,36 @@ public interface PatternAnalysisHelper
      * @return a list of localization where the query has been found, or an empty list if it has not been found
      */
     List<WordsMentionLocalization> getRegions(String query, List<String> textsToAnalyze, EntityReference localization);
+
+    /**
+     * Compile the given query so that it can be used for analyzing many texts.
+     * The default implementation doesn't perform any compilation: implementations should override it to avoid
+     * transforming the query for each analysis.
+     *
+     * @param query the query to compile
+     * @return the compiled query
+     * @since 1.2.3
+     */
+    @Unstable
+    default CompiledWordsQuery compile(String query)
+    {
+        return () -> query;
+    }
+
+    /**
+     * Perform analysis with a query compiled by {@link #compile(String)} and return the regions of the text matching
+     * the query.
+     *
+     * @param query the compiled query to use for performing the analysis
+     * @param textsToAnalyze the text to analyze
+     * @param localization the localization used for creation of the {@link WordsMentionLocalization}
+     * @return a list of localization where the query has been found, or an empty list if it has not been found
+     * @since 1.2.3
+     */
+    @Unstable
+    default List<WordsMentionLocalization> getRegions(CompiledWordsQuery query, List<String> textsToAnalyze,
+        EntityReference localization)
+    {
+        return getRegions(query.getQuery(), textsToAnalyze, localization);
+    }
 }
@@ -19,6 +19,10 @@
  */
 package org.xwiki.contrib.wordnotification;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
 import org.xwiki.bridge.DocumentModelBridge;
 import org.xwiki.component.annotation.Role;
 import org.xwiki.stability.Unstable;
@@ -44,4 +48,74 @@ public interface WordsMentionAnalyzer
      * @throws WordsAnalysisException if something went wrong during the analysis
      */
     PartAnalysisResult analyze(DocumentModelBridge document, WordsQuery wordsQuery) throws WordsAnalysisException;
+
+    /**
+     * Perform analysis of a part of the document for all the given queries at once.
+     * The default implementation calls {@link #analyze(DocumentModelBridge, WordsQuery)} for each query:
+     * implementations should override it to analyze the document with a single pass whatever the number of queries.
+     *
+     * @param document the document to analyze
+     * @param queries the compiled queries to look for in the document
+     * @return a map whose keys are the queries found at least once in the document and whose values are the result of
+     *         the analysis for that query: queries which have not been found are not part of the map
+     * @throws WordsAnalysisException if something went wrong during the analysis
+     * @since 1.2.3
+     */
+    @Unstable
+    default Map<String, PartAnalysisResult> analyze(DocumentModelBridge document, CompiledWordsQueries queries)
+        throws WordsAnalysisException
+    {
+        Map<String, PartAnalysisResult> result = new HashMap<>();
+        for (String query : queries.getQueries()) {
+            PartAnalysisResult partAnalysisResult = analyze(document, new WordsQuery(query, null));
+            if (partAnalysisResult.getOccurrences() > 0) {
+                result.put(query, partAnalysisResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Perform analysis of a part of the document for all the given queries at once, relying on the results of the
+     * analysis of a previous version of the document to avoid analyzing again the texts which didn't change.
+     * Implementations must return exactly the same results as {@link #analyze(DocumentModelBridge,
+     * CompiledWordsQueries)}: the default implementation just calls it and ignores the previous version.
+     *
+     * @param document the document to analyze
+     * @param queries the compiled queries to look for in the document
+     * @param previousDocument a previous version of the document
+     * @param previousResults the results produced by this analyzer on the previous version of the document, indexed
+     *        by query: the results of all the given queries should be provided, including the empty ones, for them
+     *        to be reused
+     * @return a map whose keys are the queries found at least once in the document and whose values are the result of
+     *         the analysis for that query: queries which have not been found are not part of the map
+     * @throws WordsAnalysisException if something went wrong during the analysis
+     * @since 1.2.3
+     */
+    @Unstable
+    default Map<String, PartAnalysisResult> analyze(DocumentModelBridge document, CompiledWordsQueries queries,
+        DocumentModelBridge previousDocument, Map<String, PartAnalysisResult> previousResults)
+        throws WordsAnalysisException
+    {
+        return analyze(document, queries);
+    }
+
+    /**
+     * Compute a fingerprint of the texts of the document that this analyzer would analyze.
+     * Two versions of a document with the same fingerprint must produce exactly the same results for any query, so
+     * the fingerprint should take into account the references used for the {@link WordsMentionLocalization}. It's
+     * stored along with the results, so that the results of a previous version can be reused without analyzing the
+     * document again when the fingerprints match. Computing it should be much cheaper than an analysis: the default
+     * implementation doesn't provide any fingerprint, so the document is always analyzed.
+     *
+     * @param document the document for which to compute the fingerprint
+     * @return the fingerprint of the analyzed texts, or an empty optional if the analyzer doesn't provide fingerprints
+     * @throws WordsAnalysisException if something went wrong when retrieving the texts to analyze
+     * @since 1.2.3
+     */
+    @Unstable
+    default Optional<String> getFingerprint(DocumentModelBridge document) throws WordsAnalysisException
+    {
+        return Optional.empty();
+    }
 }
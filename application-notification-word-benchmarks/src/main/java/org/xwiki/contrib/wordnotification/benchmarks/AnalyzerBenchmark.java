@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PartAnalysisResult;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.benchmarks.BenchmarkFixtures.QueryType;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Benchmarks of the analysis of a document by the {@link WordsMentionAnalyzer}s, with many queries per document.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark
+{
+    private static final int WORDS_PER_LINE = 12;
+
+    @Param({ "LITERAL", "WILDCARD" })
+    private QueryType queryType;
+
+    @Param({ "100", "10000" })
+    private int lineCount;
+
+    @Param({ "1", "10", "200" })
+    private int queryCount;
+
+    private XWikiDocument document;
+
+    private XWikiDocument previousDocument;
+
+    private Map<String, Map<String, PartAnalysisResult>> previousResults;
+
+    private List<WordsQuery> queries;
+
+    private CompiledWordsQueries compiledWordsQueries;
+
+    private Map<String, WordsMentionAnalyzer> analyzers;
+
+    /**
+     * Generate the document and its previous version, the components, and compile the queries.
+     *
+     * @throws IllegalAccessException in case of problem to wire the components
+     * @throws WordsAnalysisException in case of problem when analyzing the previous version
+     */
+    @Setup
+    public void setup() throws IllegalAccessException, WordsAnalysisException
+    {
+        List<String> lines = BenchmarkFixtures.generateLines(this.lineCount, WORDS_PER_LINE);
+        this.document = BenchmarkFixtures.createDocument("1.2", "1.1", lines);
+        // The previous version only differs by a single line, as when fixing a typo.
+        List<String> previousLines = new ArrayList<>(lines);
+        previousLines.set(lines.size() / 2, "typo " + lines.get(lines.size() / 2));
+        this.previousDocument = BenchmarkFixtures.createDocument("1.1", null, previousLines);
+        PatternAnalysisHelper patternAnalysisHelper = BenchmarkFixtures.createPatternAnalysisHelper(true);
+        MultiPatternAnalysisHelper multiPatternAnalysisHelper =
+            BenchmarkFixtures.createMultiPatternAnalysisHelper(patternAnalysisHelper);
+        this.analyzers = BenchmarkFixtures.createAnalyzers(patternAnalysisHelper, multiPatternAnalysisHelper);
+
+        List<String> rawQueries = BenchmarkFixtures.generateQueries(this.queryCount, this.queryType);
+        this.queries = rawQueries.stream().map(query -> new WordsQuery(query, null)).collect(Collectors.toList());
+        this.compiledWordsQueries = multiPatternAnalysisHelper.compile(rawQueries);
+
+        // The previous results contain an empty result for the queries which haven't been found, as the stored ones.
+        this.previousResults = new HashMap<>();
+        for (Map.Entry<String, WordsMentionAnalyzer> entry : this.analyzers.entrySet()) {
+            Map<String, PartAnalysisResult> analyzerResults =
+                new HashMap<>(entry.getValue().analyze(this.previousDocument, this.compiledWordsQueries));
+            rawQueries.forEach(query -> analyzerResults.putIfAbsent(query, new PartAnalysisResult(entry.getKey())));
+            this.previousResults.put(entry.getKey(), analyzerResults);
+        }
+    }
+
+    /**
+     * Analyze the document with each analyzer, one query after the other.
+     *
+     * @param blackhole used to consume the results
+     * @throws WordsAnalysisException in case of problem during the analysis
+     */
+    @Benchmark
+    public void analyzeEachQuery(Blackhole blackhole) throws WordsAnalysisException
+    {
+        for (WordsMentionAnalyzer analyzer : this.analyzers.values()) {
+            for (WordsQuery query : this.queries) {
+                PartAnalysisResult result = analyzer.analyze(this.document, query);
+                blackhole.consume(result);
+            }
+        }
+    }
+
+    /**
+     * Analyze the document with each analyzer, for all queries at once.
+     *
+     * @param blackhole used to consume the results
+     * @throws WordsAnalysisException in case of problem during the analysis
+     */
+    @Benchmark
+    public void analyzeAllQueries(Blackhole blackhole) throws WordsAnalysisException
+    {
+        for (WordsMentionAnalyzer analyzer : this.analyzers.values()) {
+            blackhole.consume(analyzer.analyze(this.document, this.compiledWordsQueries));
+        }
+    }
+
+    /**
+     * Analyze the document with each analyzer, for all queries at once, reusing the results of the previous version.
+     *
+     * @param blackhole used to consume the results
+     * @throws WordsAnalysisException in case of problem during the analysis
+     */
+    @Benchmark
+    public void analyzeAllQueriesIncrementally(Blackhole blackhole) throws WordsAnalysisException
+    {
+        for (Map.Entry<String, WordsMentionAnalyzer> entry : this.analyzers.entrySet()) {
+            blackhole.consume(entry.getValue().analyze(this.document, this.compiledWordsQueries,
+                this.previousDocument, this.previousResults.get(entry.getKey())));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.slf4j.LoggerFactory;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.internal.analyzers.AbstractWordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.internal.analyzers.CompiledWordsQueryCache;
+import org.xwiki.contrib.wordnotification.internal.analyzers.ContentWordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.internal.analyzers.DefaultMultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.internal.analyzers.DefaultPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.internal.analyzers.TitleWordsMentionAnalyzer;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Synthetic data and components used by the benchmarks. All data are generated from a fixed seed so that all runs of
+ * a benchmark work on the same inputs.
+ * The components are instantiated and wired by hand instead of relying on a component manager, so that only the code
+ * of the application is measured.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class BenchmarkFixtures
+{
+    /**
+     * Type of queries that can be generated.
+     *
+     * @version $Id$
+     */
+    public enum QueryType
+    {
+        /**
+         * Queries made of plain words.
+         */
+        LITERAL,
+
+        /**
+         * Queries containing {@code *} and {@code ?} wildcards.
+         */
+        WILDCARD
+    }
+
+    private static final long SEED = 42;
+
+    private static final int VOCABULARY_SIZE = 5000;
+
+    private static final String WORD_PREFIX = "word";
+
+    private BenchmarkFixtures()
+    {
+        // Utility class.
+    }
+
+    /**
+     * Generate lines of text made of words taken in a vocabulary of {@value #VOCABULARY_SIZE} words, so that the
+     * generated queries have a realistic chance to be found.
+     *
+     * @param lineCount the number of lines to generate
+     * @param wordsPerLine the number of words of each line
+     * @return the generated lines
+     */
+    public static List<String> generateLines(int lineCount, int wordsPerLine)
+    {
+        Random random = new Random(SEED);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = 0; j < wordsPerLine; j++) {
+                if (j > 0) {
+                    line.append(' ');
+                }
+                String word = WORD_PREFIX + random.nextInt(VOCABULARY_SIZE);
+                // Mix the case a bit since the analysis is case insensitive.
+                line.append((random.nextInt(10) == 0) ? word.toUpperCase() : word);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Generate distinct queries.
+     *
+     * @param queryCount the number of queries to generate
+     * @param queryType the type of queries to generate
+     * @return the generated queries
+     */
+    public static List<String> generateQueries(int queryCount, QueryType queryType)
+    {
+        List<String> queries = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            // Spread the queries over the vocabulary.
+            int wordIndex = (int) ((long) i * VOCABULARY_SIZE / Math.max(queryCount, 1));
+            if (queryType == QueryType.WILDCARD) {
+                // Alternate the two kinds of wildcards.
+                queries.add((i % 2 == 0) ? "wor?" + wordIndex : WORD_PREFIX + wordIndex + "*");
+            } else {
+                queries.add(WORD_PREFIX + wordIndex);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Create a document whose content is made of the given lines.
+     *
+     * @param version the version of the document
+     * @param previousVersion the previous version of the document, or {@code null} if it's a new document
+     * @param lines the lines of the content of the document
+     * @return a new document
+     */
+    public static XWikiDocument createDocument(String version, String previousVersion, List<String> lines)
+    {
+        XWikiDocument document = new BenchmarkDocument(new DocumentReference("xwiki", "Benchmark", "WebHome"),
+            previousVersion);
+        document.setVersion(version);
+        document.setNew(previousVersion == null);
+        document.setTitle(lines.isEmpty() ? "" : lines.get(0));
+        document.setContent(String.join("\n", lines));
+        return document;
+    }
+
+    /**
+     * @param cacheCompiledQueries {@code false} if the queries should be compiled again each time
+     * @return a new pattern analysis helper
+     * @throws IllegalAccessException in case of problem to wire the components
+     */
+    public static DefaultPatternAnalysisHelper createPatternAnalysisHelper(boolean cacheCompiledQueries)
+        throws IllegalAccessException
+    {
+        CompiledWordsQueryCache compiledWordsQueryCache = new CompiledWordsQueryCache();
+        FieldUtils.writeField(compiledWordsQueryCache, "cache", new MapCache<>(cacheCompiledQueries), true);
+        DefaultPatternAnalysisHelper patternAnalysisHelper = new DefaultPatternAnalysisHelper();
+        FieldUtils.writeField(patternAnalysisHelper, "compiledWordsQueryCache", compiledWordsQueryCache, true);
+        return patternAnalysisHelper;
+    }
+
+    /**
+     * @param patternAnalysisHelper the helper used for the queries which cannot be analyzed all together
+     * @return a new multi pattern analysis helper
+     * @throws IllegalAccessException in case of problem to wire the components
+     */
+    public static DefaultMultiPatternAnalysisHelper createMultiPatternAnalysisHelper(
+        PatternAnalysisHelper patternAnalysisHelper) throws IllegalAccessException
+    {
+        DefaultMultiPatternAnalysisHelper multiPatternAnalysisHelper = new DefaultMultiPatternAnalysisHelper();
+        FieldUtils.writeField(multiPatternAnalysisHelper, "patternAnalysisHelper", patternAnalysisHelper, true);
+        FieldUtils.writeField(multiPatternAnalysisHelper, "logger",
+            LoggerFactory.getLogger(DefaultMultiPatternAnalysisHelper.class), true);
+        return multiPatternAnalysisHelper;
+    }
+
+    /**
+     * Create the analyzers which don't rely on xobjects, indexed by their hint.
+     *
+     * @param patternAnalysisHelper the helper to use for analyzing a single query
+     * @param multiPatternAnalysisHelper the helper to use for analyzing many queries at once
+     * @return the analyzers
+     * @throws IllegalAccessException in case of problem to wire the components
+     */
+    public static Map<String, WordsMentionAnalyzer> createAnalyzers(PatternAnalysisHelper patternAnalysisHelper,
+        MultiPatternAnalysisHelper multiPatternAnalysisHelper) throws IllegalAccessException
+    {
+        Map<String, WordsMentionAnalyzer> analyzers = new TreeMap<>();
+        for (AbstractWordsMentionAnalyzer analyzer
+            : List.of(new ContentWordsMentionAnalyzer(), new TitleWordsMentionAnalyzer()))
+        {
+            FieldUtils.writeField(analyzer, "patternAnalysisHelper", patternAnalysisHelper, true);
+            FieldUtils.writeField(analyzer, "multiPatternAnalysisHelper", multiPatternAnalysisHelper, true);
+            analyzers.put(analyzer.getHint(), analyzer);
+        }
+        return analyzers;
+    }
+
+    /**
+     * Document whose previous version is known without having to load its history.
+     */
+    private static final class BenchmarkDocument extends XWikiDocument
+    {
+        private final String previousVersion;
+
+        BenchmarkDocument(DocumentReference reference, String previousVersion)
+        {
+            super(reference);
+            this.previousVersion = previousVersion;
+        }
+
+        @Override
+        public String getPreviousVersion()
+        {
+            return this.previousVersion;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.contrib.wordnotification.benchmarks.BenchmarkFixtures.QueryType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Benchmarks of the search of already compiled queries in texts of various length.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternAnalysisBenchmark
+{
+    private static final EntityReference LOCALIZATION = new DocumentReference("xwiki", "Benchmark", "WebHome");
+
+    private static final int WORDS_PER_LINE = 12;
+
+    @Param({ "LITERAL", "WILDCARD" })
+    private QueryType queryType;
+
+    @Param({ "10", "1000", "50000" })
+    private int lineCount;
+
+    @Param({ "1", "50" })
+    private int queryCount;
+
+    private List<String> lines;
+
+    private List<CompiledWordsQuery> compiledQueries;
+
+    private CompiledWordsQueries compiledWordsQueries;
+
+    private PatternAnalysisHelper patternAnalysisHelper;
+
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
+    /**
+     * Generate the texts, the components, and compile the queries.
+     *
+     * @throws IllegalAccessException in case of problem to wire the components
+     */
+    @Setup
+    public void setup() throws IllegalAccessException
+    {
+        this.lines = BenchmarkFixtures.generateLines(this.lineCount, WORDS_PER_LINE);
+        this.patternAnalysisHelper = BenchmarkFixtures.createPatternAnalysisHelper(true);
+        this.multiPatternAnalysisHelper =
+            BenchmarkFixtures.createMultiPatternAnalysisHelper(this.patternAnalysisHelper);
+
+        List<String> queries = BenchmarkFixtures.generateQueries(this.queryCount, this.queryType);
+        this.compiledQueries =
+            queries.stream().map(this.patternAnalysisHelper::compile).collect(Collectors.toList());
+        this.compiledWordsQueries = this.multiPatternAnalysisHelper.compile(queries);
+    }
+
+    /**
+     * Look for each query in all texts, one query after the other.
+     *
+     * @return the number of found regions
+     */
+    @Benchmark
+    public int getRegionsOfEachQuery()
+    {
+        int result = 0;
+        for (CompiledWordsQuery compiledQuery : this.compiledQueries) {
+            List<WordsMentionLocalization> regions =
+                this.patternAnalysisHelper.getRegions(compiledQuery, this.lines, LOCALIZATION);
+            result += regions.size();
+        }
+        return result;
+    }
+
+    /**
+     * Look for all queries at once in all texts.
+     *
+     * @return the regions found for each query
+     */
+    @Benchmark
+    public Map<String, List<WordsMentionLocalization>> getRegionsOfAllQueries()
+    {
+        return this.multiPatternAnalysisHelper.getRegions(this.compiledWordsQueries, this.lines, LOCALIZATION);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.benchmarks.BenchmarkFixtures.QueryType;
+
+/**
+ * Benchmarks of the compilation of the queries, without the cache of compiled queries.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryCompilationBenchmark
+{
+    @Param({ "LITERAL", "WILDCARD" })
+    private QueryType queryType;
+
+    @Param({ "1", "100" })
+    private int queryCount;
+
+    private List<String> queries;
+
+    private PatternAnalysisHelper patternAnalysisHelper;
+
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
+    /**
+     * Generate the queries and the components.
+     *
+     * @throws IllegalAccessException in case of problem to wire the components
+     */
+    @Setup
+    public void setup() throws IllegalAccessException
+    {
+        this.queries = BenchmarkFixtures.generateQueries(this.queryCount, this.queryType);
+        this.patternAnalysisHelper = BenchmarkFixtures.createPatternAnalysisHelper(false);
+        this.multiPatternAnalysisHelper =
+            BenchmarkFixtures.createMultiPatternAnalysisHelper(this.patternAnalysisHelper);
+    }
+
+    /**
+     * Compile each query on its own.
+     *
+     * @param blackhole used to consume the compiled queries
+     */
+    @Benchmark
+    public void compileEachQuery(Blackhole blackhole)
+    {
+        for (String query : this.queries) {
+            blackhole.consume(this.patternAnalysisHelper.compile(query));
+        }
+    }
+
+    /**
+     * Compile all queries together.
+     *
+     * @return the compiled queries
+     */
+    @Benchmark
+    public CompiledWordsQueries compileAllQueries()
+    {
+        return this.multiPatternAnalysisHelper.compile(this.queries);
+    }
+}
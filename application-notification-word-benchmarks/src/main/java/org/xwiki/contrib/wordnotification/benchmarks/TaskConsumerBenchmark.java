@@ -0,0 +1,259 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
+import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.benchmarks.BenchmarkFixtures.QueryType;
+import org.xwiki.contrib.wordnotification.internal.DocumentAnalysisExecutor;
+import org.xwiki.contrib.wordnotification.internal.DocumentSaveCoalescer;
+import org.xwiki.contrib.wordnotification.internal.ViewRightsCache;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.contrib.wordnotification.internal.WordsSearchTaskConsumer;
+import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultStorageManager;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.UserWikisResolver;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.WordsQueryCache;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.WordsQueryCacheWarmer;
+import org.xwiki.index.IndexException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.doc.DocumentRevisionProvider;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks of the whole processing of a document version by the {@link WordsSearchTaskConsumer}, with many users
+ * sharing the same queries.
+ * The storage, the users, the rights and the observation manager are stubbed: the storage never returns any result so
+ * that both the current and the previous versions of the document are analyzed each time. The cache of the queries is
+ * a real one, so that, as on a running instance, the users following each query are only loaded and the queries only
+ * compiled by the first processing.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskConsumerBenchmark
+{
+    private static final int WORDS_PER_LINE = 12;
+
+    private static final String VERSION = "2.1";
+
+    private static final String PREVIOUS_VERSION = "1.1";
+
+    @Param({ "LITERAL", "WILDCARD" })
+    private QueryType queryType;
+
+    @Param({ "1000" })
+    private int lineCount;
+
+    @Param({ "1", "100", "1000" })
+    private int userCount;
+
+    @Param({ "5" })
+    private int queriesPerUser;
+
+    @Param({ "10", "500" })
+    private int distinctQueryCount;
+
+    @Param({ "1", "4" })
+    private int analysisThreads;
+
+    @Param({ "200" })
+    private int queryBatchSize;
+
+    private WordsSearchTaskConsumer taskConsumer;
+
+    private DocumentAnalysisExecutor analysisExecutor;
+
+    private DocumentReference documentReference;
+
+    /**
+     * Generate the document versions, the users with their queries, and the components.
+     *
+     * @throws Exception in case of problem to create the fixtures
+     */
+    @Setup
+    public void setup() throws Exception
+    {
+        List<String> lines = BenchmarkFixtures.generateLines(this.lineCount, WORDS_PER_LINE);
+        XWikiDocument document = BenchmarkFixtures.createDocument(VERSION, PREVIOUS_VERSION, lines);
+        // The previous version only differs by its last line.
+        XWikiDocument previousDocument =
+            BenchmarkFixtures.createDocument(PREVIOUS_VERSION, null, lines.subList(0, lines.size() - 1));
+        this.documentReference = document.getDocumentReference();
+
+        PatternAnalysisHelper patternAnalysisHelper = BenchmarkFixtures.createPatternAnalysisHelper(true);
+        MultiPatternAnalysisHelper multiPatternAnalysisHelper =
+            BenchmarkFixtures.createMultiPatternAnalysisHelper(patternAnalysisHelper);
+        Map<String, WordsMentionAnalyzer> analyzers =
+            BenchmarkFixtures.createAnalyzers(patternAnalysisHelper, multiPatternAnalysisHelper);
+
+        this.taskConsumer = new WordsSearchTaskConsumer();
+        this.inject("multiPatternAnalysisHelper", multiPatternAnalysisHelper);
+        this.inject("logger", LoggerFactory.getLogger(WordsSearchTaskConsumer.class));
+        this.inject("storageManager", stub(AnalysisResultStorageManager.class));
+        this.inject("observationManager", stub(ObservationManager.class));
+        this.inject("saveCoalescer", stub(DocumentSaveCoalescer.class));
+        this.inject("queryCacheWarmer", stub(WordsQueryCacheWarmer.class));
+        this.inject("viewRightsCache", stub(ViewRightsCache.class));
+        WordsQueryCache wordsQueryCache = new WordsQueryCache();
+        FieldUtils.writeField(wordsQueryCache, "queryCache", new MapCache<>(true), true);
+        this.inject("wordsQueryCache", wordsQueryCache);
+        UserWikisResolver userWikisResolver = stub(UserWikisResolver.class);
+        when(userWikisResolver.getUserWikis(this.documentReference.getWikiReference()))
+            .thenReturn(Set.of(this.documentReference.getWikiReference()));
+        this.inject("userWikisResolver", userWikisResolver);
+
+        WordsNotificationConfiguration configuration = stub(WordsNotificationConfiguration.class);
+        when(configuration.getAnalysisThreads()).thenReturn(this.analysisThreads);
+        when(configuration.getAnalysisQueryBatchSize()).thenReturn(this.queryBatchSize);
+        this.inject("configuration", configuration);
+        this.analysisExecutor = new DocumentAnalysisExecutor();
+        FieldUtils.writeField(this.analysisExecutor, "configuration", configuration, true);
+        FieldUtils.writeField(this.analysisExecutor, "execution", stub(Execution.class), true);
+        this.analysisExecutor.initialize();
+        this.inject("analysisExecutor", this.analysisExecutor);
+
+        ComponentManager componentManager = stub(ComponentManager.class);
+        when(componentManager.<WordsMentionAnalyzer>getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(analyzers);
+        Provider<ComponentManager> componentManagerProvider = () -> componentManager;
+        this.inject("contextComponentManager", componentManagerProvider);
+
+        DocumentRevisionProvider documentRevisionProvider = stub(DocumentRevisionProvider.class);
+        when(documentRevisionProvider.getRevision(this.documentReference, VERSION)).thenReturn(document);
+        when(documentRevisionProvider.getRevision(this.documentReference, PREVIOUS_VERSION))
+            .thenReturn(previousDocument);
+        this.inject("documentRevisionProvider", documentRevisionProvider);
+
+        AuthorizationManager authorizationManager = stub(AuthorizationManager.class);
+        when(authorizationManager.hasAccess(any(), any(), any())).thenReturn(true);
+        this.inject("authorizationManager", authorizationManager);
+
+        UserReferenceSerializer<DocumentReference> userReferenceSerializer = stub(UserReferenceSerializer.class);
+        this.inject("documentReferenceUserReferenceSerializer", userReferenceSerializer);
+
+        this.inject("usersWordsQueriesManager", this.createUsersWordsQueriesManager(userReferenceSerializer));
+    }
+
+    /**
+     * Stop the analysis threads.
+     *
+     * @throws ComponentLifecycleException in case of problem to stop the threads
+     */
+    @TearDown
+    public void tearDown() throws ComponentLifecycleException
+    {
+        this.analysisExecutor.dispose();
+    }
+
+    private UsersWordsQueriesManager createUsersWordsQueriesManager(
+        UserReferenceSerializer<DocumentReference> userReferenceSerializer) throws Exception
+    {
+        List<String> queryPool = BenchmarkFixtures.generateQueries(this.distinctQueryCount, this.queryType);
+        UsersWordsQueriesManager usersWordsQueriesManager = stub(UsersWordsQueriesManager.class);
+        Random random = new Random(this.userCount);
+        Set<UserReference> users = new LinkedHashSet<>();
+        for (int i = 0; i < this.userCount; i++) {
+            UserReference userReference = stub(UserReference.class);
+            when(userReferenceSerializer.serialize(userReference))
+                .thenReturn(new DocumentReference("xwiki", "XWiki", "User" + i));
+            users.add(userReference);
+
+            Set<WordsQuery> queries = new LinkedHashSet<>();
+            List<String> availableQueries = new ArrayList<>(queryPool);
+            for (int j = 0; j < this.queriesPerUser && !availableQueries.isEmpty(); j++) {
+                String query = availableQueries.remove(random.nextInt(availableQueries.size()));
+                queries.add(new WordsQuery(query, userReference));
+            }
+            when(usersWordsQueriesManager.getQueries(userReference)).thenReturn(queries);
+        }
+        when(usersWordsQueriesManager.getUserReferenceWithWordsQuery(this.documentReference.getWikiReference()))
+            .thenReturn(users);
+        return usersWordsQueriesManager;
+    }
+
+    private void inject(String fieldName, Object value) throws IllegalAccessException
+    {
+        FieldUtils.writeField(this.taskConsumer, fieldName, value, true);
+    }
+
+    /**
+     * Stubs don't record the invocations, so that they don't keep growing during the benchmark.
+     */
+    private static <T> T stub(Class<T> type)
+    {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    /**
+     * Process a new version of the document.
+     *
+     * @throws IndexException in case of problem during the processing
+     */
+    @Benchmark
+    public void consume() throws IndexException
+    {
+        this.taskConsumer.consume(this.documentReference, VERSION);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.job.Job;
+import org.xwiki.job.event.JobFinishedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener responsible to notify the {@link BulkAnalysisManager} when a job is finished, so that the documents saved
+ * by the job are analyzed.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Named(BulkAnalysisJobListener.NAME)
+@Singleton
+public class BulkAnalysisJobListener extends AbstractEventListener
+{
+    static final String NAME = "BulkAnalysisJobListener";
+
+    @Inject
+    private BulkAnalysisManager bulkAnalysisManager;
+
+    /**
+     * Default constructor.
+     */
+    public BulkAnalysisJobListener()
+    {
+        super(NAME, List.of(new JobFinishedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (source instanceof Job) {
+            this.bulkAnalysisManager.onJobFinished((Job) source);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.index.IndexException;
+import org.xwiki.index.TaskConsumer;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobContext;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Record the documents saved in bulk, for example by an import, instead of adding an analysis task for each save, and
+ * analyze them all together once the bulk operations are finished.
+ * <p>
+ * The bulk mode is active while it's explicitly started, and, when
+ * {@link WordsNotificationConfiguration#isBulkAnalysisJobDetectionEnabled()} is enabled, while the jobs which saved
+ * some documents are running. Only the last saved version of each document is recorded, with the version preceding
+ * its first save. Once the bulk mode isn't active anymore, a single background pass analyzes the recorded documents,
+ * in the same execution context. Each document is still loaded and analyzed on its own, but the users following each
+ * query and the compiled queries of its wiki are kept in the words queries cache: they're only retrieved and compiled
+ * once for all the documents of a wiki, as long as the queries don't change. The documents are polled by chunks, only
+ * to check between two chunks whether the bulk mode became active again.
+ * <p>
+ * The recorded saves are only kept in memory: the ones which haven't been analyzed yet are given back to the
+ * {@link WordsSearchTaskExecutor} when the component is disposed, but they're lost if the instance crashes.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = BulkAnalysisManager.class)
+@Singleton
+public class BulkAnalysisManager implements Initializable, Disposable
+{
+    /**
+     * Saves of a document recorded while the bulk mode is active.
+     */
+    private static final class BulkSaves
+    {
+        private final DocumentReference documentReference;
+
+        private final String previousVersion;
+
+        private final boolean created;
+
+        private String version;
+
+        private int count;
+
+        BulkSaves(DocumentReference documentReference, String previousVersion, boolean created)
+        {
+            this.documentReference = documentReference;
+            this.previousVersion = previousVersion;
+            this.created = created;
+        }
+    }
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private JobContext jobContext;
+
+    @Inject
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @Inject
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @Inject
+    @Named(WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT)
+    private Provider<TaskConsumer> taskConsumerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Logger logger;
+
+    private ExecutorService analysisExecutor;
+
+    private final Object lock = new Object();
+
+    // Guarded by this.lock, as well as the fields below.
+    private boolean started;
+
+    // Running jobs which saved some documents.
+    private final Set<Job> runningJobs = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Saves recorded while the bulk mode is active, indexed by document identifier.
+    private final Map<Long, BulkSaves> bulkSaves = new LinkedHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.analysisExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("Words notification bulk analysis")
+            .daemon(true)
+            .build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.analysisExecutor.shutdownNow();
+
+        // The documents which haven't been analyzed yet are analyzed as usual after a restart.
+        List<Map.Entry<Long, BulkSaves>> remainingSaves;
+        synchronized (this.lock) {
+            remainingSaves = new ArrayList<>(this.bulkSaves.entrySet());
+            this.bulkSaves.clear();
+        }
+        for (Map.Entry<Long, BulkSaves> entry : remainingSaves) {
+            BulkSaves saves = entry.getValue();
+            this.taskExecutor.addTask(saves.documentReference, entry.getKey(), saves.version, saves.created);
+        }
+    }
+
+    /**
+     * Start the bulk mode: the saved documents are recorded until {@link #stop()} is called.
+     */
+    public void start()
+    {
+        synchronized (this.lock) {
+            this.started = true;
+        }
+    }
+
+    /**
+     * Stop the bulk mode started with {@link #start()}: the recorded documents are then analyzed in background if no
+     * job which saved some documents is still running.
+     */
+    public void stop()
+    {
+        synchronized (this.lock) {
+            this.started = false;
+        }
+        this.analysisExecutor.execute(this::analyze);
+    }
+
+    /**
+     * @return {@code true} if the bulk mode has been started with {@link #start()} and not stopped yet
+     */
+    public boolean isStarted()
+    {
+        synchronized (this.lock) {
+            return this.started;
+        }
+    }
+
+    /**
+     * Record the save of a document if the bulk mode is active.
+     *
+     * @param document the saved document
+     * @param created {@code true} if the save created the document
+     * @return {@code true} if the save has been recorded, {@code false} if the bulk mode is not active and the save
+     *         should be analyzed as usual
+     */
+    public boolean addSave(XWikiDocument document, boolean created)
+    {
+        Job job = null;
+        if (this.configuration.isBulkAnalysisJobDetectionEnabled()) {
+            job = this.jobContext.getCurrentJob();
+        }
+        synchronized (this.lock) {
+            if (job != null) {
+                this.runningJobs.add(job);
+            }
+            boolean result = this.started || job != null;
+            if (result) {
+                BulkSaves saves = this.bulkSaves.get(document.getId());
+                if (saves == null) {
+                    String previousVersion = created ? null : DocumentSaveCoalescer.getPreviousVersion(document);
+                    saves = new BulkSaves(document.getDocumentReference(), previousVersion, created);
+                    this.bulkSaves.put(document.getId(), saves);
+                }
+                saves.version = document.getVersion();
+                saves.count++;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Analyze the recorded documents in background if the given job was the last one running which saved some
+     * documents.
+     *
+     * @param job the finished job
+     */
+    public void onJobFinished(Job job)
+    {
+        boolean removed;
+        synchronized (this.lock) {
+            removed = this.runningJobs.remove(job);
+        }
+        if (removed) {
+            this.analysisExecutor.execute(this::analyze);
+        }
+    }
+
+    private void analyze()
+    {
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                List<Map.Entry<Long, BulkSaves>> chunk = this.pollChunk();
+                while (!chunk.isEmpty()) {
+                    this.analyze(chunk);
+                    chunk = this.pollChunk();
+                }
+            } finally {
+                this.execution.removeContext();
+            }
+        } catch (ExecutionContextException e) {
+            this.logger.warn("Failed to initialize the context of the bulk analysis. Root cause: [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private List<Map.Entry<Long, BulkSaves>> pollChunk()
+    {
+        List<Map.Entry<Long, BulkSaves>> result = new ArrayList<>();
+        synchronized (this.lock) {
+            // The analysis is interrupted when the bulk mode becomes active again, and resumed once it's finished.
+            if (!this.started && this.runningJobs.isEmpty()) {
+                int chunkSize = Math.max(1, this.configuration.getBulkAnalysisChunkSize());
+                Iterator<Map.Entry<Long, BulkSaves>> iterator = this.bulkSaves.entrySet().iterator();
+                while (iterator.hasNext() && result.size() < chunkSize) {
+                    Map.Entry<Long, BulkSaves> entry = iterator.next();
+                    result.add(Map.entry(entry.getKey(), entry.getValue()));
+                    iterator.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    private void analyze(List<Map.Entry<Long, BulkSaves>> chunk)
+    {
+        XWikiContext context = this.contextProvider.get();
+        TaskConsumer taskConsumer = this.taskConsumerProvider.get();
+        for (Map.Entry<Long, BulkSaves> entry : chunk) {
+            BulkSaves saves = entry.getValue();
+            if (this.analysisExecutor.isShutdown()) {
+                // The rest of the chunk is analyzed as usual after a restart.
+                this.taskExecutor.addTask(saves.documentReference, entry.getKey(), saves.version, saves.created);
+            } else {
+                this.analyze(entry.getKey(), saves, context, taskConsumer);
+            }
+        }
+    }
+
+    private void analyze(long documentId, BulkSaves saves, XWikiContext context, TaskConsumer taskConsumer)
+    {
+        try {
+            // The analyzed version is compared with the version preceding the first save, as for the coalesced saves.
+            if (saves.count > 1) {
+                this.saveCoalescer.addCoalescedSaves(documentId, saves.version,
+                    new CoalescedSaves(saves.previousVersion, saves.count));
+            }
+            context.setWikiId(saves.documentReference.getWikiReference().getName());
+            taskConsumer.consume(saves.documentReference, saves.version);
+        } catch (IndexException | RuntimeException e) {
+            if (this.analysisExecutor.isShutdown()) {
+                // The analysis has most likely been interrupted by the disposal of the component.
+                this.taskExecutor.addTask(saves.documentReference, documentId, saves.version, saves.created);
+            } else {
+                this.logger.warn("Failed to analyze document [{}] on version [{}]. Root cause: [{}]",
+                    saves.documentReference, saves.version, ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+}
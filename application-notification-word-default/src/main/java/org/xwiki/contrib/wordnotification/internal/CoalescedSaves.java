@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+/**
+ * Describes successive saves of a document which have been coalesced by the {@link DocumentSaveCoalescer}: only the
+ * last saved version is analyzed, and it needs to be compared with the version preceding the first save.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class CoalescedSaves
+{
+    private final String previousVersion;
+
+    private final int saveCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param previousVersion the version of the document before the first coalesced save, or {@code null} if the
+     *     document has been created by the first coalesced save
+     * @param saveCount the number of coalesced saves
+     */
+    public CoalescedSaves(String previousVersion, int saveCount)
+    {
+        this.previousVersion = previousVersion;
+        this.saveCount = saveCount;
+    }
+
+    /**
+     * @return the version of the document before the first coalesced save, or {@code null} if the document has been
+     *         created by the first coalesced save
+     */
+    public String getPreviousVersion()
+    {
+        return this.previousVersion;
+    }
+
+    /**
+     * @return the number of coalesced saves
+     */
+    public int getSaveCount()
+    {
+        return this.saveCount;
+    }
+}
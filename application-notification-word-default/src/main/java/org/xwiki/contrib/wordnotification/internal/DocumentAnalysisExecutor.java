@@ -0,0 +1,219 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+
+/**
+ * Executor used to run concurrently the analyses of a document version.
+ * The analyses are executed by a bounded pool of {@link WordsNotificationConfiguration#getAnalysisThreads()} threads,
+ * and a single call to {@link #invokeAll(List)} never runs more than
+ * {@link WordsNotificationConfiguration#getAnalysisMaxConcurrencyPerTask()} analyses at the same time, so that one big
+ * document cannot monopolize the pool. By default the pool is configured with a single thread: the analyses are then
+ * executed sequentially by the calling thread.
+ * The execution context of the calling thread is cloned for the analyses executed by the pool. The tasks must not
+ * share any data which isn't thread safe, such as the analyzed documents: see {@link #isConcurrent()}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = DocumentAnalysisExecutor.class)
+@Singleton
+public class DocumentAnalysisExecutor implements Initializable, Disposable
+{
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    private ExecutorService executorService;
+
+    private int maxConcurrency;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int threads = this.configuration.getAnalysisThreads();
+        if (threads > 1) {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                    .namingPattern("Words notification analysis-%d")
+                    .daemon(true)
+                    .build());
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            this.executorService = threadPoolExecutor;
+
+            int maxConcurrencyPerTask = this.configuration.getAnalysisMaxConcurrencyPerTask();
+            this.maxConcurrency = (maxConcurrencyPerTask > 0) ? Math.min(maxConcurrencyPerTask, threads) : threads;
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executorService != null) {
+            this.executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@code true} if the tasks might be executed concurrently, in which case each task should work on its own
+     *         copy of the analyzed documents
+     */
+    public boolean isConcurrent()
+    {
+        return this.executorService != null;
+    }
+
+    /**
+     * Execute all the given tasks and wait for their completion.
+     *
+     * @param tasks the tasks to execute
+     * @param <T> the type of the results of the tasks
+     * @return the results of the tasks, in the same order as the tasks, whatever the order in which they completed
+     * @throws ExecutionException if one of the tasks failed: the remaining tasks are cancelled
+     * @throws InterruptedException if the calling thread has been interrupted while waiting for the tasks
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) throws ExecutionException, InterruptedException
+    {
+        List<T> result;
+        if (this.executorService == null || tasks.size() < 2) {
+            result = this.invokeAllSequentially(tasks);
+        } else {
+            result = this.invokeAllConcurrently(tasks);
+        }
+        return result;
+    }
+
+    private <T> List<T> invokeAllSequentially(List<Callable<T>> tasks) throws ExecutionException
+    {
+        List<T> result = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            try {
+                result.add(task.call());
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+        return result;
+    }
+
+    private <T> List<T> invokeAllConcurrently(List<Callable<T>> tasks)
+        throws ExecutionException, InterruptedException
+    {
+        CompletionService<IndexedResult<T>> completionService = new ExecutorCompletionService<>(this.executorService);
+        List<Future<IndexedResult<T>>> futures = new ArrayList<>(tasks.size());
+        List<T> result = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        try {
+            int submitted = 0;
+            while (submitted < tasks.size() && submitted < this.maxConcurrency) {
+                futures.add(completionService.submit(this.wrap(submitted, tasks.get(submitted))));
+                submitted++;
+            }
+            for (int completed = 0; completed < tasks.size(); completed++) {
+                IndexedResult<T> indexedResult = completionService.take().get();
+                // Keep the results in the order of the tasks, so that they can be merged deterministically.
+                result.set(indexedResult.index, indexedResult.value);
+                if (submitted < tasks.size()) {
+                    futures.add(completionService.submit(this.wrap(submitted, tasks.get(submitted))));
+                    submitted++;
+                }
+            }
+        } finally {
+            // Only useful in case of failure or interruption: the other futures are already done.
+            futures.forEach(future -> future.cancel(true));
+        }
+        return result;
+    }
+
+    private <T> Callable<IndexedResult<T>> wrap(int index, Callable<T> task) throws ExecutionException
+    {
+        // Each task gets its own clone of the context of the calling thread since the contexts are not thread safe.
+        ExecutionContext executionContext = this.cloneExecutionContext();
+        return () -> {
+            if (executionContext != null) {
+                this.execution.setContext(executionContext);
+            }
+            try {
+                return new IndexedResult<>(index, task.call());
+            } finally {
+                if (executionContext != null) {
+                    this.execution.removeContext();
+                }
+            }
+        };
+    }
+
+    private ExecutionContext cloneExecutionContext() throws ExecutionException
+    {
+        ExecutionContext currentContext = this.execution.getContext();
+        ExecutionContext result = null;
+        if (currentContext != null) {
+            try {
+                result = this.executionContextManager.clone(currentContext);
+            } catch (ExecutionContextException e) {
+                throw new ExecutionException("Failed to clone the execution context for the analysis", e);
+            }
+        }
+        return result;
+    }
+
+    private static final class IndexedResult<T>
+    {
+        private final int index;
+
+        private final T value;
+
+        IndexedResult(int index, T value)
+        {
+            this.index = index;
+            this.value = value;
+        }
+    }
+}
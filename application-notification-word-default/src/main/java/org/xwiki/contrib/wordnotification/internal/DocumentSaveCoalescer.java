@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Coalesce the successive saves of a document before adding the analysis task to the
+ * {@link WordsSearchTaskExecutor}.
+ * The first save of a document opens a window of {@link WordsNotificationConfiguration#getSaveCoalescingWindow()}
+ * milliseconds: the saves of the same document performed during this window only update the version to analyze, and
+ * a single task is added for the last saved version when the window ends. The coalescing is disabled by default: each
+ * save then adds its task right away.
+ * <p>
+ * To still notify about all the changes performed by the skipped versions, the coalesced saves are recorded so that
+ * the {@link WordsSearchTaskConsumer} compares the analyzed version with the version preceding the first save, instead
+ * of its immediate previous version: see {@link #removeCoalescedSaves(long, String)}. Those records are only kept in
+ * memory, so after a restart the tasks are consumed as if no save had been coalesced.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = DocumentSaveCoalescer.class)
+@Singleton
+public class DocumentSaveCoalescer implements Initializable, Disposable
+{
+    // Maximum number of coalesced saves waiting to be consumed, to avoid leaking memory if some tasks are never
+    // consumed.
+    private static final int MAX_COALESCED_SAVES = 10000;
+
+    /**
+     * Saves of a document performed during the current window.
+     */
+    private static final class PendingSaves
+    {
+        private final DocumentReference documentReference;
+
+        private final String previousVersion;
+
+        private final boolean created;
+
+        private String version;
+
+        private int count;
+
+        PendingSaves(DocumentReference documentReference, String previousVersion, boolean created)
+        {
+            this.documentReference = documentReference;
+            this.previousVersion = previousVersion;
+            this.created = created;
+        }
+    }
+
+    @Inject
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    private ScheduledExecutorService executor;
+
+    private long window;
+
+    private final Object lock = new Object();
+
+    // Saves of the current windows indexed by document identifier. Guarded by this.lock, as well as the coalesced
+    // saves.
+    private final Map<Long, PendingSaves> pendingSaves = new HashMap<>();
+
+    // Coalesced saves whose task has been added but not consumed yet, indexed by document identifier and version.
+    private final Map<Pair<Long, String>, CoalescedSaves> coalescedSaves = new LinkedHashMap<>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Pair<Long, String>, CoalescedSaves> eldest)
+        {
+            return size() > MAX_COALESCED_SAVES;
+        }
+    };
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.window = this.configuration.getSaveCoalescingWindow();
+        // A non positive window disables the coalescing: a task is then added for each save.
+        if (this.window > 0) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("Words notification save coalescing")
+                .daemon(true)
+                .build());
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+
+        // Don't lose the saves of the current windows.
+        List<Long> documentIds;
+        synchronized (this.lock) {
+            documentIds = new ArrayList<>(this.pendingSaves.keySet());
+        }
+        documentIds.forEach(this::addTask);
+    }
+
+    /**
+     * Record the save of a document: the analysis task is added right away if the coalescing is disabled, or when
+     * the coalescing window of the document ends.
+     *
+     * @param document the saved document
+     * @param created {@code true} if the save created the document
+     */
+    public void addSave(XWikiDocument document, boolean created)
+    {
+        this.addSave(document.getDocumentReference(), document.getId(), document.getVersion(),
+            created ? null : getPreviousVersion(document), created);
+    }
+
+    /**
+     * Record the save of a document performed on another member of the cluster.
+     *
+     * @param documentReference the reference of the saved document
+     * @param documentId the identifier of the saved document
+     * @param version the saved version
+     * @param previousVersion the version of the document before the save, or {@code null} if it didn't exist
+     * @param created {@code true} if the save created the document
+     * @see #addSave(XWikiDocument, boolean)
+     */
+    public void addSave(DocumentReference documentReference, long documentId, String version, String previousVersion,
+        boolean created)
+    {
+        if (this.executor == null) {
+            this.taskExecutor.addTask(documentReference, documentId, version, created);
+        } else {
+            synchronized (this.lock) {
+                PendingSaves pending = this.pendingSaves.get(documentId);
+                if (pending == null) {
+                    pending = new PendingSaves(documentReference, previousVersion, created);
+                    this.pendingSaves.put(documentId, pending);
+                    this.executor.schedule(() -> this.addTask(documentId), this.window, TimeUnit.MILLISECONDS);
+                }
+                pending.version = version;
+                pending.count++;
+            }
+        }
+    }
+
+    /**
+     * Retrieve and forget the saves which have been coalesced in the given version of a document.
+     *
+     * @param documentId the identifier of the document
+     * @param version the version of the document for which the analysis task has been added
+     * @return the coalesced saves, or an empty optional if the given version is the only one which has been saved
+     */
+    public Optional<CoalescedSaves> removeCoalescedSaves(long documentId, String version)
+    {
+        synchronized (this.lock) {
+            return Optional.ofNullable(this.coalescedSaves.remove(Pair.of(documentId, version)));
+        }
+    }
+
+    /**
+     * Record saves of a document which have been coalesced by another component, so that they're available to the
+     * consumer of the analysis task of the given version.
+     *
+     * @param documentId the identifier of the document
+     * @param version the version of the document for which the analysis task is added
+     * @param saves the coalesced saves
+     */
+    public void addCoalescedSaves(long documentId, String version, CoalescedSaves saves)
+    {
+        synchronized (this.lock) {
+            this.coalescedSaves.put(Pair.of(documentId, version), saves);
+        }
+    }
+
+    /**
+     * @param document a saved document
+     * @return the version of the document before the save, or {@code null} if the document didn't exist
+     */
+    static String getPreviousVersion(XWikiDocument document)
+    {
+        // The original document is the version of the document before the save.
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        String result = null;
+        if (originalDocument != null && !originalDocument.isNew()) {
+            result = originalDocument.getVersion();
+        }
+        return result;
+    }
+
+    private void addTask(long documentId)
+    {
+        PendingSaves pending;
+        synchronized (this.lock) {
+            pending = this.pendingSaves.remove(documentId);
+            // The coalesced saves are recorded before adding the task, so that they are available to the consumer.
+            if (pending != null && pending.count > 1) {
+                this.coalescedSaves.put(Pair.of(documentId, pending.version),
+                    new CoalescedSaves(pending.previousVersion, pending.count));
+            }
+        }
+        if (pending != null) {
+            this.taskExecutor.addTask(pending.documentReference, documentId, pending.version, pending.created);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xwiki.contrib.wordnotification.PartAnalysisResult;
+import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.model.reference.DocumentVersionReference;
+
+/**
+ * Results of the analysis of a version of a document performed for many queries at once.
+ * This allows to perform a single analysis of the document with each
+ * {@link org.xwiki.contrib.wordnotification.WordsMentionAnalyzer} and to then retrieve the
+ * {@link WordsAnalysisResults} of each query.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class DocumentVersionAnalysis
+{
+    private final DocumentVersionReference reference;
+
+    private final Date date;
+
+    private final Map<String, Map<String, PartAnalysisResult>> resultsPerAnalyzer;
+
+    private final Map<String, String> fingerprints;
+
+    /**
+     * Default constructor.
+     *
+     * @param reference the reference of the analyzed document referring to a specific version of the document
+     * @param date the date of the analysis
+     */
+    public DocumentVersionAnalysis(DocumentVersionReference reference, Date date)
+    {
+        this.reference = reference;
+        this.date = date;
+        this.resultsPerAnalyzer = new LinkedHashMap<>();
+        this.fingerprints = new HashMap<>();
+    }
+
+    /**
+     * Record the results of an analyzer.
+     *
+     * @param analyzerHint the hint of the analyzer which produced the results
+     * @param results the results of the analyzer for each query found in the document
+     * @param fingerprint the fingerprint of the texts analyzed by the analyzer, or {@code null} if the analyzer
+     *     doesn't provide fingerprints
+     */
+    public void addResults(String analyzerHint, Map<String, PartAnalysisResult> results, String fingerprint)
+    {
+        this.resultsPerAnalyzer.put(analyzerHint, results);
+        this.fingerprints.put(analyzerHint, fingerprint);
+    }
+
+    /**
+     * @return the version reference of the analyzed document
+     */
+    public DocumentVersionReference getReference()
+    {
+        return this.reference;
+    }
+
+    /**
+     * Build the results of the analysis for the given query: each analyzer which didn't find the query produces an
+     * empty {@link PartAnalysisResult}. All the results of an analyzer hold its fingerprint, so that they can be
+     * reused whatever the query.
+     *
+     * @param query the query for which to get the results
+     * @return the results of the analysis for the given query
+     */
+    public WordsAnalysisResults getResults(WordsQuery query)
+    {
+        WordsAnalysisResults result = new WordsAnalysisResults(this.reference, query, this.date);
+        for (Map.Entry<String, Map<String, PartAnalysisResult>> entry : this.resultsPerAnalyzer.entrySet()) {
+            PartAnalysisResult partAnalysisResult = entry.getValue().get(query.getQuery());
+            if (partAnalysisResult == null) {
+                partAnalysisResult = new PartAnalysisResult(entry.getKey());
+            }
+            partAnalysisResult.setFingerprint(this.fingerprints.get(entry.getKey()));
+            result.addResult(partAnalysisResult);
+        }
+        return result;
+    }
+}
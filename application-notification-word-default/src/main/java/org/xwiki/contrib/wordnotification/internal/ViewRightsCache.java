@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * In-memory cache of the view right decisions of users, to be used by {@link WordsSearchTaskConsumer} to avoid
+ * checking again the rights of all the users following a query for each analyzed document. The rights are mostly
+ * defined on spaces: the decisions are thus recorded for the space of the document, unless the document defines its
+ * own rights. The whole cache is invalidated by {@link ViewRightsCacheInvalidator} when some rights or groups change.
+ * Each invalidation starts a new generation: a decision checked before an invalidation is not recorded, since it
+ * might be outdated.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = ViewRightsCache.class)
+@Singleton
+public class ViewRightsCache implements Initializable, Disposable
+{
+    static final LocalDocumentReference RIGHTS_XCLASS = new LocalDocumentReference("XWiki", "XWikiRights");
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private Cache<Boolean> cache;
+
+    // Incremented on each invalidation. Guarded by this.
+    private long generation;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private UserReferenceSerializer<String> userReferenceSerializer;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new LRUCacheConfiguration(
+            "application-notification-word.viewRights", this.configuration.getViewRightsCacheSize());
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating the cache for the view rights", e);
+        }
+    }
+
+    /**
+     * Compute the scope of the view right decisions for the given document: the decisions can be shared by all
+     * documents of the same scope.
+     *
+     * @param documentReference the document for which to check the rights
+     * @return the space of the document, or the document itself if it defines its own rights
+     */
+    public String getScope(DocumentReference documentReference)
+    {
+        EntityReference scope = documentReference.getLastSpaceReference();
+        XWikiContext context = this.contextProvider.get();
+        try {
+            XWikiDocument document = context.getWiki().getDocument(documentReference, context);
+            if (!document.getXObjects(RIGHTS_XCLASS).isEmpty()) {
+                scope = documentReference;
+            }
+        } catch (XWikiException e) {
+            // The decisions are then only shared by the versions of this document.
+            scope = documentReference;
+            this.logger.warn("Cannot load document [{}] to check if it defines its own rights. Root cause: [{}]",
+                documentReference, ExceptionUtils.getRootCauseMessage(e));
+        }
+        // The type is part of the scope since a document and a nested space can be serialized the same way.
+        return scope.getType().name() + KEY_SEPARATOR + this.entityReferenceSerializer.serialize(scope);
+    }
+
+    private String getKey(UserReference userReference, String scope)
+    {
+        return this.userReferenceSerializer.serialize(userReference) + KEY_SEPARATOR + scope;
+    }
+
+    /**
+     * Retrieve the view right decision of the given user for the given scope if it's present in cache.
+     *
+     * @param userReference the user for whom to retrieve the decision
+     * @param scope the scope of the decision, as returned by {@link #getScope(DocumentReference)}
+     * @return an {@link Optional#empty()} if no decision is present in cache, else {@code true} if the user is allowed
+     *         to view the documents of the scope
+     */
+    public Optional<Boolean> get(UserReference userReference, String scope)
+    {
+        return Optional.ofNullable(this.cache.get(this.getKey(userReference, scope)));
+    }
+
+    /**
+     * @return the current generation of the cache, to be retrieved before checking the rights whose decisions are
+     *         then recorded with {@link #set(UserReference, String, boolean, long)}
+     */
+    public synchronized long getGeneration()
+    {
+        return this.generation;
+    }
+
+    /**
+     * Record in cache the view right decision of the given user for the given scope, unless the cache has been
+     * invalidated since the decision has been checked.
+     *
+     * @param userReference the user for whom to record the decision
+     * @param scope the scope of the decision, as returned by {@link #getScope(DocumentReference)}
+     * @param allowed {@code true} if the user is allowed to view the documents of the scope
+     * @param checkGeneration the generation of the cache retrieved with {@link #getGeneration()} before checking the
+     *     rights
+     */
+    public synchronized void set(UserReference userReference, String scope, boolean allowed, long checkGeneration)
+    {
+        if (checkGeneration == this.generation) {
+            this.cache.set(this.getKey(userReference, scope), allowed);
+        }
+    }
+
+    /**
+     * Invalidate all the recorded decisions.
+     */
+    public synchronized void invalidateAll()
+    {
+        this.generation++;
+        this.cache.removeAll();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.RegexEntityReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Listener responsible to invalidate the {@link ViewRightsCache} when some rights or the members of some groups
+ * change, since the decisions of any user might then change.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Named(ViewRightsCacheInvalidator.NAME)
+@Singleton
+public class ViewRightsCacheInvalidator extends AbstractEventListener
+{
+    static final String NAME = "ViewRightsCacheInvalidator";
+
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final RegexEntityReference RIGHTS_XCLASS =
+        BaseObjectReference.any(ViewRightsCache.RIGHTS_XCLASS.toString());
+
+    private static final RegexEntityReference GLOBAL_RIGHTS_XCLASS =
+        BaseObjectReference.any(new LocalDocumentReference(XWIKI_SPACE, "XWikiGlobalRights").toString());
+
+    private static final RegexEntityReference GROUPS_XCLASS =
+        BaseObjectReference.any(new LocalDocumentReference(XWIKI_SPACE, "XWikiGroups").toString());
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new XObjectDeletedEvent(RIGHTS_XCLASS),
+        new XObjectAddedEvent(RIGHTS_XCLASS),
+        new XObjectUpdatedEvent(RIGHTS_XCLASS),
+        new XObjectDeletedEvent(GLOBAL_RIGHTS_XCLASS),
+        new XObjectAddedEvent(GLOBAL_RIGHTS_XCLASS),
+        new XObjectUpdatedEvent(GLOBAL_RIGHTS_XCLASS),
+        new XObjectDeletedEvent(GROUPS_XCLASS),
+        new XObjectAddedEvent(GROUPS_XCLASS),
+        new XObjectUpdatedEvent(GROUPS_XCLASS)
+    );
+
+    @Inject
+    private ViewRightsCache viewRightsCache;
+
+    /**
+     * Default constructor.
+     */
+    public ViewRightsCacheInvalidator()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.viewRightsCache.invalidateAll();
+    }
+}
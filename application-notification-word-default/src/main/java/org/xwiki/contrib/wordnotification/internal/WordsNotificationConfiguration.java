@@ -0,0 +1,257 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+
+/**
+ * Configuration of the words notification application, read from {@code xwiki.properties}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = WordsNotificationConfiguration.class)
+@Singleton
+public class WordsNotificationConfiguration
+{
+    private static final String PREFIX = "wordsNotification.";
+
+    @Inject
+    @Named("xwikiproperties")
+    private Provider<ConfigurationSource> configurationSourceProvider;
+
+    /**
+     * @return the maximum number of Solr documents kept in the write buffer of the analysis results storage before
+     *         they are sent to Solr
+     */
+    public int getStorageBatchSize()
+    {
+        return getProperty("storage.batchSize", 500);
+    }
+
+    /**
+     * @return the maximum delay in milliseconds during which analysis results might be kept in the write buffer of
+     *         the storage before being sent to Solr
+     */
+    public long getStorageFlushInterval()
+    {
+        return getProperty("storage.flushInterval", 2000L);
+    }
+
+    /**
+     * @return the delay in milliseconds within which Solr should commit the analysis results that have been sent to
+     *         it, so that they're visible to the searches: a non positive value makes each flush perform a soft commit
+     *         right away
+     */
+    public int getStorageCommitWithin()
+    {
+        return getProperty("storage.commitWithin", 10000);
+    }
+
+    /**
+     * @return the delay in milliseconds between two compactions of the stored analysis results, or {@code 0} to never
+     *         compact them
+     */
+    public long getStorageCompactionInterval()
+    {
+        return getProperty("storage.compaction.interval", 86400000L);
+    }
+
+    /**
+     * @return the number of most recent analyzed versions of a document whose results are kept by the compaction
+     */
+    public int getStorageCompactionKeptVersions()
+    {
+        return getProperty("storage.compaction.keptVersions", 5);
+    }
+
+    /**
+     * @return the maximum number of delete queries sent together to Solr by the compaction
+     */
+    public int getStorageCompactionBatchSize()
+    {
+        return getProperty("storage.compaction.batchSize", 100);
+    }
+
+    /**
+     * @return the maximum number of analysis results kept in memory
+     */
+    public int getAnalysisResultsCacheSize()
+    {
+        return getProperty("analysisResultsCache.size", 1000);
+    }
+
+    /**
+     * @return the maximum number of regions that analysis results can contain to be kept in memory
+     */
+    public int getAnalysisResultsCacheMaxRegions()
+    {
+        return getProperty("analysisResultsCache.maxRegions", 500);
+    }
+
+    /**
+     * @return the maximum number of compiled queries kept in memory
+     */
+    public int getCompiledQueriesCacheSize()
+    {
+        return getProperty("compiledQueriesCache.size", 1000);
+    }
+
+    /**
+     * @return the maximum number of view right decisions of users kept in memory
+     */
+    public int getViewRightsCacheSize()
+    {
+        return getProperty("viewRightsCache.size", 10000);
+    }
+
+    /**
+     * @return {@code true} if the users with queries and their queries should be loaded in cache for all wikis in
+     *         background when the application starts
+     */
+    public boolean isWordsQueryCacheWarmUpEnabled()
+    {
+        return getProperty("wordsQueryCache.warmUp", false);
+    }
+
+    /**
+     * @return the number of threads used to run concurrently the analyses of a document version: the analyses are
+     *         run sequentially by default, and whenever it's lower than 2. Concurrent analyses each work on their
+     *         own copy of the analyzed documents, which has a memory and CPU cost for big documents.
+     */
+    public int getAnalysisThreads()
+    {
+        return getProperty("analysis.threads", 1);
+    }
+
+    /**
+     * @return the maximum number of analyses of a single document version that can run at the same time, or
+     *         {@code 0} to use all the analysis threads
+     */
+    public int getAnalysisMaxConcurrencyPerTask()
+    {
+        return getProperty("analysis.maxConcurrencyPerTask", 0);
+    }
+
+    /**
+     * @return the maximum number of queries analyzed together by an analyzer: above that the queries are split in
+     *         batches which can be analyzed concurrently, or {@code 0} to never split the queries
+     */
+    public int getAnalysisQueryBatchSize()
+    {
+        return getProperty("analysis.queryBatchSize", 200);
+    }
+
+    /**
+     * @return {@code true} if the analyses should reuse the stored results of the previous version of a document to
+     *         only analyze the texts which changed
+     */
+    public boolean isIncrementalAnalysisEnabled()
+    {
+        return getProperty("analysis.incremental", true);
+    }
+
+    /**
+     * @return the number of threads of the dedicated pool executing the analysis tasks, or {@code 0} to add the tasks
+     *         to the task manager of the platform. The tasks waiting for the dedicated pool are only kept in memory:
+     *         they're given back to the task manager when the instance is stopped, but they're lost if it crashes,
+     *         while the tasks of the task manager are persisted
+     */
+    public int getTaskThreads()
+    {
+        return getProperty("tasks.threads", 0);
+    }
+
+    /**
+     * @return the maximum number of analysis tasks waiting for the dedicated pool: the other tasks are added to the
+     *         task manager of the platform
+     */
+    public int getTaskQueueSize()
+    {
+        return getProperty("tasks.queueSize", 10000);
+    }
+
+    /**
+     * @return {@code true} if the documents saved by a job, for example an import, should be analyzed all together
+     *         once the job is finished, instead of being analyzed after each save. The saves recorded until then are
+     *         only kept in memory: they're given back to the task manager when the instance is stopped, but they're
+     *         lost if it crashes
+     */
+    public boolean isBulkAnalysisJobDetectionEnabled()
+    {
+        return getProperty("bulkAnalysis.detectJobs", false);
+    }
+
+    /**
+     * @return the number of documents saved in bulk which are analyzed together before checking again whether the
+     *         bulk mode is active
+     */
+    public int getBulkAnalysisChunkSize()
+    {
+        return getProperty("bulkAnalysis.chunkSize", 100);
+    }
+
+    /**
+     * @return the delay in milliseconds during which the successive saves of a document are coalesced so that only the
+     *         last saved version is analyzed, or {@code 0} to analyze each saved version, which is the default. A
+     *         positive window delays the notifications by as much, and the coalesced saves are only kept in memory
+     */
+    public long getSaveCoalescingWindow()
+    {
+        return getProperty("analysis.saveCoalescingWindow", 0L);
+    }
+
+    /**
+     * @return {@code true} if the analysis of the saved documents should be partitioned between the members of the
+     *         cluster, each document being analyzed by a single member
+     */
+    public boolean isClusterPartitioningEnabled()
+    {
+        return getProperty("cluster.partitioning", false);
+    }
+
+    /**
+     * @return the identifier of this member of the cluster, or an empty string to generate a new one at each start
+     */
+    public String getClusterNodeId()
+    {
+        return getProperty("cluster.nodeId", "");
+    }
+
+    /**
+     * @return the interval in milliseconds between the announcements of this member to the other members of the
+     *         cluster, a member being considered as gone when it's not been announced during three intervals
+     */
+    public long getClusterHeartbeatInterval()
+    {
+        return getProperty("cluster.heartbeatInterval", 10000L);
+    }
+
+    private <T> T getProperty(String key, T defaultValue)
+    {
+        return this.configurationSourceProvider.get().getProperty(PREFIX + key, defaultValue);
+    }
+}
@@ -20,15 +20,19 @@
 package org.xwiki.contrib.wordnotification.internal;
 
 import java.util.List;
+import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.index.TaskManager;
+import org.xwiki.contrib.wordnotification.internal.cluster.ClusterPartitioner;
+import org.xwiki.contrib.wordnotification.internal.cluster.ClusterSaveEvent;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.AbstractLocalEventListener;
 import org.xwiki.observation.event.Event;
 
@@ -36,6 +40,12 @@ import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
  * Listener responsible to create the analysis task whenever a document is updated.
+ * The successive saves of a document are coalesced by the {@link DocumentSaveCoalescer} before creating the task,
+ * unless they're performed in bulk, in which case they're recorded by the {@link BulkAnalysisManager}. When the
+ * analysis is partitioned between the members of the cluster, the saves of the documents assigned to another member
+ * by the {@link ClusterPartitioner} are handed over to it with a {@link ClusterSaveEvent}, and the saves handed over
+ * to this member by the other members are coalesced as the local ones. The saves performed in bulk are always
+ * analyzed by this member, since the bulk operations are only known by the member performing them.
  *
  * @version $Id$
  * @since 1.0
@@ -48,21 +58,61 @@ public class WordsSearchDocumentUpdatedListener extends AbstractLocalEventListen
     static final String NAME = "WordsSearchDocumentUpdatedListener";
 
     @Inject
-    private TaskManager taskManager;
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @Inject
+    private BulkAnalysisManager bulkAnalysisManager;
+
+    @Inject
+    private ClusterPartitioner clusterPartitioner;
+
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
 
     /**
      * Default constructor.
      */
     public WordsSearchDocumentUpdatedListener()
     {
-        super(NAME, List.of(new DocumentUpdatedEvent(), new DocumentCreatedEvent()));
+        super(NAME, List.of(new DocumentUpdatedEvent(), new DocumentCreatedEvent(), new ClusterSaveEvent()));
     }
 
     @Override
     public void processLocalEvent(Event event, Object source, Object data)
     {
-        XWikiDocument doc = (XWikiDocument) source;
-        this.taskManager.addTask(doc.getDocumentReference().getWikiReference().getName(), doc.getId(), doc.getVersion(),
-            WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+        // The saves handed over to the other members are only meant for them.
+        if (!(event instanceof ClusterSaveEvent)) {
+            this.addSave(event, (XWikiDocument) source);
+        }
+    }
+
+    @Override
+    public void processRemoteEvent(Event event, Object source, Object data)
+    {
+        // The documents saved on the other members are analyzed by the member where they've been saved, unless they
+        // are handed over to this member.
+        if (event instanceof ClusterSaveEvent && this.clusterPartitioner.isEnabled()) {
+            ClusterSaveEvent saveEvent = (ClusterSaveEvent) event;
+            if (this.clusterPartitioner.getNodeId().equals(saveEvent.getNodeId())) {
+                this.saveCoalescer.addSave(saveEvent.getDocumentReference(), saveEvent.getDocumentId(),
+                    saveEvent.getVersion(), saveEvent.getPreviousVersion(), saveEvent.isCreated());
+            }
+        }
+    }
+
+    private void addSave(Event event, XWikiDocument doc)
+    {
+        boolean created = event instanceof DocumentCreatedEvent;
+        // The documents saved in bulk are analyzed all together once the bulk operations are finished.
+        if (!this.bulkAnalysisManager.addSave(doc, created)) {
+            Optional<String> owner = this.clusterPartitioner.getRemoteOwner(doc.getId());
+            if (owner.isPresent()) {
+                this.observationManagerProvider.get().notify(new ClusterSaveEvent(owner.get(),
+                    doc.getDocumentReference(), doc.getId(), doc.getVersion(),
+                    created ? null : DocumentSaveCoalescer.getPreviousVersion(doc), created), null, null);
+            } else {
+                this.saveCoalescer.addSave(doc, created);
+            }
+        }
     }
 }
@@ -19,10 +19,20 @@
  */
 package org.xwiki.contrib.wordnotification.internal;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -36,6 +46,9 @@ import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.RemovedWordsEvent;
 import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
 import org.xwiki.contrib.wordnotification.MentionedWordsEvent;
@@ -44,10 +57,14 @@ import org.xwiki.contrib.wordnotification.WordsAnalysisException;
 import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
 import org.xwiki.contrib.wordnotification.WordsQuery;
 import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultStorageManager;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.UserWikisResolver;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.WordsQueryCache;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.WordsQueryCacheWarmer;
 import org.xwiki.index.IndexException;
 import org.xwiki.index.TaskConsumer;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentVersionReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
@@ -94,32 +111,85 @@ public class WordsSearchTaskConsumer implements TaskConsumer
     @Inject
     private DocumentRevisionProvider documentRevisionProvider;
 
+    @Inject
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
+    @Inject
+    private DocumentAnalysisExecutor analysisExecutor;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @Inject
+    private WordsQueryCacheWarmer queryCacheWarmer;
+
+    @Inject
+    private ViewRightsCache viewRightsCache;
+
+    @Inject
+    private WordsQueryCache wordsQueryCache;
+
+    @Inject
+    private UserWikisResolver userWikisResolver;
+
     @Inject
     private Logger logger;
 
     @Override
     public void consume(DocumentReference documentReference, String version) throws IndexException
     {
-        Set<UserReference> userList;
-        try {
-            userList =
-                this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(documentReference.getWikiReference());
-        } catch (WordsAnalysisException e) {
-            throw new IndexException("Error when trying to get list of users with words queries", e);
-        }
+        this.awaitQueryCacheWarmUp();
 
-        // We only perform analysis if the user is authorized to see the doc.
-        userList = this.filterUsersAuthorizedToSee(documentReference, userList);
+        // Many users might follow the same query: each distinct query of the wiki is analyzed only once and the
+        // results are then shared with all users following it. The users are only involved once the results are
+        // known, and only for the queries whose results changed, which is usually none of them.
+        Map<String, Set<UserReference>> usersPerQuery = this.getUsersPerQuery(documentReference.getWikiReference());
 
-        if (!userList.isEmpty()) {
+        if (!usersPerQuery.isEmpty()) {
             try {
                 XWikiDocument document = this.documentRevisionProvider.getRevision(documentReference, version);
-                List<WordsMentionAnalyzer> analyzers =
-                    this.contextComponentManager.get().getInstanceList(WordsMentionAnalyzer.class);
+                Map<String, WordsMentionAnalyzer> analyzers =
+                    new TreeMap<>(this.contextComponentManager.get().getInstanceMap(WordsMentionAnalyzer.class));
+
+                // The queries are compiled together so that each analyzer only performs a single pass on the
+                // document for each batch of queries.
+                List<CompiledWordsQueries> compiledQueries =
+                    this.getCompiledQueries(documentReference.getWikiReference(), usersPerQuery.keySet());
 
-                for (UserReference userReference : userList) {
-                    this.performAnalysis(document, analyzers, userReference);
+                // The results are stored independently of the users, so we use queries without user for loading and
+                // storing them.
+                Set<WordsQuery> sharedQueries = usersPerQuery.keySet().stream()
+                    .map(query -> new WordsQuery(query, null))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+                // The version to compare with is the last analyzed one, which is not the previous version when some
+                // saves have been coalesced.
+                String previousVersion = this.getPreviousVersion(document);
+                boolean hasPreviousVersion = previousVersion != null;
+                Map<WordsQuery, WordsAnalysisResults> previousResults = new HashMap<>();
+                String incrementalBaseVersion = null;
+                if (hasPreviousVersion && this.configuration.isIncrementalAnalysisEnabled()) {
+                    incrementalBaseVersion = this.loadIncrementalAnalysisBase(document.getDocumentReference(),
+                        previousVersion, sharedQueries, previousResults);
+                }
+
+                DocumentVersionAnalysis currentAnalysis = this.performAnalysis(document, analyzers, compiledQueries,
+                    incrementalBaseVersion, previousResults);
+                Map<WordsQuery, WordsAnalysisResults> currentResults = this.getResults(currentAnalysis, sharedQueries);
+                Map<WordsQuery, Long> previousOccurrences = Map.of();
+                if (hasPreviousVersion) {
+                    previousOccurrences = this.getPreviousOccurrences(document.getDocumentReference(),
+                        previousVersion, analyzers, compiledQueries, sharedQueries, previousResults);
+                    this.loadChangedPreviousResults(
+                        new DocumentVersionReference(document.getDocumentReference(), previousVersion),
+                        previousOccurrences, currentResults, previousResults);
                 }
+
+                this.notifyAuthorizedUsers(documentReference, usersPerQuery, currentResults, previousOccurrences,
+                    previousResults);
             } catch (ComponentLookupException e) {
                 throw new IndexException("Error when trying to load the list of analyzers", e);
             } catch (XWikiException e) {
@@ -129,26 +199,148 @@ public class WordsSearchTaskConsumer implements TaskConsumer
         }
     }
 
-    private void performAnalysis(XWikiDocument document, List<WordsMentionAnalyzer> analyzers,
-        UserReference userReference) throws IndexException
+    private void awaitQueryCacheWarmUp() throws IndexException
     {
-        DocumentReference documentReference = document.getDocumentReference();
-        Set<WordsQuery> queries = null;
+        // The cache of the queries is filled much faster by its warm-up than by the analyses.
         try {
-            queries = this.usersWordsQueriesManager.getQueries(userReference);
+            this.queryCacheWarmer.awaitWarmUp();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexException("Interrupted while waiting for the warm-up of the words queries cache", e);
+        }
+    }
+
+    private List<CompiledWordsQueries> getCompiledQueries(WikiReference wikiReference, Set<String> queries)
+    {
+        // The queries of the wiki are only compiled again when they change.
+        Optional<List<CompiledWordsQueries>> cachedCompiledQueries =
+            this.wordsQueryCache.getCompiledQueries(wikiReference, queries);
+        List<CompiledWordsQueries> result;
+        if (cachedCompiledQueries.isPresent()) {
+            result = cachedCompiledQueries.get();
+        } else {
+            result = this.compileQueries(queries);
+            this.wordsQueryCache.setCompiledQueries(wikiReference, queries, result);
+        }
+        return result;
+    }
+
+    private List<CompiledWordsQueries> compileQueries(Set<String> queries)
+    {
+        List<CompiledWordsQueries> result = new ArrayList<>();
+        int batchSize = this.configuration.getAnalysisQueryBatchSize();
+        if (batchSize <= 0 || queries.size() <= batchSize) {
+            result.add(this.multiPatternAnalysisHelper.compile(queries));
+        } else {
+            List<String> queryList = new ArrayList<>(queries);
+            for (int start = 0; start < queryList.size(); start += batchSize) {
+                List<String> batch = queryList.subList(start, Math.min(start + batchSize, queryList.size()));
+                result.add(this.multiPatternAnalysisHelper.compile(new LinkedHashSet<>(batch)));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Set<UserReference>> getUsersPerQuery(WikiReference wikiReference) throws IndexException
+    {
+        Optional<Map<String, Set<UserReference>>> cachedUsersPerQuery =
+            this.wordsQueryCache.getUsersPerQuery(wikiReference);
+        Map<String, Set<UserReference>> result;
+        if (cachedUsersPerQuery.isPresent()) {
+            // Only the queries are copied here: the users of a query are only copied if its results changed.
+            result = new LinkedHashMap<>(cachedUsersPerQuery.get());
+        } else {
+            // The users loaded before a change of the queries of a user are not recorded, since they might not
+            // include it.
+            long loadGeneration = this.wordsQueryCache.getGeneration();
+            Set<WikiReference> userWikis;
+            try {
+                userWikis = this.userWikisResolver.getUserWikis(wikiReference);
+            } catch (WordsAnalysisException e) {
+                throw new IndexException("Error when trying to get the wikis of the users with words queries", e);
+            }
+            result = this.loadUsersPerQuery(wikiReference);
+            // The wikis of the users are recorded so that the changes of the queries of the users of the main wiki
+            // are also applied to the subwikis where they might be notified.
+            this.wordsQueryCache.setUsersPerQuery(result, wikiReference, userWikis, loadGeneration);
+        }
+        return result;
+    }
+
+    private Map<String, Set<UserReference>> loadUsersPerQuery(WikiReference wikiReference) throws IndexException
+    {
+        Set<UserReference> userList;
+        try {
+            userList = this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference);
         } catch (WordsAnalysisException e) {
-            throw new IndexException(String.format(
-                "Error when trying to load the list of queries for user [%s]", userReference), e);
+            throw new IndexException("Error when trying to get list of users with words queries", e);
         }
 
-        for (WordsQuery query : queries) {
-            WordsAnalysisResults wordsAnalysisResults = this.performAnalysis(document, analyzers, query);
-            WordsAnalysisResults previousResult = null;
+        Map<String, Set<UserReference>> result = new LinkedHashMap<>();
+        for (UserReference userReference : userList) {
+            Set<WordsQuery> queries;
+            try {
+                queries = this.usersWordsQueriesManager.getQueries(userReference);
+            } catch (WordsAnalysisException e) {
+                throw new IndexException(String.format(
+                    "Error when trying to load the list of queries for user [%s]", userReference), e);
+            }
+            for (WordsQuery query : queries) {
+                result.computeIfAbsent(query.getQuery(), key -> new LinkedHashSet<>()).add(userReference);
+            }
+        }
+        return result;
+    }
 
-            if (!document.isNew() && document.getPreviousVersion() != null) {
-                previousResult = getPreviousResult(document, analyzers, query, documentReference);
+    private void notifyAuthorizedUsers(DocumentReference documentReference,
+        Map<String, Set<UserReference>> usersPerQuery, Map<WordsQuery, WordsAnalysisResults> currentResults,
+        Map<WordsQuery, Long> previousOccurrences, Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        // The rights are only checked for the users following the queries whose results changed, all at once, so that
+        // the users following queries which don't match the document are never checked.
+        Map<WordsQuery, Set<UserReference>> changedQueries = new LinkedHashMap<>();
+        Set<UserReference> candidateUsers = new HashSet<>();
+        for (Map.Entry<String, Set<UserReference>> entry : usersPerQuery.entrySet()) {
+            WordsQuery sharedQuery = new WordsQuery(entry.getKey(), null);
+            if (this.hasChanged(currentResults.get(sharedQuery), previousOccurrences.get(sharedQuery),
+                previousResults.get(sharedQuery)))
+            {
+                changedQueries.put(sharedQuery, entry.getValue());
+                candidateUsers.addAll(entry.getValue());
             }
-            if (previousResult != null) {
+        }
+
+        Set<UserReference> authorizedUsers = this.filterUsersAuthorizedToSee(documentReference, candidateUsers);
+        for (Map.Entry<WordsQuery, Set<UserReference>> entry : changedQueries.entrySet()) {
+            Set<UserReference> users = new LinkedHashSet<>(entry.getValue());
+            users.retainAll(authorizedUsers);
+            this.notifyUsers(currentResults.get(entry.getKey()), previousResults.get(entry.getKey()), users);
+        }
+    }
+
+    private boolean hasChanged(WordsAnalysisResults sharedResults, Long sharedPreviousOccurrences,
+        WordsAnalysisResults sharedPreviousResults)
+    {
+        // Users are only notified if there's no previous results and some occurrences, or if the number of
+        // occurrences changed, in which case the complete previous results have been loaded.
+        boolean result;
+        if (sharedPreviousOccurrences == null) {
+            result = sharedResults.getOccurrences() > 0;
+        } else {
+            result = sharedPreviousOccurrences != sharedResults.getOccurrences() && sharedPreviousResults != null;
+        }
+        return result;
+    }
+
+    private void notifyUsers(WordsAnalysisResults sharedResults, WordsAnalysisResults sharedPreviousResults,
+        Set<UserReference> users)
+    {
+        String query = sharedResults.getQuery().getQuery();
+        for (UserReference userReference : users) {
+            WordsQuery userQuery = new WordsQuery(query, userReference);
+            WordsAnalysisResults wordsAnalysisResults = this.getResultsForQuery(sharedResults, userQuery);
+            if (sharedPreviousResults != null) {
+                WordsAnalysisResults previousResult = this.getResultsForQuery(sharedPreviousResults, userQuery);
                 if (wordsAnalysisResults.getOccurrences() > previousResult.getOccurrences()) {
                     this.observationManager.notify(new MentionedWordsEvent(), wordsAnalysisResults.getReference(),
                         Pair.of(previousResult, wordsAnalysisResults));
@@ -163,99 +355,406 @@ public class WordsSearchTaskConsumer implements TaskConsumer
         }
     }
 
-    private WordsAnalysisResults getPreviousResult(XWikiDocument document, List<WordsMentionAnalyzer> analyzers,
-        WordsQuery query, DocumentReference documentReference)
-        throws IndexException
+    private WordsAnalysisResults getResultsForQuery(WordsAnalysisResults sharedResults, WordsQuery query)
+    {
+        WordsAnalysisResults result =
+            new WordsAnalysisResults(sharedResults.getReference(), query, sharedResults.getDate());
+        sharedResults.getResults().forEach(result::addResult);
+        return result;
+    }
+
+    private String getPreviousVersion(XWikiDocument document)
+    {
+        Optional<CoalescedSaves> coalescedSaves =
+            this.saveCoalescer.removeCoalescedSaves(document.getId(), document.getVersion());
+        String result = null;
+        if (coalescedSaves.isPresent()) {
+            result = coalescedSaves.get().getPreviousVersion();
+        } else if (!document.isNew()) {
+            result = document.getPreviousVersion();
+        }
+        return result;
+    }
+
+    private String loadIncrementalAnalysisBase(DocumentReference documentReference, String previousVersion,
+        Set<WordsQuery> queries, Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        DocumentVersionReference previousVersionReference =
+            new DocumentVersionReference(documentReference, previousVersion);
+
+        // The complete previous results are needed to reuse them or their regions.
+        Map<WordsQuery, WordsAnalysisResults> loadedResults = this.loadResults(previousVersionReference, queries);
+        previousResults.putAll(loadedResults);
+
+        return loadedResults.keySet().containsAll(queries) ? previousVersion : null;
+    }
+
+    private XWikiDocument loadIncrementalAnalysisDocument(DocumentReference documentReference, String previousVersion)
     {
-        WordsAnalysisResults previousResult = null;
-        String previousVersion = document.getPreviousVersion();
-        Optional<WordsAnalysisResults> previousResultOpt = Optional.empty();
+        XWikiDocument result = null;
         try {
-            previousResultOpt =
-                this.storageManager.loadAnalysisResults(
-                    new DocumentVersionReference(documentReference, previousVersion), query);
+            result = this.documentRevisionProvider.getRevision(documentReference, previousVersion);
+        } catch (XWikiException e) {
+            // We can always perform a complete analysis.
+            this.logger.warn("Cannot load document [{}] with revision [{}] for an incremental analysis. "
+                + "Root cause: [{}]", documentReference, previousVersion, ExceptionUtils.getRootCauseMessage(e));
+        }
+        return result;
+    }
+
+    private Map<WordsQuery, Long> getPreviousOccurrences(DocumentReference documentReference, String previousVersion,
+        Map<String, WordsMentionAnalyzer> analyzers, List<CompiledWordsQueries> compiledQueries,
+        Set<WordsQuery> queries, Map<WordsQuery, WordsAnalysisResults> previousResults) throws IndexException
+    {
+        DocumentVersionReference previousVersionReference =
+            new DocumentVersionReference(documentReference, previousVersion);
+
+        // Only the number of occurrences is needed to know if users should be notified: the regions of the stored
+        // results are not loaded, unless they have already been loaded for an incremental analysis.
+        Map<WordsQuery, Long> result = new HashMap<>();
+        previousResults.forEach((query, results) -> result.put(query, results.getOccurrences()));
+        Set<WordsQuery> queriesToLoad = new LinkedHashSet<>(queries);
+        queriesToLoad.removeAll(result.keySet());
+        if (!queriesToLoad.isEmpty()) {
+            result.putAll(this.loadOccurrences(previousVersionReference, queriesToLoad));
+        }
+
+        // FIXME: We should probably check if the previous results had the exact same hints
+        // and perform some more analysis if some hints were missing.
+        Set<WordsQuery> missingQueries = new LinkedHashSet<>(queries);
+        missingQueries.removeAll(result.keySet());
+        if (!missingQueries.isEmpty()) {
+            // The previous version is analyzed only once for all queries which don't have stored results.
+            Optional<DocumentVersionAnalysis> analysisOpt =
+                this.performPreviousAnalysis(documentReference, previousVersion, analyzers, compiledQueries);
+            if (analysisOpt.isPresent()) {
+                this.computeMissingResults(analysisOpt.get(), missingQueries, previousResults);
+                missingQueries.forEach(query -> result.put(query, previousResults.get(query).getOccurrences()));
+            }
+        }
+        return result;
+    }
+
+    private void loadChangedPreviousResults(DocumentVersionReference previousVersionReference,
+        Map<WordsQuery, Long> previousOccurrences, Map<WordsQuery, WordsAnalysisResults> currentResults,
+        Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        // The complete previous results are only needed for the notifications, so only when the number of
+        // occurrences changed.
+        Set<WordsQuery> changedQueries = new LinkedHashSet<>();
+        for (Map.Entry<WordsQuery, Long> entry : previousOccurrences.entrySet()) {
+            if (!previousResults.containsKey(entry.getKey())
+                && entry.getValue() != currentResults.get(entry.getKey()).getOccurrences())
+            {
+                changedQueries.add(entry.getKey());
+            }
+        }
+
+        if (!changedQueries.isEmpty()) {
+            previousResults.putAll(this.loadResults(previousVersionReference, changedQueries));
+            if (!previousResults.keySet().containsAll(changedQueries)) {
+                this.logger.warn("Some previous results of [{}] cannot be loaded anymore: users won't be notified "
+                    + "about their changes.", previousVersionReference);
+            }
+        }
+    }
+
+    private Map<WordsQuery, Long> loadOccurrences(DocumentVersionReference documentVersionReference,
+        Set<WordsQuery> queries)
+    {
+        Map<WordsQuery, Long> result = new HashMap<>();
+        try {
+            result.putAll(this.storageManager.loadOccurrenceSummary(documentVersionReference, queries));
         } catch (WordsAnalysisException e) {
-            // We don't throw an exception here since we're always able to compute back previous result.
-            this.logger.error("Error when trying to load previous analysis result for document [{}] on "
-                    + "version [{}] with query [{}]. Exception: [{}]", documentReference, previousVersion, query,
-                ExceptionUtils.getRootCauseMessage(e));
+            // We don't throw an exception here since we're always able to compute back the results.
+            this.logger.error("Error while trying to load the occurrences of the analysis results for document "
+                + "[{}]. Root cause: [{}]", documentVersionReference, ExceptionUtils.getRootCauseMessage(e));
             this.logger.debug("Full error was: ", e);
         }
+        return result;
+    }
 
-        if (previousResultOpt.isEmpty()) {
-            try {
-                XWikiDocument previousDoc =
-                    this.documentRevisionProvider.getRevision(documentReference, previousVersion);
-                if (previousDoc != null) {
-                    previousResult = this.performAnalysis(previousDoc, analyzers, query);
-                }
-            } catch (XWikiException e) {
-                throw new IndexException(
-                    String.format("Cannot load document [%s] with revision [%s] for comparing results",
-                        documentReference, previousVersion), e);
+    private Optional<DocumentVersionAnalysis> performPreviousAnalysis(DocumentReference documentReference,
+        String previousVersion, Map<String, WordsMentionAnalyzer> analyzers,
+        List<CompiledWordsQueries> compiledQueries) throws IndexException
+    {
+        try {
+            XWikiDocument previousDoc = this.documentRevisionProvider.getRevision(documentReference, previousVersion);
+            Optional<DocumentVersionAnalysis> result = Optional.empty();
+            if (previousDoc != null) {
+                result = Optional.of(this.performAnalysis(previousDoc, analyzers, compiledQueries, null, Map.of()));
             }
-        } else {
-            // FIXME: We should probably check if the previous result had the exact same hints
-            // and perform some more analysis if some hints were missing.
-            previousResult = previousResultOpt.get();
+            return result;
+        } catch (XWikiException e) {
+            throw new IndexException(
+                String.format("Cannot load document [%s] with revision [%s] for comparing results",
+                    documentReference, previousVersion), e);
         }
-        return previousResult;
     }
 
-    private WordsAnalysisResults performAnalysis(XWikiDocument document, List<WordsMentionAnalyzer> analyzers,
-        WordsQuery query)
+    private DocumentVersionAnalysis performAnalysis(XWikiDocument document,
+        Map<String, WordsMentionAnalyzer> analyzers, List<CompiledWordsQueries> compiledQueries,
+        String previousVersion, Map<WordsQuery, WordsAnalysisResults> previousResults) throws IndexException
     {
         DocumentReference documentReference = document.getDocumentReference();
         String version = document.getVersion();
-        DocumentVersionReference documentVersionReference =
-            new DocumentVersionReference(documentReference, version);
+        DocumentVersionAnalysis documentVersionAnalysis =
+            new DocumentVersionAnalysis(new DocumentVersionReference(documentReference, version), new Date());
 
-        // We try first to load the results as they might have been computed already for another user.
-        WordsAnalysisResults wordsAnalysisResults = null;
+        Map<String, String> fingerprints = this.getFingerprints(document, analyzers);
+        List<Callable<Optional<Map<String, PartAnalysisResult>>>> tasks = this.createAnalysisTasks(document,
+            analyzers, compiledQueries, fingerprints, previousVersion, previousResults);
+
+        List<Optional<Map<String, PartAnalysisResult>>> tasksResults;
         try {
-            Optional<WordsAnalysisResults> wordsAnalysisResultsOpt =
-                this.storageManager.loadAnalysisResults(documentVersionReference, query);
-            if (wordsAnalysisResultsOpt.isPresent()) {
-                wordsAnalysisResults = wordsAnalysisResultsOpt.get();
+            tasksResults = this.analysisExecutor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexException(String.format("Interrupted while analyzing document [%s] on version [%s]",
+                documentReference, version), e);
+        } catch (ExecutionException e) {
+            throw new IndexException(String.format("Error while analyzing document [%s] on version [%s]",
+                documentReference, version), e.getCause());
+        }
+
+        // The results are merged in the order of the analyzers and of the batches, whatever the order in which the
+        // tasks have been executed.
+        Iterator<Optional<Map<String, PartAnalysisResult>>> tasksResultsIterator = tasksResults.iterator();
+        for (String analyzerHint : analyzers.keySet()) {
+            Map<String, PartAnalysisResult> analyzerResults = new HashMap<>();
+            boolean failed = false;
+            for (int i = 0; i < compiledQueries.size(); i++) {
+                Optional<Map<String, PartAnalysisResult>> batchResults = tasksResultsIterator.next();
+                if (batchResults.isPresent()) {
+                    analyzerResults.putAll(batchResults.get());
+                } else {
+                    failed = true;
+                }
             }
-        } catch (WordsAnalysisException e) {
-            this.logger.error("Error while trying to load analysis results for document [{}] and query [{}]",
-                documentVersionReference, query, e);
+            // We only keep the results of the analyzers which managed to analyze all queries.
+            if (!failed) {
+                documentVersionAnalysis.addResults(analyzerHint, analyzerResults, fingerprints.get(analyzerHint));
+            }
+        }
+        return documentVersionAnalysis;
+    }
+
+    private Map<String, String> getFingerprints(XWikiDocument document, Map<String, WordsMentionAnalyzer> analyzers)
+    {
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, WordsMentionAnalyzer> entry : analyzers.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().getFingerprint(document).orElse(null));
+            } catch (WordsAnalysisException e) {
+                // The document is then always analyzed by this analyzer.
+                this.logger.warn("Cannot compute the fingerprint of analyzer [{}] for document [{}] on version [{}]. "
+                    + "Root cause is: [{}]", entry.getKey(), document.getDocumentReference(), document.getVersion(),
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+        return result;
+    }
+
+    private List<Callable<Optional<Map<String, PartAnalysisResult>>>> createAnalysisTasks(XWikiDocument document,
+        Map<String, WordsMentionAnalyzer> analyzers, List<CompiledWordsQueries> compiledQueries,
+        Map<String, String> fingerprints, String previousVersion, Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        // The previous document is only loaded if some previous parts cannot be reused as they are.
+        List<Map<String, PartAnalysisResult>> previousPartsList =
+            this.getPreviousPartsPerTask(analyzers.keySet(), compiledQueries, previousVersion, previousResults);
+        XWikiDocument previousDocument = null;
+        if (this.isPreviousDocumentNeeded(analyzers.keySet(), compiledQueries.size(), fingerprints,
+            previousPartsList))
+        {
+            previousDocument = this.loadIncrementalAnalysisDocument(document.getDocumentReference(), previousVersion);
         }
 
-        if (wordsAnalysisResults == null) {
-            wordsAnalysisResults =
-                new WordsAnalysisResults(documentVersionReference, query, new Date());
-            for (WordsMentionAnalyzer analyzer : analyzers) {
-                try {
-                    wordsAnalysisResults.addResult(analyzer.analyze(document, query));
-                } catch (WordsAnalysisException e) {
-                    // we avoid throwing an IndexException here since other analyzers could work.
-                    this.logger.error("Error during analysis performed by [{}] on document [{}] on "
-                            + "version [{}]. Root cause is: [{}]",
-                        analyzer.getClass(),
-                        documentReference,
-                        version,
-                        ExceptionUtils.getRootCauseMessage(e));
+        // Each analyzer analyzes each batch of queries in a dedicated task, so that they can be executed concurrently,
+        // unless the texts it analyzes didn't change: its previous results are then reused without any analysis.
+        // The documents are not thread safe: the tasks which might be executed concurrently get their own copies.
+        boolean concurrent = this.analysisExecutor.isConcurrent();
+        List<Callable<Optional<Map<String, PartAnalysisResult>>>> result = new ArrayList<>();
+        Iterator<Map<String, PartAnalysisResult>> previousPartsIterator = previousPartsList.iterator();
+        for (Map.Entry<String, WordsMentionAnalyzer> entry : analyzers.entrySet()) {
+            for (CompiledWordsQueries queriesBatch : compiledQueries) {
+                Map<String, PartAnalysisResult> previousParts = previousPartsIterator.next();
+                if (previousParts != null && this.isUnchanged(fingerprints.get(entry.getKey()), previousParts)) {
+                    Optional<Map<String, PartAnalysisResult>> reusedParts =
+                        Optional.of(this.getReusedParts(previousParts));
+                    result.add(() -> reusedParts);
+                } else {
+                    Map<String, PartAnalysisResult> incrementalParts =
+                        (previousDocument != null) ? previousParts : null;
+                    XWikiDocument taskDocument = concurrent ? document.clone() : document;
+                    XWikiDocument taskPreviousDocument =
+                        (concurrent && previousDocument != null) ? previousDocument.clone() : previousDocument;
+                    result.add(() -> this.analyze(taskDocument, entry.getValue(), queriesBatch, taskPreviousDocument,
+                        incrementalParts));
                 }
             }
+        }
+        return result;
+    }
+
+    private List<Map<String, PartAnalysisResult>> getPreviousPartsPerTask(Set<String> analyzerHints,
+        List<CompiledWordsQueries> compiledQueries, String previousVersion,
+        Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        // The previous parts of each analyzer and batch of queries, in the order of the tasks.
+        List<Map<String, PartAnalysisResult>> result = new ArrayList<>();
+        for (String analyzerHint : analyzerHints) {
+            for (CompiledWordsQueries queriesBatch : compiledQueries) {
+                result.add((previousVersion != null)
+                    ? this.getPreviousParts(analyzerHint, queriesBatch, previousResults) : null);
+            }
+        }
+        return result;
+    }
+
+    private boolean isPreviousDocumentNeeded(Set<String> analyzerHints, int batchCount,
+        Map<String, String> fingerprints, List<Map<String, PartAnalysisResult>> previousPartsList)
+    {
+        boolean result = false;
+        Iterator<Map<String, PartAnalysisResult>> previousPartsIterator = previousPartsList.iterator();
+        for (String analyzerHint : analyzerHints) {
+            for (int i = 0; i < batchCount; i++) {
+                Map<String, PartAnalysisResult> previousParts = previousPartsIterator.next();
+                result |= previousParts != null && !this.isUnchanged(fingerprints.get(analyzerHint), previousParts);
+            }
+        }
+        return result;
+    }
+
+    private boolean isUnchanged(String fingerprint, Map<String, PartAnalysisResult> previousParts)
+    {
+        return fingerprint != null && previousParts.values().stream()
+            .allMatch(partAnalysisResult -> fingerprint.equals(partAnalysisResult.getFingerprint()));
+    }
+
+    private Map<String, PartAnalysisResult> getReusedParts(Map<String, PartAnalysisResult> previousParts)
+    {
+        // Like an analysis, only keep the queries which have been found.
+        Map<String, PartAnalysisResult> result = new HashMap<>();
+        previousParts.forEach((query, partAnalysisResult) -> {
+            if (partAnalysisResult.getOccurrences() > 0) {
+                result.put(query, partAnalysisResult);
+            }
+        });
+        return result;
+    }
+
+    private Map<String, PartAnalysisResult> getPreviousParts(String analyzerHint,
+        CompiledWordsQueries queries, Map<WordsQuery, WordsAnalysisResults> previousResults)
+    {
+        // The previous results of the analyzer can only be reused if the analyzer produced a result for each query
+        // of the batch on the previous version: it produces empty results for the queries it didn't find.
+        Map<String, PartAnalysisResult> result = new HashMap<>();
+        for (String query : queries.getQueries()) {
+            WordsAnalysisResults queryResults = previousResults.get(new WordsQuery(query, null));
+            if (queryResults != null) {
+                queryResults.getResults().stream()
+                    .filter(partAnalysisResult -> analyzerHint.equals(partAnalysisResult.getAnalyzerHint()))
+                    .findFirst()
+                    .ifPresent(partAnalysisResult -> result.put(query, partAnalysisResult));
+            }
+        }
+        return (result.size() == queries.getQueries().size()) ? result : null;
+    }
+
+    private Optional<Map<String, PartAnalysisResult>> analyze(XWikiDocument document, WordsMentionAnalyzer analyzer,
+        CompiledWordsQueries queries, XWikiDocument previousDocument, Map<String, PartAnalysisResult> previousParts)
+    {
+        Optional<Map<String, PartAnalysisResult>> result;
+        try {
+            // The previous parts are only provided when they can be reused.
+            if (previousParts != null) {
+                result = Optional.of(analyzer.analyze(document, queries, previousDocument, previousParts));
+            } else {
+                result = Optional.of(analyzer.analyze(document, queries));
+            }
+        } catch (WordsAnalysisException e) {
+            // we avoid throwing an IndexException here since other analyzers could work.
+            this.logger.error("Error during analysis performed by [{}] on document [{}] on "
+                    + "version [{}]. Root cause is: [{}]",
+                analyzer.getClass(),
+                document.getDocumentReference(),
+                document.getVersion(),
+                ExceptionUtils.getRootCauseMessage(e));
+            result = Optional.empty();
+        }
+        return result;
+    }
+
+    private Map<WordsQuery, WordsAnalysisResults> getResults(DocumentVersionAnalysis documentVersionAnalysis,
+        Set<WordsQuery> queries)
+    {
+        // We try first to load the results as they might have been computed already by a previous task.
+        Map<WordsQuery, WordsAnalysisResults> result =
+            this.loadResults(documentVersionAnalysis.getReference(), queries);
+
+        Set<WordsQuery> missingQueries = new LinkedHashSet<>(queries);
+        missingQueries.removeAll(result.keySet());
+        this.computeMissingResults(documentVersionAnalysis, missingQueries, result);
+        return result;
+    }
+
+    private Map<WordsQuery, WordsAnalysisResults> loadResults(DocumentVersionReference documentVersionReference,
+        Set<WordsQuery> queries)
+    {
+        Map<WordsQuery, WordsAnalysisResults> result = new HashMap<>();
+        try {
+            result.putAll(this.storageManager.loadAnalysisResults(documentVersionReference, queries));
+        } catch (WordsAnalysisException e) {
+            // We don't throw an exception here since we're always able to compute back the results.
+            this.logger.error("Error while trying to load analysis results for document [{}]. Root cause: [{}]",
+                documentVersionReference, ExceptionUtils.getRootCauseMessage(e));
+            this.logger.debug("Full error was: ", e);
+        }
+        return result;
+    }
+
+    private void computeMissingResults(DocumentVersionAnalysis documentVersionAnalysis,
+        Set<WordsQuery> missingQueries, Map<WordsQuery, WordsAnalysisResults> results)
+    {
+        DocumentVersionReference documentVersionReference = documentVersionAnalysis.getReference();
+        for (WordsQuery query : missingQueries) {
+            WordsAnalysisResults wordsAnalysisResults = documentVersionAnalysis.getResults(query);
             try {
                 this.storageManager.saveAnalysisResults(wordsAnalysisResults);
             } catch (WordsAnalysisException e) {
                 // We don't throw an exception since the persistency is not strictly needed.
                 this.logger.error("Error while persisting the results of analysis of [{}] with query [{}]. "
-                    + "Root cause: [{}]", documentReference, query, ExceptionUtils.getRootCauseMessage(e));
+                    + "Root cause: [{}]", documentVersionReference, query, ExceptionUtils.getRootCauseMessage(e));
             }
+            results.put(query, wordsAnalysisResults);
         }
-        return wordsAnalysisResults;
     }
 
     private Set<UserReference> filterUsersAuthorizedToSee(DocumentReference documentReference,
         Set<UserReference> userList)
     {
-        return userList.stream().filter(userReference -> {
-            DocumentReference userDoc = this.documentReferenceUserReferenceSerializer.serialize(userReference);
-            return this.authorizationManager.hasAccess(Right.VIEW, userDoc, documentReference);
-        }).collect(Collectors.toSet());
+        Set<UserReference> result = new HashSet<>();
+        if (!userList.isEmpty()) {
+            // Retrieved before checking anything so that the decisions are not recorded if the rights change
+            // meanwhile.
+            long checkGeneration = this.viewRightsCache.getGeneration();
+            // The decisions are shared with the other documents of the same scope, usually the same space.
+            String scope = this.viewRightsCache.getScope(documentReference);
+            for (UserReference userReference : userList) {
+                Optional<Boolean> cachedDecision = this.viewRightsCache.get(userReference, scope);
+                boolean allowed;
+                if (cachedDecision.isPresent()) {
+                    allowed = cachedDecision.get();
+                } else {
+                    DocumentReference userDoc = this.documentReferenceUserReferenceSerializer.serialize(userReference);
+                    allowed = this.authorizationManager.hasAccess(Right.VIEW, userDoc, documentReference);
+                    this.viewRightsCache.set(userReference, scope, allowed, checkGeneration);
+                }
+                if (allowed) {
+                    result.add(userReference);
+                }
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,260 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.index.IndexException;
+import org.xwiki.index.TaskConsumer;
+import org.xwiki.index.TaskManager;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Execute the analysis tasks, either by adding them to the {@link TaskManager} of the platform, or, when
+ * {@link WordsNotificationConfiguration#getTaskThreads()} is positive, on a dedicated pool of threads, so that the
+ * analyses neither delay the other index tasks nor get delayed by them.
+ * <p>
+ * The queue of the dedicated pool is bounded by {@link WordsNotificationConfiguration#getTaskQueueSize()}: the tasks
+ * which don't fit are added to the {@link TaskManager} instead, as well as the tasks still waiting or interrupted when
+ * the component is disposed. Contrary to the tasks of the {@link TaskManager}, the queued tasks are only kept in
+ * memory: they're lost if the instance crashes. The tasks of the updated documents are executed before the tasks of the
+ * created documents, which are mostly created in bulk by imports, so that an import doesn't delay the notifications
+ * of the interactive saves.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = WordsSearchTaskExecutor.class)
+@Singleton
+public class WordsSearchTaskExecutor implements Initializable, Disposable
+{
+    /**
+     * Task waiting in the queue of the dedicated pool.
+     */
+    private final class QueuedTask implements Runnable, Comparable<QueuedTask>
+    {
+        private final DocumentReference documentReference;
+
+        private final long documentId;
+
+        private final String version;
+
+        private final boolean created;
+
+        private final long sequence;
+
+        private final long queuedTime = System.currentTimeMillis();
+
+        QueuedTask(DocumentReference documentReference, long documentId, String version, boolean created)
+        {
+            this.documentReference = documentReference;
+            this.documentId = documentId;
+            this.version = version;
+            this.created = created;
+            this.sequence = WordsSearchTaskExecutor.this.sequenceGenerator.getAndIncrement();
+        }
+
+        @Override
+        public void run()
+        {
+            consume(this);
+        }
+
+        @Override
+        public int compareTo(QueuedTask other)
+        {
+            // The tasks of the updated documents come first, then the tasks are executed in the order they've been
+            // added.
+            int result = Boolean.compare(this.created, other.created);
+            if (result == 0) {
+                result = Long.compare(this.sequence, other.sequence);
+            }
+            return result;
+        }
+    }
+
+    @Inject
+    private TaskManager taskManager;
+
+    @Inject
+    @Named(WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT)
+    private Provider<TaskConsumer> taskConsumerProvider;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Logger logger;
+
+    private ThreadPoolExecutor executor;
+
+    private int queueCapacity;
+
+    private final AtomicLong sequenceGenerator = new AtomicLong();
+
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    private final AtomicLong executedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int threads = this.configuration.getTaskThreads();
+        if (threads > 0) {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), new BasicThreadFactory.Builder()
+                    .namingPattern("Words notification task-%d")
+                    .daemon(true)
+                    .build(),
+                // The tasks rejected once the pool is shut down are given back to the task manager.
+                (runnable, pool) -> this.giveBack((QueuedTask) runnable));
+            this.executor.allowCoreThreadTimeOut(true);
+            this.queueCapacity = Math.max(1, this.configuration.getTaskQueueSize());
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executor != null) {
+            // The waiting tasks are given back to the task manager, which persists them.
+            List<Runnable> waitingTasks = this.executor.shutdownNow();
+            waitingTasks.forEach(waitingTask -> this.giveBack((QueuedTask) waitingTask));
+        }
+    }
+
+    /**
+     * Add the analysis task of the given version of a document.
+     *
+     * @param documentReference the reference of the document to analyze
+     * @param documentId the identifier of the document
+     * @param version the version of the document to analyze
+     * @param created {@code true} if the task is about the creation of the document
+     */
+    public void addTask(DocumentReference documentReference, long documentId, String version, boolean created)
+    {
+        if (this.executor == null) {
+            this.addTaskToTaskManager(documentReference, documentId, version);
+        } else if (this.queuedCount.incrementAndGet() > this.queueCapacity) {
+            this.queuedCount.decrementAndGet();
+            this.overflowCount.incrementAndGet();
+            this.addTaskToTaskManager(documentReference, documentId, version);
+        } else {
+            // The task is executed directly since a FutureTask wouldn't be comparable.
+            this.executor.execute(new QueuedTask(documentReference, documentId, version, created));
+        }
+    }
+
+    private void giveBack(QueuedTask task)
+    {
+        this.queuedCount.decrementAndGet();
+        this.addTaskToTaskManager(task.documentReference, task.documentId, task.version);
+    }
+
+    private void addTaskToTaskManager(DocumentReference documentReference, long documentId, String version)
+    {
+        this.taskManager.addTask(documentReference.getWikiReference().getName(), documentId, version,
+            WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+    }
+
+    private void consume(QueuedTask task)
+    {
+        this.queuedCount.decrementAndGet();
+        this.totalWaitTime.addAndGet(System.currentTimeMillis() - task.queuedTime);
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                this.contextProvider.get().setWikiId(task.documentReference.getWikiReference().getName());
+                this.taskConsumerProvider.get().consume(task.documentReference, task.version);
+                this.executedCount.incrementAndGet();
+            } finally {
+                this.execution.removeContext();
+            }
+        } catch (ExecutionContextException | IndexException | RuntimeException e) {
+            if (this.executor.isShutdown()) {
+                // The analysis has most likely been interrupted by the disposal of the component.
+                this.addTaskToTaskManager(task.documentReference, task.documentId, task.version);
+            } else {
+                this.failedCount.incrementAndGet();
+                this.logger.warn("Failed to analyze document [{}] on version [{}]. Root cause: [{}]",
+                    task.documentReference, task.version, ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of the dedicated pool: the number of tasks waiting in the queue with key {@code queued},
+     *         the number of executed and failed tasks with keys {@code executed} and {@code failed}, the number of
+     *         tasks added to the task manager because the queue was full with key {@code overflowed}, and the average
+     *         time in milliseconds spent by the tasks in the queue with key {@code averageWaitTime}
+     */
+    public Map<String, Long> getStatistics()
+    {
+        long executed = this.executedCount.get();
+        long failed = this.failedCount.get();
+        long consumed = executed + failed;
+        return Map.of(
+            "queued", (long) this.queuedCount.get(),
+            "executed", executed,
+            "failed", failed,
+            "overflowed", this.overflowCount.get(),
+            "averageWaitTime", (consumed > 0) ? this.totalWaitTime.get() / consumed : 0L);
+    }
+}
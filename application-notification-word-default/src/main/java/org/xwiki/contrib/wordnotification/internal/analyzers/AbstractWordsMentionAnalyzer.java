@@ -19,12 +19,26 @@
  */
 package org.xwiki.contrib.wordnotification.internal.analyzers;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
 
 import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
@@ -44,23 +58,162 @@ public abstract class AbstractWordsMentionAnalyzer implements WordsMentionAnalyz
     @Inject
     private PatternAnalysisHelper patternAnalysisHelper;
 
+    @Inject
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
     @Override
     public PartAnalysisResult analyze(DocumentModelBridge document, WordsQuery wordsQuery)
         throws WordsAnalysisException
     {
         PartAnalysisResult result = new PartAnalysisResult(this.getHint());
 
-        this.getTextToAnalyze(document).forEach((key, value) -> analyzeText(wordsQuery.getQuery(), value, key, result));
+        // The query is compiled once for all the texts to analyze.
+        CompiledWordsQuery query = this.patternAnalysisHelper.compile(wordsQuery.getQuery());
+        this.getTextToAnalyze(document).forEach((key, value) -> analyzeText(query, value, key, result));
 
         return result;
     }
 
-    private void analyzeText(String query, List<String> textsToAnalyze, EntityReference localization,
+    private void analyzeText(CompiledWordsQuery query, List<String> textsToAnalyze, EntityReference localization,
         PartAnalysisResult result)
     {
         result.addRegions(this.patternAnalysisHelper.getRegions(query, textsToAnalyze, localization));
     }
 
+    @Override
+    public Map<String, PartAnalysisResult> analyze(DocumentModelBridge document, CompiledWordsQueries queries)
+        throws WordsAnalysisException
+    {
+        Map<String, PartAnalysisResult> result = new HashMap<>();
+
+        // The texts are retrieved only once and each of them is scanned only once for all queries.
+        for (Map.Entry<EntityReference, List<String>> entry : this.getTextToAnalyze(document).entrySet()) {
+            this.multiPatternAnalysisHelper.getRegions(queries, entry.getValue(), entry.getKey())
+                .forEach((query, regions) ->
+                    result.computeIfAbsent(query, key -> new PartAnalysisResult(this.getHint())).addRegions(regions));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<String, PartAnalysisResult> analyze(DocumentModelBridge document, CompiledWordsQueries queries,
+        DocumentModelBridge previousDocument, Map<String, PartAnalysisResult> previousResults)
+        throws WordsAnalysisException
+    {
+        Map<String, PartAnalysisResult> result;
+        Map<EntityReference, List<String>> previousTexts = this.getTextToAnalyze(previousDocument);
+        if (this.canReuse(queries, previousTexts, previousResults)) {
+            result = new HashMap<>();
+            for (Map.Entry<EntityReference, List<String>> entry : this.getTextToAnalyze(document).entrySet()) {
+                this.analyzeIncrementally(queries, entry.getKey(), entry.getValue(),
+                    previousTexts.getOrDefault(entry.getKey(), List.of()), previousResults, result);
+            }
+        } else {
+            result = this.analyze(document, queries);
+        }
+        return result;
+    }
+
+    private boolean canReuse(CompiledWordsQueries queries, Map<EntityReference, List<String>> previousTexts,
+        Map<String, PartAnalysisResult> previousResults)
+    {
+        // The previous results are only reused if they're complete and if each of their regions can be attributed to
+        // one of the previous texts.
+        boolean result = previousResults.keySet().containsAll(queries.getQueries());
+        Iterator<String> queriesIterator = queries.getQueries().iterator();
+        while (result && queriesIterator.hasNext()) {
+            result = previousResults.get(queriesIterator.next()).getRegions().stream()
+                .allMatch(region -> previousTexts.containsKey(region.getEntityReference()));
+        }
+        return result;
+    }
+
+    private void analyzeIncrementally(CompiledWordsQueries queries, EntityReference localization,
+        List<String> textsToAnalyze, List<String> previousTexts, Map<String, PartAnalysisResult> previousResults,
+        Map<String, PartAnalysisResult> result)
+    {
+        // The regions found in a text only depend on that text: the texts which were already part of the previous
+        // version reuse its regions, wherever they were located, and only the other texts are analyzed.
+        Map<String, Integer> previousPositions = new HashMap<>();
+        for (int i = previousTexts.size() - 1; i >= 0; i--) {
+            previousPositions.put(previousTexts.get(i), i);
+        }
+
+        Map<Integer, List<Integer>> reusedPositions = new HashMap<>();
+        List<String> changedTexts = new ArrayList<>();
+        List<Integer> changedPositions = new ArrayList<>();
+        for (int i = 0; i < textsToAnalyze.size(); i++) {
+            Integer previousPosition = previousPositions.get(textsToAnalyze.get(i));
+            if (previousPosition != null) {
+                reusedPositions.computeIfAbsent(previousPosition, key -> new ArrayList<>()).add(i);
+            } else {
+                changedTexts.add(textsToAnalyze.get(i));
+                changedPositions.add(i);
+            }
+        }
+
+        Map<String, List<WordsMentionLocalization>> changedRegions = Map.of();
+        if (!changedTexts.isEmpty()) {
+            changedRegions = this.multiPatternAnalysisHelper.getRegions(queries, changedTexts, localization);
+        }
+
+        for (String query : queries.getQueries()) {
+            List<WordsMentionLocalization> regions = new ArrayList<>();
+            for (WordsMentionLocalization region : previousResults.get(query).getRegions()) {
+                if (localization.equals(region.getEntityReference())) {
+                    for (int position : reusedPositions.getOrDefault(region.getPositionInList(), List.of())) {
+                        regions.add(new WordsMentionLocalization(localization, position, region.getRegionStart(),
+                            region.getRegionEnd()));
+                    }
+                }
+            }
+            for (WordsMentionLocalization region : changedRegions.getOrDefault(query, List.of())) {
+                regions.add(new WordsMentionLocalization(localization,
+                    changedPositions.get(region.getPositionInList()), region.getRegionStart(), region.getRegionEnd()));
+            }
+
+            if (!regions.isEmpty()) {
+                // Keep the order of a full analysis: the sort is stable so the regions of a text keep their order.
+                regions.sort(Comparator.comparingInt(WordsMentionLocalization::getPositionInList));
+                result.computeIfAbsent(query, key -> new PartAnalysisResult(this.getHint())).addRegions(regions);
+            }
+        }
+    }
+
+    @Override
+    public Optional<String> getFingerprint(DocumentModelBridge document) throws WordsAnalysisException
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WordsAnalysisException("Cannot compute the fingerprint of the texts to analyze", e);
+        }
+
+        // The texts are sorted by reference so that the fingerprint doesn't depend on the order of the map. Each
+        // value is prefixed by its length so that different texts cannot produce the same digested bytes.
+        Map<String, List<String>> sortedTexts = new TreeMap<>();
+        this.getTextToAnalyze(document).forEach((key, value) -> sortedTexts.put(key.getType() + ":" + key, value));
+        for (Map.Entry<String, List<String>> entry : sortedTexts.entrySet()) {
+            this.updateDigest(digest, entry.getKey());
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(entry.getValue().size()).array());
+            for (String text : entry.getValue()) {
+                this.updateDigest(digest, text);
+            }
+        }
+
+        return Optional.of(Base64.getEncoder().encodeToString(digest.digest()));
+    }
+
+    private void updateDigest(MessageDigest digest, String value)
+    {
+        // A missing text doesn't contain any query, just like an empty text.
+        byte[] bytes = (value != null) ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
     /**
      * @return the hint of the analyzer
      */
@@ -0,0 +1,214 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton allowing to find all occurrences of a set of literal patterns in a text with a single pass
+ * over it. Note that all occurrences are reported, including overlapping ones: it's the responsibility of the caller
+ * to select the ones it needs.
+ * Instances are immutable once built and can be shared between threads.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class AhoCorasickAutomaton
+{
+    /**
+     * Callback used to report the occurrences found when scanning a text.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface OccurrenceHandler
+    {
+        /**
+         * Called for each occurrence of a pattern found in the text, in increasing order of end offset.
+         *
+         * @param patternIndex the index of the pattern in the list given to build the automaton
+         * @param start the start offset of the occurrence in the text
+         */
+        void onOccurrence(int patternIndex, int start);
+    }
+
+    private static final int ROOT = 0;
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] patternLengths;
+
+    // Transitions of each state: the characters are sorted to allow a binary search.
+    private final char[][] transitionCharacters;
+
+    private final int[][] transitionTargets;
+
+    private final int[] failures;
+
+    // Next state on the failure chain having some outputs, or -1.
+    private final int[] outputLinks;
+
+    private final int[][] outputs;
+
+    /**
+     * Build the automaton for the given patterns.
+     *
+     * @param patterns the non-empty patterns to look for: the index of each pattern in the list is used to report the
+     *     occurrences
+     */
+    public AhoCorasickAutomaton(List<String> patterns)
+    {
+        this.patternLengths = new int[patterns.size()];
+
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        stateOutputs.add(new ArrayList<>());
+
+        for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++) {
+            String pattern = patterns.get(patternIndex);
+            this.patternLengths[patternIndex] = pattern.length();
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                Map<Character, Integer> transitions = trie.get(state);
+                Integer next = transitions.get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    transitions.put(pattern.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    stateOutputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            stateOutputs.get(state).add(patternIndex);
+        }
+
+        int size = trie.size();
+        this.transitionCharacters = new char[size][];
+        this.transitionTargets = new int[size][];
+        this.failures = new int[size];
+        this.outputLinks = new int[size];
+        this.outputs = new int[size][];
+
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            this.transitionCharacters[state] = new char[transitions.size()];
+            this.transitionTargets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                this.transitionCharacters[state][i] = entry.getKey();
+                this.transitionTargets[state][i] = entry.getValue();
+                i++;
+            }
+            List<Integer> outputList = stateOutputs.get(state);
+            this.outputs[state] = (outputList.isEmpty()) ? NO_OUTPUT
+                : outputList.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.computeFailures();
+    }
+
+    private void computeFailures()
+    {
+        // Breadth-first traversal so that the failure of a state is always computed before the ones of its children.
+        Deque<Integer> queue = new ArrayDeque<>();
+        this.failures[ROOT] = ROOT;
+        this.outputLinks[ROOT] = -1;
+        for (int child : this.transitionTargets[ROOT]) {
+            this.failures[child] = ROOT;
+            this.outputLinks[child] = -1;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            char[] characters = this.transitionCharacters[state];
+            int[] targets = this.transitionTargets[state];
+            for (int i = 0; i < characters.length; i++) {
+                int child = targets[i];
+                int failure = this.next(this.failures[state], characters[i]);
+                this.failures[child] = failure;
+                this.outputLinks[child] = (this.outputs[failure].length > 0) ? failure : this.outputLinks[failure];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int getTransition(int state, char character)
+    {
+        int index = Arrays.binarySearch(this.transitionCharacters[state], character);
+        return (index >= 0) ? this.transitionTargets[state][index] : -1;
+    }
+
+    private int next(int state, char character)
+    {
+        int current = state;
+        int target = this.getTransition(current, character);
+        while (target < 0 && current != ROOT) {
+            current = this.failures[current];
+            target = this.getTransition(current, character);
+        }
+        return (target < 0) ? ROOT : target;
+    }
+
+    /**
+     * @return the number of patterns of this automaton
+     */
+    public int getPatternCount()
+    {
+        return this.patternLengths.length;
+    }
+
+    /**
+     * @param patternIndex the index of a pattern
+     * @return the length of the pattern
+     */
+    public int getPatternLength(int patternIndex)
+    {
+        return this.patternLengths[patternIndex];
+    }
+
+    /**
+     * Scan the given text and report all occurrences of the patterns to the handler.
+     *
+     * @param text the text to scan
+     * @param handler the handler receiving the occurrences
+     */
+    public void scan(CharSequence text, OccurrenceHandler handler)
+    {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = this.next(state, text.charAt(i));
+            int outputState = (this.outputs[state].length > 0) ? state : this.outputLinks[state];
+            while (outputState >= 0) {
+                for (int patternIndex : this.outputs[outputState]) {
+                    handler.onOccurrence(patternIndex, i + 1 - this.patternLengths[patternIndex]);
+                }
+                outputState = this.outputLinks[outputState];
+            }
+        }
+    }
+}
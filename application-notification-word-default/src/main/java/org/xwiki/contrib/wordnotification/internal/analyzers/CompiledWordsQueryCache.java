@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+
+/**
+ * In-memory cache of {@link DefaultCompiledWordsQuery} to be used by {@link DefaultPatternAnalysisHelper} to avoid
+ * compiling the same queries again for each analysis.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = CompiledWordsQueryCache.class)
+@Singleton
+public class CompiledWordsQueryCache implements Initializable, Disposable
+{
+    private Cache<DefaultCompiledWordsQuery> cache;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new LRUCacheConfiguration(
+            "application-notification-word.compiledQueries", this.configuration.getCompiledQueriesCacheSize());
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating the cache for the compiled queries", e);
+        }
+    }
+
+    /**
+     * Retrieve the compiled version of the given query if it's present in cache.
+     *
+     * @param query the raw query string
+     * @return an {@link Optional#empty()} if no record is present in cache, else the compiled query
+     */
+    public Optional<DefaultCompiledWordsQuery> get(String query)
+    {
+        return Optional.ofNullable(this.cache.get(query));
+    }
+
+    /**
+     * Record in cache the given compiled query.
+     *
+     * @param compiledWordsQuery the compiled query to record
+     */
+    public void set(DefaultCompiledWordsQuery compiledWordsQuery)
+    {
+        this.cache.set(compiledWordsQuery.getQuery(), compiledWordsQuery);
+    }
+
+    /**
+     * Invalidate the compiled version of the given query.
+     *
+     * @param query the raw query string for which to invalidate the compiled query
+     */
+    public void invalidate(String query)
+    {
+        this.cache.remove(query);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+}
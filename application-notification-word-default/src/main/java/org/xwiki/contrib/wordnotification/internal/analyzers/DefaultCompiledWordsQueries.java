@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * Default implementation of {@link CompiledWordsQueries} produced by {@link DefaultMultiPatternAnalysisHelper}.
+ * The queries are split in two lanes: the literal queries, which are all compiled in a single
+ * {@link AhoCorasickAutomaton}, and the fallback queries (e.g. queries containing wildcards) which are compiled and
+ * analyzed one by one with the {@link org.xwiki.contrib.wordnotification.PatternAnalysisHelper}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class DefaultCompiledWordsQueries implements CompiledWordsQueries
+{
+    private final Set<String> queries;
+
+    private final List<String> literalQueries;
+
+    private final List<CompiledWordsQuery> fallbackQueries;
+
+    private final AhoCorasickAutomaton automaton;
+
+    /**
+     * Default constructor.
+     *
+     * @param queries all the distinct compiled queries
+     * @param literalQueries the literal queries, in the order used to build the automaton
+     * @param fallbackQueries the compiled queries that cannot be handled by the automaton
+     * @param automaton the automaton built for the literal queries, or {@code null} if there's no literal query
+     */
+    public DefaultCompiledWordsQueries(Set<String> queries, List<String> literalQueries,
+        List<CompiledWordsQuery> fallbackQueries, AhoCorasickAutomaton automaton)
+    {
+        this.queries = Collections.unmodifiableSet(queries);
+        this.literalQueries = literalQueries;
+        this.fallbackQueries = fallbackQueries;
+        this.automaton = automaton;
+    }
+
+    @Override
+    public Set<String> getQueries()
+    {
+        return this.queries;
+    }
+
+    /**
+     * @return the literal queries, whose index in the list is the pattern index used in the automaton
+     */
+    public List<String> getLiteralQueries()
+    {
+        return this.literalQueries;
+    }
+
+    /**
+     * @return the compiled queries that needs to be analyzed one by one
+     */
+    public List<CompiledWordsQuery> getFallbackQueries()
+    {
+        return this.fallbackQueries;
+    }
+
+    /**
+     * @return the automaton built for the literal queries or {@code null} if there's no literal query
+     */
+    public AhoCorasickAutomaton getAutomaton()
+    {
+        return this.automaton;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("literalQueries", literalQueries)
+            .append("fallbackQueries", fallbackQueries)
+            .toString();
+    }
+}
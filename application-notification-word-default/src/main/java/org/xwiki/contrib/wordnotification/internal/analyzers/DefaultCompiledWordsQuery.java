@@ -0,0 +1,100 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.regex.Pattern;
+
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * Default implementation of {@link CompiledWordsQuery} produced by {@link DefaultPatternAnalysisHelper}: it holds the
+ * compiled regular expression of the query and, for literal queries, the lower case string to look for with the
+ * {@link LiteralQueryScanner}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class DefaultCompiledWordsQuery implements CompiledWordsQuery
+{
+    private final String query;
+
+    private final Pattern pattern;
+
+    private final String literal;
+
+    /**
+     * Constructor for queries which can only be looked for with their regular expression.
+     *
+     * @param query the query that has been compiled
+     * @param pattern the regular expression matching the query
+     */
+    public DefaultCompiledWordsQuery(String query, Pattern pattern)
+    {
+        this(query, pattern, null);
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param query the query that has been compiled
+     * @param pattern the regular expression matching the query
+     * @param literal the lower case string to look for if the query is literal, {@code null} otherwise
+     */
+    public DefaultCompiledWordsQuery(String query, Pattern pattern, String literal)
+    {
+        this.query = query;
+        this.pattern = pattern;
+        this.literal = literal;
+    }
+
+    @Override
+    public String getQuery()
+    {
+        return this.query;
+    }
+
+    /**
+     * @return the regular expression matching the query
+     */
+    public Pattern getPattern()
+    {
+        return this.pattern;
+    }
+
+    /**
+     * @return the lower case string to look for if the query is literal, {@code null} if the query must be looked for
+     *     with its regular expression
+     */
+    public String getLiteral()
+    {
+        return this.literal;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("query", query)
+            .append("pattern", pattern)
+            .append("literal", literal)
+            .toString();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Default implementation of {@link MultiPatternAnalysisHelper}.
+ * All literal queries are compiled in a single {@link AhoCorasickAutomaton} so that each text is scanned only once
+ * whatever the number of queries. The occurrences found by the automaton are then filtered by the
+ * {@link LiteralQueryScanner} to reproduce exactly the matching rules of {@link DefaultPatternAnalysisHelper}.
+ * Queries containing wildcards or characters having a meaning in regular expressions are analyzed one by one with
+ * the {@link PatternAnalysisHelper}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Singleton
+public class DefaultMultiPatternAnalysisHelper implements MultiPatternAnalysisHelper
+{
+    @Inject
+    private PatternAnalysisHelper patternAnalysisHelper;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public CompiledWordsQueries compile(Collection<String> queries)
+    {
+        Set<String> distinctQueries = new LinkedHashSet<>(queries);
+        List<String> literalQueries = new ArrayList<>();
+        List<CompiledWordsQuery> fallbackQueries = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (String query : distinctQueries) {
+            if (LiteralQueryScanner.isLiteral(query)) {
+                literalQueries.add(query);
+                patterns.add(query.toLowerCase());
+            } else {
+                this.compileFallbackQuery(query, fallbackQueries);
+            }
+        }
+        AhoCorasickAutomaton automaton = (patterns.isEmpty()) ? null : new AhoCorasickAutomaton(patterns);
+        return new DefaultCompiledWordsQueries(distinctQueries, literalQueries, fallbackQueries, automaton);
+    }
+
+    private void compileFallbackQuery(String query, List<CompiledWordsQuery> fallbackQueries)
+    {
+        try {
+            fallbackQueries.add(this.patternAnalysisHelper.compile(query));
+        } catch (IllegalArgumentException e) {
+            // A query which cannot be compiled cannot match anything: we don't want it to prevent the analysis of
+            // the other queries.
+            this.logger.warn("Ignoring query [{}] which cannot be compiled. Root cause: [{}]", query,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    @Override
+    public Map<String, List<WordsMentionLocalization>> getRegions(CompiledWordsQueries queries,
+        List<String> textsToAnalyze, EntityReference localization)
+    {
+        DefaultCompiledWordsQueries compiledQueries;
+        if (queries instanceof DefaultCompiledWordsQueries) {
+            compiledQueries = (DefaultCompiledWordsQueries) queries;
+        } else {
+            compiledQueries = (DefaultCompiledWordsQueries) this.compile(queries.getQueries());
+        }
+
+        // Each text is lower cased only once for all queries.
+        List<LowerCaseText> lowerCaseTexts = new ArrayList<>(textsToAnalyze.size());
+        for (String textToAnalyze : textsToAnalyze) {
+            lowerCaseTexts.add(LowerCaseText.of(textToAnalyze));
+        }
+
+        Map<String, List<WordsMentionLocalization>> result = new HashMap<>();
+        if (compiledQueries.getAutomaton() != null) {
+            this.analyzeLiteralQueries(compiledQueries, lowerCaseTexts, localization, result);
+        }
+        for (CompiledWordsQuery query : compiledQueries.getFallbackQueries()) {
+            List<WordsMentionLocalization> regions;
+            if (this.patternAnalysisHelper instanceof DefaultPatternAnalysisHelper
+                && query instanceof DefaultCompiledWordsQuery)
+            {
+                regions = ((DefaultPatternAnalysisHelper) this.patternAnalysisHelper)
+                    .getLowerCaseTextsRegions((DefaultCompiledWordsQuery) query, lowerCaseTexts, localization);
+            } else {
+                regions = this.patternAnalysisHelper.getRegions(query, textsToAnalyze, localization);
+            }
+            if (!regions.isEmpty()) {
+                result.put(query.getQuery(), regions);
+            }
+        }
+        return result;
+    }
+
+    private void analyzeLiteralQueries(DefaultCompiledWordsQueries compiledQueries,
+        List<LowerCaseText> lowerCaseTexts, EntityReference localization,
+        Map<String, List<WordsMentionLocalization>> result)
+    {
+        AhoCorasickAutomaton automaton = compiledQueries.getAutomaton();
+        List<String> literalQueries = compiledQueries.getLiteralQueries();
+        BitSet[] occurrences = new BitSet[automaton.getPatternCount()];
+        List<Integer> foundPatterns = new ArrayList<>();
+
+        int counter = 0;
+        for (LowerCaseText text : lowerCaseTexts) {
+            // Same as DefaultPatternAnalysisHelper we perform the matching on the lower case text.
+            automaton.scan(text.getText(), (patternIndex, start) -> {
+                if (occurrences[patternIndex] == null) {
+                    occurrences[patternIndex] = new BitSet();
+                    foundPatterns.add(patternIndex);
+                }
+                occurrences[patternIndex].set(start);
+            });
+
+            for (int patternIndex : foundPatterns) {
+                String query = literalQueries.get(patternIndex);
+                List<WordsMentionLocalization> regions = result.computeIfAbsent(query, key -> new ArrayList<>());
+                LiteralQueryScanner.selectRegions(text, automaton.getPatternLength(patternIndex),
+                    occurrences[patternIndex]::nextSetBit, localization, counter, regions);
+                occurrences[patternIndex] = null;
+            }
+            foundPatterns.clear();
+            counter++;
+        }
+        result.values().removeIf(List::isEmpty);
+    }
+}
@@ -21,20 +21,25 @@ package org.xwiki.contrib.wordnotification.internal.analyzers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.model.reference.EntityReference;
 
 /**
  * Default implementation of {@link PatternAnalysisHelper}.
- * This classes performs the analysis using Pattern matching.
+ * This classes performs the analysis using Pattern matching, except for literal queries which are looked for with
+ * the {@link LiteralQueryScanner} producing the same results without the cost of the regular expression. The compiled
+ * queries are kept in a {@link CompiledWordsQueryCache}.
  *
  * @version $Id$
  * @since 1.1
@@ -49,6 +54,9 @@ public class DefaultPatternAnalysisHelper implements PatternAnalysisHelper
     private static final String START_ESCAPING = "\\Q";
     private static final String END_ESCAPING = "\\E";
 
+    @Inject
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
     private String transformQuery(String query)
     {
         String result;
@@ -115,36 +123,89 @@ public class DefaultPatternAnalysisHelper implements PatternAnalysisHelper
         return Pattern.compile(regex);
     }
 
+    @Override
+    public CompiledWordsQuery compile(String query)
+    {
+        Optional<DefaultCompiledWordsQuery> cachedQuery = this.compiledWordsQueryCache.get(query);
+        DefaultCompiledWordsQuery result;
+        if (cachedQuery.isPresent()) {
+            result = cachedQuery.get();
+        } else {
+            String literal = (LiteralQueryScanner.isLiteral(query)) ? query.toLowerCase() : null;
+            result = new DefaultCompiledWordsQuery(query, getPattern(query), literal);
+            this.compiledWordsQueryCache.set(result);
+        }
+        return result;
+    }
+
     @Override
     public List<WordsMentionLocalization> getRegions(String query, List<String> textsToAnalyze,
         EntityReference localization)
     {
-        int counter = 0;
-        List<WordsMentionLocalization> result = new ArrayList<>();
-        Pattern pattern = getPattern(query);
+        return getRegions(compile(query), textsToAnalyze, localization);
+    }
+
+    @Override
+    public List<WordsMentionLocalization> getRegions(CompiledWordsQuery query, List<String> textsToAnalyze,
+        EntityReference localization)
+    {
+        DefaultCompiledWordsQuery compiledQuery;
+        if (query instanceof DefaultCompiledWordsQuery) {
+            compiledQuery = (DefaultCompiledWordsQuery) query;
+        } else {
+            compiledQuery = (DefaultCompiledWordsQuery) compile(query.getQuery());
+        }
+
+        List<LowerCaseText> lowerCaseTexts = new ArrayList<>(textsToAnalyze.size());
         for (String textToAnalyze : textsToAnalyze) {
-            // Note that for now it seems better for perf to transform the content and the query to perform
-            // case insensitive matching instead of using the case insensitive flag as the javadoc indicates that
-            // it might involve some performance penalty.
-            Matcher matcher = pattern.matcher(textToAnalyze.toLowerCase());
+            lowerCaseTexts.add(LowerCaseText.of(textToAnalyze));
+        }
+        return getLowerCaseTextsRegions(compiledQuery, lowerCaseTexts, localization);
+    }
 
-            while (matcher.find()) {
-                String groupName;
-                if (!StringUtils.isEmpty(matcher.group(SPACE_PREFIX_GROUP_NAME))) {
-                    groupName = SPACE_PREFIX_GROUP_NAME;
-                } else if (!StringUtils.isEmpty(matcher.group(SPACE_SUFFIX_GROUP_NAME))) {
-                    groupName = SPACE_SUFFIX_GROUP_NAME;
-                } else {
-                    groupName = ALONE_GROUP_NAME;
-                }
-                result.add(new WordsMentionLocalization(
-                    localization,
-                    counter,
-                    matcher.start(groupName),
-                    matcher.end(groupName)));
+    /**
+     * Perform analysis on texts which have already been lower cased, so that they can be shared between many queries.
+     *
+     * @param query the compiled query to use for performing the analysis
+     * @param lowerCaseTexts the lower case texts to analyze
+     * @param localization the localization used for creation of the {@link WordsMentionLocalization}
+     * @return a list of localization where the query has been found, or an empty list if it has not been found
+     * @since 1.2.3
+     */
+    public List<WordsMentionLocalization> getLowerCaseTextsRegions(DefaultCompiledWordsQuery query,
+        List<LowerCaseText> lowerCaseTexts, EntityReference localization)
+    {
+        int counter = 0;
+        List<WordsMentionLocalization> result = new ArrayList<>();
+        for (LowerCaseText lowerCaseText : lowerCaseTexts) {
+            if (query.getLiteral() != null) {
+                LiteralQueryScanner.scan(lowerCaseText, query.getLiteral(), localization, counter, result);
+            } else {
+                getPatternRegions(query.getPattern(), lowerCaseText, localization, counter, result);
             }
             counter++;
         }
         return result;
     }
+
+    private void getPatternRegions(Pattern pattern, LowerCaseText lowerCaseText, EntityReference localization,
+        int positionInList, List<WordsMentionLocalization> result)
+    {
+        Matcher matcher = pattern.matcher(lowerCaseText.getText());
+        while (matcher.find()) {
+            String groupName;
+            if (!StringUtils.isEmpty(matcher.group(SPACE_PREFIX_GROUP_NAME))) {
+                groupName = SPACE_PREFIX_GROUP_NAME;
+            } else if (!StringUtils.isEmpty(matcher.group(SPACE_SUFFIX_GROUP_NAME))) {
+                groupName = SPACE_SUFFIX_GROUP_NAME;
+            } else {
+                groupName = ALONE_GROUP_NAME;
+            }
+            result.add(new WordsMentionLocalization(
+                localization,
+                positionInList,
+                lowerCaseText.getOriginalOffset(matcher.start(groupName)),
+                lowerCaseText.getOriginalOffset(matcher.end(groupName))));
+        }
+    }
 }
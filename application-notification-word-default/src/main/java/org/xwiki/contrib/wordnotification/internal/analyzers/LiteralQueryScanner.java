@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Find the occurrences of literal queries in a text without relying on regular expressions: the occurrences are
+ * located with a plain string search and are then filtered with the same whitespace boundary rules as the regular
+ * expression {@code \s(query)|(query)\s|^(query)$} used by {@link DefaultPatternAnalysisHelper}, so that both produce
+ * exactly the same regions.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class LiteralQueryScanner
+{
+    // Characters that are interpreted by the regular expression built by DefaultPatternAnalysisHelper.
+    private static final String REGEX_SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    // Same definition as the \s character class of java.util.regex.Pattern.
+    private static final String WHITESPACES = " \t\n\u000B\f\r";
+
+    private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+    private LiteralQueryScanner()
+    {
+        // Utility class.
+    }
+
+    /**
+     * @param query a query
+     * @return {@code true} if the query doesn't contain any wildcard or any character having a meaning in the regular
+     *     expression built by {@link DefaultPatternAnalysisHelper}, so that it can be looked for as a plain string
+     */
+    public static boolean isLiteral(String query)
+    {
+        return !StringUtils.isEmpty(query) && !StringUtils.containsAny(query, REGEX_SPECIAL_CHARACTERS);
+    }
+
+    /**
+     * Find the regions of the given literal query in the text.
+     *
+     * @param lowerCaseText the lower case text
+     * @param lowerCaseQuery the lower case literal query
+     * @param localization the localization used for creation of the {@link WordsMentionLocalization}
+     * @param positionInList the position of the text in the list of analyzed texts
+     * @param regions the list where to add the found regions
+     */
+    public static void scan(LowerCaseText lowerCaseText, String lowerCaseQuery, EntityReference localization,
+        int positionInList, List<WordsMentionLocalization> regions)
+    {
+        String text = lowerCaseText.getText();
+        selectRegions(lowerCaseText, lowerCaseQuery.length(), fromIndex -> text.indexOf(lowerCaseQuery, fromIndex),
+            localization, positionInList, regions);
+    }
+
+    /**
+     * Select among all the occurrences of a query in a text the ones that would be found by the regular expression
+     * {@code \s(query)|(query)\s|^(query)$} used by {@link DefaultPatternAnalysisHelper}: this means the occurrences
+     * are looked for from left to right, the whitespaces are consumed by the matches, and at a given position the
+     * alternatives are tried in the order of the expression.
+     *
+     * @param lowerCaseText the lower case text
+     * @param queryLength the length of the query
+     * @param nextOccurrence function returning the start offset of the first occurrence of the query starting at or
+     *     after the given offset, or a negative value if there's none
+     * @param localization the localization used for creation of the {@link WordsMentionLocalization}
+     * @param positionInList the position of the text in the list of analyzed texts
+     * @param regions the list where to add the selected regions
+     */
+    public static void selectRegions(LowerCaseText lowerCaseText, int queryLength, IntUnaryOperator nextOccurrence,
+        EntityReference localization, int positionInList, List<WordsMentionLocalization> regions)
+    {
+        String text = lowerCaseText.getText();
+        int searchStart = 0;
+        int occurrence = nextOccurrence.applyAsInt(0);
+        while (occurrence >= 0) {
+            int matchStart = -1;
+            int nextSearchStart = -1;
+
+            // Whitespace followed by the query, starting just before the occurrence.
+            if (occurrence - 1 >= searchStart && isWhitespace(text.charAt(occurrence - 1))) {
+                matchStart = occurrence;
+                nextSearchStart = occurrence + queryLength;
+            } else if (occurrence >= searchStart) {
+                int occurrenceEnd = occurrence + queryLength;
+                // Whitespace followed by the query, starting on the occurrence.
+                if (isWhitespace(text.charAt(occurrence))
+                    && nextOccurrence.applyAsInt(occurrence + 1) == occurrence + 1)
+                {
+                    matchStart = occurrence + 1;
+                    nextSearchStart = occurrence + 1 + queryLength;
+                // Query followed by a whitespace.
+                } else if (occurrenceEnd < text.length() && isWhitespace(text.charAt(occurrenceEnd))) {
+                    matchStart = occurrence;
+                    nextSearchStart = occurrenceEnd + 1;
+                // Query alone in the text.
+                } else if (occurrence == 0 && isEndOfInput(text, occurrenceEnd)) {
+                    matchStart = occurrence;
+                    nextSearchStart = occurrenceEnd;
+                }
+            }
+
+            if (matchStart >= 0) {
+                regions.add(new WordsMentionLocalization(localization, positionInList,
+                    lowerCaseText.getOriginalOffset(matchStart),
+                    lowerCaseText.getOriginalOffset(matchStart + queryLength)));
+                searchStart = nextSearchStart;
+                occurrence = nextOccurrence.applyAsInt(searchStart);
+            } else {
+                occurrence = nextOccurrence.applyAsInt(occurrence + 1);
+            }
+        }
+    }
+
+    private static boolean isWhitespace(char character)
+    {
+        return WHITESPACES.indexOf(character) >= 0;
+    }
+
+    /**
+     * Same definition as the {@code $} boundary of {@link java.util.regex.Pattern} without multiline mode: the end of
+     * the input or the final line terminator of the input.
+     */
+    private static boolean isEndOfInput(String text, int offset)
+    {
+        int remaining = text.length() - offset;
+        return remaining == 0
+            || (remaining == 1 && LINE_TERMINATORS.indexOf(text.charAt(offset)) >= 0)
+            || (remaining == 2 && text.startsWith("\r\n", offset));
+    }
+}
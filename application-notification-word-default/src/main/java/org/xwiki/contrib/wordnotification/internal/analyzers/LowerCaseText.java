@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+/**
+ * Lower case version of a text to analyze, computed once so that it can be shared by all the queries looked for in
+ * the text.
+ * Lower casing a text might change its length (e.g. for some Unicode characters expanding to several characters):
+ * in such case this class keeps track of the offset in the original text of each character of the lower case text, so
+ * that the regions found in the lower case text can be located in the original text.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public final class LowerCaseText
+{
+    private final String text;
+
+    // Offsets in the original text of each offset of the lower case text, or null if they're the same.
+    private final int[] originalOffsets;
+
+    private LowerCaseText(String text, int[] originalOffsets)
+    {
+        this.text = text;
+        this.originalOffsets = originalOffsets;
+    }
+
+    /**
+     * Lower case the given text.
+     *
+     * @param original the text to lower case
+     * @return the lower case text
+     */
+    public static LowerCaseText of(String original)
+    {
+        // Note that for now it seems better for perf to transform the content and the query to perform case
+        // insensitive matching instead of using the case insensitive flag as the javadoc indicates that it might
+        // involve some performance penalty.
+        String lowerCase = original.toLowerCase();
+        int[] originalOffsets = null;
+        if (lowerCase.length() != original.length()) {
+            originalOffsets = computeOriginalOffsets(original, lowerCase.length());
+        }
+        return new LowerCaseText(lowerCase, originalOffsets);
+    }
+
+    private static int[] computeOriginalOffsets(String original, int lowerCaseLength)
+    {
+        int[] result = new int[lowerCaseLength + 1];
+        int lowerCaseOffset = 0;
+        int originalOffset = 0;
+        while (originalOffset < original.length()) {
+            int charCount = Character.charCount(original.codePointAt(originalOffset));
+            int lowerCaseCount =
+                original.substring(originalOffset, originalOffset + charCount).toLowerCase().length();
+            for (int i = 0; i < lowerCaseCount && lowerCaseOffset < lowerCaseLength; i++) {
+                result[lowerCaseOffset++] = originalOffset;
+            }
+            originalOffset += charCount;
+        }
+        while (lowerCaseOffset <= lowerCaseLength) {
+            result[lowerCaseOffset++] = original.length();
+        }
+        return result;
+    }
+
+    /**
+     * @return the lower case text
+     */
+    public String getText()
+    {
+        return this.text;
+    }
+
+    /**
+     * @param offset an offset in the lower case text, between 0 and its length included
+     * @return the corresponding offset in the original text, or the given offset if it's negative (e.g. for a group
+     *         that didn't match)
+     */
+    public int getOriginalOffset(int offset)
+    {
+        return (this.originalOffsets == null || offset < 0) ? offset : this.originalOffsets[offset];
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Event sent by the members of the cluster partitioning the analysis of the saved documents, to announce that they
+ * are still part of the cluster or that they're leaving it.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class ClusterNodeEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String nodeId;
+
+    private final boolean leaving;
+
+    /**
+     * Default constructor, used to listen to all the announcements.
+     */
+    public ClusterNodeEvent()
+    {
+        this(null, false);
+    }
+
+    /**
+     * @param nodeId the identifier of the announced member
+     * @param leaving {@code true} if the member is leaving the cluster
+     */
+    public ClusterNodeEvent(String nodeId, boolean leaving)
+    {
+        this.nodeId = nodeId;
+        this.leaving = leaving;
+    }
+
+    /**
+     * @return the identifier of the announced member
+     */
+    public String getNodeId()
+    {
+        return this.nodeId;
+    }
+
+    /**
+     * @return {@code true} if the member is leaving the cluster
+     */
+    public boolean isLeaving()
+    {
+        return this.leaving;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof ClusterNodeEvent;
+    }
+}
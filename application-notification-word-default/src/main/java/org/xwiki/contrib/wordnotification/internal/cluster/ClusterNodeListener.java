@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.cluster;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.event.AbstractLocalEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener recording in the {@link ClusterPartitioner} the members of the cluster announced by the other members.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Named(ClusterNodeListener.NAME)
+@Singleton
+public class ClusterNodeListener extends AbstractLocalEventListener
+{
+    static final String NAME = "WordsNotificationClusterNodeListener";
+
+    @Inject
+    private ClusterPartitioner clusterPartitioner;
+
+    /**
+     * Default constructor.
+     */
+    public ClusterNodeListener()
+    {
+        super(NAME, List.of(new ClusterNodeEvent()));
+    }
+
+    @Override
+    public void processLocalEvent(Event event, Object source, Object data)
+    {
+        // The announcements of this member are only meant for the other members.
+    }
+
+    @Override
+    public void processRemoteEvent(Event event, Object source, Object data)
+    {
+        this.clusterPartitioner.onNodeEvent((ClusterNodeEvent) event);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.cluster;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * Partition the analysis of the saved documents between the members of the cluster, so that each document is analyzed
+ * by a single member whatever the member where it's been saved.
+ * <p>
+ * When {@link WordsNotificationConfiguration#isClusterPartitioningEnabled()} is enabled, each member periodically
+ * announces itself to the other members with a {@link ClusterNodeEvent}, and the documents are assigned to the known
+ * members with a consistent hash of their identifier: when a member joins or leaves the cluster, only the documents
+ * it owns, or it would own, are moved to another member. The members which haven't been announced for three
+ * heartbeat intervals are considered as gone. When the partitioning is disabled, all the documents are owned by this
+ * member.
+ * <p>
+ * The owner of a saved document is only decided by the member where it's been saved, which hands the save over to
+ * the owner with a {@link ClusterSaveEvent}: the members never decide to analyze the documents saved on the other
+ * members from their own view of the cluster, which may be incomplete, for instance while they're starting. The
+ * saving member keeps the documents of the owners which haven't been announced during the last two heartbeat
+ * intervals, so that the saves of a member which crashed are not lost until it's considered as gone.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = ClusterPartitioner.class)
+@Singleton
+public class ClusterPartitioner implements Initializable, Disposable
+{
+    /**
+     * Number of positions of each member on the hash ring, so that the documents are evenly distributed.
+     */
+    private static final int VIRTUAL_NODES = 128;
+
+    private static final int EXPIRATION_INTERVALS = 3;
+
+    private static final int ALIVE_INTERVALS = 2;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private Logger logger;
+
+    private boolean enabled;
+
+    private String nodeId;
+
+    private long heartbeatInterval;
+
+    /**
+     * The other members of the cluster, with the last time they've been announced.
+     */
+    private final Map<String, Long> members = new ConcurrentHashMap<>();
+
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.enabled = this.configuration.isClusterPartitioningEnabled();
+        if (this.enabled) {
+            this.nodeId = StringUtils.defaultIfBlank(this.configuration.getClusterNodeId(),
+                UUID.randomUUID().toString());
+            this.heartbeatInterval = this.configuration.getClusterHeartbeatInterval();
+            this.updateRing();
+            this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("Words notification cluster heartbeat")
+                .daemon(true)
+                .build());
+            this.heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, this.heartbeatInterval,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.enabled && !this.heartbeatExecutor.isShutdown()) {
+            // The other members take over the documents of this member without waiting for it to expire.
+            this.heartbeatExecutor.execute(() -> this.announce(true));
+            this.heartbeatExecutor.shutdown();
+            try {
+                this.heartbeatExecutor.awaitTermination(this.heartbeatInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the analysis of the saved documents is partitioned between the members of the cluster
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @return the identifier of this member of the cluster, or {@code null} if the partitioning is disabled
+     */
+    public String getNodeId()
+    {
+        return this.nodeId;
+    }
+
+    /**
+     * @return the identifiers of the known members of the cluster, including this member
+     */
+    public Set<String> getNodes()
+    {
+        return Set.copyOf(this.ring.values());
+    }
+
+    /**
+     * @param documentId the identifier of a document saved on this member
+     * @return the member to which the analysis of the save should be handed over, or an empty optional if the
+     *         document should be analyzed by this member, either because it owns the document or because the owner
+     *         hasn't been announced recently
+     */
+    public Optional<String> getRemoteOwner(long documentId)
+    {
+        String result = null;
+        if (this.enabled) {
+            NavigableMap<Long, String> currentRing = this.ring;
+            Map.Entry<Long, String> owner = currentRing.ceilingEntry(hash(documentId));
+            if (owner == null) {
+                owner = currentRing.firstEntry();
+            }
+            // This member isn't part of the members map, so it keeps its own documents.
+            Long lastAnnouncement = this.members.get(owner.getValue());
+            if (lastAnnouncement != null
+                && System.currentTimeMillis() - lastAnnouncement <= ALIVE_INTERVALS * this.heartbeatInterval)
+            {
+                result = owner.getValue();
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Record the announcement of another member of the cluster.
+     *
+     * @param event the announcement
+     */
+    public void onNodeEvent(ClusterNodeEvent event)
+    {
+        String otherNodeId = event.getNodeId();
+        if (this.enabled && otherNodeId != null && !this.nodeId.equals(otherNodeId)) {
+            if (event.isLeaving()) {
+                if (this.members.remove(otherNodeId) != null) {
+                    this.updateRing();
+                }
+            } else if (this.members.put(otherNodeId, System.currentTimeMillis()) == null) {
+                this.updateRing();
+                // This member is announced right away to the new member, so that both agree on the partitioning
+                // without waiting for the next heartbeat.
+                try {
+                    this.heartbeatExecutor.execute(() -> this.announce(false));
+                } catch (RejectedExecutionException e) {
+                    // This member is being disposed.
+                }
+            }
+        }
+    }
+
+    private void heartbeat()
+    {
+        long expirationTime = System.currentTimeMillis() - EXPIRATION_INTERVALS * this.heartbeatInterval;
+        if (this.members.values().removeIf(lastAnnouncement -> lastAnnouncement < expirationTime)) {
+            this.updateRing();
+        }
+        this.announce(false);
+    }
+
+    private void announce(boolean leaving)
+    {
+        // The events are sent to the other members only when they're not notified while handling a remote event, so
+        // they're always notified from the heartbeat thread, in a dedicated context.
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                this.observationManagerProvider.get().notify(new ClusterNodeEvent(this.nodeId, leaving), null, null);
+            } finally {
+                this.execution.removeContext();
+            }
+        } catch (ExecutionContextException | RuntimeException e) {
+            this.logger.warn("Failed to announce the member [{}] to the cluster. Root cause: [{}]", this.nodeId,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private synchronized void updateRing()
+    {
+        NavigableMap<Long, String> newRing = new TreeMap<>();
+        addToRing(newRing, this.nodeId);
+        for (String member : this.members.keySet()) {
+            addToRing(newRing, member);
+        }
+        this.ring = newRing;
+    }
+
+    private static void addToRing(NavigableMap<Long, String> ring, String member)
+    {
+        long memberHash = member.hashCode();
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            ring.put(hash((memberHash << 32) | i), member);
+        }
+    }
+
+    /**
+     * Mix the bits of the given value so that close values are spread over the ring. This is the finalization step
+     * of MurmurHash3, which gives the same result on all the members.
+     */
+    private static long hash(long value)
+    {
+        long result = value;
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= result >>> 33;
+        return result;
+    }
+}
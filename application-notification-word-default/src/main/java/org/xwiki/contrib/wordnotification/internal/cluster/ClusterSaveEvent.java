@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.cluster;
+
+import java.io.Serializable;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Event sent by the member of the cluster where a document has been saved, to hand the analysis of the save over to
+ * the member owning the document.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class ClusterSaveEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String nodeId;
+
+    private final DocumentReference documentReference;
+
+    private final long documentId;
+
+    private final String version;
+
+    private final String previousVersion;
+
+    private final boolean created;
+
+    /**
+     * Default constructor, used to listen to all the handed over saves.
+     */
+    public ClusterSaveEvent()
+    {
+        this(null, null, 0, null, null, false);
+    }
+
+    /**
+     * @param nodeId the identifier of the member which should analyze the save
+     * @param documentReference the reference of the saved document
+     * @param documentId the identifier of the saved document
+     * @param version the saved version
+     * @param previousVersion the version of the document before the save, or {@code null} if it didn't exist
+     * @param created {@code true} if the document has been created by the save
+     */
+    public ClusterSaveEvent(String nodeId, DocumentReference documentReference, long documentId, String version,
+        String previousVersion, boolean created)
+    {
+        this.nodeId = nodeId;
+        this.documentReference = documentReference;
+        this.documentId = documentId;
+        this.version = version;
+        this.previousVersion = previousVersion;
+        this.created = created;
+    }
+
+    /**
+     * @return the identifier of the member which should analyze the save
+     */
+    public String getNodeId()
+    {
+        return this.nodeId;
+    }
+
+    /**
+     * @return the reference of the saved document
+     */
+    public DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+
+    /**
+     * @return the identifier of the saved document
+     */
+    public long getDocumentId()
+    {
+        return this.documentId;
+    }
+
+    /**
+     * @return the saved version
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return the version of the document before the save, or {@code null} if it didn't exist
+     */
+    public String getPreviousVersion()
+    {
+        return this.previousVersion;
+    }
+
+    /**
+     * @return {@code true} if the document has been created by the save
+     */
+    public boolean isCreated()
+    {
+        return this.created;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof ClusterSaveEvent;
+    }
+}
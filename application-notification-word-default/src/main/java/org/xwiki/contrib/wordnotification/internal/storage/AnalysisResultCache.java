@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.model.reference.DocumentVersionReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * In-memory cache of {@link WordsAnalysisResults} to be used by {@link AnalysisResultStorageManager} to avoid
+ * querying Solr and parsing back the stored regions, in particular for the results of the previous version of a
+ * document which have most of the time been computed a few moments before.
+ * <p>
+ * The results are cached independently of the user of their query. The cache is bounded by its number of entries,
+ * and results with more regions than {@link WordsNotificationConfiguration#getAnalysisResultsCacheMaxRegions()}
+ * are not cached, to keep its memory footprint under control.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = AnalysisResultCache.class)
+@Singleton
+public class AnalysisResultCache implements Initializable, Disposable
+{
+    private Cache<WordsAnalysisResults> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private int maxRegions;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new LRUCacheConfiguration("application-notification-word.results",
+            this.configuration.getAnalysisResultsCacheSize());
+        this.maxRegions = this.configuration.getAnalysisResultsCacheMaxRegions();
+        try {
+            this.cache = this.cacheManager.createNewCache(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Error while creating the cache for the analysis results", e);
+        }
+    }
+
+    private String getCacheKey(DocumentVersionReference documentVersionReference, WordsQuery wordsQuery)
+    {
+        return String.format("%s_%s_%s", this.entityReferenceSerializer.serialize(documentVersionReference),
+            documentVersionReference.getVersion(), wordsQuery.getQuery());
+    }
+
+    /**
+     * Retrieve the results of the given query on the given document version if they're present in cache.
+     *
+     * @param documentVersionReference the document version for which to retrieve the results
+     * @param wordsQuery the query for which to retrieve the results
+     * @return an {@link Optional#empty()} if no record is present in cache, else a copy of the cached results
+     *         associated to the given query
+     */
+    public Optional<WordsAnalysisResults> get(DocumentVersionReference documentVersionReference,
+        WordsQuery wordsQuery)
+    {
+        Optional<WordsAnalysisResults> result = Optional.empty();
+        WordsAnalysisResults cachedResults = this.cache.get(this.getCacheKey(documentVersionReference, wordsQuery));
+        if (cachedResults != null) {
+            this.hitCount.incrementAndGet();
+            WordsAnalysisResults wordsAnalysisResults =
+                new WordsAnalysisResults(documentVersionReference, wordsQuery, cachedResults.getDate());
+            cachedResults.getResults().forEach(wordsAnalysisResults::addResult);
+            result = Optional.of(wordsAnalysisResults);
+        } else {
+            this.missCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Record in cache the given results, unless they contain too many regions.
+     *
+     * @param wordsAnalysisResults the results to be recorded
+     */
+    public void set(WordsAnalysisResults wordsAnalysisResults)
+    {
+        // Rely on the number of occurrences so that the regions of stored results don't need to be decoded.
+        if (wordsAnalysisResults.getOccurrences() <= this.maxRegions) {
+            this.cache.set(this.getCacheKey(wordsAnalysisResults.getReference(), wordsAnalysisResults.getQuery()),
+                wordsAnalysisResults);
+        }
+    }
+
+    /**
+     * @return the number of times some results have been found in cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of times some results have been looked for without being found in cache
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+}
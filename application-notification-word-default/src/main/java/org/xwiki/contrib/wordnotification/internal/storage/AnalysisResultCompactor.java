@@ -0,0 +1,438 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.FacetParams;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.SolrException;
+import org.xwiki.search.solr.SolrUtils;
+import org.xwiki.user.UserReference;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Remove the stored analysis results which are not needed anymore, so that the size of the Solr core doesn't grow
+ * with every saved version. The compaction removes:
+ * <ul>
+ * <li>the results of the deleted documents,</li>
+ * <li>the results of the queries that no user has anymore,</li>
+ * <li>the results of the document versions older than the
+ * {@link WordsNotificationConfiguration#getStorageCompactionKeptVersions()} most recent analyzed versions,</li>
+ * <li>the shared regions which are not referenced by any remaining result.</li>
+ * </ul>
+ * Removed results are only a cache: they are computed again if they're ever needed.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = AnalysisResultCompactor.class)
+@Singleton
+public class AnalysisResultCompactor implements Initializable, Disposable
+{
+    private static final int PAGE_SIZE = 100;
+
+    private static final String ALL_DOCUMENTS_QUERY = "*:*";
+
+    private static final String FIELD_QUERY_FORMAT = "%s:%s";
+
+    private static final String OR = " OR ";
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private SolrUtils solrUtils;
+
+    @Inject
+    private AnalysisResultStorageManager storageManager;
+
+    @Inject
+    private UsersWordsQueriesManager usersWordsQueriesManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    private SolrClient solrClient;
+
+    private ScheduledExecutorService compactionExecutor;
+
+    private final Object compactionLock = new Object();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.solrClient = this.solr.getClient(AnalysisResultSolrCoreInitializer.ANALYSIS_RESULT_SOLR_CORE);
+        } catch (SolrException e) {
+            throw new InitializationException("Error while getting the solr client", e);
+        }
+
+        long compactionInterval = this.configuration.getStorageCompactionInterval();
+        if (compactionInterval > 0) {
+            this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("Words notification analysis results compaction")
+                .daemon(true)
+                .priority(Thread.MIN_PRIORITY)
+                .build());
+            this.compactionExecutor.scheduleWithFixedDelay(this::compactQuietly, compactionInterval,
+                compactionInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.compactionExecutor != null) {
+            this.compactionExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Remove the stored analysis results which are not needed anymore.
+     *
+     * @return the number of Solr documents which have been removed
+     * @throws WordsAnalysisException in case of problem to remove the results
+     */
+    public long compact() throws WordsAnalysisException
+    {
+        synchronized (this.compactionLock) {
+            // The buffered results are sent first so that their shared regions are seen as referenced.
+            this.storageManager.flush();
+
+            long startTime = System.currentTimeMillis();
+            long initialCount = this.count(ALL_DOCUMENTS_QUERY);
+
+            List<String> deleteQueries = new ArrayList<>();
+            this.addRemovedQueriesDeleteQueries(deleteQueries);
+            this.addDocumentsDeleteQueries(deleteQueries);
+            this.deleteByQueries(deleteQueries);
+            this.commit();
+
+            // The shared regions are checked once the results referencing them have been removed.
+            this.deleteUnreferencedContents();
+            this.commit();
+
+            long finalCount = this.count(ALL_DOCUMENTS_QUERY);
+            long removedCount = initialCount - finalCount;
+            this.logger.info("The compaction of the analysis results removed [{}] Solr documents out of [{}] in [{}] "
+                + "ms.", removedCount, initialCount, System.currentTimeMillis() - startTime);
+            return removedCount;
+        }
+    }
+
+    private void compactQuietly()
+    {
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                this.compact();
+            } finally {
+                this.execution.removeContext();
+            }
+        } catch (ExecutionContextException | WordsAnalysisException | RuntimeException e) {
+            // Any exception escaping this method would cancel the next scheduled compactions.
+            this.logger.error("Error while compacting the analysis results", e);
+        }
+    }
+
+    private void addRemovedQueriesDeleteQueries(List<String> deleteQueries) throws WordsAnalysisException
+    {
+        Set<String> existingQueries = this.getExistingQueries();
+        List<String> storedQueries =
+            this.getFacetValues(ALL_DOCUMENTS_QUERY, AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD);
+        for (String query : storedQueries) {
+            if (!existingQueries.contains(query)) {
+                this.addDeleteQuery(this.getFieldQuery(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query),
+                    deleteQueries);
+            }
+        }
+    }
+
+    private Set<String> getExistingQueries() throws WordsAnalysisException
+    {
+        Set<String> result = new HashSet<>();
+        try {
+            for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+                Set<UserReference> userReferences =
+                    this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(new WikiReference(wikiId));
+                for (UserReference userReference : userReferences) {
+                    this.usersWordsQueriesManager.getQueries(userReference).stream().map(WordsQuery::getQuery)
+                        .forEach(result::add);
+                }
+            }
+        } catch (WikiManagerException e) {
+            throw new WordsAnalysisException("Error while getting the wikis to compact the analysis results", e);
+        }
+        return result;
+    }
+
+    private void addDocumentsDeleteQueries(List<String> deleteQueries) throws WordsAnalysisException
+    {
+        XWikiContext context = this.contextProvider.get();
+        int keptVersions = Math.max(1, this.configuration.getStorageCompactionKeptVersions());
+        // The documents are all retrieved before removing anything, so that the pages of values don't shift.
+        List<String> documents =
+            this.getFacetValues(ALL_DOCUMENTS_QUERY, AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD);
+        for (String document : documents) {
+            String documentQuery = this.getFieldQuery(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, document);
+            DocumentReference documentReference =
+                new DocumentReference(this.entityReferenceResolver.resolve(document, EntityType.DOCUMENT));
+            if (!context.getWiki().exists(documentReference, context)) {
+                this.addDeleteQuery(documentQuery, deleteQueries);
+            } else {
+                Set<String> versions = this.getMostRecentVersions(documentQuery, keptVersions + 1);
+                if (versions.size() > keptVersions) {
+                    String keptVersionsQuery = versions.stream().limit(keptVersions)
+                        .map(this.solrUtils::toFilterQueryString).collect(Collectors.joining(OR));
+                    this.addDeleteQuery(String.format("%s AND -%s:(%s)", documentQuery,
+                        AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, keptVersionsQuery), deleteQueries);
+                }
+            }
+        }
+    }
+
+    private Set<String> getMostRecentVersions(String documentQuery, int limit) throws WordsAnalysisException
+    {
+        // Each analyzed version has many results, so the results are browsed until enough versions are found.
+        Set<String> result = new LinkedHashSet<>();
+        SolrQuery solrQuery = new SolrQuery()
+            .addFilterQuery(documentQuery)
+            .setFields(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD)
+            .addSort(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, SolrQuery.ORDER.desc)
+            .addSort(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, SolrQuery.ORDER.asc);
+        int start = 0;
+        long numFound;
+        try {
+            do {
+                solrQuery.setStart(start).setRows(PAGE_SIZE);
+                SolrDocumentList results = this.solrClient.query(solrQuery).getResults();
+                numFound = results.getNumFound();
+                for (SolrDocument solrDocument : results) {
+                    result.add(
+                        this.solrUtils.get(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, solrDocument));
+                }
+                start += PAGE_SIZE;
+            } while (start < numFound && result.size() < limit);
+        } catch (SolrServerException | IOException e) {
+            throw new WordsAnalysisException("Error while searching for the analyzed versions of a document", e);
+        }
+        return result;
+    }
+
+    private void deleteUnreferencedContents() throws WordsAnalysisException
+    {
+        // The shared regions are the only Solr documents without document field.
+        String contentsQuery = String.format("-%s:[* TO *]", AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD);
+        SolrQuery solrQuery = new SolrQuery()
+            .addFilterQuery(contentsQuery)
+            .setFields(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID,
+                AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD)
+            .setSort(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, SolrQuery.ORDER.asc);
+        // The identifiers are only removed at the end so that the pages don't shift.
+        List<String> unreferencedIdentifiers = new ArrayList<>();
+        int start = 0;
+        long numFound;
+        try {
+            do {
+                solrQuery.setStart(start).setRows(PAGE_SIZE);
+                SolrDocumentList results = this.solrClient.query(solrQuery).getResults();
+                numFound = results.getNumFound();
+                Set<String> referencedFingerprints = this.getReferencedFingerprints(results);
+                for (SolrDocument solrDocument : results) {
+                    String fingerprint =
+                        this.solrUtils.get(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, solrDocument);
+                    if (!referencedFingerprints.contains(fingerprint)) {
+                        unreferencedIdentifiers.add(
+                            this.solrUtils.get(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, solrDocument));
+                    }
+                }
+                start += PAGE_SIZE;
+            } while (start < numFound);
+
+            int batchSize = Math.max(1, this.configuration.getStorageCompactionBatchSize());
+            for (int i = 0; i < unreferencedIdentifiers.size(); i += batchSize) {
+                this.solrClient.deleteById(
+                    unreferencedIdentifiers.subList(i, Math.min(i + batchSize, unreferencedIdentifiers.size())));
+            }
+        } catch (SolrServerException | IOException e) {
+            throw new WordsAnalysisException("Error while removing the unreferenced regions of analysis results", e);
+        }
+    }
+
+    private Set<String> getReferencedFingerprints(SolrDocumentList contents) throws WordsAnalysisException
+    {
+        Set<String> fingerprints = new HashSet<>();
+        for (SolrDocument solrDocument : contents) {
+            String fingerprint = this.solrUtils.get(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, solrDocument);
+            if (fingerprint != null) {
+                fingerprints.add(this.solrUtils.toFilterQueryString(fingerprint));
+            }
+        }
+
+        Set<String> result = new HashSet<>();
+        if (!fingerprints.isEmpty()) {
+            // A shared region is kept as long as a result with the same fingerprint remains, whatever its query.
+            String referencesQuery = String.format("%s:[* TO *] AND %s:(%s)",
+                AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD,
+                String.join(OR, fingerprints));
+            result.addAll(this.getFacetValues(referencesQuery, AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD));
+        }
+        return result;
+    }
+
+    private List<String> getFacetValues(String filterQuery, String field) throws WordsAnalysisException
+    {
+        List<String> result = new ArrayList<>();
+        SolrQuery solrQuery = new SolrQuery(ALL_DOCUMENTS_QUERY)
+            .addFilterQuery(filterQuery)
+            .setRows(0)
+            .setFacet(true)
+            .addFacetField(field)
+            .setFacetMinCount(1)
+            .setFacetLimit(PAGE_SIZE)
+            .setFacetSort(FacetParams.FACET_SORT_INDEX);
+        int offset = 0;
+        int pageCount;
+        try {
+            do {
+                solrQuery.set(FacetParams.FACET_OFFSET, offset);
+                QueryResponse response = this.solrClient.query(solrQuery);
+                FacetField facetField = response.getFacetField(field);
+                pageCount = 0;
+                if (facetField != null) {
+                    for (FacetField.Count count : facetField.getValues()) {
+                        result.add(count.getName());
+                        pageCount++;
+                    }
+                }
+                offset += PAGE_SIZE;
+            } while (pageCount == PAGE_SIZE);
+        } catch (SolrServerException | IOException e) {
+            throw new WordsAnalysisException("Error while searching for the values of the analysis results", e);
+        }
+        return result;
+    }
+
+    private String getFieldQuery(String field, String value)
+    {
+        return String.format(FIELD_QUERY_FORMAT, field, this.solrUtils.toFilterQueryString(value));
+    }
+
+    private void addDeleteQuery(String deleteQuery, List<String> deleteQueries) throws WordsAnalysisException
+    {
+        deleteQueries.add(deleteQuery);
+        if (deleteQueries.size() >= this.configuration.getStorageCompactionBatchSize()) {
+            this.deleteByQueries(deleteQueries);
+        }
+    }
+
+    private void deleteByQueries(List<String> deleteQueries) throws WordsAnalysisException
+    {
+        if (!deleteQueries.isEmpty()) {
+            String deleteQuery =
+                deleteQueries.stream().map(query -> String.format("(%s)", query)).collect(Collectors.joining(OR));
+            try {
+                this.solrClient.deleteByQuery(deleteQuery);
+            } catch (SolrServerException | IOException e) {
+                throw new WordsAnalysisException("Error while removing analysis results", e);
+            }
+            deleteQueries.clear();
+        }
+    }
+
+    private void commit() throws WordsAnalysisException
+    {
+        try {
+            this.solrClient.commit();
+        } catch (SolrServerException | IOException e) {
+            throw new WordsAnalysisException("Error while committing the removal of analysis results", e);
+        }
+    }
+
+    private long count(String query) throws WordsAnalysisException
+    {
+        try {
+            return this.solrClient.query(new SolrQuery(query).setRows(0)).getResults().getNumFound();
+        } catch (SolrServerException | IOException e) {
+            throw new WordsAnalysisException("Error while counting the analysis results", e);
+        }
+    }
+}
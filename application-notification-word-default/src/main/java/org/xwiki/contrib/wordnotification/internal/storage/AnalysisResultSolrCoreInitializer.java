@@ -45,8 +45,14 @@ public class AnalysisResultSolrCoreInitializer extends AbstractSolrCoreInitializ
     static final String DOCUMENT_FIELD = "document";
     static final String DOCUMENT_VERSION_FIELD = "documentVersion";
     static final String REGIONS_FIELD = "regions";
+    static final String ENCODED_REGIONS_FIELD = "encodedRegions";
+    static final String OCCURRENCES_FIELD = "occurrences";
+    static final String FINGERPRINT_FIELD = "fingerprint";
 
-    private static final long CURRENT_VERSION = 10000000;
+    // Version introducing the encoded regions, the occurrences and the fingerprint fields.
+    private static final long VERSION_1_2_3 = 10203000;
+
+    private static final long CURRENT_VERSION = VERSION_1_2_3;
 
     @Override
     protected void createSchema() throws SolrException
@@ -57,12 +63,22 @@ public class AnalysisResultSolrCoreInitializer extends AbstractSolrCoreInitializ
         this.addStringField(DOCUMENT_FIELD, false, false);
         this.addStringField(DOCUMENT_VERSION_FIELD, false, false);
         this.addStringField(REGIONS_FIELD, true, false);
+        this.addBinaryField(ENCODED_REGIONS_FIELD, false, false);
+        this.addPLongField(OCCURRENCES_FIELD, false, false);
+        this.addStringField(FINGERPRINT_FIELD, false, false);
     }
 
     @Override
     protected void migrateSchema(long cversion) throws SolrException
     {
-        // Nothing to do for now.
+        if (cversion < VERSION_1_2_3) {
+            // The results stored before are still readable: only new results use the encoded regions, results
+            // without occurrences are analyzed again when their occurrences are needed, and results without
+            // fingerprint are never reused without analyzing the document.
+            this.addBinaryField(ENCODED_REGIONS_FIELD, false, false);
+            this.addPLongField(OCCURRENCES_FIELD, false, false);
+            this.addStringField(FINGERPRINT_FIELD, false, false);
+        }
     }
 
     @Override
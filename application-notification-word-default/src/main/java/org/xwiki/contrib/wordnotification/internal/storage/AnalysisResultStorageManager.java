@@ -20,13 +20,24 @@
 package org.xwiki.contrib.wordnotification.internal.storage;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -34,6 +45,7 @@ import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -41,7 +53,11 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
@@ -49,6 +65,7 @@ import org.xwiki.contrib.wordnotification.WordsAnalysisException;
 import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
 import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentVersionReference;
@@ -63,14 +80,96 @@ import org.xwiki.user.UserReference;
 /**
  * Solr storage manager of the result analysis.
  * The goal of this component is to allow storing the results for better performance for comparing analysis.
+ * <p>
+ * Saved results are not sent to Solr right away: they are kept in a write buffer which is flushed in bulk whenever
+ * it reaches {@link WordsNotificationConfiguration#getStorageBatchSize()} documents or every
+ * {@link WordsNotificationConfiguration#getStorageFlushInterval()} milliseconds. Results which are waiting to be
+ * flushed are still returned by {@link #loadAnalysisResults(DocumentVersionReference, WordsQuery)}, and so are the
+ * flushed results until Solr commits them. Saved and loaded results are also kept in an {@link AnalysisResultCache}
+ * which is consulted before querying Solr.
+ * <p>
+ * The regions are stored in the compact binary form produced by {@link RegionsCodec}, and are only decoded when they
+ * are accessed: see {@link EncodedPartAnalysisResult}. The number of occurrences of each part is also stored in a
+ * dedicated field, so that {@link #loadOccurrenceSummary(DocumentVersionReference, Collection)} doesn't need to
+ * retrieve the regions at all.
+ * <p>
+ * The regions of results having a fingerprint (see
+ * {@link org.xwiki.contrib.wordnotification.WordsMentionAnalyzer#getFingerprint(org.xwiki.bridge.DocumentModelBridge)})
+ * are content-addressed: they are stored once in a document identified by the fingerprint, the analyzer and the
+ * query, and the results of each document version only reference them. This way the versions whose analyzed texts
+ * didn't change, such as reverted or re-saved versions, don't store their regions again.
  *
  * @version $Id$
  * @since 1.0
  */
 @Component(roles = AnalysisResultStorageManager.class)
 @Singleton
-public class AnalysisResultStorageManager implements Initializable
+public class AnalysisResultStorageManager implements Initializable, Disposable
 {
+    private static final int PAGE_SIZE = 100;
+
+    // Number of results retrieved per Solr request: large enough for the results of a document version to be
+    // retrieved with a single request in most cases.
+    private static final int FETCH_SIZE = 1000;
+
+    // Maximum number of queries whose results are retrieved with a single Solr query.
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    // Request parameters referenced by the terms filter on the words queries, so that they don't need escaping.
+    private static final String TERMS_PARAMETER = "wordsQueries";
+
+    private static final String TERMS_SEPARATOR_PARAMETER = "wordsQueriesSeparator";
+
+    // The queries are single line texts, so they can't contain the separator.
+    private static final String TERMS_SEPARATOR = "\n";
+
+    private static final String TERMS_FILTER_QUERY = String.format("{!terms f=%s separator=$%s v=$%s}",
+        AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, TERMS_SEPARATOR_PARAMETER, TERMS_PARAMETER);
+
+    // Prefix of the identifier of the regions shared by the results of many document versions.
+    private static final String CONTENT_IDENTIFIER_PREFIX = "content_";
+
+    // Format of the regions stored before the introduction of the encoded regions.
+    private static final Pattern LEGACY_REGION_PATTERN = Pattern.compile("^\\("
+        + "(?<entityType>\\w+),"
+        + "(?<entityReference>.+),"
+        + "(?<positionInList>\\d+),"
+        + "(?<regionStart>\\d+),"
+        + "(?<regionEnd>\\d+)"
+        + "\\)$");
+
+    /**
+     * Results waiting to be sent to Solr, along with the Solr documents representing them.
+     */
+    private static final class PendingResults
+    {
+        private final WordsAnalysisResults results;
+
+        private final List<SolrInputDocument> documents;
+
+        PendingResults(WordsAnalysisResults results, List<SolrInputDocument> documents)
+        {
+            this.results = results;
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Results sent to Solr which might not be visible to the searches yet.
+     */
+    private static final class CommittingResults
+    {
+        private final long visibleAfter;
+
+        private final Map<String, PendingResults> results;
+
+        CommittingResults(long visibleAfter, Map<String, PendingResults> results)
+        {
+            this.visibleAfter = visibleAfter;
+            this.results = results;
+        }
+    }
+
     @Inject
     private SolrUtils solrUtils;
 
@@ -83,8 +182,40 @@ public class AnalysisResultStorageManager implements Initializable
     @Inject
     private EntityReferenceResolver<String> entityReferenceResolver;
 
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    @Inject
+    private AnalysisResultCache resultCache;
+
+    @Inject
+    private RegionsCodec regionsCodec;
+
+    @Inject
+    private Logger logger;
+
     private SolrClient solrClient;
 
+    private ScheduledExecutorService flushExecutor;
+
+    private final Object flushLock = new Object();
+
+    private final Object bufferLock = new Object();
+
+    // Results saved but not sent to Solr yet, indexed by their common identifier. Guarded by this.bufferLock, as
+    // well as the other buffer fields.
+    private Map<String, PendingResults> pendingResults = new LinkedHashMap<>();
+
+    // Results currently being sent to Solr: they're kept so that they can still be loaded until Solr makes them
+    // visible.
+    private Map<String, PendingResults> flushingResults = new LinkedHashMap<>();
+
+    // Results sent to Solr but maybe not committed yet, from the oldest to the newest: they're kept so that they can
+    // still be loaded until Solr makes them visible.
+    private final Deque<CommittingResults> committingResults = new ArrayDeque<>();
+
+    private int pendingDocumentsCount;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -93,26 +224,148 @@ public class AnalysisResultStorageManager implements Initializable
         } catch (SolrException e) {
             throw new InitializationException("Error while getting the solr client", e);
         }
+
+        long flushInterval = this.configuration.getStorageFlushInterval();
+        // A non positive interval disables the time based flush: the buffer is then only flushed when it's full.
+        if (flushInterval > 0) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("Words notification analysis results flush")
+                .daemon(true)
+                .build());
+            this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.flushExecutor != null) {
+            this.flushExecutor.shutdownNow();
+        }
+        this.flushQuietly();
     }
 
     /**
      * Save the results of the analysis.
+     * The results are buffered and sent to Solr in bulk: see {@link #flush()}.
      *
      * @param wordsAnalysisResult the results to save.
      * @throws WordsAnalysisException in case of problem to save the results.
      */
     public void saveAnalysisResults(WordsAnalysisResults wordsAnalysisResult) throws WordsAnalysisException
     {
-        List<SolrInputDocument> documents = this.getInputDocumentsFromResult(wordsAnalysisResult);
+        DocumentVersionReference reference = wordsAnalysisResult.getReference();
+        String commonIdentifier = this.getCommonIdentifier(reference, wordsAnalysisResult.getQuery());
+        PendingResults pending = new PendingResults(wordsAnalysisResult,
+            this.getInputDocumentsFromResult(wordsAnalysisResult, commonIdentifier));
+
+        boolean shouldFlush;
+        synchronized (this.bufferLock) {
+            PendingResults previous = this.pendingResults.put(commonIdentifier, pending);
+            if (previous != null) {
+                this.pendingDocumentsCount -= previous.documents.size();
+            }
+            this.pendingDocumentsCount += pending.documents.size();
+            shouldFlush = this.pendingDocumentsCount >= this.configuration.getStorageBatchSize();
+        }
+
+        this.resultCache.set(wordsAnalysisResult);
+
+        if (shouldFlush) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Send all buffered results to Solr in a single request.
+     * Solr is asked to commit them within {@link WordsNotificationConfiguration#getStorageCommitWithin()}
+     * milliseconds: no commit is performed right away, the sent results are rather kept in memory until then so that
+     * they can still be loaded. A soft commit is only performed when no commit delay is configured. If the results
+     * cannot be sent, they're buffered again so that the next flush retries them.
+     *
+     * @throws WordsAnalysisException in case of problem to send the results.
+     * @since 1.2.3
+     */
+    public void flush() throws WordsAnalysisException
+    {
+        // Only one flush at a time: the buffered results are moved to the flushing ones, so that they can still be
+        // read while being sent.
+        synchronized (this.flushLock) {
+            List<SolrInputDocument> documents = new ArrayList<>();
+            synchronized (this.bufferLock) {
+                this.removeCommittedResults();
+                if (this.pendingResults.isEmpty()) {
+                    return;
+                }
+                this.flushingResults = this.pendingResults;
+                this.pendingResults = new LinkedHashMap<>();
+                this.pendingDocumentsCount = 0;
+                this.flushingResults.values().forEach(pending -> documents.addAll(pending.documents));
+            }
+
+            int commitWithin = this.configuration.getStorageCommitWithin();
+            boolean sent = false;
+            try {
+                if (!documents.isEmpty()) {
+                    this.solrClient.add(documents, commitWithin);
+                    if (commitWithin <= 0) {
+                        // Without commit delay, Solr wouldn't make the results visible before its own auto commit.
+                        this.solrClient.commit(false, false, true);
+                    }
+                }
+                sent = true;
+            } catch (SolrServerException | IOException e) {
+                throw new WordsAnalysisException("Error while trying to add documents to Solr core.", e);
+            } finally {
+                synchronized (this.bufferLock) {
+                    this.endFlush(sent, commitWithin);
+                }
+            }
+        }
+    }
+
+    private void endFlush(boolean sent, int commitWithin)
+    {
+        if (sent && commitWithin > 0) {
+            this.committingResults.addLast(
+                new CommittingResults(System.currentTimeMillis() + commitWithin, this.flushingResults));
+        } else if (!sent) {
+            // The results saved again during the flush are more recent than the ones which couldn't be sent.
+            for (Map.Entry<String, PendingResults> entry : this.flushingResults.entrySet()) {
+                if (this.pendingResults.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    this.pendingDocumentsCount += entry.getValue().documents.size();
+                }
+            }
+        }
+        this.flushingResults = new LinkedHashMap<>();
+    }
+
+    private void removeCommittedResults()
+    {
+        long now = System.currentTimeMillis();
+        while (!this.committingResults.isEmpty() && this.committingResults.peekFirst().visibleAfter <= now) {
+            this.committingResults.removeFirst();
+        }
+    }
+
+    private void flushQuietly()
+    {
         try {
-            this.solrClient.add(documents);
-            this.solrClient.commit();
-        } catch (SolrServerException | IOException e) {
-            throw new WordsAnalysisException("Error while trying to add documents to Solr core.", e);
+            this.flush();
+        } catch (WordsAnalysisException e) {
+            this.logger.error("Error while flushing the analysis results", e);
         }
     }
 
-    private List<SolrInputDocument> getInputDocumentsFromResult(WordsAnalysisResults wordsAnalysisResult)
+    private String getCommonIdentifier(DocumentVersionReference reference, WordsQuery query)
+    {
+        return String.format("%s_%s_%s", this.entityReferenceSerializer.serialize(reference),
+            reference.getVersion(), query.getQuery());
+    }
+
+    private List<SolrInputDocument> getInputDocumentsFromResult(WordsAnalysisResults wordsAnalysisResult,
+        String commonIdentifier)
     {
         List<SolrInputDocument> result = new ArrayList<>();
         DocumentVersionReference reference = wordsAnalysisResult.getReference();
@@ -129,29 +382,79 @@ public class AnalysisResultStorageManager implements Initializable
         WordsQuery query = wordsAnalysisResult.getQuery();
         this.solrUtils.set(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query.getQuery(), solrInputDocument);
 
-        String commonIdentifier =
-            String.format("%s_%s_%s", this.entityReferenceSerializer.serialize(reference),
-                reference.getVersion(), query.getQuery());
-
         for (PartAnalysisResult partAnalysisResult : wordsAnalysisResult.getResults()) {
-            result.add(
-                this.getInputDocumentFromPartAnalysisResult(partAnalysisResult, solrInputDocument, commonIdentifier));
+            String fingerprint = partAnalysisResult.getFingerprint();
+            if (fingerprint != null && partAnalysisResult.getOccurrences() > 0) {
+                // The regions are stored once for all the versions whose analyzed texts have the same fingerprint:
+                // the document version only references them.
+                String contentIdentifier =
+                    this.getContentIdentifier(fingerprint, partAnalysisResult.getAnalyzerHint(), query.getQuery());
+                result.add(this.getInputDocumentFromPartAnalysisResult(partAnalysisResult, solrInputDocument,
+                    commonIdentifier, false));
+                if (!this.isContentStored(partAnalysisResult, contentIdentifier)) {
+                    result.add(this.getContentInputDocument(partAnalysisResult, wordsAnalysisResult,
+                        contentIdentifier));
+                }
+            } else {
+                result.add(this.getInputDocumentFromPartAnalysisResult(partAnalysisResult, solrInputDocument,
+                    commonIdentifier, true));
+            }
         }
 
         return result;
     }
 
+    private String getContentIdentifier(String fingerprint, String analyzerHint, String query)
+    {
+        return String.format("%s%s_%s_%s", CONTENT_IDENTIFIER_PREFIX, fingerprint, analyzerHint, query);
+    }
+
+    private boolean isContentStored(PartAnalysisResult partAnalysisResult, String contentIdentifier)
+    {
+        // Results reused from a previous version don't need their shared regions to be stored again.
+        return partAnalysisResult instanceof EncodedPartAnalysisResult
+            && contentIdentifier.equals(((EncodedPartAnalysisResult) partAnalysisResult).getContentIdentifier());
+    }
+
+    private SolrInputDocument getContentInputDocument(PartAnalysisResult partAnalysisResult,
+        WordsAnalysisResults wordsAnalysisResult, String contentIdentifier)
+    {
+        // The shared regions don't have any document field so that they're never returned with the results of a
+        // document version.
+        SolrInputDocument inputDocument = new SolrInputDocument();
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, wordsAnalysisResult.getDate(),
+            inputDocument);
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD,
+            wordsAnalysisResult.getQuery().getQuery(), inputDocument);
+        inputDocument.setField(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD,
+            this.getEncodedRegions(partAnalysisResult));
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, partAnalysisResult.getOccurrences(),
+            inputDocument);
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.ANALYZER_HINT,
+            partAnalysisResult.getAnalyzerHint(), inputDocument);
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD,
+            partAnalysisResult.getFingerprint(), inputDocument);
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, contentIdentifier, inputDocument);
+        return inputDocument;
+    }
+
     private SolrInputDocument getInputDocumentFromPartAnalysisResult(PartAnalysisResult partAnalysisResult,
-        SolrInputDocument commonFields, String commonIdentifier)
+        SolrInputDocument commonFields, String commonIdentifier, boolean withRegions)
     {
         SolrInputDocument inputDocument = new SolrInputDocument(new LinkedHashMap<>(commonFields));
 
-        List<String> serializedRegions = partAnalysisResult.getRegions()
-            .stream().map(this::transformRegionToString)
-            .collect(Collectors.toList());
-        this.solrUtils.set(AnalysisResultSolrCoreInitializer.REGIONS_FIELD, serializedRegions, inputDocument);
+        if (withRegions) {
+            inputDocument.setField(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD,
+                this.getEncodedRegions(partAnalysisResult));
+        }
+        this.solrUtils.set(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, partAnalysisResult.getOccurrences(),
+            inputDocument);
         this.solrUtils.set(AnalysisResultSolrCoreInitializer.ANALYZER_HINT,
             partAnalysisResult.getAnalyzerHint(), inputDocument);
+        if (partAnalysisResult.getFingerprint() != null) {
+            this.solrUtils.set(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD,
+                partAnalysisResult.getFingerprint(), inputDocument);
+        }
 
         String identifier = String.format("%s_%s", commonIdentifier, partAnalysisResult.getAnalyzerHint());
         this.solrUtils.set(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, identifier, inputDocument);
@@ -159,14 +462,14 @@ public class AnalysisResultStorageManager implements Initializable
         return inputDocument;
     }
 
-    private String transformRegionToString(WordsMentionLocalization localization)
+    private byte[] getEncodedRegions(PartAnalysisResult partAnalysisResult)
     {
-        return String.format("(%s,%s,%s,%s,%s)",
-            localization.getEntityReference().getType().name(),
-            this.entityReferenceSerializer.serialize(localization.getEntityReference()),
-            localization.getPositionInList(),
-            localization.getRegionStart(),
-            localization.getRegionEnd());
+        // Results reused from a previous version are stored again without decoding their regions.
+        Optional<byte[]> encodedRegions = Optional.empty();
+        if (partAnalysisResult instanceof EncodedPartAnalysisResult) {
+            encodedRegions = ((EncodedPartAnalysisResult) partAnalysisResult).getEncodedRegions();
+        }
+        return encodedRegions.orElseGet(() -> this.regionsCodec.encode(partAnalysisResult.getRegions()));
     }
 
     private String mapToQuery(Map<String, Object> queryMap)
@@ -197,32 +500,100 @@ public class AnalysisResultStorageManager implements Initializable
         return result.toString();
     }
 
-    private void transformDocumentToPartAnalysisResult(SolrDocument solrDocument, WordsAnalysisResults aggregator)
-        throws WordsAnalysisException
+    private boolean transformDocumentToPartAnalysisResult(SolrDocument solrDocument,
+        Map<String, SolrDocument> contents, WordsAnalysisResults aggregator) throws WordsAnalysisException
     {
         String analyzerHint = this.solrUtils.get(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, solrDocument);
+        Object encodedRegions = solrDocument.getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD);
+        String fingerprint = this.solrUtils.get(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, solrDocument);
+
+        PartAnalysisResult partAnalysisResult = null;
+        if (encodedRegions != null) {
+            // The regions are only decoded if they're needed.
+            partAnalysisResult =
+                new EncodedPartAnalysisResult(analyzerHint, this.getBytes(encodedRegions), this.regionsCodec);
+        } else if (fingerprint != null) {
+            // The regions are shared with the other versions having the same fingerprint.
+            String contentIdentifier =
+                this.getContentIdentifier(fingerprint, analyzerHint, aggregator.getQuery().getQuery());
+            SolrDocument content = contents.get(contentIdentifier);
+            if (content != null) {
+                EncodedPartAnalysisResult encodedPartAnalysisResult = new EncodedPartAnalysisResult(analyzerHint,
+                    this.getBytes(content.getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD)),
+                    this.regionsCodec);
+                encodedPartAnalysisResult.setContentIdentifier(contentIdentifier);
+                partAnalysisResult = encodedPartAnalysisResult;
+            }
+        } else {
+            partAnalysisResult = this.transformLegacyDocumentToPartAnalysisResult(solrDocument, analyzerHint);
+        }
+
+        if (partAnalysisResult != null) {
+            partAnalysisResult.setFingerprint(fingerprint);
+            aggregator.addResult(partAnalysisResult);
+        }
+        return partAnalysisResult != null;
+    }
+
+    private PartAnalysisResult transformLegacyDocumentToPartAnalysisResult(SolrDocument solrDocument,
+        String analyzerHint) throws WordsAnalysisException
+    {
+        // Results stored before the introduction of the encoded regions.
+        PartAnalysisResult result = new PartAnalysisResult(analyzerHint);
         List<String> serializedRegions =
             this.solrUtils.getList(AnalysisResultSolrCoreInitializer.REGIONS_FIELD, solrDocument);
+        if (serializedRegions != null) {
+            for (String serializedRegion : serializedRegions) {
+                result.addRegion(this.parseSerializedRegion(serializedRegion));
+            }
+        }
+        return result;
+    }
 
-        PartAnalysisResult partAnalysisResult = new PartAnalysisResult(analyzerHint);
+    private Map<String, SolrDocument> loadContents(Collection<SolrDocument> documents) throws WordsAnalysisException
+    {
+        // The shared regions referenced by the given documents are all retrieved at once.
+        Set<String> contentIdentifiers = new LinkedHashSet<>();
+        for (SolrDocument solrDocument : documents) {
+            String fingerprint = this.solrUtils.get(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, solrDocument);
+            if (fingerprint != null
+                && solrDocument.getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD) == null)
+            {
+                contentIdentifiers.add(this.getContentIdentifier(fingerprint,
+                    this.solrUtils.get(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, solrDocument),
+                    this.solrUtils.get(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, solrDocument)));
+            }
+        }
 
-        for (String serializedRegion : serializedRegions) {
-            partAnalysisResult.addRegion(this.parseSerializedRegion(serializedRegion));
+        Map<String, SolrDocument> result = new HashMap<>();
+        if (!contentIdentifiers.isEmpty()) {
+            try {
+                for (SolrDocument content : this.solrClient.getById(contentIdentifiers)) {
+                    result.put(this.solrUtils.get(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, content), content);
+                }
+            } catch (SolrServerException | IOException e) {
+                throw new WordsAnalysisException("Error while loading the regions of analysis results", e);
+            }
         }
+        return result;
+    }
 
-        aggregator.addResult(partAnalysisResult);
+    private byte[] getBytes(Object binaryValue)
+    {
+        byte[] result;
+        if (binaryValue instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) binaryValue).duplicate();
+            result = new byte[buffer.remaining()];
+            buffer.get(result);
+        } else {
+            result = (byte[]) binaryValue;
+        }
+        return result;
     }
 
     private WordsMentionLocalization parseSerializedRegion(String serializedRegion) throws WordsAnalysisException
     {
-        Pattern pattern = Pattern.compile("^\\("
-            + "(?<entityType>\\w+),"
-            + "(?<entityReference>.+),"
-            + "(?<positionInList>\\d+),"
-            + "(?<regionStart>\\d+),"
-            + "(?<regionEnd>\\d+)"
-            + "\\)$");
-        Matcher matcher = pattern.matcher(serializedRegion);
+        Matcher matcher = LEGACY_REGION_PATTERN.matcher(serializedRegion);
         if (matcher.matches()) {
             EntityType entityType = EntityType.valueOf(matcher.group("entityType"));
             EntityReference entityReference =
@@ -248,36 +619,297 @@ public class AnalysisResultStorageManager implements Initializable
      */
     public Optional<WordsAnalysisResults> loadAnalysisResults(DocumentVersionReference documentVersionReference,
         WordsQuery wordsQuery) throws WordsAnalysisException
+    {
+        Optional<WordsAnalysisResults> result = this.loadInMemoryResults(documentVersionReference, wordsQuery);
+        if (result.isEmpty()) {
+            Map<String, Object> queryMap = new LinkedHashMap<>();
+            queryMap.put(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, documentVersionReference);
+            queryMap.put(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD,
+                documentVersionReference.getVersion());
+            queryMap.put(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, wordsQuery.getQuery());
+
+            List<SolrDocument> documents = this.queryAllPages(this.mapToQuery(queryMap));
+            if (!documents.isEmpty()) {
+                result = this.transformDocumentsToResults(documentVersionReference, wordsQuery, documents,
+                    this.loadContents(documents));
+                result.ifPresent(this.resultCache::set);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Search and retrieve previous result analysis of all given queries for a document version from Solr.
+     * The results of the queries are retrieved with a single paged Solr query per batch of queries, so this method
+     * should be preferred to {@link #loadAnalysisResults(DocumentVersionReference, WordsQuery)} when looking for many
+     * queries.
+     *
+     * @param documentVersionReference the reference of the document version results to look for
+     * @param wordsQueries the words queries to look for
+     * @return the results which have been found indexed by their query: queries without stored results are not part
+     *         of the returned map
+     * @throws WordsAnalysisException in case of problem when performing the query
+     * @since 1.2.3
+     */
+    public Map<WordsQuery, WordsAnalysisResults> loadAnalysisResults(DocumentVersionReference documentVersionReference,
+        Collection<WordsQuery> wordsQueries) throws WordsAnalysisException
+    {
+        Map<WordsQuery, WordsAnalysisResults> result = new LinkedHashMap<>();
+        Map<String, List<WordsQuery>> queriesToLoad = new LinkedHashMap<>();
+        for (WordsQuery wordsQuery : wordsQueries) {
+            Optional<WordsAnalysisResults> inMemoryResult =
+                this.loadInMemoryResults(documentVersionReference, wordsQuery);
+            if (inMemoryResult.isPresent()) {
+                result.put(wordsQuery, inMemoryResult.get());
+            } else {
+                queriesToLoad.computeIfAbsent(wordsQuery.getQuery(), key -> new ArrayList<>()).add(wordsQuery);
+            }
+        }
+
+        if (!queriesToLoad.isEmpty()) {
+            // The queries are filtered with a terms filter rather than a boolean query, which would hit the maximum
+            // number of boolean clauses, and in batches to keep the requests small.
+            String filterQuery = this.getDocumentVersionQuery(documentVersionReference);
+            List<String> queryList = new ArrayList<>(queriesToLoad.keySet());
+            Map<String, List<SolrDocument>> documentsPerQuery = new HashMap<>();
+            for (int i = 0; i < queryList.size(); i += QUERY_BATCH_SIZE) {
+                SolrQuery solrQuery = this.createQuery(filterQuery).addFilterQuery(TERMS_FILTER_QUERY);
+                solrQuery.set(TERMS_SEPARATOR_PARAMETER, TERMS_SEPARATOR);
+                List<String> batch = queryList.subList(i, Math.min(i + QUERY_BATCH_SIZE, queryList.size()));
+                solrQuery.set(TERMS_PARAMETER, String.join(TERMS_SEPARATOR, batch));
+                for (SolrDocument solrDocument : this.queryAllPages(solrQuery)) {
+                    String query =
+                        this.solrUtils.get(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, solrDocument);
+                    documentsPerQuery.computeIfAbsent(query, key -> new ArrayList<>()).add(solrDocument);
+                }
+            }
+
+            Map<String, SolrDocument> contents = this.loadContents(
+                documentsPerQuery.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+            for (Map.Entry<String, List<SolrDocument>> entry : documentsPerQuery.entrySet()) {
+                for (WordsQuery wordsQuery : queriesToLoad.get(entry.getKey())) {
+                    Optional<WordsAnalysisResults> wordsAnalysisResults = this.transformDocumentsToResults(
+                        documentVersionReference, wordsQuery, entry.getValue(), contents);
+                    if (wordsAnalysisResults.isPresent()) {
+                        this.resultCache.set(wordsAnalysisResults.get());
+                        result.put(wordsQuery, wordsAnalysisResults.get());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve the total number of occurrences of each of the given queries for a document version, without
+     * retrieving the regions: only the occurrences field of the stored results is fetched from Solr.
+     *
+     * @param documentVersionReference the reference of the document version results to look for
+     * @param wordsQueries the words queries to look for
+     * @return the total number of occurrences indexed by query: queries without stored results, or whose results
+     *         have been stored without the number of occurrences, are not part of the returned map
+     * @throws WordsAnalysisException in case of problem when performing the query
+     * @since 1.2.3
+     */
+    public Map<WordsQuery, Long> loadOccurrenceSummary(DocumentVersionReference documentVersionReference,
+        Collection<WordsQuery> wordsQueries) throws WordsAnalysisException
+    {
+        Map<WordsQuery, Long> result = new LinkedHashMap<>();
+        Map<String, List<WordsQuery>> queriesToLoad = new LinkedHashMap<>();
+        for (WordsQuery wordsQuery : wordsQueries) {
+            Optional<WordsAnalysisResults> inMemoryResult =
+                this.loadInMemoryResults(documentVersionReference, wordsQuery);
+            if (inMemoryResult.isPresent()) {
+                result.put(wordsQuery, inMemoryResult.get().getOccurrences());
+            } else {
+                queriesToLoad.computeIfAbsent(wordsQuery.getQuery(), key -> new ArrayList<>()).add(wordsQuery);
+            }
+        }
+
+        if (!queriesToLoad.isEmpty()) {
+            // Only the query and the number of occurrences of each part are retrieved.
+            String filterQuery = this.getDocumentVersionQuery(documentVersionReference);
+            List<SolrDocument> documents = this.queryAllPages(filterQuery,
+                AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD,
+                AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD);
+            Map<String, Long> occurrencesPerQuery = new HashMap<>();
+            Set<String> incompleteQueries = new HashSet<>();
+            for (SolrDocument solrDocument : documents) {
+                String query = this.solrUtils.get(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, solrDocument);
+                Long occurrences =
+                    this.solrUtils.get(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, solrDocument);
+                if (queriesToLoad.containsKey(query) && occurrences == null) {
+                    // The result has been stored before the introduction of the occurrences field.
+                    incompleteQueries.add(query);
+                } else if (queriesToLoad.containsKey(query)) {
+                    occurrencesPerQuery.merge(query, occurrences, Long::sum);
+                }
+            }
+
+            for (Map.Entry<String, Long> entry : occurrencesPerQuery.entrySet()) {
+                if (!incompleteQueries.contains(entry.getKey())) {
+                    queriesToLoad.get(entry.getKey()).forEach(wordsQuery -> result.put(wordsQuery, entry.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove all the stored results of the given queries, whatever the user who defined them. The buffered and not yet
+     * committed results of those queries are discarded too.
+     *
+     * @param queries the queries whose results should be removed
+     * @throws WordsAnalysisException in case of problem to remove the results
+     * @since 1.2.3
+     */
+    public void removeAnalysisResults(Collection<String> queries) throws WordsAnalysisException
+    {
+        // Holding the flush lock ensures that no result of those queries is being sent while they're removed.
+        synchronized (this.flushLock) {
+            synchronized (this.bufferLock) {
+                this.pendingDocumentsCount -= removePendingResults(this.pendingResults, queries);
+                this.committingResults.forEach(committing -> removePendingResults(committing.results, queries));
+            }
+
+            List<String> queryList = new ArrayList<>(queries);
+            try {
+                for (int i = 0; i < queryList.size(); i += PAGE_SIZE) {
+                    String deleteQuery = queryList.subList(i, Math.min(i + PAGE_SIZE, queryList.size())).stream()
+                        .map(this.solrUtils::toFilterQueryString)
+                        .collect(Collectors.joining(" OR ", AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD + ":(",
+                            ")"));
+                    this.solrClient.deleteByQuery(deleteQuery, this.configuration.getStorageCommitWithin());
+                }
+                if (!queryList.isEmpty()) {
+                    this.solrClient.commit(true, true, true);
+                }
+            } catch (SolrServerException | IOException e) {
+                throw new WordsAnalysisException("Error while removing the analysis results of queries", e);
+            }
+        }
+    }
+
+    private static int removePendingResults(Map<String, PendingResults> results, Collection<String> queries)
+    {
+        int removedDocumentsCount = 0;
+        Iterator<PendingResults> iterator = results.values().iterator();
+        while (iterator.hasNext()) {
+            PendingResults pending = iterator.next();
+            if (queries.contains(pending.results.getQuery().getQuery())) {
+                removedDocumentsCount += pending.documents.size();
+                iterator.remove();
+            }
+        }
+        return removedDocumentsCount;
+    }
+
+    private String getDocumentVersionQuery(DocumentVersionReference documentVersionReference)
     {
         Map<String, Object> queryMap = new LinkedHashMap<>();
         queryMap.put(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, documentVersionReference);
         queryMap.put(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, documentVersionReference.getVersion());
-        queryMap.put(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, wordsQuery.getQuery());
+        return this.mapToQuery(queryMap);
+    }
 
+    private SolrQuery createQuery(String filterQuery, String... fields)
+    {
         SolrQuery solrQuery = new SolrQuery()
-            .addFilterQuery(this.mapToQuery(queryMap))
-            .setStart(0)
-            // FIXME: We assume that we won't have more than 100 analyzers but that's not necessarily true:
-            // in the future we should loop over pages
-            .setRows(100);
-        try {
-            QueryResponse queryResponse = this.solrClient.query(solrQuery);
-            SolrDocumentList results = queryResponse.getResults();
-            if (results.getNumFound() > 0) {
-                Date creationDate = this.solrUtils.get(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD,
-                    results.get(0));
-                WordsAnalysisResults wordsAnalysisResult =
-                    new WordsAnalysisResults(documentVersionReference, wordsQuery, creationDate);
-
-                for (SolrDocument result : results) {
-                    this.transformDocumentToPartAnalysisResult(result, wordsAnalysisResult);
-                }
+            .addFilterQuery(filterQuery)
+            // Ensure a stable order between the pages.
+            .setSort(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, SolrQuery.ORDER.asc);
+        if (fields.length > 0) {
+            solrQuery.setFields(fields);
+        }
+        return solrQuery;
+    }
 
-                return Optional.of(wordsAnalysisResult);
-            }
+    private List<SolrDocument> queryAllPages(String filterQuery, String... fields) throws WordsAnalysisException
+    {
+        return this.queryAllPages(this.createQuery(filterQuery, fields));
+    }
+
+    private List<SolrDocument> queryAllPages(SolrQuery solrQuery) throws WordsAnalysisException
+    {
+        List<SolrDocument> result = new ArrayList<>();
+        // A cursor is used rather than an offset, so that the following pages, if any, are cheap to retrieve.
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        boolean hasMore;
+        try {
+            do {
+                solrQuery.setRows(FETCH_SIZE).set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                QueryResponse queryResponse = this.solrClient.query(solrQuery);
+                SolrDocumentList results = queryResponse.getResults();
+                result.addAll(results);
+                // A page which isn't full is the last one: this avoids an additional request in the common case.
+                hasMore = results.size() == FETCH_SIZE && !cursorMark.equals(queryResponse.getNextCursorMark());
+                cursorMark = queryResponse.getNextCursorMark();
+            } while (hasMore);
         } catch (SolrServerException | IOException e) {
             throw new WordsAnalysisException("Error while searching for analysis result", e);
         }
-        return Optional.empty();
+        return result;
+    }
+
+    private Optional<WordsAnalysisResults> transformDocumentsToResults(
+        DocumentVersionReference documentVersionReference, WordsQuery wordsQuery, List<SolrDocument> documents,
+        Map<String, SolrDocument> contents) throws WordsAnalysisException
+    {
+        Date creationDate =
+            this.solrUtils.get(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, documents.get(0));
+        WordsAnalysisResults wordsAnalysisResult =
+            new WordsAnalysisResults(documentVersionReference, wordsQuery, creationDate);
+
+        boolean complete = true;
+        for (SolrDocument solrDocument : documents) {
+            complete &= this.transformDocumentToPartAnalysisResult(solrDocument, contents, wordsAnalysisResult);
+        }
+
+        Optional<WordsAnalysisResults> result = Optional.empty();
+        if (complete) {
+            result = Optional.of(wordsAnalysisResult);
+        } else {
+            // The results are considered as missing so that they're computed again.
+            this.logger.warn("Some shared regions of the results of [{}] for query [{}] are missing.",
+                documentVersionReference, wordsQuery.getQuery());
+        }
+        return result;
+    }
+
+    private Optional<WordsAnalysisResults> loadInMemoryResults(DocumentVersionReference documentVersionReference,
+        WordsQuery wordsQuery)
+    {
+        // Results waiting to be flushed or committed are always available, while cached results might have been
+        // evicted.
+        return this.loadPendingResults(documentVersionReference, wordsQuery)
+            .or(() -> this.resultCache.get(documentVersionReference, wordsQuery));
+    }
+
+    private Optional<WordsAnalysisResults> loadPendingResults(DocumentVersionReference documentVersionReference,
+        WordsQuery wordsQuery)
+    {
+        String commonIdentifier = this.getCommonIdentifier(documentVersionReference, wordsQuery);
+        PendingResults pending;
+        synchronized (this.bufferLock) {
+            pending = this.pendingResults.get(commonIdentifier);
+            if (pending == null) {
+                pending = this.flushingResults.get(commonIdentifier);
+            }
+            this.removeCommittedResults();
+            // The most recently sent results take precedence.
+            Iterator<CommittingResults> iterator = this.committingResults.descendingIterator();
+            while (pending == null && iterator.hasNext()) {
+                pending = iterator.next().results.get(commonIdentifier);
+            }
+        }
+
+        Optional<WordsAnalysisResults> result = Optional.empty();
+        if (pending != null) {
+            WordsAnalysisResults wordsAnalysisResults =
+                new WordsAnalysisResults(documentVersionReference, wordsQuery, pending.results.getDate());
+            pending.results.getResults().forEach(wordsAnalysisResults::addResult);
+            result = Optional.of(wordsAnalysisResults);
+        }
+        return result;
     }
 }
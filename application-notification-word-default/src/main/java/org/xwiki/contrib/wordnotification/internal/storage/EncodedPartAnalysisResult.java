@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+import org.xwiki.contrib.wordnotification.PartAnalysisResult;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+
+/**
+ * {@link PartAnalysisResult} loaded from the storage whose regions are only decoded when they are accessed: the
+ * number of occurrences is available without decoding them.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class EncodedPartAnalysisResult extends PartAnalysisResult
+{
+    private final RegionsCodec regionsCodec;
+
+    private final int regionCount;
+
+    // Guarded by this, null once the regions have been decoded.
+    private byte[] encodedRegions;
+
+    private String contentIdentifier;
+
+    /**
+     * Default constructor.
+     *
+     * @param analyzerHint the hint of the analyzer which produced the result
+     * @param encodedRegions the regions encoded with the given codec
+     * @param regionsCodec the codec to use to decode the regions
+     * @throws WordsAnalysisException if the regions are not encoded in a supported format
+     */
+    public EncodedPartAnalysisResult(String analyzerHint, byte[] encodedRegions, RegionsCodec regionsCodec)
+        throws WordsAnalysisException
+    {
+        super(analyzerHint);
+        this.regionsCodec = regionsCodec;
+        this.regionCount = regionsCodec.getRegionCount(encodedRegions);
+        this.encodedRegions = encodedRegions;
+    }
+
+    /**
+     * @return {@code true} if the regions have already been decoded
+     */
+    public synchronized boolean isDecoded()
+    {
+        return this.encodedRegions == null;
+    }
+
+    /**
+     * @return the encoded regions if they have not been decoded yet, so that the result can be stored again without
+     *         decoding them, or an empty optional
+     */
+    synchronized Optional<byte[]> getEncodedRegions()
+    {
+        return Optional.ofNullable(this.encodedRegions);
+    }
+
+    /**
+     * @return the identifier of the shared regions from which the regions have been loaded, or {@code null} if they
+     *         have been loaded from the results of a single document version
+     */
+    String getContentIdentifier()
+    {
+        return this.contentIdentifier;
+    }
+
+    /**
+     * @param contentIdentifier the identifier of the shared regions from which the regions have been loaded
+     */
+    void setContentIdentifier(String contentIdentifier)
+    {
+        this.contentIdentifier = contentIdentifier;
+    }
+
+    @Override
+    public synchronized long getOccurrences()
+    {
+        return (this.encodedRegions != null) ? this.regionCount : super.getOccurrences();
+    }
+
+    @Override
+    public synchronized Set<WordsMentionLocalization> getRegions()
+    {
+        this.decode();
+        return super.getRegions();
+    }
+
+    @Override
+    public synchronized void addRegion(WordsMentionLocalization region)
+    {
+        this.decode();
+        super.addRegion(region);
+    }
+
+    @Override
+    public synchronized void addRegions(Collection<WordsMentionLocalization> regions)
+    {
+        this.decode();
+        super.addRegions(regions);
+    }
+
+    private void decode()
+    {
+        if (this.encodedRegions != null) {
+            try {
+                super.addRegions(this.regionsCodec.decode(this.encodedRegions));
+            } catch (WordsAnalysisException e) {
+                // The format has already been checked when creating the result.
+                throw new IllegalStateException("Failed to decode the regions of the analysis result", e);
+            }
+            this.encodedRegions = null;
+        }
+    }
+}
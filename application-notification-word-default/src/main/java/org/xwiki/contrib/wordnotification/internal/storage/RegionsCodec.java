@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Compact binary encoding of the regions of a {@link org.xwiki.contrib.wordnotification.PartAnalysisResult}.
+ * <p>
+ * The encoded form starts with a format version byte and the number of regions, so that the occurrences can be
+ * counted without decoding the regions. It then contains a dictionary of the distinct entity references of the
+ * regions, and finally for each region the index of its reference in the dictionary, its position in list, its start
+ * and its length. All integers are encoded as unsigned variable length integers (7 bits per byte, least significant
+ * group first).
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = RegionsCodec.class)
+@Singleton
+public class RegionsCodec
+{
+    /**
+     * Version of the format produced by {@link #encode(Collection)}.
+     */
+    static final byte FORMAT_VERSION = 1;
+
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUATION_BIT = 0x80;
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    /**
+     * Encode the given regions.
+     *
+     * @param regions the regions to encode
+     * @return the encoded regions
+     */
+    public byte[] encode(Collection<WordsMentionLocalization> regions)
+    {
+        Map<EntityReference, Integer> dictionary = new HashMap<>();
+        List<EntityReference> dictionaryEntries = new ArrayList<>();
+        for (WordsMentionLocalization region : regions) {
+            dictionary.computeIfAbsent(region.getEntityReference(), reference -> {
+                dictionaryEntries.add(reference);
+                return dictionaryEntries.size() - 1;
+            });
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(FORMAT_VERSION);
+        writeVarInt(regions.size(), output);
+        writeVarInt(dictionaryEntries.size(), output);
+        for (EntityReference reference : dictionaryEntries) {
+            writeString(reference.getType().name(), output);
+            writeString(this.entityReferenceSerializer.serialize(reference), output);
+        }
+        for (WordsMentionLocalization region : regions) {
+            writeVarInt(dictionary.get(region.getEntityReference()), output);
+            writeVarInt(region.getPositionInList(), output);
+            writeVarInt(region.getRegionStart(), output);
+            writeVarInt(region.getRegionEnd() - region.getRegionStart(), output);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Read the number of regions of encoded regions, without decoding them.
+     *
+     * @param encodedRegions the encoded regions
+     * @return the number of regions
+     * @throws WordsAnalysisException if the given bytes are not encoded regions of a supported version
+     */
+    public int getRegionCount(byte[] encodedRegions) throws WordsAnalysisException
+    {
+        ByteBuffer buffer = this.readHeader(encodedRegions);
+        try {
+            return readVarInt(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new WordsAnalysisException("Invalid encoded regions", e);
+        }
+    }
+
+    /**
+     * Decode the given regions.
+     *
+     * @param encodedRegions the encoded regions
+     * @return the decoded regions, in the order they have been encoded
+     * @throws WordsAnalysisException if the given bytes are not valid encoded regions of a supported version
+     */
+    public List<WordsMentionLocalization> decode(byte[] encodedRegions) throws WordsAnalysisException
+    {
+        ByteBuffer buffer = this.readHeader(encodedRegions);
+        try {
+            int regionCount = readVarInt(buffer);
+            int dictionarySize = readVarInt(buffer);
+            List<EntityReference> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                EntityType entityType = EntityType.valueOf(readString(buffer));
+                dictionary.add(this.entityReferenceResolver.resolve(readString(buffer), entityType));
+            }
+
+            List<WordsMentionLocalization> result = new ArrayList<>(regionCount);
+            for (int i = 0; i < regionCount; i++) {
+                EntityReference reference = dictionary.get(readVarInt(buffer));
+                int positionInList = readVarInt(buffer);
+                int regionStart = readVarInt(buffer);
+                int regionEnd = regionStart + readVarInt(buffer);
+                result.add(new WordsMentionLocalization(reference, positionInList, regionStart, regionEnd));
+            }
+            return result;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new WordsAnalysisException("Invalid encoded regions", e);
+        }
+    }
+
+    private ByteBuffer readHeader(byte[] encodedRegions) throws WordsAnalysisException
+    {
+        if (encodedRegions.length == 0 || encodedRegions[0] != FORMAT_VERSION) {
+            throw new WordsAnalysisException(String.format("Unsupported format of encoded regions [%s]",
+                (encodedRegions.length == 0) ? null : encodedRegions[0]));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encodedRegions);
+        buffer.get();
+        return buffer;
+    }
+
+    private static void writeVarInt(int value, ByteArrayOutputStream output)
+    {
+        int remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD_MASK) != 0) {
+            output.write((remaining & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION_BIT);
+            remaining >>>= VARINT_PAYLOAD_BITS;
+        }
+        output.write(remaining);
+    }
+
+    private static int readVarInt(ByteBuffer buffer)
+    {
+        int result = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get();
+            result |= (current & VARINT_PAYLOAD_MASK) << shift;
+            shift += VARINT_PAYLOAD_BITS;
+        } while ((current & VARINT_CONTINUATION_BIT) != 0);
+        return result;
+    }
+
+    private static void writeString(String value, ByteArrayOutputStream output)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length, output);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -45,10 +45,6 @@ import org.xwiki.query.QueryManager;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceResolver;
 import org.xwiki.user.UserReferenceSerializer;
-import org.xwiki.wiki.descriptor.WikiDescriptorManager;
-import org.xwiki.wiki.user.UserScope;
-import org.xwiki.wiki.user.WikiUserManager;
-import org.xwiki.wiki.user.WikiUserManagerException;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -81,10 +77,7 @@ public class DefaultUsersWordsQueriesManager implements UsersWordsQueriesManager
     private QueryManager queryManager;
 
     @Inject
-    private WikiDescriptorManager wikiDescriptorManager;
-
-    @Inject
-    private WikiUserManager wikiUserManager;
+    private UserWikisResolver userWikisResolver;
 
     @Inject
     private UserReferenceResolver<String> userReferenceResolver;
@@ -103,8 +96,9 @@ public class DefaultUsersWordsQueriesManager implements UsersWordsQueriesManager
         if (wordsQueriesOpt.isPresent()) {
             result = wordsQueriesOpt.get();
         } else {
+            long loadGeneration = this.wordsQueryCache.getGeneration();
             result = this.readWordsQuery(userReference);
-            this.wordsQueryCache.setWordsQueries(userReference, result);
+            this.wordsQueryCache.setWordsQueries(userReference, result, loadGeneration);
         }
         return result;
     }
@@ -207,35 +201,15 @@ public class DefaultUsersWordsQueriesManager implements UsersWordsQueriesManager
     @Override
     public Set<UserReference> getUserReferenceWithWordsQuery(WikiReference wikiReference) throws WordsAnalysisException
     {
+        Set<WikiReference> userWikis = this.userWikisResolver.getUserWikis(wikiReference);
         Set<UserReference> result;
-        boolean isMainWiki = this.wikiDescriptorManager.isMainWiki(wikiReference.getName());
-        if (!isMainWiki) {
-            WikiReference mainWikiReference = new WikiReference(this.wikiDescriptorManager.getMainWikiId());
-            try {
-                UserScope userScope = this.wikiUserManager.getUserScope(wikiReference.getName());
-                switch (userScope) {
-                    case LOCAL_ONLY:
-                        result = this.getUsersWithWordsQueryForWiki(wikiReference);
-                        break;
-
-                    case GLOBAL_ONLY:
-                        result =
-                            this.getUsersWithWordsQueryForWiki(mainWikiReference);
-                        break;
-
-                    case LOCAL_AND_GLOBAL:
-                    default:
-                        result = new HashSet<>();
-                        result.addAll(this.getUsersWithWordsQueryForWiki(wikiReference));
-                        result.addAll(this.getUsersWithWordsQueryForWiki(mainWikiReference));
-                }
-            } catch (WikiUserManagerException e) {
-                throw new WordsAnalysisException(
-                    String.format("Error when trying to access the user scope definition of wiki [%s]",
-                        wikiReference), e);
-            }
+        if (userWikis.size() == 1) {
+            result = this.getUsersWithWordsQueryForWiki(userWikis.iterator().next());
         } else {
-            result = this.getUsersWithWordsQueryForWiki(wikiReference);
+            result = new HashSet<>();
+            for (WikiReference userWiki : userWikis) {
+                result.addAll(this.getUsersWithWordsQueryForWiki(userWiki));
+            }
         }
         return result;
     }
@@ -251,12 +225,13 @@ public class DefaultUsersWordsQueriesManager implements UsersWordsQueriesManager
                 this.entityReferenceSerializer.serialize(WordsQueryXClassInitializer.XCLASS_REFERENCE));
 
             try {
+                long loadGeneration = this.wordsQueryCache.getGeneration();
                 List<String> usersList = this.queryManager.createQuery(query, Query.HQL)
                     .setWiki(wikiReference.getName())
                     .execute();
 
                 result = usersList.stream().map(this.userReferenceResolver::resolve).collect(Collectors.toSet());
-                this.wordsQueryCache.setUserReferences(result, wikiReference);
+                this.wordsQueryCache.setUserReferences(result, wikiReference, loadGeneration);
             } catch (QueryException e) {
                 throw new WordsAnalysisException("Error while trying to get the list of users with a words query", e);
             }
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.user.UserScope;
+import org.xwiki.wiki.user.WikiUserManager;
+import org.xwiki.wiki.user.WikiUserManagerException;
+
+/**
+ * Resolve the wikis whose users might follow the documents of a given wiki, according to its user scope.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = UserWikisResolver.class)
+@Singleton
+public class UserWikisResolver
+{
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private WikiUserManager wikiUserManager;
+
+    /**
+     * @param wikiReference the wiki of the analyzed documents
+     * @return the wikis of the users who might be notified about the documents of the given wiki: the local wiki
+     *         first, then the main wiki
+     * @throws WordsAnalysisException in case of problem to retrieve the user scope of the wiki
+     */
+    public Set<WikiReference> getUserWikis(WikiReference wikiReference) throws WordsAnalysisException
+    {
+        Set<WikiReference> result = new LinkedHashSet<>();
+        if (this.wikiDescriptorManager.isMainWiki(wikiReference.getName())) {
+            result.add(wikiReference);
+        } else {
+            WikiReference mainWikiReference = new WikiReference(this.wikiDescriptorManager.getMainWikiId());
+            try {
+                UserScope userScope = this.wikiUserManager.getUserScope(wikiReference.getName());
+                switch (userScope) {
+                    case LOCAL_ONLY:
+                        result.add(wikiReference);
+                        break;
+
+                    case GLOBAL_ONLY:
+                        result.add(mainWikiReference);
+                        break;
+
+                    case LOCAL_AND_GLOBAL:
+                    default:
+                        result.add(wikiReference);
+                        result.add(mainWikiReference);
+                }
+            } catch (WikiUserManagerException e) {
+                throw new WordsAnalysisException(
+                    String.format("Error when trying to access the user scope definition of wiki [%s]",
+                        wikiReference), e);
+            }
+        }
+        return result;
+    }
+}
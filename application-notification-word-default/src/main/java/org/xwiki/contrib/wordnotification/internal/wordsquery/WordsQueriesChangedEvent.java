@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Event sent to the other members of the cluster when the queries of a user have been changed, so that they update
+ * their own {@link WordsQueryCache} with the same change.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+public class WordsQueriesChangedEvent implements Event, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final DocumentReference userDocument;
+
+    private final Set<String> previousQueries;
+
+    private final Set<String> queries;
+
+    /**
+     * Default constructor, used to listen to all the changes.
+     */
+    public WordsQueriesChangedEvent()
+    {
+        this(null, Set.of(), Set.of());
+    }
+
+    /**
+     * @param userDocument the document of the user whose queries have been changed
+     * @param previousQueries the queries of the user before the change
+     * @param queries the queries of the user after the change
+     */
+    public WordsQueriesChangedEvent(DocumentReference userDocument, Set<String> previousQueries, Set<String> queries)
+    {
+        this.userDocument = userDocument;
+        this.previousQueries = new HashSet<>(previousQueries);
+        this.queries = new HashSet<>(queries);
+    }
+
+    /**
+     * @return the document of the user whose queries have been changed
+     */
+    public DocumentReference getUserDocument()
+    {
+        return this.userDocument;
+    }
+
+    /**
+     * @return the queries of the user before the change
+     */
+    public Set<String> getPreviousQueries()
+    {
+        return this.previousQueries;
+    }
+
+    /**
+     * @return the queries of the user after the change
+     */
+    public Set<String> getQueries()
+    {
+        return this.queries;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return otherEvent instanceof WordsQueriesChangedEvent;
+    }
+}
@@ -19,8 +19,13 @@
  */
 package org.xwiki.contrib.wordnotification.internal.wordsquery;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -35,6 +40,7 @@ import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
 import org.xwiki.contrib.wordnotification.WordsQuery;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.user.UserReference;
@@ -51,9 +57,59 @@ import org.xwiki.user.UserReferenceSerializer;
 @Singleton
 public class WordsQueryCache implements Initializable, Disposable
 {
+    /**
+     * The users following each query which might be notified about the documents of a wiki.
+     */
+    private static final class WikiUsersPerQuery
+    {
+        /**
+         * The wikis of the users, according to the user scope of the wiki.
+         */
+        private final Set<String> userWikis;
+
+        private final Map<String, Set<UserReference>> usersPerQuery = new ConcurrentHashMap<>();
+
+        /**
+         * The queries compiled for the analysis, which are dropped whenever the queries change.
+         */
+        private volatile WikiCompiledQueries compiledQueries;
+
+        WikiUsersPerQuery(Set<WikiReference> userWikis)
+        {
+            this.userWikis = userWikis.stream().map(WikiReference::getName).collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * The compiled queries of a wiki, with the queries they've been compiled from.
+     */
+    private static final class WikiCompiledQueries
+    {
+        private final Set<String> queries;
+
+        private final List<CompiledWordsQueries> compiledQueries;
+
+        WikiCompiledQueries(Set<String> queries, List<CompiledWordsQueries> compiledQueries)
+        {
+            this.queries = Set.copyOf(queries);
+            this.compiledQueries = List.copyOf(compiledQueries);
+        }
+    }
+
     private Cache<Set<WordsQuery>> queryCache;
 
-    private Cache<Set<UserReference>> usersWithQueriesCache;
+    // The users with queries are indexed by the wiki of their document. The entries are not evicted since they're
+    // kept up to date from the changes of the users' queries: they're only dropped when their wiki is deleted.
+    private final Map<String, Set<UserReference>> usersWithQueries = new ConcurrentHashMap<>();
+
+    // The users following each query, indexed by the wiki of the analyzed documents, which are kept up to date the
+    // same way: they might include the users of the main wiki, depending on the user scope of the wiki, so they're
+    // also dropped when the user scope of some wiki changes.
+    private final Map<String, WikiUsersPerQuery> usersPerQuery = new ConcurrentHashMap<>();
+
+    // Incremented by each change of the queries of a user, so that the values loaded before the change, which might
+    // not include it, are not recorded after it.
+    private long generation;
 
     @Inject
     private CacheManager cacheManager;
@@ -65,10 +121,8 @@ public class WordsQueryCache implements Initializable, Disposable
     public void initialize() throws InitializationException
     {
         CacheConfiguration queryCacheConfiguration = new LRUCacheConfiguration("application-notification-word.query");
-        CacheConfiguration usersCacheConfiguration = new LRUCacheConfiguration("application-notification-word.users");
         try {
             this.queryCache = this.cacheManager.createNewCache(queryCacheConfiguration);
-            this.usersWithQueriesCache = this.cacheManager.createNewCache(usersCacheConfiguration);
         } catch (CacheException e) {
             throw new InitializationException("Error while creating the cache for the words queries", e);
         }
@@ -107,6 +161,33 @@ public class WordsQueryCache implements Initializable, Disposable
         this.queryCache.set(getQueryCacheKey(userReference), wordsQueries);
     }
 
+    /**
+     * @return the current generation of the cache, to be retrieved before loading the values to be recorded, so that
+     *         they're not recorded if some queries changed meanwhile
+     * @since 1.2.3
+     */
+    public synchronized long getGeneration()
+    {
+        return this.generation;
+    }
+
+    /**
+     * Record in cache the queries of the given user, loaded from the given generation of the cache. Nothing is done if
+     * some queries changed since then, since the loaded queries might not include the change.
+     *
+     * @param userReference the user for which to record the queries
+     * @param wordsQueries the queries to be recorded
+     * @param loadGeneration the generation of the cache when the queries started to be loaded
+     * @since 1.2.3
+     */
+    public synchronized void setWordsQueries(UserReference userReference, Set<WordsQuery> wordsQueries,
+        long loadGeneration)
+    {
+        if (loadGeneration == this.generation) {
+            this.setWordsQueries(userReference, wordsQueries);
+        }
+    }
+
     /**
      * Retrieve the set of users from the given wiki who have queries.
      *
@@ -117,29 +198,200 @@ public class WordsQueryCache implements Initializable, Disposable
     public Optional<Set<UserReference>> getUserReferences(WikiReference wikiReference)
     {
         Optional<Set<UserReference>> result = Optional.empty();
-        Set<UserReference> userReferences = this.usersWithQueriesCache.get(wikiReference.getName());
+        Set<UserReference> userReferences = this.usersWithQueries.get(wikiReference.getName());
         if (userReferences != null) {
-            result = Optional.of(userReferences);
+            result = Optional.of(Collections.unmodifiableSet(userReferences));
         }
         return result;
     }
 
     /**
-     * Record in cache the set of users who have queries for the given wiki.
+     * Record in cache the set of users who have queries for the given wiki, loaded from the given generation of the
+     * cache. Nothing is done if some queries changed since then, since the loaded users might not include the change.
      *
      * @param userReferences the set of users with queries
      * @param wikiReference the wiki where the users are located
+     * @param loadGeneration the generation of the cache when the users started to be loaded
+     */
+    public synchronized void setUserReferences(Set<UserReference> userReferences, WikiReference wikiReference,
+        long loadGeneration)
+    {
+        if (loadGeneration == this.generation) {
+            Set<UserReference> storedUserReferences = ConcurrentHashMap.newKeySet();
+            storedUserReferences.addAll(userReferences);
+            this.usersWithQueries.put(wikiReference.getName(), storedUserReferences);
+        }
+    }
+
+    /**
+     * Retrieve the users following each query which might be notified about the documents of the given wiki.
+     *
+     * @param wikiReference the wiki of the analyzed documents
+     * @return an {@link Optional#empty()} if the queries of the given wiki are not recorded, else the users following
+     *         each query: the sets of users are updated concurrently and should be copied to be used over time
+     * @since 1.2.3
+     */
+    public Optional<Map<String, Set<UserReference>>> getUsersPerQuery(WikiReference wikiReference)
+    {
+        Optional<Map<String, Set<UserReference>>> result = Optional.empty();
+        WikiUsersPerQuery wikiUsersPerQuery = this.usersPerQuery.get(wikiReference.getName());
+        if (wikiUsersPerQuery != null) {
+            result = Optional.of(Collections.unmodifiableMap(wikiUsersPerQuery.usersPerQuery));
+        }
+        return result;
+    }
+
+    /**
+     * Record in cache the users following each query which might be notified about the documents of the given wiki,
+     * loaded from the given generation of the cache. Nothing is done if some queries changed since then, since the
+     * loaded users might not include the change.
+     *
+     * @param wikiUsersPerQuery the users following each query
+     * @param wikiReference the wiki of the analyzed documents
+     * @param userWikis the wikis of the users, according to the user scope of the wiki, whose changes of queries
+     *     should be recorded for the given wiki
+     * @param loadGeneration the generation of the cache when the users started to be loaded
+     * @since 1.2.3
+     */
+    public synchronized void setUsersPerQuery(Map<String, Set<UserReference>> wikiUsersPerQuery,
+        WikiReference wikiReference, Set<WikiReference> userWikis, long loadGeneration)
+    {
+        if (loadGeneration == this.generation) {
+            WikiUsersPerQuery storedUsersPerQuery = new WikiUsersPerQuery(userWikis);
+            wikiUsersPerQuery.forEach((query, userReferences) -> {
+                Set<UserReference> storedUserReferences = ConcurrentHashMap.newKeySet();
+                storedUserReferences.addAll(userReferences);
+                storedUsersPerQuery.usersPerQuery.put(query, storedUserReferences);
+            });
+            this.usersPerQuery.put(wikiReference.getName(), storedUsersPerQuery);
+        }
+    }
+
+    /**
+     * Retrieve the queries compiled for the analysis of the documents of the given wiki.
+     *
+     * @param wikiReference the wiki of the analyzed documents
+     * @param queries the queries to be analyzed
+     * @return an {@link Optional#empty()} if the users following each query of the given wiki are not recorded or if
+     *         the given queries haven't been compiled yet, else the compiled queries
+     * @since 1.2.3
+     */
+    public Optional<List<CompiledWordsQueries>> getCompiledQueries(WikiReference wikiReference, Set<String> queries)
+    {
+        Optional<List<CompiledWordsQueries>> result = Optional.empty();
+        WikiUsersPerQuery wikiUsersPerQuery = this.usersPerQuery.get(wikiReference.getName());
+        if (wikiUsersPerQuery != null) {
+            WikiCompiledQueries wikiCompiledQueries = wikiUsersPerQuery.compiledQueries;
+            // The queries might have changed since they've been compiled.
+            if (wikiCompiledQueries != null && wikiCompiledQueries.queries.equals(queries)) {
+                result = Optional.of(wikiCompiledQueries.compiledQueries);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record the queries compiled for the analysis of the documents of the given wiki, so that they're compiled only
+     * once until the queries change. Nothing is done if the users following each query of the given wiki are not
+     * recorded.
+     *
+     * @param wikiReference the wiki of the analyzed documents
+     * @param queries the compiled queries
+     * @param compiledQueries the result of the compilation of the queries
+     * @since 1.2.3
+     */
+    public void setCompiledQueries(WikiReference wikiReference, Set<String> queries,
+        List<CompiledWordsQueries> compiledQueries)
+    {
+        WikiUsersPerQuery wikiUsersPerQuery = this.usersPerQuery.get(wikiReference.getName());
+        if (wikiUsersPerQuery != null) {
+            wikiUsersPerQuery.compiledQueries = new WikiCompiledQueries(queries, compiledQueries);
+        }
+    }
+
+    /**
+     * Record the change of the queries of the given user in the users with queries of its wiki and in the users
+     * following each query of all the wikis whose user scope includes the wiki of the user, whose compiled queries are
+     * dropped. Nothing is done for the wikis whose users haven't been recorded yet, since they'll be retrieved with the
+     * change when they're needed: the generation of the cache is incremented so that the values being loaded before
+     * the change are not recorded.
+     *
+     * @param userReference the user whose queries changed
+     * @param wikiReference the wiki where the user is located
+     * @param previousQueries the queries the user had before the change
+     * @param queries the current queries of the user
+     * @since 1.2.3
+     */
+    public synchronized void updateUserQueries(UserReference userReference, WikiReference wikiReference,
+        Set<String> previousQueries, Set<String> queries)
+    {
+        this.generation++;
+        this.usersWithQueries.computeIfPresent(wikiReference.getName(), (wiki, userReferences) -> {
+            if (queries.isEmpty()) {
+                userReferences.remove(userReference);
+            } else {
+                userReferences.add(userReference);
+            }
+            return userReferences;
+        });
+        for (WikiUsersPerQuery wikiUsersPerQuery : this.usersPerQuery.values()) {
+            if (wikiUsersPerQuery.userWikis.contains(wikiReference.getName())) {
+                updateUsersPerQuery(wikiUsersPerQuery.usersPerQuery, userReference, previousQueries, queries);
+                wikiUsersPerQuery.compiledQueries = null;
+            }
+        }
+    }
+
+    private static void updateUsersPerQuery(Map<String, Set<UserReference>> wikiUsersPerQuery,
+        UserReference userReference, Set<String> previousQueries, Set<String> queries)
+    {
+        // Returning null removes the queries which aren't followed anymore.
+        previousQueries.forEach(query -> wikiUsersPerQuery.computeIfPresent(query, (key, userReferences) -> {
+            userReferences.remove(userReference);
+            return userReferences.isEmpty() ? null : userReferences;
+        }));
+        queries.forEach(query -> wikiUsersPerQuery.compute(query, (key, userReferences) -> {
+            Set<UserReference> result = (userReferences != null) ? userReferences : ConcurrentHashMap.newKeySet();
+            result.add(userReference);
+            return result;
+        }));
+    }
+
+    /**
+     * Drop the users following each query of all the wikis, since they've been recorded according to user scopes
+     * which might have changed. They're retrieved again when they're needed.
+     *
+     * @since 1.2.3
      */
-    public void setUserReferences(Set<UserReference> userReferences, WikiReference wikiReference)
+    public synchronized void invalidateUsersPerQuery()
     {
-        this.usersWithQueriesCache.set(wikiReference.getName(), userReferences);
+        // The users being loaded according to the previous user scopes are not recorded.
+        this.generation++;
+        this.usersPerQuery.clear();
+    }
+
+    /**
+     * Drop all the values recorded for the given wiki, for example because it's been deleted: its users with queries,
+     * the users following each query of the wikis whose user scope includes it, and the queries of the users, which
+     * are not indexed by wiki. A wiki created again with the same identifier thus doesn't inherit outdated values.
+     *
+     * @param wikiReference the wiki whose values should be dropped
+     * @since 1.2.3
+     */
+    public synchronized void invalidateWiki(WikiReference wikiReference)
+    {
+        this.generation++;
+        this.usersWithQueries.remove(wikiReference.getName());
+        this.usersPerQuery.remove(wikiReference.getName());
+        this.usersPerQuery.values()
+            .removeIf(wikiUsersPerQuery -> wikiUsersPerQuery.userWikis.contains(wikiReference.getName()));
+        this.queryCache.removeAll();
     }
 
     @Override
     public void dispose() throws ComponentLifecycleException
     {
         this.queryCache.dispose();
-        this.usersWithQueriesCache.dispose();
     }
 
     /**
@@ -151,14 +403,4 @@ public class WordsQueryCache implements Initializable, Disposable
     {
         this.queryCache.remove(getQueryCacheKey(userReference));
     }
-
-    /**
-     * Invalidate the cached users for the given wiki.
-     *
-     * @param wikiReference the wiki for which invalidate the users
-     */
-    public void invalidateUsersWithQueriesFrom(WikiReference wikiReference)
-    {
-        this.usersWithQueriesCache.remove(wikiReference.getName());
-    }
 }
@@ -20,15 +20,22 @@
 package org.xwiki.contrib.wordnotification.internal.wordsquery;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.analyzers.CompiledWordsQueryCache;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.RegexEntityReference;
-import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.AbstractLocalEventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceResolver;
@@ -41,9 +48,16 @@ import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
 import com.xpn.xwiki.objects.BaseObjectReference;
 
 /**
- * Listener responsible to invalidate the data from the {@link WordsQueryCache}.
- * More specifically this listeners listens to changes on the WordsQuery xclass objects and calls invalidation on users
- * or on wiki depending on the events.
+ * Listener responsible to keep the data from the {@link WordsQueryCache} up to date.
+ * More specifically this listeners listens to changes on the WordsQuery xclass objects and records in the cache the
+ * new queries of the user, whether the user still has queries and the users following each query, from the
+ * difference between the saved document and its previous version: the users with queries of a wiki are thus never
+ * retrieved again once they've been cached. It also invalidates from the {@link CompiledWordsQueryCache} the queries
+ * which have been removed or modified, and reports the queries of the users to the
+ * {@link WordsQueryReferenceCounter}, which removes the results of the queries without any user anymore.
+ * <p>
+ * The changes are sent to the other members of the cluster with a {@link WordsQueriesChangedEvent}, so that they apply
+ * them to their own caches, and the object events replayed from the other members are ignored.
  *
  * @version $Id$
  * @since 1.0
@@ -51,7 +65,7 @@ import com.xpn.xwiki.objects.BaseObjectReference;
 @Component
 @Named(WordsQueryCacheInvalidator.NAME)
 @Singleton
-public class WordsQueryCacheInvalidator extends AbstractEventListener
+public class WordsQueryCacheInvalidator extends AbstractLocalEventListener
 {
     static final String NAME = "WordsQueryCacheInvalidator";
 
@@ -61,16 +75,26 @@ public class WordsQueryCacheInvalidator extends AbstractEventListener
     private static final List<Event> EVENT_LIST = List.of(
         new XObjectDeletedEvent(WORDS_QUERY_XCLASS),
         new XObjectAddedEvent(WORDS_QUERY_XCLASS),
-        new XObjectUpdatedEvent(WORDS_QUERY_XCLASS)
+        new XObjectUpdatedEvent(WORDS_QUERY_XCLASS),
+        new WordsQueriesChangedEvent()
     );
 
     @Inject
     private WordsQueryCache wordsQueryCache;
 
+    @Inject
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
+    @Inject
+    private WordsQueryReferenceCounter queryReferenceCounter;
+
     @Inject
     @Named("document")
     private UserReferenceResolver<DocumentReference> documentReferenceUserReferenceResolver;
 
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
     /**
      * Default constructor.
      */
@@ -80,20 +104,73 @@ public class WordsQueryCacheInvalidator extends AbstractEventListener
     }
 
     @Override
-    public void onEvent(Event event, Object source, Object data)
+    public void processLocalEvent(Event event, Object source, Object data)
+    {
+        // The changes sent by this listener to the other members of the cluster are already applied.
+        if (!(event instanceof WordsQueriesChangedEvent)) {
+            XWikiDocument sourceDoc = (XWikiDocument) source;
+            // The queries of a document which is not a user document anymore, for example because it's been deleted,
+            // are considered as removed.
+            Set<String> previousQueries = this.getUserQueries(sourceDoc.getOriginalDocument());
+            Set<String> queries = this.getUserQueries(sourceDoc);
+            if (!previousQueries.isEmpty() || !queries.isEmpty()) {
+                DocumentReference documentReference = sourceDoc.getDocumentReference();
+                this.updateQueries(documentReference, previousQueries, queries, true);
+                this.observationManagerProvider.get()
+                    .notify(new WordsQueriesChangedEvent(documentReference, previousQueries, queries), null, null);
+            }
+        }
+    }
+
+    @Override
+    public void processRemoteEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WordsQueriesChangedEvent) {
+            WordsQueriesChangedEvent changedEvent = (WordsQueriesChangedEvent) event;
+            // The results of the queries without any user anymore are removed by the member where the change happened.
+            this.updateQueries(changedEvent.getUserDocument(), changedEvent.getPreviousQueries(),
+                changedEvent.getQueries(), false);
+        }
+    }
+
+    private void updateQueries(DocumentReference documentReference, Set<String> previousQueries, Set<String> queries,
+        boolean purge)
     {
-        XWikiDocument sourceDoc = (XWikiDocument) source;
-        if (sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE) != null) {
-            DocumentReference documentReference = sourceDoc.getDocumentReference();
-            UserReference userReference =
-                this.documentReferenceUserReferenceResolver.resolve(documentReference);
-            this.wordsQueryCache.invalidateQueriesFrom(userReference);
-
-            // if the event is a deleted xobject or an added xobject, then the list of users to retrieve might be
-            // different, so we just invalidate the cache for the whole wiki.
-            if (!(event instanceof XObjectUpdatedEvent)) {
-                this.wordsQueryCache.invalidateUsersWithQueriesFrom(documentReference.getWikiReference());
+        UserReference userReference = this.documentReferenceUserReferenceResolver.resolve(documentReference);
+
+        // The cached queries and users are updated with the change instead of being retrieved again. The users are
+        // updated first so that the queries of the user being loaded meanwhile are not recorded after the change.
+        this.wordsQueryCache.updateUserQueries(userReference, documentReference.getWikiReference(),
+            previousQueries, queries);
+        this.wordsQueryCache.setWordsQueries(userReference, queries.stream()
+            .map(query -> new WordsQuery(query, userReference))
+            .collect(Collectors.toSet()));
+
+        for (String previousQuery : previousQueries) {
+            if (!queries.contains(previousQuery)) {
+                this.compiledWordsQueryCache.invalidate(previousQuery);
             }
         }
+
+        this.queryReferenceCounter.setQueries(documentReference, previousQueries, queries, purge);
+    }
+
+    private Set<String> getUserQueries(XWikiDocument document)
+    {
+        Set<String> result = Set.of();
+        if (document != null
+            && document.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE) != null)
+        {
+            result = this.getQueries(document);
+        }
+        return result;
+    }
+
+    private Set<String> getQueries(XWikiDocument document)
+    {
+        return document.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE).stream()
+            .filter(Objects::nonNull)
+            .map(xobject -> xobject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD))
+            .collect(Collectors.toSet());
     }
 }
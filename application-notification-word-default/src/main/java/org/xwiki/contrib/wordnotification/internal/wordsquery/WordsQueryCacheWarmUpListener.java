@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Listener responsible to start the warm-up of the {@link WordsQueryCache} once the application is ready, when it's
+ * enabled in the configuration.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Named(WordsQueryCacheWarmUpListener.NAME)
+@Singleton
+public class WordsQueryCacheWarmUpListener extends AbstractEventListener
+{
+    static final String NAME = "WordsQueryCacheWarmUpListener";
+
+    @Inject
+    private WordsQueryCacheWarmer cacheWarmer;
+
+    @Inject
+    private WordsNotificationConfiguration configuration;
+
+    /**
+     * Default constructor.
+     */
+    public WordsQueryCacheWarmUpListener()
+    {
+        super(NAME, List.of(new ApplicationReadyEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.configuration.isWordsQueryCacheWarmUpEnabled()) {
+            this.cacheWarmer.startWarmUp();
+        }
+    }
+}
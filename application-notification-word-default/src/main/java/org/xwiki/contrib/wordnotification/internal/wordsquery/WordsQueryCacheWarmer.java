@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
+
+/**
+ * Load in {@link WordsQueryCache} the users with queries and their queries for all wikis, so that the first analyses
+ * after a restart don't have to retrieve them. A single query is performed for each wiki, instead of one query for
+ * the users and then one document loading for each user. The users following each query of a wiki include the users
+ * of the main wiki according to the user scope of the wiki, as when they're loaded by the analysis.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = WordsQueryCacheWarmer.class)
+@Singleton
+public class WordsQueryCacheWarmer implements Disposable
+{
+    // Users and the values of their queries: only the users who have the XWikiUsers object are considered, as in
+    // DefaultUsersWordsQueriesManager.
+    private static final String QUERIES_STATEMENT = "select obj.name, prop.value "
+        + "from BaseObject as obj, StringProperty as prop, BaseObject as userObj "
+        + "where obj.className = :queryClass and prop.id.id = obj.id and prop.id.name = :queryField "
+        + "and userObj.name = obj.name and userObj.className = :userClass";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private UserReferenceResolver<String> userReferenceResolver;
+
+    @Inject
+    private WordsQueryCache wordsQueryCache;
+
+    @Inject
+    private UserWikisResolver userWikisResolver;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Logger logger;
+
+    private ExecutorService warmUpExecutor;
+
+    private volatile CountDownLatch warmUpLatch = new CountDownLatch(0);
+
+    /**
+     * Start loading the cache in background. Nothing is done if the cache is already being loaded.
+     */
+    public synchronized void startWarmUp()
+    {
+        if (this.warmUpLatch.getCount() == 0) {
+            if (this.warmUpExecutor == null) {
+                this.warmUpExecutor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                    .namingPattern("Words notification queries cache warm-up")
+                    .daemon(true)
+                    .build());
+            }
+            this.warmUpLatch = new CountDownLatch(1);
+            this.warmUpExecutor.execute(this::warmUp);
+        }
+    }
+
+    /**
+     * Wait for the end of the loading of the cache, if it's being loaded.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void awaitWarmUp() throws InterruptedException
+    {
+        this.warmUpLatch.await();
+    }
+
+    @Override
+    public synchronized void dispose() throws ComponentLifecycleException
+    {
+        if (this.warmUpExecutor != null) {
+            this.warmUpExecutor.shutdownNow();
+        }
+    }
+
+    private void warmUp()
+    {
+        long startTime = System.currentTimeMillis();
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                // The values loaded before a change of the queries of a user are not recorded: they'll be loaded with
+                // the change when they're needed.
+                long loadGeneration = this.wordsQueryCache.getGeneration();
+                // The users following each query of a wiki might include the users of the main wiki, depending on
+                // its user scope, so all the wikis are loaded before recording them.
+                Map<WikiReference, Map<String, Set<UserReference>>> usersPerQueryPerWiki = new HashMap<>();
+                for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+                    WikiReference wikiReference = new WikiReference(wikiId);
+                    usersPerQueryPerWiki.put(wikiReference, this.warmUp(wikiReference, loadGeneration));
+                }
+                for (WikiReference wikiReference : usersPerQueryPerWiki.keySet()) {
+                    this.setUsersPerQuery(wikiReference, usersPerQueryPerWiki, loadGeneration);
+                }
+            } finally {
+                this.execution.removeContext();
+            }
+            this.logger.debug("Words queries cache loaded in [{}] ms.", System.currentTimeMillis() - startTime);
+        } catch (ExecutionContextException | WikiManagerException | QueryException | WordsAnalysisException e) {
+            this.logger.warn("Failed to load the words queries cache. Root cause: [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            this.warmUpLatch.countDown();
+        }
+    }
+
+    private Map<String, Set<UserReference>> warmUp(WikiReference wikiReference, long loadGeneration)
+        throws QueryException
+    {
+        List<Object[]> rows = this.queryManager.createQuery(QUERIES_STATEMENT, Query.HQL)
+            .setWiki(wikiReference.getName())
+            .bindValue("queryClass",
+                this.entityReferenceSerializer.serialize(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .bindValue("queryField", WordsQueryXClassInitializer.QUERY_FIELD)
+            .bindValue("userClass",
+                this.entityReferenceSerializer.serialize(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .execute();
+
+        Map<UserReference, Set<WordsQuery>> queriesPerUser = new HashMap<>();
+        Map<String, Set<UserReference>> usersPerQuery = new HashMap<>();
+        for (Object[] row : rows) {
+            UserReference userReference = this.userReferenceResolver.resolve((String) row[0], wikiReference);
+            String query = Objects.toString(row[1], "");
+            queriesPerUser.computeIfAbsent(userReference, key -> new HashSet<>())
+                .add(new WordsQuery(query, userReference));
+            usersPerQuery.computeIfAbsent(query, key -> new HashSet<>()).add(userReference);
+        }
+
+        queriesPerUser.forEach((userReference, wordsQueries) ->
+            this.wordsQueryCache.setWordsQueries(userReference, wordsQueries, loadGeneration));
+        this.wordsQueryCache.setUserReferences(queriesPerUser.keySet(), wikiReference, loadGeneration);
+        return usersPerQuery;
+    }
+
+    private void setUsersPerQuery(WikiReference wikiReference,
+        Map<WikiReference, Map<String, Set<UserReference>>> usersPerQueryPerWiki, long loadGeneration)
+        throws WordsAnalysisException
+    {
+        Set<WikiReference> userWikis = this.userWikisResolver.getUserWikis(wikiReference);
+        Map<String, Set<UserReference>> usersPerQuery = new HashMap<>();
+        for (WikiReference userWiki : userWikis) {
+            usersPerQueryPerWiki.getOrDefault(userWiki, Map.of()).forEach((query, userReferences) ->
+                usersPerQuery.computeIfAbsent(query, key -> new HashSet<>()).addAll(userReferences));
+        }
+        this.wordsQueryCache.setUsersPerQuery(usersPerQuery, wikiReference, userWikis, loadGeneration);
+    }
+}
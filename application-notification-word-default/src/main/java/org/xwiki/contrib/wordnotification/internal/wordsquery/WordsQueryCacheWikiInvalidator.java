@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.RegexEntityReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Listener responsible to invalidate the users recorded by the {@link WordsQueryCache} when they might not be
+ * accurate anymore: the values of a wiki are dropped when it's deleted, and the users following each query of all the
+ * wikis are dropped when the user scope or the descriptor of some wiki changes.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component
+@Named(WordsQueryCacheWikiInvalidator.NAME)
+@Singleton
+public class WordsQueryCacheWikiInvalidator extends AbstractEventListener
+{
+    static final String NAME = "WordsQueryCacheWikiInvalidator";
+
+    private static final RegexEntityReference WIKI_USER_XCLASS =
+        BaseObjectReference.any(new LocalDocumentReference("WikiManager", "WikiUserClass").toString());
+
+    private static final RegexEntityReference WIKI_DESCRIPTOR_XCLASS =
+        BaseObjectReference.any(new LocalDocumentReference("XWiki", "XWikiServerClass").toString());
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new WikiDeletedEvent(),
+        new XObjectDeletedEvent(WIKI_USER_XCLASS),
+        new XObjectAddedEvent(WIKI_USER_XCLASS),
+        new XObjectUpdatedEvent(WIKI_USER_XCLASS),
+        new XObjectDeletedEvent(WIKI_DESCRIPTOR_XCLASS),
+        new XObjectAddedEvent(WIKI_DESCRIPTOR_XCLASS),
+        new XObjectUpdatedEvent(WIKI_DESCRIPTOR_XCLASS)
+    );
+
+    @Inject
+    private WordsQueryCache wordsQueryCache;
+
+    /**
+     * Default constructor.
+     */
+    public WordsQueryCacheWikiInvalidator()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WikiDeletedEvent) {
+            this.wordsQueryCache.invalidateWiki(new WikiReference(((WikiDeletedEvent) event).getWikiId()));
+        } else {
+            this.wordsQueryCache.invalidateUsersPerQuery();
+        }
+    }
+}
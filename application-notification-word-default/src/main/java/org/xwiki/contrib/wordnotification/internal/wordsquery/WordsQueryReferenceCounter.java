@@ -0,0 +1,279 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+/**
+ * Count the number of users who have each query, so that the stored analysis results of a query are removed as soon
+ * as its last user removes it.
+ * <p>
+ * The counts are loaded from the users' documents when they're first needed, and then kept up to date from the
+ * changes of the WordsQuery objects reported by {@link WordsQueryCacheInvalidator}. The counts are loaded in the
+ * background, so that the save reporting the first change doesn't wait for all the users to be loaded: the changes
+ * reported in the meantime are applied once they're loaded. The results are removed asynchronously, in bulk with the
+ * other queries which lost their last user in the meantime, and only by the member of the cluster where the change
+ * happened.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@Component(roles = WordsQueryReferenceCounter.class)
+@Singleton
+public class WordsQueryReferenceCounter implements Initializable, Disposable
+{
+    @Inject
+    private UsersWordsQueriesManager usersWordsQueriesManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    @Named("document")
+    private UserReferenceSerializer<DocumentReference> documentReferenceUserReferenceSerializer;
+
+    @Inject
+    private AnalysisResultStorageManager storageManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Logger logger;
+
+    // Executor loading the counts and removing the results of the queries.
+    private ExecutorService executor;
+
+    private final Object lock = new Object();
+
+    // Queries of each user indexed by the reference of the user document. Guarded by this.lock, as well as the other
+    // fields below.
+    private final Map<DocumentReference, Set<String>> userQueries = new HashMap<>();
+
+    // Number of users of each query: queries without any user are not part of the map.
+    private final Map<String, Integer> referenceCounts = new HashMap<>();
+
+    // Queries whose results are waiting to be removed.
+    private final Set<String> pendingPurges = new LinkedHashSet<>();
+
+    // Changes reported while the counts are being loaded, applied once they're loaded.
+    private final List<Runnable> pendingChanges = new ArrayList<>();
+
+    private boolean loaded;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.executor = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("Words notification query references")
+            .daemon(true)
+            .build());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Record the current queries of a user. The results of the queries the user had and which don't have any user
+     * anymore are removed if requested.
+     *
+     * @param userDocument the reference of the user document
+     * @param previousQueries the queries the user had before the change, as far as the caller knows
+     * @param queries the current queries of the user
+     * @param purge {@code true} to remove the results of the queries without any user anymore, which should only be
+     *     done by the member of the cluster where the change happened
+     */
+    public void setQueries(DocumentReference userDocument, Set<String> previousQueries, Set<String> queries,
+        boolean purge)
+    {
+        synchronized (this.lock) {
+            if (this.loaded) {
+                this.applyQueries(userDocument, previousQueries, queries, purge);
+            } else {
+                // The loaded counts might already include the change, which is fine since applying it is idempotent.
+                this.pendingChanges.add(() -> this.applyQueries(userDocument, previousQueries, queries, purge));
+                if (this.pendingChanges.size() == 1) {
+                    this.executor.execute(this::load);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param query a query
+     * @return the number of users who have the given query, as far as it's known
+     */
+    public int getReferenceCount(String query)
+    {
+        synchronized (this.lock) {
+            return this.referenceCounts.getOrDefault(query, 0);
+        }
+    }
+
+    private void applyQueries(DocumentReference userDocument, Set<String> previousQueries, Set<String> queries,
+        boolean purge)
+    {
+        Set<String> removedQueries = new HashSet<>(previousQueries);
+        Set<String> storedQueries = this.putQueries(userDocument, queries);
+        if (storedQueries != null) {
+            removedQueries.addAll(storedQueries);
+        }
+        removedQueries.removeAll(queries);
+        for (String removedQuery : removedQueries) {
+            if (purge && !this.referenceCounts.containsKey(removedQuery)) {
+                this.schedulePurge(removedQuery);
+            }
+        }
+    }
+
+    private Set<String> putQueries(DocumentReference userDocument, Set<String> queries)
+    {
+        Set<String> result;
+        if (queries.isEmpty()) {
+            result = this.userQueries.remove(userDocument);
+        } else {
+            result = this.userQueries.put(userDocument, Set.copyOf(queries));
+        }
+        if (result != null) {
+            // Returning null removes the query from the counts.
+            result.forEach(query -> this.referenceCounts.computeIfPresent(query,
+                (key, count) -> (count > 1) ? count - 1 : null));
+        }
+        queries.forEach(query -> this.referenceCounts.merge(query, 1, Integer::sum));
+        return result;
+    }
+
+    private void load()
+    {
+        // The users are loaded without holding the lock, the changes reported meanwhile being recorded as pending.
+        Map<DocumentReference, Set<String>> loadedQueries = new HashMap<>();
+        try {
+            this.executionContextManager.initialize(new ExecutionContext());
+            try {
+                for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+                    this.loadWiki(new WikiReference(wikiId), loadedQueries);
+                }
+            } finally {
+                this.execution.removeContext();
+            }
+            synchronized (this.lock) {
+                loadedQueries.forEach(this::putQueries);
+                this.loaded = true;
+                this.pendingChanges.forEach(Runnable::run);
+                this.pendingChanges.clear();
+            }
+        } catch (ExecutionContextException | WikiManagerException | WordsAnalysisException e) {
+            // The counts will be loaded again with the next change.
+            synchronized (this.lock) {
+                this.pendingChanges.clear();
+            }
+            this.logger.warn("Failed to load the users of the words queries. Root cause: [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private void loadWiki(WikiReference wikiReference, Map<DocumentReference, Set<String>> loadedQueries)
+        throws WordsAnalysisException
+    {
+        for (UserReference userReference : this.usersWordsQueriesManager
+            .getUserReferenceWithWordsQuery(wikiReference))
+        {
+            Set<String> queries = new HashSet<>();
+            for (WordsQuery wordsQuery : this.usersWordsQueriesManager.getQueries(userReference)) {
+                queries.add(wordsQuery.getQuery());
+            }
+            loadedQueries.put(this.documentReferenceUserReferenceSerializer.serialize(userReference), queries);
+        }
+    }
+
+    private void schedulePurge(String query)
+    {
+        // A single purge is waiting at a time: it removes all the pending queries.
+        boolean purgeNeeded = this.pendingPurges.isEmpty();
+        this.pendingPurges.add(query);
+        if (purgeNeeded) {
+            this.executor.execute(this::purge);
+        }
+    }
+
+    private void purge()
+    {
+        Set<String> queries = new HashSet<>();
+        synchronized (this.lock) {
+            // Queries which got a user back in the meantime are kept.
+            for (String query : this.pendingPurges) {
+                if (!this.referenceCounts.containsKey(query)) {
+                    queries.add(query);
+                }
+            }
+            this.pendingPurges.clear();
+        }
+
+        if (!queries.isEmpty()) {
+            try {
+                this.storageManager.removeAnalysisResults(queries);
+                this.logger.debug("Removed the analysis results of the queries [{}].", queries);
+            } catch (WordsAnalysisException e) {
+                this.logger.error("Error while removing the analysis results of the queries [{}]", queries, e);
+            }
+        }
+    }
+}
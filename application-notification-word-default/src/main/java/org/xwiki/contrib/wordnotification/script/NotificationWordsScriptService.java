@@ -20,6 +20,7 @@
 package org.xwiki.contrib.wordnotification.script;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -34,8 +35,15 @@ import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
 import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.BulkAnalysisManager;
+import org.xwiki.contrib.wordnotification.internal.WordsSearchTaskExecutor;
+import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultCache;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.script.service.ScriptService;
+import org.xwiki.security.authorization.AccessDeniedException;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.stability.Unstable;
 import org.xwiki.user.UserReference;
 
 import com.xpn.xwiki.XWikiContext;
@@ -61,6 +69,18 @@ public class NotificationWordsScriptService implements ScriptService
     @Inject
     private Provider<XWikiContext> contextProvider;
 
+    @Inject
+    private AnalysisResultCache analysisResultCache;
+
+    @Inject
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @Inject
+    private BulkAnalysisManager bulkAnalysisManager;
+
+    @Inject
+    private ContextualAuthorizationManager authorizationManager;
+
     /**
      * Retrieve all queries of the given user.
      * @param userReference the user for whom to get queries
@@ -115,4 +135,72 @@ public class NotificationWordsScriptService implements ScriptService
         DocumentReference documentReference = context.getDoc().getDocumentReference();
         return this.patternAnalysisHelper.getRegions(query, List.of(textToAnalyze), documentReference);
     }
+
+    /**
+     * Retrieve the statistics of the in-memory cache of analysis results.
+     *
+     * @return a map containing the number of cache hits with key {@code hits} and the number of cache misses with
+     *         key {@code misses}
+     * @since 1.2.3
+     */
+    @Unstable
+    public Map<String, Long> getAnalysisResultsCacheStatistics()
+    {
+        return Map.of(
+            "hits", this.analysisResultCache.getHitCount(),
+            "misses", this.analysisResultCache.getMissCount());
+    }
+
+    /**
+     * Retrieve the statistics of the dedicated pool executing the analysis tasks, to monitor its back-pressure.
+     *
+     * @return a map containing the number of tasks waiting in the queue with key {@code queued}, the number of
+     *         executed and failed tasks with keys {@code executed} and {@code failed}, the number of tasks added to the
+     *         task manager of the platform because the queue was full with key {@code overflowed}, and the average
+     *         time in milliseconds spent by the tasks in the queue with key {@code averageWaitTime}
+     * @since 1.2.3
+     */
+    @Unstable
+    public Map<String, Long> getTaskQueueStatistics()
+    {
+        return this.taskExecutor.getStatistics();
+    }
+
+    /**
+     * Start the bulk mode, for example before importing many documents: the saved documents are then recorded and
+     * only analyzed all together once the bulk mode is stopped with {@link #stopBulkMode()}.
+     *
+     * @throws AccessDeniedException if the current user doesn't have programming rights
+     * @since 1.2.3
+     */
+    @Unstable
+    public void startBulkMode() throws AccessDeniedException
+    {
+        this.authorizationManager.checkAccess(Right.PROGRAM);
+        this.bulkAnalysisManager.start();
+    }
+
+    /**
+     * Stop the bulk mode started with {@link #startBulkMode()}: the documents saved in the meantime are then analyzed
+     * in background.
+     *
+     * @throws AccessDeniedException if the current user doesn't have programming rights
+     * @since 1.2.3
+     */
+    @Unstable
+    public void stopBulkMode() throws AccessDeniedException
+    {
+        this.authorizationManager.checkAccess(Right.PROGRAM);
+        this.bulkAnalysisManager.stop();
+    }
+
+    /**
+     * @return {@code true} if the bulk mode has been started with {@link #startBulkMode()} and not stopped yet
+     * @since 1.2.3
+     */
+    @Unstable
+    public boolean isBulkModeStarted()
+    {
+        return this.bulkAnalysisManager.isStarted();
+    }
 }
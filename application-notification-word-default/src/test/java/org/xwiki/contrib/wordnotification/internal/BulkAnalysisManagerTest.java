@@ -0,0 +1,209 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.index.TaskConsumer;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link BulkAnalysisManager}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class BulkAnalysisManagerTest
+{
+    private static final DocumentReference DOCUMENT_REFERENCE = new DocumentReference("mywiki", "Foo", "Document");
+
+    @InjectMockComponents
+    private BulkAnalysisManager bulkAnalysisManager;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private JobContext jobContext;
+
+    @MockComponent
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @MockComponent
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @MockComponent
+    @Named(WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT)
+    private Provider<TaskConsumer> taskConsumerProvider;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @RegisterExtension
+    private LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private TaskConsumer taskConsumer;
+
+    private XWikiContext context;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.taskConsumer = mock(TaskConsumer.class);
+        when(this.taskConsumerProvider.get()).thenReturn(this.taskConsumer);
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.configuration.getBulkAnalysisChunkSize()).thenReturn(10);
+    }
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.bulkAnalysisManager.dispose();
+    }
+
+    private XWikiDocument mockDocument(long id, String version, String originalVersion)
+    {
+        XWikiDocument document = mock(XWikiDocument.class, version);
+        when(document.getDocumentReference()).thenReturn(DOCUMENT_REFERENCE);
+        when(document.getId()).thenReturn(id);
+        when(document.getVersion()).thenReturn(version);
+        if (originalVersion != null) {
+            XWikiDocument originalDocument = mock(XWikiDocument.class, originalVersion);
+            when(originalDocument.getVersion()).thenReturn(originalVersion);
+            when(document.getOriginalDocument()).thenReturn(originalDocument);
+        }
+        return document;
+    }
+
+    @Test
+    void addSaveWhenNotActive()
+    {
+        assertFalse(this.bulkAnalysisManager.isStarted());
+        assertFalse(this.bulkAnalysisManager.addSave(mockDocument(42L, "1.2", "1.1"), false));
+        verifyNoInteractions(this.jobContext);
+    }
+
+    @Test
+    void addSaveWhenStarted() throws Exception
+    {
+        this.bulkAnalysisManager.start();
+        assertTrue(this.bulkAnalysisManager.isStarted());
+
+        assertTrue(this.bulkAnalysisManager.addSave(mockDocument(42L, "1.2", "1.1"), false));
+        assertTrue(this.bulkAnalysisManager.addSave(mockDocument(42L, "1.3", "1.2"), false));
+        assertTrue(this.bulkAnalysisManager.addSave(mockDocument(43L, "1.1", null), true));
+        verifyNoInteractions(this.taskConsumer);
+
+        this.bulkAnalysisManager.stop();
+        assertFalse(this.bulkAnalysisManager.isStarted());
+
+        // Only the last version of each document is analyzed, and compared with the version preceding the first save.
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_REFERENCE, "1.3");
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_REFERENCE, "1.1");
+        verify(this.taskConsumer, never()).consume(DOCUMENT_REFERENCE, "1.2");
+        verify(this.context, timeout(5000).atLeastOnce()).setWikiId("mywiki");
+
+        ArgumentCaptor<CoalescedSaves> savesCaptor = ArgumentCaptor.forClass(CoalescedSaves.class);
+        verify(this.saveCoalescer).addCoalescedSaves(eq(42L), eq("1.3"), savesCaptor.capture());
+        assertEquals("1.1", savesCaptor.getValue().getPreviousVersion());
+        assertEquals(2, savesCaptor.getValue().getSaveCount());
+        verify(this.saveCoalescer, never()).addCoalescedSaves(eq(43L), any(), any());
+    }
+
+    @Test
+    void addSaveFromJob() throws Exception
+    {
+        Job job = mock(Job.class);
+        when(this.configuration.isBulkAnalysisJobDetectionEnabled()).thenReturn(true);
+        when(this.jobContext.getCurrentJob()).thenReturn(job);
+
+        assertTrue(this.bulkAnalysisManager.addSave(mockDocument(42L, "1.2", "1.1"), false));
+
+        // Another job doesn't trigger the analysis.
+        this.bulkAnalysisManager.onJobFinished(mock(Job.class));
+        verify(this.taskConsumer, after(100).never()).consume(any(), any());
+
+        this.bulkAnalysisManager.onJobFinished(job);
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_REFERENCE, "1.2");
+    }
+
+    @Test
+    void analyzeWithFailingDocument() throws Exception
+    {
+        this.bulkAnalysisManager.start();
+        this.bulkAnalysisManager.addSave(mockDocument(42L, "1.2", "1.1"), false);
+        this.bulkAnalysisManager.addSave(mockDocument(43L, "2.1", "2.0"), false);
+        doThrow(new IllegalStateException("error")).when(this.taskConsumer).consume(DOCUMENT_REFERENCE, "1.2");
+
+        this.bulkAnalysisManager.stop();
+
+        // The failure doesn't prevent the next documents of the chunk from being analyzed.
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_REFERENCE, "2.1");
+        verify(this.taskExecutor, never()).addTask(any(), anyLong(), any(), anyBoolean());
+        assertEquals("Failed to analyze document [mywiki:Foo.Document] on version [1.2]. "
+            + "Root cause: [IllegalStateException: error]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void disposeGivesBackRecordedSaves() throws Exception
+    {
+        this.bulkAnalysisManager.start();
+        this.bulkAnalysisManager.addSave(mockDocument(42L, "1.2", "1.1"), false);
+
+        this.bulkAnalysisManager.dispose();
+        verify(this.taskExecutor).addTask(DOCUMENT_REFERENCE, 42L, "1.2", false);
+        verify(this.taskConsumer, never()).consume(any(), any());
+        verify(this.saveCoalescer, never()).addCoalescedSaves(anyLong(), any(), any());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DocumentAnalysisExecutor}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DocumentAnalysisExecutorTest
+{
+    @InjectMockComponents
+    private DocumentAnalysisExecutor analysisExecutor;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private Execution execution;
+
+    @MockComponent
+    private ExecutionContextManager executionContextManager;
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.analysisExecutor.dispose();
+    }
+
+    @Test
+    void invokeAllSequentially() throws Exception
+    {
+        when(this.configuration.getAnalysisThreads()).thenReturn(1);
+        this.analysisExecutor.initialize();
+        assertFalse(this.analysisExecutor.isConcurrent());
+
+        Thread callingThread = Thread.currentThread();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            tasks.add(() -> {
+                assertSame(callingThread, Thread.currentThread());
+                return value;
+            });
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4), this.analysisExecutor.invokeAll(tasks));
+    }
+
+    @Test
+    void invokeAllConcurrently() throws Exception
+    {
+        when(this.configuration.getAnalysisThreads()).thenReturn(4);
+        when(this.configuration.getAnalysisMaxConcurrencyPerTask()).thenReturn(2);
+        ExecutionContext executionContext = new ExecutionContext();
+        ExecutionContext clonedContext = new ExecutionContext();
+        when(this.execution.getContext()).thenReturn(executionContext);
+        when(this.executionContextManager.clone(executionContext)).thenReturn(clonedContext);
+        this.analysisExecutor.initialize();
+        assertTrue(this.analysisExecutor.isConcurrent());
+
+        Thread callingThread = Thread.currentThread();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int value = i;
+            tasks.add(() -> {
+                assertNotEquals(callingThread, Thread.currentThread());
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                // The first tasks are the slowest ones so that they complete in a different order.
+                Thread.sleep(10L * (8 - value));
+                running.decrementAndGet();
+                return value;
+            });
+        }
+
+        // The results are in the order of the tasks whatever their order of completion.
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), this.analysisExecutor.invokeAll(tasks));
+        assertTrue(maxRunning.get() <= 2);
+        verify(this.execution, times(8)).setContext(clonedContext);
+        verify(this.execution, times(8)).removeContext();
+    }
+
+    @Test
+    void invokeAllWithFailingTask() throws InitializationException
+    {
+        when(this.configuration.getAnalysisThreads()).thenReturn(2);
+        this.analysisExecutor.initialize();
+
+        IllegalStateException error = new IllegalStateException("error");
+        List<Callable<Integer>> tasks = List.of(() -> 1, () -> {
+            throw error;
+        });
+
+        ExecutionException exception =
+            assertThrows(ExecutionException.class, () -> this.analysisExecutor.invokeAll(tasks));
+        assertSame(error, exception.getCause());
+    }
+}
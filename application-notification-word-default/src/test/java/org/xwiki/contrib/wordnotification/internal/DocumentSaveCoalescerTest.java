@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DocumentSaveCoalescer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DocumentSaveCoalescerTest
+{
+    private static final DocumentReference DOCUMENT_REFERENCE = new DocumentReference("mywiki", "Foo", "Document");
+
+    @InjectMockComponents
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @MockComponent
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.saveCoalescer.dispose();
+    }
+
+    private XWikiDocument mockDocument(long id, String version, String originalVersion)
+    {
+        XWikiDocument document = mock(XWikiDocument.class, version);
+        when(document.getDocumentReference()).thenReturn(DOCUMENT_REFERENCE);
+        when(document.getId()).thenReturn(id);
+        when(document.getVersion()).thenReturn(version);
+        if (originalVersion != null) {
+            XWikiDocument originalDocument = mock(XWikiDocument.class, originalVersion);
+            when(originalDocument.getVersion()).thenReturn(originalVersion);
+            when(document.getOriginalDocument()).thenReturn(originalDocument);
+        }
+        return document;
+    }
+
+    @Test
+    void addSaveWithoutCoalescing() throws InitializationException
+    {
+        when(this.configuration.getSaveCoalescingWindow()).thenReturn(0L);
+        this.saveCoalescer.initialize();
+
+        this.saveCoalescer.addSave(mockDocument(42L, "1.2", "1.1"), false);
+        this.saveCoalescer.addSave(mockDocument(42L, "1.3", "1.2"), false);
+
+        verify(this.taskExecutor).addTask(DOCUMENT_REFERENCE, 42L, "1.2", false);
+        verify(this.taskExecutor).addTask(DOCUMENT_REFERENCE, 42L, "1.3", false);
+        assertTrue(this.saveCoalescer.removeCoalescedSaves(42L, "1.3").isEmpty());
+    }
+
+    @Test
+    void addSaveWithCoalescing() throws InitializationException
+    {
+        when(this.configuration.getSaveCoalescingWindow()).thenReturn(50L);
+        this.saveCoalescer.initialize();
+
+        this.saveCoalescer.addSave(mockDocument(42L, "1.2", "1.1"), false);
+        this.saveCoalescer.addSave(mockDocument(42L, "1.3", "1.2"), false);
+        this.saveCoalescer.addSave(mockDocument(42L, "1.4", "1.3"), false);
+        this.saveCoalescer.addSave(mockDocument(43L, "2.1", "1.1"), false);
+
+        verify(this.taskExecutor, timeout(5000)).addTask(DOCUMENT_REFERENCE, 42L, "1.4", false);
+        verify(this.taskExecutor, timeout(5000)).addTask(DOCUMENT_REFERENCE, 43L, "2.1", false);
+        verify(this.taskExecutor, never()).addTask(any(), anyLong(), eq("1.2"), anyBoolean());
+        verify(this.taskExecutor, never()).addTask(any(), anyLong(), eq("1.3"), anyBoolean());
+
+        // The last version should be compared with the version preceding the first save.
+        Optional<CoalescedSaves> coalescedSaves = this.saveCoalescer.removeCoalescedSaves(42L, "1.4");
+        assertTrue(coalescedSaves.isPresent());
+        assertEquals("1.1", coalescedSaves.get().getPreviousVersion());
+        assertEquals(3, coalescedSaves.get().getSaveCount());
+        assertTrue(this.saveCoalescer.removeCoalescedSaves(42L, "1.4").isEmpty());
+
+        // A single save is not coalesced.
+        assertTrue(this.saveCoalescer.removeCoalescedSaves(43L, "2.1").isEmpty());
+    }
+
+    @Test
+    void addSaveAfterCreation() throws Exception
+    {
+        when(this.configuration.getSaveCoalescingWindow()).thenReturn(60000L);
+        this.saveCoalescer.initialize();
+
+        this.saveCoalescer.addSave(mockDocument(42L, "1.1", null), true);
+        this.saveCoalescer.addSave(mockDocument(42L, "1.2", "1.1"), false);
+        verify(this.taskExecutor, never()).addTask(any(), anyLong(), any(), anyBoolean());
+
+        // The pending saves are not lost when the component is disposed.
+        this.saveCoalescer.dispose();
+        verify(this.taskExecutor).addTask(DOCUMENT_REFERENCE, 42L, "1.2", true);
+
+        // The document didn't exist before the first save.
+        Optional<CoalescedSaves> coalescedSaves = this.saveCoalescer.removeCoalescedSaves(42L, "1.2");
+        assertTrue(coalescedSaves.isPresent());
+        assertNull(coalescedSaves.get().getPreviousVersion());
+    }
+
+    @Test
+    void addSaveFromOtherMember() throws Exception
+    {
+        when(this.configuration.getSaveCoalescingWindow()).thenReturn(60000L);
+        this.saveCoalescer.initialize();
+
+        // The saves handed over by another member are coalesced with the local ones.
+        this.saveCoalescer.addSave(DOCUMENT_REFERENCE, 42L, "1.2", "1.1", false);
+        this.saveCoalescer.addSave(mockDocument(42L, "1.3", "1.2"), false);
+
+        this.saveCoalescer.dispose();
+        verify(this.taskExecutor).addTask(DOCUMENT_REFERENCE, 42L, "1.3", false);
+
+        Optional<CoalescedSaves> coalescedSaves = this.saveCoalescer.removeCoalescedSaves(42L, "1.3");
+        assertTrue(coalescedSaves.isPresent());
+        assertEquals("1.1", coalescedSaves.get().getPreviousVersion());
+        assertEquals(2, coalescedSaves.get().getSaveCount());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ViewRightsCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ViewRightsCacheTest
+{
+    @InjectMockComponents
+    private ViewRightsCache viewRightsCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private UserReferenceSerializer<String> userReferenceSerializer;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    private Cache<Boolean> cache;
+
+    private XWikiContext context;
+
+    private DocumentReference documentReference;
+
+    private XWikiDocument document;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.cache = mock(Cache.class);
+        when(this.cacheManager.<Boolean>createNewCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+        when(this.configuration.getViewRightsCacheSize()).thenReturn(10);
+        this.viewRightsCache.initialize();
+
+        this.context = mock(XWikiContext.class);
+        XWiki wiki = mock(XWiki.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWiki()).thenReturn(wiki);
+        this.documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        this.document = mock(XWikiDocument.class);
+        when(wiki.getDocument(this.documentReference, this.context)).thenReturn(this.document);
+        when(this.entityReferenceSerializer.serialize(this.documentReference.getLastSpaceReference()))
+            .thenReturn("xwiki:Foo");
+        when(this.entityReferenceSerializer.serialize(this.documentReference)).thenReturn("xwiki:Foo.Bar");
+    }
+
+    @Test
+    void getScope()
+    {
+        assertEquals("SPACE|xwiki:Foo", this.viewRightsCache.getScope(this.documentReference));
+
+        when(this.document.getXObjects(ViewRightsCache.RIGHTS_XCLASS)).thenReturn(List.of(mock(BaseObject.class)));
+        assertEquals("DOCUMENT|xwiki:Foo.Bar", this.viewRightsCache.getScope(this.documentReference));
+    }
+
+    @Test
+    void getAndSet()
+    {
+        UserReference userReference = mock(UserReference.class);
+        when(this.userReferenceSerializer.serialize(userReference)).thenReturn("xwiki:XWiki.User");
+
+        assertEquals(Optional.empty(), this.viewRightsCache.get(userReference, "SPACE|xwiki:Foo"));
+
+        this.viewRightsCache.set(userReference, "SPACE|xwiki:Foo", true, this.viewRightsCache.getGeneration());
+        verify(this.cache).set("xwiki:XWiki.User|SPACE|xwiki:Foo", true);
+
+        when(this.cache.get("xwiki:XWiki.User|SPACE|xwiki:Foo")).thenReturn(true);
+        assertEquals(Optional.of(true), this.viewRightsCache.get(userReference, "SPACE|xwiki:Foo"));
+
+        this.viewRightsCache.invalidateAll();
+        verify(this.cache).removeAll();
+    }
+
+    @Test
+    void setDecisionCheckedBeforeInvalidation()
+    {
+        UserReference userReference = mock(UserReference.class);
+        when(this.userReferenceSerializer.serialize(userReference)).thenReturn("xwiki:XWiki.User");
+
+        long checkGeneration = this.viewRightsCache.getGeneration();
+        this.viewRightsCache.invalidateAll();
+        this.viewRightsCache.set(userReference, "SPACE|xwiki:Foo", true, checkGeneration);
+        verify(this.cache, never()).set(any(), any());
+
+        this.viewRightsCache.set(userReference, "SPACE|xwiki:Foo", false, this.viewRightsCache.getGeneration());
+        verify(this.cache).set("xwiki:XWiki.User|SPACE|xwiki:Foo", false);
+    }
+}
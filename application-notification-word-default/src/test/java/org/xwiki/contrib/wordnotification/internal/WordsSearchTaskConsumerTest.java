@@ -19,25 +19,37 @@
  */
 package org.xwiki.contrib.wordnotification.internal;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import javax.inject.Named;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
 import org.xwiki.contrib.wordnotification.MentionedWordsEvent;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.RemovedWordsEvent;
 import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
 import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
 import org.xwiki.contrib.wordnotification.WordsMentionAnalyzer;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.contrib.wordnotification.WordsQuery;
 import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultStorageManager;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.UserWikisResolver;
+import org.xwiki.contrib.wordnotification.internal.wordsquery.WordsQueryCache;
 import org.xwiki.index.IndexException;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentVersionReference;
@@ -58,6 +70,8 @@ import com.xpn.xwiki.doc.XWikiDocument;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -65,6 +79,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -102,6 +117,41 @@ class WordsSearchTaskConsumerTest
     @MockComponent
     private DocumentRevisionProvider documentRevisionProvider;
 
+    @MockComponent
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
+    @MockComponent
+    private DocumentAnalysisExecutor analysisExecutor;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private DocumentSaveCoalescer saveCoalescer;
+
+    @MockComponent
+    private ViewRightsCache viewRightsCache;
+
+    @MockComponent
+    private WordsQueryCache wordsQueryCache;
+
+    @MockComponent
+    private UserWikisResolver userWikisResolver;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        // Execute the analyses sequentially.
+        when(this.analysisExecutor.invokeAll(any())).then(invocationOnMock -> {
+            List<Callable<?>> tasks = invocationOnMock.getArgument(0);
+            List<Object> results = new ArrayList<>();
+            for (Callable<?> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        });
+    }
+
     @Test
     void consume()
         throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
@@ -138,66 +188,67 @@ class WordsSearchTaskConsumerTest
         WordsMentionAnalyzer analyzer1 = mock(WordsMentionAnalyzer.class, "analyzer1");
         WordsMentionAnalyzer analyzer2 = mock(WordsMentionAnalyzer.class, "analyzer2");
         WordsMentionAnalyzer analyzer3 = mock(WordsMentionAnalyzer.class, "analyzer3");
-        when(this.contextComponentManager.getInstanceList(WordsMentionAnalyzer.class))
-            .thenReturn(List.of(analyzer1, analyzer2, analyzer3));
-
-        WordsQuery wordsQuery1User1 = mock(WordsQuery.class, "wordsQuery1User1");
-        WordsQuery wordsQuery2User1 = mock(WordsQuery.class, "wordsQuery2User1");
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer1", analyzer1, "analyzer2", analyzer2, "analyzer3", analyzer3));
 
+        WordsQuery sharedQuery1User1 = new WordsQuery("query1User1", null);
+        WordsQuery sharedQuery2User1 = new WordsQuery("query2User1", null);
+        WordsQuery sharedQuery1User3 = new WordsQuery("query1User3", null);
+        WordsQuery sharedQuery2User3 = new WordsQuery("query2User3", null);
         // This one is "shared" between user1 and 3
-        WordsQuery wordsQuery3 = mock(WordsQuery.class, "wordsQuery3");
-        when(this.usersWordsQueriesManager.getQueries(user1))
-            .thenReturn(Set.of(wordsQuery1User1, wordsQuery2User1, wordsQuery3));
-
-        WordsQuery wordsQuery1User3 = mock(WordsQuery.class, "wordsQuery1User3");
-        WordsQuery wordsQuery2User3 = mock(WordsQuery.class, "wordsQuery2User3");
-        when(this.usersWordsQueriesManager.getQueries(user3))
-            .thenReturn(Set.of(wordsQuery1User3, wordsQuery2User3, wordsQuery3));
-
-        when(this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery1User1))
-            .thenReturn(Optional.empty());
-        when(this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery2User1))
-            .thenReturn(Optional.empty());
-        when(this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery1User3))
-            .thenReturn(Optional.empty());
-        when(this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery2User3))
-            .thenReturn(Optional.empty());
-
-        WordsAnalysisResults wordsAnalysisResults3 = mock(WordsAnalysisResults.class);
-        when(this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery3))
-            .thenReturn(Optional.of(wordsAnalysisResults3));
+        WordsQuery sharedQuery3 = new WordsQuery("query3", null);
+
+        when(this.usersWordsQueriesManager.getQueries(user1)).thenReturn(Set.of(
+            new WordsQuery("query1User1", user1),
+            new WordsQuery("query2User1", user1),
+            new WordsQuery("query3", user1)));
+        when(this.usersWordsQueriesManager.getQueries(user3)).thenReturn(Set.of(
+            new WordsQuery("query1User3", user3),
+            new WordsQuery("query2User3", user3),
+            new WordsQuery("query3", user3)));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.multiPatternAnalysisHelper.compile(Set.of("query1User1", "query2User1", "query1User3",
+            "query2User3", "query3"))).thenReturn(compiledWordsQueries);
+
+        Set<WordsQuery> sharedQueries =
+            Set.of(sharedQuery1User1, sharedQuery2User1, sharedQuery1User3, sharedQuery2User3, sharedQuery3);
+        WordsAnalysisResults wordsAnalysisResults3 =
+            new WordsAnalysisResults(documentVersionReference, sharedQuery3, new Date());
+        when(this.storageManager.loadAnalysisResults(documentVersionReference, sharedQueries))
+            .thenReturn(Map.of(sharedQuery3, wordsAnalysisResults3));
 
         PartAnalysisResult wordsQuery1User1Analyser1 = mock(PartAnalysisResult.class, "wordsQuery1User1Analyser1");
         PartAnalysisResult wordsQuery1User1Analyser2 = mock(PartAnalysisResult.class, "wordsQuery1User1Analyser2");
         PartAnalysisResult wordsQuery1User1Analyser3 = mock(PartAnalysisResult.class, "wordsQuery1User1Analyser3");
 
-        when(analyzer1.analyze(document, wordsQuery1User1)).thenReturn(wordsQuery1User1Analyser1);
-        when(analyzer2.analyze(document, wordsQuery1User1)).thenReturn(wordsQuery1User1Analyser2);
-        when(analyzer3.analyze(document, wordsQuery1User1)).thenReturn(wordsQuery1User1Analyser3);
-
         PartAnalysisResult wordsQuery2User1Analyser1 = mock(PartAnalysisResult.class, "wordsQuery2User1Analyser1");
         PartAnalysisResult wordsQuery2User1Analyser2 = mock(PartAnalysisResult.class, "wordsQuery2User1Analyser2");
         PartAnalysisResult wordsQuery2User1Analyser3 = mock(PartAnalysisResult.class, "wordsQuery2User1Analyser3");
 
-        when(analyzer1.analyze(document, wordsQuery2User1)).thenReturn(wordsQuery2User1Analyser1);
-        when(analyzer2.analyze(document, wordsQuery2User1)).thenReturn(wordsQuery2User1Analyser2);
-        when(analyzer3.analyze(document, wordsQuery2User1)).thenReturn(wordsQuery2User1Analyser3);
-
         PartAnalysisResult wordsQuery1User3Analyser1 = mock(PartAnalysisResult.class, "wordsQuery1User3Analyser1");
         PartAnalysisResult wordsQuery1User3Analyser2 = mock(PartAnalysisResult.class, "wordsQuery1User3Analyser2");
         PartAnalysisResult wordsQuery1User3Analyser3 = mock(PartAnalysisResult.class, "wordsQuery1User3Analyser3");
 
-        when(analyzer1.analyze(document, wordsQuery1User3)).thenReturn(wordsQuery1User3Analyser1);
-        when(analyzer2.analyze(document, wordsQuery1User3)).thenReturn(wordsQuery1User3Analyser2);
-        when(analyzer3.analyze(document, wordsQuery1User3)).thenReturn(wordsQuery1User3Analyser3);
-
         PartAnalysisResult wordsQuery2User3Analyser1 = mock(PartAnalysisResult.class, "wordsQuery2User3Analyser1");
         PartAnalysisResult wordsQuery2User3Analyser2 = mock(PartAnalysisResult.class, "wordsQuery2User3Analyser2");
         PartAnalysisResult wordsQuery2User3Analyser3 = mock(PartAnalysisResult.class, "wordsQuery2User3Analyser3");
 
-        when(analyzer1.analyze(document, wordsQuery2User3)).thenReturn(wordsQuery2User3Analyser1);
-        when(analyzer2.analyze(document, wordsQuery2User3)).thenReturn(wordsQuery2User3Analyser2);
-        when(analyzer3.analyze(document, wordsQuery2User3)).thenReturn(wordsQuery2User3Analyser3);
+        when(analyzer1.analyze(document, compiledWordsQueries)).thenReturn(Map.of(
+            "query1User1", wordsQuery1User1Analyser1,
+            "query2User1", wordsQuery2User1Analyser1,
+            "query1User3", wordsQuery1User3Analyser1,
+            "query2User3", wordsQuery2User3Analyser1));
+        when(analyzer2.analyze(document, compiledWordsQueries)).thenReturn(Map.of(
+            "query1User1", wordsQuery1User1Analyser2,
+            "query2User1", wordsQuery2User1Analyser2,
+            "query1User3", wordsQuery1User3Analyser2,
+            "query2User3", wordsQuery2User3Analyser2));
+        when(analyzer3.analyze(document, compiledWordsQueries)).thenReturn(Map.of(
+            "query1User1", wordsQuery1User1Analyser3,
+            "query2User1", wordsQuery2User1Analyser3,
+            "query1User3", wordsQuery1User3Analyser3,
+            "query2User3", wordsQuery2User3Analyser3));
 
         doAnswer(invocationOnMock -> {
             WordsAnalysisResults result = invocationOnMock.getArgument(0);
@@ -206,16 +257,16 @@ class WordsSearchTaskConsumerTest
 
             WordsQuery query = result.getQuery();
 
-            if (query == wordsQuery1User1) {
+            if (sharedQuery1User1.equals(query)) {
                 assertEquals(List.of(wordsQuery1User1Analyser1, wordsQuery1User1Analyser2, wordsQuery1User1Analyser3),
                     result.getResults());
-            } else if (query == wordsQuery1User3) {
+            } else if (sharedQuery1User3.equals(query)) {
                 assertEquals(List.of(wordsQuery1User3Analyser1, wordsQuery1User3Analyser2, wordsQuery1User3Analyser3),
                     result.getResults());
-            } else if (query == wordsQuery2User1) {
+            } else if (sharedQuery2User1.equals(query)) {
                 assertEquals(List.of(wordsQuery2User1Analyser1, wordsQuery2User1Analyser2, wordsQuery2User1Analyser3),
                     result.getResults());
-            } else if (query == wordsQuery2User3) {
+            } else if (sharedQuery2User3.equals(query)) {
                 assertEquals(List.of(wordsQuery2User3Analyser1, wordsQuery2User3Analyser2, wordsQuery2User3Analyser3),
                     result.getResults());
             } else {
@@ -227,7 +278,13 @@ class WordsSearchTaskConsumerTest
 
         this.searchTaskConsumer.consume(documentReference, version);
         verify(this.storageManager, times(4)).saveAnalysisResults(any());
-        verify(this.storageManager, times(6)).loadAnalysisResults(eq(documentVersionReference), any());
+        // All results are loaded at once.
+        verify(this.storageManager).loadAnalysisResults(eq(documentVersionReference), anyCollection());
+        verify(this.storageManager, never()).loadAnalysisResults(any(), any(WordsQuery.class));
+        // Each analyzer performs a single analysis for all queries.
+        verify(analyzer1).analyze(document, compiledWordsQueries);
+        verify(analyzer2).analyze(document, compiledWordsQueries);
+        verify(analyzer3).analyze(document, compiledWordsQueries);
 
         // right now result returns 0 occurrences so nothing should happen.
         verifyNoInteractions(this.observationManager);
@@ -241,7 +298,7 @@ class WordsSearchTaskConsumerTest
             WordsAnalysisResults result = invocationOnMock.getArgument(2);
             assertEquals(List.of(wordsQuery1User1Analyser1, wordsQuery1User1Analyser2, wordsQuery1User1Analyser3),
                 result.getResults());
-            assertEquals(wordsQuery1User1, result.getQuery());
+            assertEquals(new WordsQuery("query1User1", user1), result.getQuery());
             return null;
         }).when(this.observationManager).notify(any(), any(), any(WordsAnalysisResults.class));
 
@@ -274,25 +331,35 @@ class WordsSearchTaskConsumerTest
         DocumentVersionReference documentPreviousVersionReference =
             new DocumentVersionReference(documentReference, previousVersion);
 
-        WordsAnalysisResults previousResultQuery1User1 = mock(WordsAnalysisResults.class, "previousQuery1User1");
-        WordsAnalysisResults previousResultQuery2User1 = mock(WordsAnalysisResults.class, "previousQuery2User1");
-
-        when(this.storageManager.loadAnalysisResults(documentPreviousVersionReference, wordsQuery1User1))
-            .thenReturn(Optional.of(previousResultQuery1User1));
-        when(this.storageManager.loadAnalysisResults(documentPreviousVersionReference, wordsQuery2User1))
-            .thenReturn(Optional.of(previousResultQuery2User1));
-
-        WordsAnalysisResults previousResultQuery1User3 = mock(WordsAnalysisResults.class, "previousQuery1User3");
-        WordsAnalysisResults previousResultQuery2User3 = mock(WordsAnalysisResults.class, "previousQuery2User3");
-
-        when(this.storageManager.loadAnalysisResults(documentPreviousVersionReference, wordsQuery1User3))
-            .thenReturn(Optional.of(previousResultQuery1User3));
-        when(this.storageManager.loadAnalysisResults(documentPreviousVersionReference, wordsQuery2User3))
-            .thenReturn(Optional.of(previousResultQuery2User3));
+        PartAnalysisResult previousPartQuery1User1 = mock(PartAnalysisResult.class, "previousPartQuery1User1");
+        PartAnalysisResult previousPartQuery2User1 = mock(PartAnalysisResult.class, "previousPartQuery2User1");
+        WordsAnalysisResults previousResultQuery1User1 =
+            new WordsAnalysisResults(documentPreviousVersionReference, sharedQuery1User1, new Date());
+        previousResultQuery1User1.addResult(previousPartQuery1User1);
+        WordsAnalysisResults previousResultQuery2User1 =
+            new WordsAnalysisResults(documentPreviousVersionReference, sharedQuery2User1, new Date());
+        previousResultQuery2User1.addResult(previousPartQuery2User1);
+
+        WordsAnalysisResults previousResultQuery1User3 =
+            new WordsAnalysisResults(documentPreviousVersionReference, sharedQuery1User3, new Date());
+        WordsAnalysisResults previousResultQuery2User3 =
+            new WordsAnalysisResults(documentPreviousVersionReference, sharedQuery2User3, new Date());
+
+        // There's no previous results for query3, and the previous document cannot be loaded.
+        Map<WordsQuery, WordsAnalysisResults> previousResults = Map.of(
+            sharedQuery1User1, previousResultQuery1User1,
+            sharedQuery2User1, previousResultQuery2User1,
+            sharedQuery1User3, previousResultQuery1User3,
+            sharedQuery2User3, previousResultQuery2User3);
+        when(this.storageManager.loadOccurrenceSummary(documentPreviousVersionReference, sharedQueries))
+            .then(invocationOnMock -> previousResults.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getOccurrences())));
+        when(this.storageManager.loadAnalysisResults(eq(documentPreviousVersionReference), anyCollection()))
+            .thenReturn(previousResults);
 
         // Actual result is of 6 occurrences, so it's now less than previous result: we trigger a removed word event
-        when(previousResultQuery1User1.getOccurrences()).thenReturn(8L);
-        when(previousResultQuery2User1.getOccurrences()).thenReturn(8L);
+        when(previousPartQuery1User1.getOccurrences()).thenReturn(8L);
+        when(previousPartQuery2User1.getOccurrences()).thenReturn(8L);
 
         this.searchTaskConsumer.consume(documentReference, version);
         verify(this.observationManager, times(3)).notify(
@@ -304,15 +371,17 @@ class WordsSearchTaskConsumerTest
             eq(documentVersionReference),
             any());
 
-        when(previousResultQuery1User1.getOccurrences()).thenReturn(4L);
+        when(previousPartQuery1User1.getOccurrences()).thenReturn(4L);
         doAnswer(invocationOnMock -> {
             Pair<WordsAnalysisResults, WordsAnalysisResults> data = invocationOnMock.getArgument(2);
             WordsAnalysisResults previousResult = data.getLeft();
             WordsAnalysisResults newResult = data.getRight();
             assertEquals(List.of(wordsQuery1User1Analyser1, wordsQuery1User1Analyser2, wordsQuery1User1Analyser3),
                 newResult.getResults());
-            assertEquals(wordsQuery1User1, newResult.getQuery());
-            assertSame(previousResultQuery1User1, previousResult);
+            assertEquals(new WordsQuery("query1User1", user1), newResult.getQuery());
+            assertEquals(new WordsQuery("query1User1", user1), previousResult.getQuery());
+            assertEquals(documentPreviousVersionReference, previousResult.getReference());
+            assertEquals(List.of(previousPartQuery1User1), previousResult.getResults());
             return null;
         }).when(this.observationManager).notify(any(MentionedWordsEvent.class), any(), any(Pair.class));
 
@@ -322,8 +391,9 @@ class WordsSearchTaskConsumerTest
             WordsAnalysisResults newResult = data.getRight();
             assertEquals(List.of(wordsQuery2User1Analyser1, wordsQuery2User1Analyser2, wordsQuery2User1Analyser3),
                 newResult.getResults());
-            assertEquals(wordsQuery2User1, newResult.getQuery());
-            assertSame(previousResultQuery2User1, previousResult);
+            assertEquals(new WordsQuery("query2User1", user1), newResult.getQuery());
+            assertEquals(new WordsQuery("query2User1", user1), previousResult.getQuery());
+            assertEquals(List.of(previousPartQuery2User1), previousResult.getResults());
             return null;
         }).when(this.observationManager).notify(any(RemovedWordsEvent.class), any(), any(Pair.class));
 
@@ -347,5 +417,518 @@ class WordsSearchTaskConsumerTest
             any(RemovedWordsEvent.class),
             eq(documentVersionReference),
             any(Pair.class));
+
+        // The complete previous results are only loaded for the queries whose number of occurrences changed.
+        verify(this.storageManager, times(2)).loadAnalysisResults(documentPreviousVersionReference,
+            Set.of(sharedQuery1User1, sharedQuery2User1));
+        verify(this.storageManager, times(2)).loadAnalysisResults(eq(documentPreviousVersionReference),
+            anyCollection());
+    }
+
+    @Test
+    void consumeWithSharedQuery()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+
+        UserReference user1 = mock(UserReference.class, "user1");
+        UserReference user2 = mock(UserReference.class, "user2");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference))
+            .thenReturn(Set.of(user1, user2));
+        WikiReference mainWikiReference = new WikiReference("xwiki");
+        when(this.userWikisResolver.getUserWikis(wikiReference)).thenReturn(Set.of(wikiReference, mainWikiReference));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+
+        when(this.usersWordsQueriesManager.getQueries(user1)).thenReturn(Set.of(new WordsQuery("xwiki", user1)));
+        when(this.usersWordsQueriesManager.getQueries(user2)).thenReturn(Set.of(new WordsQuery("xwiki", user2)));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.multiPatternAnalysisHelper.compile(Set.of("xwiki"))).thenReturn(compiledWordsQueries);
+
+        PartAnalysisResult partAnalysisResult = mock(PartAnalysisResult.class);
+        when(partAnalysisResult.getOccurrences()).thenReturn(2L);
+        when(analyzer.analyze(document, compiledWordsQueries)).thenReturn(Map.of("xwiki", partAnalysisResult));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // The users following each query are recorded for the next tasks.
+        verify(this.wordsQueryCache).setUsersPerQuery(Map.of("xwiki", Set.of(user1, user2)), wikiReference,
+            Set.of(wikiReference, mainWikiReference), 0L);
+        verify(this.wordsQueryCache).setCompiledQueries(wikiReference, Set.of("xwiki"), List.of(compiledWordsQueries));
+
+        // The query is analyzed, loaded and saved only once...
+        verify(analyzer).analyze(document, compiledWordsQueries);
+        verify(this.storageManager).loadAnalysisResults(documentVersionReference,
+            Set.of(new WordsQuery("xwiki", null)));
+        verify(this.storageManager).saveAnalysisResults(any());
+
+        // ... but each user gets its own notification.
+        ArgumentCaptor<WordsAnalysisResults> resultsCaptor = ArgumentCaptor.forClass(WordsAnalysisResults.class);
+        verify(this.observationManager, times(2)).notify(any(MentionedWordsEvent.class),
+            eq(documentVersionReference), resultsCaptor.capture());
+        assertEquals(Set.of(new WordsQuery("xwiki", user1), new WordsQuery("xwiki", user2)),
+            resultsCaptor.getAllValues().stream().map(WordsAnalysisResults::getQuery).collect(Collectors.toSet()));
+        for (WordsAnalysisResults results : resultsCaptor.getAllValues()) {
+            assertEquals(List.of(partAnalysisResult), results.getResults());
+        }
+    }
+
+    @Test
+    void consumeOnlyChecksRightsOfNotifiedUsers()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+
+        UserReference user1 = mock(UserReference.class, "user1");
+        UserReference user2 = mock(UserReference.class, "user2");
+        UserReference user3 = mock(UserReference.class, "user3");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference))
+            .thenReturn(Set.of(user1, user2, user3));
+        DocumentReference userDoc1 = mock(DocumentReference.class, "userDoc1");
+        when(this.documentReferenceUserReferenceSerializer.serialize(user1)).thenReturn(userDoc1);
+        when(this.authorizationManager.hasAccess(Right.VIEW, userDoc1, documentReference)).thenReturn(true);
+        when(this.viewRightsCache.getScope(documentReference)).thenReturn("scope");
+        when(this.viewRightsCache.get(user3, "scope")).thenReturn(Optional.of(false));
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+
+        when(this.usersWordsQueriesManager.getQueries(user1)).thenReturn(Set.of(new WordsQuery("xwiki", user1)));
+        when(this.usersWordsQueriesManager.getQueries(user2)).thenReturn(Set.of(new WordsQuery("other", user2)));
+        when(this.usersWordsQueriesManager.getQueries(user3)).thenReturn(Set.of(new WordsQuery("xwiki", user3)));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.multiPatternAnalysisHelper.compile(any())).thenReturn(compiledWordsQueries);
+
+        PartAnalysisResult matchingResult = mock(PartAnalysisResult.class, "matching");
+        when(matchingResult.getOccurrences()).thenReturn(2L);
+        PartAnalysisResult otherResult = mock(PartAnalysisResult.class, "other");
+        when(analyzer.analyze(document, compiledWordsQueries))
+            .thenReturn(Map.of("xwiki", matchingResult, "other", otherResult));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // Only the rights of the user following the matching query without cached decision are checked.
+        verify(this.authorizationManager).hasAccess(Right.VIEW, userDoc1, documentReference);
+        verifyNoMoreInteractions(this.authorizationManager);
+        verify(this.viewRightsCache).set(user1, "scope", true, 0L);
+        verify(this.viewRightsCache, never()).get(user2, "scope");
+
+        ArgumentCaptor<WordsAnalysisResults> resultsCaptor = ArgumentCaptor.forClass(WordsAnalysisResults.class);
+        verify(this.observationManager).notify(any(MentionedWordsEvent.class), eq(documentVersionReference),
+            resultsCaptor.capture());
+        assertEquals(new WordsQuery("xwiki", user1), resultsCaptor.getValue().getQuery());
+    }
+
+    @Test
+    void consumeWithCachedUsersPerQuery()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+
+        UserReference user1 = mock(UserReference.class, "user1");
+        UserReference user2 = mock(UserReference.class, "user2");
+        when(this.wordsQueryCache.getUsersPerQuery(wikiReference))
+            .thenReturn(Optional.of(Map.of("xwiki", Set.of(user1), "other", Set.of(user2))));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.multiPatternAnalysisHelper.compile(Set.of("xwiki", "other"))).thenReturn(compiledWordsQueries);
+
+        PartAnalysisResult matchingResult = mock(PartAnalysisResult.class, "matching");
+        when(matchingResult.getOccurrences()).thenReturn(1L);
+        PartAnalysisResult otherResult = mock(PartAnalysisResult.class, "other");
+        when(analyzer.analyze(document, compiledWordsQueries))
+            .thenReturn(Map.of("xwiki", matchingResult, "other", otherResult));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // The users and their queries are never loaded: only the user following the matching query is involved.
+        verifyNoInteractions(this.usersWordsQueriesManager);
+        verify(this.wordsQueryCache, never()).setUsersPerQuery(any(), any(), any(), anyLong());
+        verify(this.documentReferenceUserReferenceSerializer).serialize(user1);
+        verifyNoMoreInteractions(this.documentReferenceUserReferenceSerializer);
+
+        ArgumentCaptor<WordsAnalysisResults> resultsCaptor = ArgumentCaptor.forClass(WordsAnalysisResults.class);
+        verify(this.observationManager).notify(any(MentionedWordsEvent.class), eq(documentVersionReference),
+            resultsCaptor.capture());
+        assertEquals(new WordsQuery("xwiki", user1), resultsCaptor.getValue().getQuery());
+    }
+
+    @Test
+    void consumeWithCachedCompiledQueries()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.wordsQueryCache.getUsersPerQuery(wikiReference))
+            .thenReturn(Optional.of(Map.of("xwiki", Set.of(user))));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.wordsQueryCache.getCompiledQueries(wikiReference, Set.of("xwiki")))
+            .thenReturn(Optional.of(List.of(compiledWordsQueries)));
+
+        PartAnalysisResult matchingResult = mock(PartAnalysisResult.class);
+        when(matchingResult.getOccurrences()).thenReturn(1L);
+        when(analyzer.analyze(document, compiledWordsQueries)).thenReturn(Map.of("xwiki", matchingResult));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // The queries of the wiki are not compiled again.
+        verify(analyzer).analyze(document, compiledWordsQueries);
+        verifyNoInteractions(this.multiPatternAnalysisHelper);
+        verify(this.wordsQueryCache, never()).setCompiledQueries(any(), any(), any());
+        verify(this.observationManager).notify(any(MentionedWordsEvent.class), any(), any());
+    }
+
+    @Test
+    void consumeWithQueryBatches()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference)).thenReturn(Set.of(user));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+        when(this.usersWordsQueriesManager.getQueries(user)).thenReturn(Set.of(
+            new WordsQuery("foo", user), new WordsQuery("bar", user)));
+        when(this.configuration.getAnalysisQueryBatchSize()).thenReturn(1);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+
+        WordsMentionAnalyzer analyzer1 = mock(WordsMentionAnalyzer.class);
+        WordsMentionAnalyzer analyzer2 = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer1", analyzer1, "analyzer2", analyzer2));
+
+        CompiledWordsQueries fooQueries = mock(CompiledWordsQueries.class, "foo");
+        CompiledWordsQueries barQueries = mock(CompiledWordsQueries.class, "bar");
+        when(this.multiPatternAnalysisHelper.compile(Set.of("foo"))).thenReturn(fooQueries);
+        when(this.multiPatternAnalysisHelper.compile(Set.of("bar"))).thenReturn(barQueries);
+
+        PartAnalysisResult fooResult = new PartAnalysisResult("analyzer1");
+        fooResult.addRegions(List.of(mock(WordsMentionLocalization.class)));
+        PartAnalysisResult barResult = new PartAnalysisResult("analyzer1");
+        barResult.addRegions(List.of(mock(WordsMentionLocalization.class)));
+        when(analyzer1.analyze(document, fooQueries)).thenReturn(Map.of("foo", fooResult));
+        when(analyzer1.analyze(document, barQueries)).thenReturn(Map.of("bar", barResult));
+        // The second analyzer fails to analyze one of the batches: its results are ignored.
+        when(analyzer2.analyze(document, fooQueries)).thenReturn(Map.of("foo", new PartAnalysisResult("analyzer2")));
+        when(analyzer2.analyze(document, barQueries)).thenThrow(new WordsAnalysisException("error"));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        ArgumentCaptor<WordsAnalysisResults> resultsCaptor = ArgumentCaptor.forClass(WordsAnalysisResults.class);
+        verify(this.observationManager, times(2)).notify(any(MentionedWordsEvent.class),
+            eq(documentVersionReference), resultsCaptor.capture());
+        Map<String, List<PartAnalysisResult>> resultsPerQuery = resultsCaptor.getAllValues().stream()
+            .collect(Collectors.toMap(results -> results.getQuery().getQuery(), WordsAnalysisResults::getResults));
+        assertEquals(Map.of("foo", List.of(fooResult), "bar", List.of(barResult)), resultsPerQuery);
+    }
+
+    @Test
+    void consumeWithConcurrentAnalyses()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference)).thenReturn(Set.of(user));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+        when(this.usersWordsQueriesManager.getQueries(user)).thenReturn(Set.of(
+            new WordsQuery("foo", user), new WordsQuery("bar", user)));
+        when(this.configuration.getAnalysisQueryBatchSize()).thenReturn(1);
+        when(this.analysisExecutor.isConcurrent()).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class, "document");
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.isNew()).thenReturn(true);
+        XWikiDocument clone1 = mock(XWikiDocument.class, "clone1");
+        XWikiDocument clone2 = mock(XWikiDocument.class, "clone2");
+        when(document.clone()).thenReturn(clone1, clone2);
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+        when(this.multiPatternAnalysisHelper.compile(any())).then(invocationOnMock -> mock(CompiledWordsQueries.class));
+        when(analyzer.analyze(any(), any())).thenReturn(Map.of());
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // Each analysis which might be executed concurrently works on its own copy of the document.
+        verify(analyzer).analyze(eq(clone1), any());
+        verify(analyzer).analyze(eq(clone2), any());
+        verify(analyzer, never()).analyze(eq(document), any());
+    }
+
+    @Test
+    void consumeIncrementally()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.2";
+        String previousVersion = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+        DocumentVersionReference previousVersionReference =
+            new DocumentVersionReference(documentReference, previousVersion);
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference)).thenReturn(Set.of(user));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+        when(this.usersWordsQueriesManager.getQueries(user)).thenReturn(Set.of(
+            new WordsQuery("foo", user), new WordsQuery("bar", user)));
+        when(this.configuration.isIncrementalAnalysisEnabled()).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class, "document");
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.getPreviousVersion()).thenReturn(previousVersion);
+        XWikiDocument previousDocument = mock(XWikiDocument.class, "previousDocument");
+        when(this.documentRevisionProvider.getRevision(documentReference, previousVersion))
+            .thenReturn(previousDocument);
+
+        WordsMentionAnalyzer analyzer1 = mock(WordsMentionAnalyzer.class, "analyzer1");
+        WordsMentionAnalyzer analyzer2 = mock(WordsMentionAnalyzer.class, "analyzer2");
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer1", analyzer1, "analyzer2", analyzer2));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(compiledWordsQueries.getQueries()).thenReturn(Set.of("foo", "bar"));
+        when(this.multiPatternAnalysisHelper.compile(Set.of("foo", "bar"))).thenReturn(compiledWordsQueries);
+
+        // The second analyzer didn't produce any result for bar on the previous version.
+        WordsQuery sharedFooQuery = new WordsQuery("foo", null);
+        WordsQuery sharedBarQuery = new WordsQuery("bar", null);
+        PartAnalysisResult previousFooResult = new PartAnalysisResult("analyzer1");
+        previousFooResult.addRegion(mock(WordsMentionLocalization.class, "previousFoo"));
+        PartAnalysisResult previousBarResult = new PartAnalysisResult("analyzer1");
+        WordsAnalysisResults previousFooResults =
+            new WordsAnalysisResults(previousVersionReference, sharedFooQuery, new Date());
+        previousFooResults.addResult(previousFooResult);
+        previousFooResults.addResult(new PartAnalysisResult("analyzer2"));
+        WordsAnalysisResults previousBarResults =
+            new WordsAnalysisResults(previousVersionReference, sharedBarQuery, new Date());
+        previousBarResults.addResult(previousBarResult);
+        when(this.storageManager.loadAnalysisResults(previousVersionReference, Set.of(sharedFooQuery, sharedBarQuery)))
+            .thenReturn(Map.of(sharedFooQuery, previousFooResults, sharedBarQuery, previousBarResults));
+
+        PartAnalysisResult fooResult = new PartAnalysisResult("analyzer1");
+        fooResult.addRegions(List.of(mock(WordsMentionLocalization.class, "foo1"),
+            mock(WordsMentionLocalization.class, "foo2")));
+        when(analyzer1.analyze(document, compiledWordsQueries, previousDocument,
+            Map.of("foo", previousFooResult, "bar", previousBarResult))).thenReturn(Map.of("foo", fooResult));
+        when(analyzer2.analyze(document, compiledWordsQueries)).thenReturn(Map.of());
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // Only the first analyzer can reuse its previous results.
+        verify(analyzer1, never()).analyze(document, compiledWordsQueries);
+        verify(analyzer2, never()).analyze(any(), any(), any(), any());
+        // The previous results have already been loaded, so there's no need to load their occurrences again.
+        verify(this.storageManager, never()).loadOccurrenceSummary(any(), any());
+        verify(this.storageManager).loadAnalysisResults(eq(previousVersionReference), anyCollection());
+
+        ArgumentCaptor<Pair<WordsAnalysisResults, WordsAnalysisResults>> resultsCaptor =
+            ArgumentCaptor.forClass(Pair.class);
+        verify(this.observationManager).notify(any(MentionedWordsEvent.class), eq(documentVersionReference),
+            resultsCaptor.capture());
+        assertEquals(List.of(previousFooResult, new PartAnalysisResult("analyzer2")),
+            resultsCaptor.getValue().getLeft().getResults());
+        assertEquals(List.of(fooResult, new PartAnalysisResult("analyzer2")),
+            resultsCaptor.getValue().getRight().getResults());
+        verifyNoMoreInteractions(this.observationManager);
+    }
+
+    @Test
+    void consumeCoalescedSaves()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.4";
+        String lastAnalyzedVersion = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+        DocumentVersionReference lastAnalyzedVersionReference =
+            new DocumentVersionReference(documentReference, lastAnalyzedVersion);
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference)).thenReturn(Set.of(user));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+        when(this.usersWordsQueriesManager.getQueries(user)).thenReturn(Set.of(new WordsQuery("foo", user)));
+
+        // The versions 1.2 and 1.3 have been skipped.
+        XWikiDocument document = mock(XWikiDocument.class, "document");
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getId()).thenReturn(42L);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.getPreviousVersion()).thenReturn("1.3");
+        when(this.saveCoalescer.removeCoalescedSaves(42L, version))
+            .thenReturn(Optional.of(new CoalescedSaves(lastAnalyzedVersion, 3)));
+
+        WordsMentionAnalyzer analyzer = mock(WordsMentionAnalyzer.class);
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer", analyzer));
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(this.multiPatternAnalysisHelper.compile(Set.of("foo"))).thenReturn(compiledWordsQueries);
+
+        PartAnalysisResult fooResult = new PartAnalysisResult("analyzer");
+        fooResult.addRegion(mock(WordsMentionLocalization.class, "foo"));
+        when(analyzer.analyze(document, compiledWordsQueries)).thenReturn(Map.of("foo", fooResult));
+
+        WordsQuery sharedQuery = new WordsQuery("foo", null);
+        WordsAnalysisResults lastAnalyzedResults =
+            new WordsAnalysisResults(lastAnalyzedVersionReference, sharedQuery, new Date());
+        lastAnalyzedResults.addResult(new PartAnalysisResult("analyzer"));
+        when(this.storageManager.loadOccurrenceSummary(lastAnalyzedVersionReference, Set.of(sharedQuery)))
+            .thenReturn(Map.of(sharedQuery, 0L));
+        when(this.storageManager.loadAnalysisResults(lastAnalyzedVersionReference, Set.of(sharedQuery)))
+            .thenReturn(Map.of(sharedQuery, lastAnalyzedResults));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // The changes are computed against the last analyzed version, not against the skipped ones.
+        verify(this.storageManager, never()).loadOccurrenceSummary(
+            eq(new DocumentVersionReference(documentReference, "1.3")), any());
+        ArgumentCaptor<Pair<WordsAnalysisResults, WordsAnalysisResults>> resultsCaptor =
+            ArgumentCaptor.forClass(Pair.class);
+        verify(this.observationManager).notify(any(MentionedWordsEvent.class), eq(documentVersionReference),
+            resultsCaptor.capture());
+        assertEquals(lastAnalyzedVersionReference, resultsCaptor.getValue().getLeft().getReference());
+        assertEquals(List.of(fooResult), resultsCaptor.getValue().getRight().getResults());
+    }
+
+    @Test
+    void consumeWithUnchangedFingerprints()
+        throws WordsAnalysisException, XWikiException, ComponentLookupException, IndexException
+    {
+        DocumentReference documentReference = new DocumentReference("mywiki", "Foo", "Document");
+        String version = "1.2";
+        String previousVersion = "1.1";
+        WikiReference wikiReference = new WikiReference("mywiki");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, version);
+        DocumentVersionReference previousVersionReference =
+            new DocumentVersionReference(documentReference, previousVersion);
+
+        UserReference user = mock(UserReference.class, "user");
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference)).thenReturn(Set.of(user));
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), any(), eq(documentReference))).thenReturn(true);
+        when(this.usersWordsQueriesManager.getQueries(user)).thenReturn(Set.of(new WordsQuery("foo", user)));
+        when(this.configuration.isIncrementalAnalysisEnabled()).thenReturn(true);
+
+        XWikiDocument document = mock(XWikiDocument.class, "document");
+        when(this.documentRevisionProvider.getRevision(documentReference, version)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getVersion()).thenReturn(version);
+        when(document.getPreviousVersion()).thenReturn(previousVersion);
+
+        // Only an xobject which is not analyzed changed: the fingerprints are the same as the previous version.
+        WordsMentionAnalyzer analyzer1 = mock(WordsMentionAnalyzer.class, "analyzer1");
+        WordsMentionAnalyzer analyzer2 = mock(WordsMentionAnalyzer.class, "analyzer2");
+        when(this.contextComponentManager.getInstanceMap(WordsMentionAnalyzer.class))
+            .thenReturn(Map.of("analyzer1", analyzer1, "analyzer2", analyzer2));
+        when(analyzer1.getFingerprint(document)).thenReturn(Optional.of("fingerprint1"));
+        when(analyzer2.getFingerprint(document)).thenReturn(Optional.of("fingerprint2"));
+
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(compiledWordsQueries.getQueries()).thenReturn(Set.of("foo"));
+        when(this.multiPatternAnalysisHelper.compile(Set.of("foo"))).thenReturn(compiledWordsQueries);
+
+        WordsQuery sharedQuery = new WordsQuery("foo", null);
+        PartAnalysisResult previousResult1 = new PartAnalysisResult("analyzer1");
+        previousResult1.addRegion(mock(WordsMentionLocalization.class, "previousFoo"));
+        previousResult1.setFingerprint("fingerprint1");
+        PartAnalysisResult previousResult2 = new PartAnalysisResult("analyzer2");
+        previousResult2.setFingerprint("fingerprint2");
+        WordsAnalysisResults previousResults =
+            new WordsAnalysisResults(previousVersionReference, sharedQuery, new Date());
+        previousResults.addResult(previousResult1);
+        previousResults.addResult(previousResult2);
+        when(this.storageManager.loadAnalysisResults(previousVersionReference, Set.of(sharedQuery)))
+            .thenReturn(Map.of(sharedQuery, previousResults));
+
+        this.searchTaskConsumer.consume(documentReference, version);
+
+        // The previous results are reused without loading the previous version nor analyzing the document.
+        verify(this.documentRevisionProvider, never()).getRevision(documentReference, previousVersion);
+        verify(analyzer1, never()).analyze(any(), any(CompiledWordsQueries.class));
+        verify(analyzer1, never()).analyze(any(), any(), any(), any());
+        verify(analyzer2, never()).analyze(any(), any(CompiledWordsQueries.class));
+        verify(analyzer2, never()).analyze(any(), any(), any(), any());
+
+        // They are stored for the new version along with their fingerprints.
+        ArgumentCaptor<WordsAnalysisResults> resultsCaptor = ArgumentCaptor.forClass(WordsAnalysisResults.class);
+        verify(this.storageManager).saveAnalysisResults(resultsCaptor.capture());
+        WordsAnalysisResults savedResults = resultsCaptor.getValue();
+        assertEquals(documentVersionReference, savedResults.getReference());
+        assertEquals(List.of(previousResult1, previousResult2), savedResults.getResults());
+        assertEquals("fingerprint1", savedResults.getResults().get(0).getFingerprint());
+        assertEquals("fingerprint2", savedResults.getResults().get(1).getFingerprint());
+
+        // Nothing changed so nobody is notified.
+        verifyNoInteractions(this.observationManager);
     }
-}
\ No newline at end of file
+}
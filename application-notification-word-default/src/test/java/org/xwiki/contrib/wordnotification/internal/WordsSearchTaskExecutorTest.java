@@ -0,0 +1,250 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.index.IndexException;
+import org.xwiki.index.TaskConsumer;
+import org.xwiki.index.TaskManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WordsSearchTaskExecutor}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WordsSearchTaskExecutorTest
+{
+    private static final DocumentReference DOCUMENT_1 = new DocumentReference("mywiki", "Foo", "Document1");
+
+    private static final DocumentReference DOCUMENT_2 = new DocumentReference("mywiki", "Foo", "Document2");
+
+    private static final DocumentReference DOCUMENT_3 = new DocumentReference("mywiki", "Foo", "Document3");
+
+    private static final DocumentReference DOCUMENT_4 = new DocumentReference("mywiki", "Foo", "Document4");
+
+    @InjectMockComponents
+    private WordsSearchTaskExecutor taskExecutor;
+
+    @MockComponent
+    private TaskManager taskManager;
+
+    @MockComponent
+    @Named(WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT)
+    private Provider<TaskConsumer> taskConsumerProvider;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @RegisterExtension
+    private LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private TaskConsumer taskConsumer;
+
+    private XWikiContext context;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.taskConsumer = mock(TaskConsumer.class);
+        when(this.taskConsumerProvider.get()).thenReturn(this.taskConsumer);
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+    }
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.taskExecutor.dispose();
+    }
+
+    @Test
+    void addTaskWithoutDedicatedPool() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(0);
+        this.taskExecutor.initialize();
+
+        this.taskExecutor.addTask(DOCUMENT_1, 42L, "1.2", false);
+        verify(this.taskManager).addTask("mywiki", 42L, "1.2", WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+        verifyNoInteractions(this.taskConsumer);
+    }
+
+    @Test
+    void addTaskWithDedicatedPool() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(1);
+        when(this.configuration.getTaskQueueSize()).thenReturn(10);
+        this.taskExecutor.initialize();
+
+        this.taskExecutor.addTask(DOCUMENT_1, 42L, "1.2", false);
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_1, "1.2");
+        verify(this.context).setWikiId("mywiki");
+        verifyNoInteractions(this.taskManager);
+        assertEquals(1L, this.taskExecutor.getStatistics().get("executed"));
+    }
+
+    @Test
+    void addTaskWithFailingConsumer() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(1);
+        when(this.configuration.getTaskQueueSize()).thenReturn(10);
+        this.taskExecutor.initialize();
+
+        doThrow(new IllegalStateException("error")).when(this.taskConsumer).consume(DOCUMENT_1, "1.2");
+        this.taskExecutor.addTask(DOCUMENT_1, 42L, "1.2", false);
+        this.taskExecutor.addTask(DOCUMENT_2, 43L, "1.2", false);
+
+        // The failure doesn't prevent the next tasks from being executed.
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_2, "1.2");
+        verifyNoInteractions(this.taskManager);
+        assertEquals(1L, this.taskExecutor.getStatistics().get("failed"));
+        assertEquals("Failed to analyze document [mywiki:Foo.Document1] on version [1.2]. "
+            + "Root cause: [IllegalStateException: error]", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void addTaskWithPriorityAndOverflow() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(1);
+        when(this.configuration.getTaskQueueSize()).thenReturn(2);
+        this.taskExecutor.initialize();
+
+        // The single thread is kept busy by the first task while the others are added.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocationOnMock -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(this.taskConsumer).consume(DOCUMENT_1, "1.1");
+
+        this.taskExecutor.addTask(DOCUMENT_1, 1L, "1.1", false);
+        started.await(5, TimeUnit.SECONDS);
+        this.taskExecutor.addTask(DOCUMENT_2, 2L, "1.1", true);
+        this.taskExecutor.addTask(DOCUMENT_3, 3L, "1.1", false);
+        // The queue is full.
+        this.taskExecutor.addTask(DOCUMENT_4, 4L, "1.1", false);
+        verify(this.taskManager).addTask("mywiki", 4L, "1.1", WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+        assertEquals(2L, this.taskExecutor.getStatistics().get("queued"));
+        assertEquals(1L, this.taskExecutor.getStatistics().get("overflowed"));
+
+        release.countDown();
+        verify(this.taskConsumer, timeout(5000)).consume(DOCUMENT_2, "1.1");
+
+        // The update is analyzed before the creation, which was added first.
+        InOrder inOrder = inOrder(this.taskConsumer);
+        inOrder.verify(this.taskConsumer).consume(DOCUMENT_1, "1.1");
+        inOrder.verify(this.taskConsumer).consume(DOCUMENT_3, "1.1");
+        inOrder.verify(this.taskConsumer).consume(DOCUMENT_2, "1.1");
+    }
+
+    @Test
+    void disposeGivesBackWaitingTasks() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(1);
+        when(this.configuration.getTaskQueueSize()).thenReturn(10);
+        this.taskExecutor.initialize();
+
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocationOnMock -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Interrupted when the pool is shut down.
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).when(this.taskConsumer).consume(DOCUMENT_1, "1.1");
+
+        this.taskExecutor.addTask(DOCUMENT_1, 1L, "1.1", false);
+        started.await(5, TimeUnit.SECONDS);
+        this.taskExecutor.addTask(DOCUMENT_2, 2L, "1.3", false);
+
+        this.taskExecutor.dispose();
+        verify(this.taskManager).addTask("mywiki", 2L, "1.3", WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+
+        // The tasks added afterwards go to the task manager too.
+        this.taskExecutor.addTask(DOCUMENT_3, 3L, "2.1", true);
+        verify(this.taskManager).addTask(eq("mywiki"), eq(3L), eq("2.1"), any());
+    }
+
+    @Test
+    void disposeGivesBackInterruptedTasks() throws Exception
+    {
+        when(this.configuration.getTaskThreads()).thenReturn(1);
+        when(this.configuration.getTaskQueueSize()).thenReturn(10);
+        this.taskExecutor.initialize();
+
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocationOnMock -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IndexException("Interrupted", e);
+            }
+            return null;
+        }).when(this.taskConsumer).consume(DOCUMENT_1, "1.1");
+
+        this.taskExecutor.addTask(DOCUMENT_1, 1L, "1.1", false);
+        started.await(5, TimeUnit.SECONDS);
+
+        this.taskExecutor.dispose();
+        verify(this.taskManager, timeout(5000)).addTask("mywiki", 1L, "1.1",
+            WordsSearchTaskConsumer.WORDS_SEARCH_TASK_HINT);
+        assertEquals(0L, this.taskExecutor.getStatistics().get("failed"));
+    }
+}
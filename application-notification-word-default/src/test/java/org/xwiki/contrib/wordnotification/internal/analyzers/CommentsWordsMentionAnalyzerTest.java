@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
@@ -71,6 +72,9 @@ class CommentsWordsMentionAnalyzerTest
         String query = "Foo";
 
         when(wordsQuery.getQuery()).thenReturn(query);
+        CompiledWordsQuery compiledQuery = mock(CompiledWordsQuery.class);
+        when(this.patternAnalysisHelper.compile(query)).thenReturn(compiledQuery);
+
         BaseObject object1 = mock(BaseObject.class, "object1");
         BaseObject object2 = mock(BaseObject.class, "object2");
         BaseObject object3 = mock(BaseObject.class, "object3");
@@ -103,11 +107,11 @@ class CommentsWordsMentionAnalyzerTest
         WordsMentionLocalization localization1 = mock(WordsMentionLocalization.class);
         WordsMentionLocalization localization2 = mock(WordsMentionLocalization.class);
         WordsMentionLocalization localization3 = mock(WordsMentionLocalization.class);
-        when(this.patternAnalysisHelper.getRegions(query, List.of(comment1), object1Reference))
+        when(this.patternAnalysisHelper.getRegions(compiledQuery, List.of(comment1), object1Reference))
             .thenReturn(List.of(localization1));
-        when(this.patternAnalysisHelper.getRegions(query, List.of(comment2), object2Reference))
+        when(this.patternAnalysisHelper.getRegions(compiledQuery, List.of(comment2), object2Reference))
             .thenReturn(List.of(localization2));
-        when(this.patternAnalysisHelper.getRegions(query, List.of(comment3), object3Reference))
+        when(this.patternAnalysisHelper.getRegions(compiledQuery, List.of(comment3), object3Reference))
             .thenReturn(List.of(localization3));
 
         PartAnalysisResult expectedResult = new PartAnalysisResult(CommentsWordsMentionAnalyzer.HINT);
@@ -116,6 +120,6 @@ class CommentsWordsMentionAnalyzerTest
         expectedResult.addRegion(localization3);
 
         assertEquals(expectedResult, this.analyzer.analyze(document, wordsQuery));
-        verify(this.patternAnalysisHelper, times(3)).getRegions(eq(query), any(), any());
+        verify(this.patternAnalysisHelper, times(3)).getRegions(eq(compiledQuery), any(), any());
     }
 }
\ No newline at end of file
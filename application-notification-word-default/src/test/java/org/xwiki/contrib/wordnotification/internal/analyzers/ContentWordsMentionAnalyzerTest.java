@@ -20,9 +20,14 @@
 package org.xwiki.contrib.wordnotification.internal.analyzers;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.contrib.wordnotification.MultiPatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
@@ -34,7 +39,11 @@ import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -51,6 +60,9 @@ class ContentWordsMentionAnalyzerTest
     @MockComponent
     private PatternAnalysisHelper patternAnalysisHelper;
 
+    @MockComponent
+    private MultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
     @Test
     void analyze() throws WordsAnalysisException
     {
@@ -65,12 +77,14 @@ class ContentWordsMentionAnalyzerTest
             + "Something else with f*oo\n"
             + "And foo finally Foo.";
         when(wordsQuery.getQuery()).thenReturn(query);
+        CompiledWordsQuery compiledQuery = mock(CompiledWordsQuery.class);
+        when(this.patternAnalysisHelper.compile(query)).thenReturn(compiledQuery);
         when(document.getContent()).thenReturn(documentContent);
 
         WordsMentionLocalization localization1 = mock(WordsMentionLocalization.class);
         WordsMentionLocalization localization2 = mock(WordsMentionLocalization.class);
         WordsMentionLocalization localization3 = mock(WordsMentionLocalization.class);
-        when(this.patternAnalysisHelper.getRegions(query, List.of(documentContent.split("\n")), reference))
+        when(this.patternAnalysisHelper.getRegions(compiledQuery, List.of(documentContent.split("\n")), reference))
             .thenReturn(List.of(localization1, localization2, localization3));
 
         PartAnalysisResult expectedResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
@@ -80,4 +94,132 @@ class ContentWordsMentionAnalyzerTest
 
         assertEquals(expectedResult, this.analyzer.analyze(document, wordsQuery));
     }
-}
\ No newline at end of file
+
+    @Test
+    void analyzeWithCompiledQueries() throws WordsAnalysisException
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        DocumentReference reference = new DocumentReference("xwiki", "Foo", "Bar");
+        when(document.getDocumentReference()).thenReturn(reference);
+
+        String documentContent = "A text with foo. \n"
+            + "Another line with FOO and bar\n"
+            + "Something else with f*oo\n"
+            + "And foo finally Foo.";
+        when(document.getContent()).thenReturn(documentContent);
+
+        WordsMentionLocalization localization1 = mock(WordsMentionLocalization.class);
+        WordsMentionLocalization localization2 = mock(WordsMentionLocalization.class);
+        WordsMentionLocalization localization3 = mock(WordsMentionLocalization.class);
+        when(this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries,
+            List.of(documentContent.split("\n")), reference))
+            .thenReturn(Map.of("foo", List.of(localization1, localization2), "bar", List.of(localization3)));
+
+        PartAnalysisResult expectedFooResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        expectedFooResult.addRegion(localization1);
+        expectedFooResult.addRegion(localization2);
+        PartAnalysisResult expectedBarResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        expectedBarResult.addRegion(localization3);
+
+        assertEquals(Map.of("foo", expectedFooResult, "bar", expectedBarResult),
+            this.analyzer.analyze(document, compiledWordsQueries));
+    }
+
+    @Test
+    void analyzeIncrementally() throws WordsAnalysisException
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        DocumentModelBridge previousDocument = mock(DocumentModelBridge.class);
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(compiledWordsQueries.getQueries()).thenReturn(Set.of("foo", "bar"));
+        DocumentReference reference = new DocumentReference("xwiki", "Foo", "Bar");
+        when(document.getDocumentReference()).thenReturn(reference);
+        when(previousDocument.getDocumentReference()).thenReturn(reference);
+
+        when(previousDocument.getContent()).thenReturn("First foo\n"
+            + "Second line\n"
+            + "Third foo");
+        when(document.getContent()).thenReturn("First foo\n"
+            + "Second line with foo\n"
+            + "Third foo\n"
+            + "First foo");
+
+        PartAnalysisResult previousFooResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        previousFooResult.addRegion(new WordsMentionLocalization(reference, 0, 6, 9));
+        previousFooResult.addRegion(new WordsMentionLocalization(reference, 2, 6, 9));
+        PartAnalysisResult previousBarResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+
+        // Only the changed line is analyzed.
+        when(this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries, List.of("Second line with foo"),
+            reference)).thenReturn(Map.of("foo", List.of(new WordsMentionLocalization(reference, 0, 17, 20))));
+
+        PartAnalysisResult expectedFooResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        expectedFooResult.addRegion(new WordsMentionLocalization(reference, 0, 6, 9));
+        expectedFooResult.addRegion(new WordsMentionLocalization(reference, 1, 17, 20));
+        expectedFooResult.addRegion(new WordsMentionLocalization(reference, 2, 6, 9));
+        expectedFooResult.addRegion(new WordsMentionLocalization(reference, 3, 6, 9));
+
+        Map<String, PartAnalysisResult> result = this.analyzer.analyze(document, compiledWordsQueries,
+            previousDocument, Map.of("foo", previousFooResult, "bar", previousBarResult));
+        assertEquals(Map.of("foo", expectedFooResult), result);
+        assertEquals(List.copyOf(expectedFooResult.getRegions()), List.copyOf(result.get("foo").getRegions()));
+        verify(this.multiPatternAnalysisHelper, never()).getRegions(any(), eq(List.of("First foo",
+            "Second line with foo", "Third foo", "First foo")), any());
+    }
+
+    @Test
+    void analyzeIncrementallyWithIncompletePreviousResults() throws WordsAnalysisException
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        DocumentModelBridge previousDocument = mock(DocumentModelBridge.class);
+        CompiledWordsQueries compiledWordsQueries = mock(CompiledWordsQueries.class);
+        when(compiledWordsQueries.getQueries()).thenReturn(Set.of("foo", "bar"));
+        DocumentReference reference = new DocumentReference("xwiki", "Foo", "Bar");
+        when(document.getDocumentReference()).thenReturn(reference);
+        when(previousDocument.getDocumentReference()).thenReturn(reference);
+        when(previousDocument.getContent()).thenReturn("First foo");
+        when(document.getContent()).thenReturn("First foo\nSecond bar");
+
+        WordsMentionLocalization fooLocalization = new WordsMentionLocalization(reference, 0, 6, 9);
+        WordsMentionLocalization barLocalization = new WordsMentionLocalization(reference, 1, 7, 10);
+        when(this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries, List.of("First foo", "Second bar"),
+            reference)).thenReturn(Map.of("foo", List.of(fooLocalization), "bar", List.of(barLocalization)));
+
+        PartAnalysisResult previousFooResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        previousFooResult.addRegion(fooLocalization);
+
+        // There's no previous result for bar: the whole document is analyzed.
+        PartAnalysisResult expectedFooResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        expectedFooResult.addRegion(fooLocalization);
+        PartAnalysisResult expectedBarResult = new PartAnalysisResult(ContentWordsMentionAnalyzer.HINT);
+        expectedBarResult.addRegion(barLocalization);
+        assertEquals(Map.of("foo", expectedFooResult, "bar", expectedBarResult), this.analyzer.analyze(document,
+            compiledWordsQueries, previousDocument, Map.of("foo", previousFooResult)));
+    }
+
+    @Test
+    void getFingerprint() throws WordsAnalysisException
+    {
+        DocumentReference reference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentModelBridge document1 = mock(DocumentModelBridge.class, "document1");
+        when(document1.getDocumentReference()).thenReturn(reference);
+        when(document1.getContent()).thenReturn("A text with foo.\nAnother line");
+        DocumentModelBridge document2 = mock(DocumentModelBridge.class, "document2");
+        when(document2.getDocumentReference()).thenReturn(reference);
+        when(document2.getContent()).thenReturn("A text with foo.\nAnother line");
+        DocumentModelBridge document3 = mock(DocumentModelBridge.class, "document3");
+        when(document3.getDocumentReference()).thenReturn(reference);
+        when(document3.getContent()).thenReturn("A text with foo.\nAnother\n line");
+        DocumentModelBridge document4 = mock(DocumentModelBridge.class, "document4");
+        when(document4.getDocumentReference()).thenReturn(new DocumentReference("xwiki", "Foo", "Other"));
+        when(document4.getContent()).thenReturn("A text with foo.\nAnother line");
+
+        String fingerprint = this.analyzer.getFingerprint(document1).orElseThrow();
+        assertEquals(fingerprint, this.analyzer.getFingerprint(document2).orElseThrow());
+        // Splitting differently the same characters, or analyzing them in another document, changes the fingerprint.
+        assertNotEquals(fingerprint, this.analyzer.getFingerprint(document3).orElseThrow());
+        assertNotEquals(fingerprint, this.analyzer.getFingerprint(document4).orElseThrow());
+        verify(this.multiPatternAnalysisHelper, never()).getRegions(any(), any(), any());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
+import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link DefaultMultiPatternAnalysisHelper}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@ComponentList(DefaultPatternAnalysisHelper.class)
+class DefaultMultiPatternAnalysisHelperTest
+{
+    private static final EntityReference ENTITY_REFERENCE = new DocumentReference("xwiki", "Foo", "Bar");
+
+    @InjectMockComponents
+    private DefaultMultiPatternAnalysisHelper multiPatternAnalysisHelper;
+
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
+    @MockComponent
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
+    @Test
+    void compile()
+    {
+        CompiledWordsQueries compiledWordsQueries =
+            this.multiPatternAnalysisHelper.compile(List.of("foo", "Fo* Ba?", "a.b", "foo", "Foo"));
+        assertEquals(Set.of("foo", "Fo* Ba?", "a.b", "Foo"), compiledWordsQueries.getQueries());
+
+        DefaultCompiledWordsQueries defaultCompiledWordsQueries = (DefaultCompiledWordsQueries) compiledWordsQueries;
+        assertEquals(List.of("foo", "Foo"), defaultCompiledWordsQueries.getLiteralQueries());
+        assertEquals(List.of("Fo* Ba?", "a.b"), defaultCompiledWordsQueries.getFallbackQueries().stream()
+            .map(CompiledWordsQuery::getQuery)
+            .collect(Collectors.toList()));
+        assertEquals(2, defaultCompiledWordsQueries.getAutomaton().getPatternCount());
+    }
+
+    @Test
+    void compileInvalidQuery()
+    {
+        CompiledWordsQueries compiledWordsQueries = this.multiPatternAnalysisHelper.compile(List.of("a(b", "foo"));
+        assertEquals(Set.of("a(b", "foo"), compiledWordsQueries.getQueries());
+        assertEquals(List.of(), ((DefaultCompiledWordsQueries) compiledWordsQueries).getFallbackQueries());
+        assertEquals(Map.of("foo", List.of(new WordsMentionLocalization(ENTITY_REFERENCE, 0, 0, 3))),
+            this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries, List.of("foo a(b"), ENTITY_REFERENCE));
+    }
+
+    @Test
+    void getRegionsOverlappingQueries()
+    {
+        CompiledWordsQueries compiledWordsQueries =
+            this.multiPatternAnalysisHelper.compile(List.of("foo", "foo bar", "bar", "other"));
+        List<String> strings = List.of("Foo bar foo", "barfoo bar", "bar");
+
+        Map<String, List<WordsMentionLocalization>> expectedResult = Map.of(
+            "foo", List.of(
+                new WordsMentionLocalization(ENTITY_REFERENCE, 0, 0, 3),
+                new WordsMentionLocalization(ENTITY_REFERENCE, 0, 8, 11),
+                new WordsMentionLocalization(ENTITY_REFERENCE, 1, 3, 6)),
+            "foo bar", List.of(
+                new WordsMentionLocalization(ENTITY_REFERENCE, 0, 0, 7)),
+            "bar", List.of(
+                new WordsMentionLocalization(ENTITY_REFERENCE, 0, 4, 7),
+                new WordsMentionLocalization(ENTITY_REFERENCE, 1, 7, 10),
+                new WordsMentionLocalization(ENTITY_REFERENCE, 2, 0, 3)));
+        assertEquals(expectedResult,
+            this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries, strings, ENTITY_REFERENCE));
+    }
+
+    @Test
+    void getRegionsSameAsPatternAnalysisHelper() throws ComponentLookupException
+    {
+        PatternAnalysisHelper patternAnalysisHelper = this.componentManager.getInstance(PatternAnalysisHelper.class);
+        List<String> queries = List.of("foo", "Foo", "Fo* Ba?", "http?://*xwiki.org*", "quer*", "o o", "foo foo",
+            "Expression with \\* *\\\\ character ?\\?", "with", "a");
+        List<String> strings = List.of(
+            "Something completely different.",
+            "This foo is FOO.",
+            "foo\nBut is thisnotfOO.\nfOO!!",
+            "A text with foo. \n",
+            "foo foo foo foo",
+            "o o o o o",
+            "Check out https://xwiki.org ! ",
+            "You can find here the list of queries to look for in pages.",
+            "Expression with * \\ character ?",
+            "Fo Ba",
+            "Foooooooooo Bar",
+            "a",
+            "FOO",
+            "foo\u2028",
+            "");
+
+        CompiledWordsQueries compiledWordsQueries = this.multiPatternAnalysisHelper.compile(queries);
+        Map<String, List<WordsMentionLocalization>> regions =
+            this.multiPatternAnalysisHelper.getRegions(compiledWordsQueries, strings, ENTITY_REFERENCE);
+        for (String query : queries) {
+            assertEquals(patternAnalysisHelper.getRegions(query, strings, ENTITY_REFERENCE),
+                regions.getOrDefault(query, List.of()), String.format("Wrong regions for query [%s]", query));
+        }
+    }
+}
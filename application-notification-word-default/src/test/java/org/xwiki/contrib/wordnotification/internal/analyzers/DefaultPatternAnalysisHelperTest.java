@@ -20,16 +20,22 @@
 package org.xwiki.contrib.wordnotification.internal.analyzers;
 
 import java.util.List;
-
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
 import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link DefaultPatternAnalysisHelper}.
@@ -42,6 +48,51 @@ class DefaultPatternAnalysisHelperTest
     @InjectMockComponents
     private DefaultPatternAnalysisHelper patternAnalysisHelper;
 
+    @MockComponent
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
+    @Test
+    void compile()
+    {
+        CompiledWordsQuery compiledWordsQuery = this.patternAnalysisHelper.compile("Fo* Ba?");
+        assertEquals("Fo* Ba?", compiledWordsQuery.getQuery());
+        verify(this.compiledWordsQueryCache).set((DefaultCompiledWordsQuery) compiledWordsQuery);
+
+        DefaultCompiledWordsQuery cachedQuery = mock(DefaultCompiledWordsQuery.class);
+        when(this.compiledWordsQueryCache.get("foo")).thenReturn(Optional.of(cachedQuery));
+        assertSame(cachedQuery, this.patternAnalysisHelper.compile("foo"));
+        verify(this.compiledWordsQueryCache, never()).set(cachedQuery);
+    }
+
+    @Test
+    void getRegionsWithExpandedLowerCaseCharacters()
+    {
+        EntityReference entityReference = new DocumentReference("xwiki", "Foo", "Bar");
+        // The capital I with dot above is expanded to two characters when lower cased: the regions must still be
+        // located in the original text.
+        List<String> strings = List.of("\u0130\u0130 FOO \u0130 foo");
+
+        List<WordsMentionLocalization> expectedResult =
+            List.of(new WordsMentionLocalization(entityReference, 0, 3, 6),
+                new WordsMentionLocalization(entityReference, 0, 9, 12));
+        assertEquals(expectedResult, this.patternAnalysisHelper.getRegions("foo", strings, entityReference));
+    }
+
+    @Test
+    void getRegionsWithCompiledQuery()
+    {
+        EntityReference entityReference = new DocumentReference("xwiki", "Foo", "Bar");
+        List<String> strings = List.of("This foo is FOO.", "nothing");
+        CompiledWordsQuery compiledWordsQuery = this.patternAnalysisHelper.compile("foo");
+
+        List<WordsMentionLocalization> expectedResult =
+            List.of(new WordsMentionLocalization(entityReference, 0, 5, 8),
+                new WordsMentionLocalization(entityReference, 0, 12, 15));
+        assertEquals(expectedResult,
+            this.patternAnalysisHelper.getRegions(compiledWordsQuery, strings, entityReference));
+        assertEquals(expectedResult, this.patternAnalysisHelper.getRegions("foo", strings, entityReference));
+    }
+
     @Test
     void getRegions_withJokers_simpleCases()
     {
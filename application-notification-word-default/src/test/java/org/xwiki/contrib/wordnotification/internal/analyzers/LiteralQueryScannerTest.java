@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LiteralQueryScanner}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LiteralQueryScannerTest
+{
+    private static final EntityReference ENTITY_REFERENCE = new DocumentReference("xwiki", "Foo", "Bar");
+
+    // Small alphabet so that random texts contain many occurrences, whitespaces and line terminators.
+    private static final String ALPHABET = "abAB  \t\n\r\u2028\u0130";
+
+    @InjectMockComponents
+    private DefaultPatternAnalysisHelper patternAnalysisHelper;
+
+    @MockComponent
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
+    @Test
+    void isLiteral()
+    {
+        assertTrue(LiteralQueryScanner.isLiteral("foo"));
+        assertTrue(LiteralQueryScanner.isLiteral("foo bar"));
+        assertFalse(LiteralQueryScanner.isLiteral(""));
+        assertFalse(LiteralQueryScanner.isLiteral(null));
+        assertFalse(LiteralQueryScanner.isLiteral("fo*"));
+        assertFalse(LiteralQueryScanner.isLiteral("fo?"));
+        assertFalse(LiteralQueryScanner.isLiteral("a.b"));
+    }
+
+    @Test
+    void scan()
+    {
+        List<WordsMentionLocalization> regions = new ArrayList<>();
+        LiteralQueryScanner.scan(LowerCaseText.of("Foo foo foo"), "foo", ENTITY_REFERENCE, 2, regions);
+        LiteralQueryScanner.scan(LowerCaseText.of("foofoo"), "foo", ENTITY_REFERENCE, 3, regions);
+        LiteralQueryScanner.scan(LowerCaseText.of("foo\n"), "foo", ENTITY_REFERENCE, 4, regions);
+
+        assertEquals(List.of(
+            new WordsMentionLocalization(ENTITY_REFERENCE, 2, 0, 3),
+            new WordsMentionLocalization(ENTITY_REFERENCE, 2, 4, 7),
+            new WordsMentionLocalization(ENTITY_REFERENCE, 2, 8, 11),
+            new WordsMentionLocalization(ENTITY_REFERENCE, 4, 0, 3)), regions);
+    }
+
+    /**
+     * Differential test ensuring that the scanner finds exactly the same regions as the regular expression built by
+     * {@link DefaultPatternAnalysisHelper}.
+     */
+    @Test
+    void scanSameAsPattern()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String query = randomString(random, 1 + random.nextInt(3));
+            String text = randomString(random, random.nextInt(20));
+            if (!LiteralQueryScanner.isLiteral(query)) {
+                continue;
+            }
+
+            DefaultCompiledWordsQuery compiledQuery =
+                (DefaultCompiledWordsQuery) this.patternAnalysisHelper.compile(query);
+            DefaultCompiledWordsQuery patternQuery = new DefaultCompiledWordsQuery(query, compiledQuery.getPattern());
+            List<LowerCaseText> lowerCaseTexts = List.of(LowerCaseText.of(text));
+
+            assertEquals(
+                this.patternAnalysisHelper.getLowerCaseTextsRegions(patternQuery, lowerCaseTexts, ENTITY_REFERENCE),
+                this.patternAnalysisHelper.getLowerCaseTextsRegions(compiledQuery, lowerCaseTexts, ENTITY_REFERENCE),
+                String.format("Wrong regions for query [%s] in text [%s]", query, text));
+        }
+    }
+
+    private static String randomString(Random random, int length)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.analyzers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link LowerCaseText}.
+ *
+ * @version $Id$
+ */
+class LowerCaseTextTest
+{
+    @Test
+    void sameLength()
+    {
+        LowerCaseText lowerCaseText = LowerCaseText.of("Foo BAR");
+        assertEquals("foo bar", lowerCaseText.getText());
+        for (int i = 0; i <= 7; i++) {
+            assertEquals(i, lowerCaseText.getOriginalOffset(i));
+        }
+        assertEquals(-1, lowerCaseText.getOriginalOffset(-1));
+    }
+
+    @Test
+    void expandedCharacter()
+    {
+        // The capital I with dot above is lower cased to an i followed by a combining dot above.
+        String original = "A\u0130B foo";
+        LowerCaseText lowerCaseText = LowerCaseText.of(original);
+        assertEquals(original.length() + 1, lowerCaseText.getText().length());
+
+        int fooStart = lowerCaseText.getText().indexOf("foo");
+        assertEquals(5, fooStart);
+        assertEquals(4, lowerCaseText.getOriginalOffset(fooStart));
+        assertEquals(7, lowerCaseText.getOriginalOffset(fooStart + 3));
+        assertEquals(1, lowerCaseText.getOriginalOffset(1));
+        assertEquals(1, lowerCaseText.getOriginalOffset(2));
+        assertEquals(2, lowerCaseText.getOriginalOffset(3));
+        assertEquals(-1, lowerCaseText.getOriginalOffset(-1));
+    }
+}
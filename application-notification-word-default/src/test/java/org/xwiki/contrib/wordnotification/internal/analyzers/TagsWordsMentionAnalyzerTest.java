@@ -24,6 +24,7 @@ import java.util.List;
 import javax.inject.Provider;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
@@ -72,11 +73,14 @@ class TagsWordsMentionAnalyzerTest
         when(this.contextProvider.get()).thenReturn(context);
 
         when(wordsQuery.getQuery()).thenReturn(query);
+        CompiledWordsQuery compiledQuery = mock(CompiledWordsQuery.class);
+        when(this.patternAnalysisHelper.compile(query)).thenReturn(compiledQuery);
+
         when(document.getTagsList(context)).thenReturn(tags);
 
         WordsMentionLocalization localization1 = mock(WordsMentionLocalization.class);
         WordsMentionLocalization localization2 = mock(WordsMentionLocalization.class);
-        when(patternAnalysisHelper.getRegions(query, tags, reference))
+        when(patternAnalysisHelper.getRegions(compiledQuery, tags, reference))
             .thenReturn(List.of(localization1, localization2));
 
         PartAnalysisResult expectedResult = new PartAnalysisResult(TagsWordsMentionAnalyzer.HINT);
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.Test;
 import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.contrib.wordnotification.CompiledWordsQuery;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.PatternAnalysisHelper;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
@@ -63,10 +64,12 @@ class TitleWordsMentionAnalyzerTest
         String query = "Foo";
         String documentTitle = "A text with foo.";
         when(wordsQuery.getQuery()).thenReturn(query);
+        CompiledWordsQuery compiledQuery = mock(CompiledWordsQuery.class);
+        when(this.patternAnalysisHelper.compile(query)).thenReturn(compiledQuery);
         when(document.getTitle()).thenReturn(documentTitle);
 
         WordsMentionLocalization localization = mock(WordsMentionLocalization.class);
-        when(this.patternAnalysisHelper.getRegions(query, List.of(documentTitle), reference))
+        when(this.patternAnalysisHelper.getRegions(compiledQuery, List.of(documentTitle), reference))
             .thenReturn(List.of(localization));
 
         PartAnalysisResult expectedResult = new PartAnalysisResult(TitleWordsMentionAnalyzer.HINT);
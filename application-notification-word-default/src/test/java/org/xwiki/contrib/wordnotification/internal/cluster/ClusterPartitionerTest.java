@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.cluster;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ClusterPartitioner}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ClusterPartitionerTest
+{
+    private static final String NODE_1 = "node1";
+
+    private static final String NODE_2 = "node2";
+
+    @InjectMockComponents
+    private ClusterPartitioner clusterPartitioner;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private ObservationManager observationManager;
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.clusterPartitioner.dispose();
+    }
+
+    private void enable() throws Exception
+    {
+        when(this.configuration.isClusterPartitioningEnabled()).thenReturn(true);
+        when(this.configuration.getClusterNodeId()).thenReturn(NODE_1);
+        when(this.configuration.getClusterHeartbeatInterval()).thenReturn(60000L);
+        this.clusterPartitioner.initialize();
+    }
+
+    private long countLocal()
+    {
+        return LongStream.range(0, 1000)
+            .filter(documentId -> this.clusterPartitioner.getRemoteOwner(documentId).isEmpty()).count();
+    }
+
+    @Test
+    void isLocalWhenDisabled()
+    {
+        assertFalse(this.clusterPartitioner.isEnabled());
+        assertNull(this.clusterPartitioner.getNodeId());
+        assertEquals(1000, countLocal());
+
+        // The announcements of the other members are ignored.
+        this.clusterPartitioner.onNodeEvent(new ClusterNodeEvent(NODE_2, false));
+        assertEquals(1000, countLocal());
+    }
+
+    @Test
+    void isLocalWhenAlone() throws Exception
+    {
+        enable();
+
+        assertEquals(NODE_1, this.clusterPartitioner.getNodeId());
+        assertEquals(Set.of(NODE_1), this.clusterPartitioner.getNodes());
+        assertEquals(1000, countLocal());
+        verify(this.observationManager, timeout(1000)).notify(
+            argThat(event -> event instanceof ClusterNodeEvent && NODE_1.equals(((ClusterNodeEvent) event).getNodeId())
+                && !((ClusterNodeEvent) event).isLeaving()), isNull(), isNull());
+    }
+
+    @Test
+    void isLocalWithOtherMember() throws Exception
+    {
+        enable();
+
+        this.clusterPartitioner.onNodeEvent(new ClusterNodeEvent(NODE_2, false));
+        assertEquals(Set.of(NODE_1, NODE_2), this.clusterPartitioner.getNodes());
+
+        // The documents are distributed between both members, and always to the same member.
+        long local = countLocal();
+        assertTrue(local > 300 && local < 700, "Unbalanced partitioning: " + local);
+        assertEquals(local, countLocal());
+        assertEquals(Set.of(NODE_2), LongStream.range(0, 1000)
+            .mapToObj(this.clusterPartitioner::getRemoteOwner).flatMap(Optional::stream).collect(Collectors.toSet()));
+
+        // This member announces itself right away to the new member, in addition to the initial announcement.
+        verify(this.observationManager, timeout(1000).times(2)).notify(
+            argThat(event -> event instanceof ClusterNodeEvent), isNull(), isNull());
+
+        // The announcements of this member sent back by the cluster are ignored.
+        this.clusterPartitioner.onNodeEvent(new ClusterNodeEvent(NODE_1, true));
+        assertEquals(local, countLocal());
+
+        this.clusterPartitioner.onNodeEvent(new ClusterNodeEvent(NODE_2, true));
+        assertEquals(Set.of(NODE_1), this.clusterPartitioner.getNodes());
+        assertEquals(1000, countLocal());
+    }
+
+    @Test
+    void getRemoteOwnerWhenNotAnnouncedRecently() throws Exception
+    {
+        enable();
+
+        this.clusterPartitioner.onNodeEvent(new ClusterNodeEvent(NODE_2, false));
+        assertTrue(countLocal() < 1000);
+
+        // The other member hasn't been announced during the last two intervals: it might have crashed, so this member
+        // keeps its documents, even though it's not considered as gone yet.
+        @SuppressWarnings("unchecked")
+        Map<String, Long> members = (Map<String, Long>) FieldUtils.readField(this.clusterPartitioner, "members", true);
+        members.put(NODE_2, System.currentTimeMillis() - 2 * 60000 - 1000);
+        assertEquals(Set.of(NODE_1, NODE_2), this.clusterPartitioner.getNodes());
+        assertEquals(1000, countLocal());
+    }
+
+    @Test
+    void disposeAnnouncesLeaving() throws Exception
+    {
+        enable();
+
+        this.clusterPartitioner.dispose();
+        verify(this.observationManager, atLeastOnce()).notify(
+            argThat(event -> event instanceof ClusterNodeEvent && ((ClusterNodeEvent) event).isLeaving()), isNull(),
+            isNull());
+    }
+}
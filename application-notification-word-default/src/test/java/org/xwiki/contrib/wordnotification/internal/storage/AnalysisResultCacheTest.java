@@ -0,0 +1,140 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.wordnotification.PartAnalysisResult;
+import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentVersionReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisResultCache}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@ComponentTest
+class AnalysisResultCacheTest
+{
+    @InjectMockComponents
+    private AnalysisResultCache analysisResultCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    private Cache<WordsAnalysisResults> cache;
+
+    private DocumentVersionReference documentVersionReference;
+
+    @BeforeEach
+    void beforeEach() throws CacheException, InitializationException
+    {
+        this.cache = mock(Cache.class);
+        when(this.cacheManager.<WordsAnalysisResults>createNewCache(any(CacheConfiguration.class)))
+            .thenReturn(this.cache);
+        when(this.configuration.getAnalysisResultsCacheSize()).thenReturn(10);
+        when(this.configuration.getAnalysisResultsCacheMaxRegions()).thenReturn(2);
+        this.analysisResultCache.initialize();
+
+        this.documentVersionReference =
+            new DocumentVersionReference(new DocumentReference("xwiki", "Foo", "Bar"), "1.3");
+        when(this.entityReferenceSerializer.serialize(this.documentVersionReference)).thenReturn("xwiki:Foo.Bar");
+    }
+
+    @Test
+    void get()
+    {
+        WordsQuery wordsQuery = new WordsQuery("foo", mock(UserReference.class));
+        assertEquals(Optional.empty(), this.analysisResultCache.get(this.documentVersionReference, wordsQuery));
+        assertEquals(0, this.analysisResultCache.getHitCount());
+        assertEquals(1, this.analysisResultCache.getMissCount());
+
+        Date date = new Date(42);
+        WordsAnalysisResults cachedResults =
+            new WordsAnalysisResults(this.documentVersionReference, new WordsQuery("foo", null), date);
+        PartAnalysisResult partAnalysisResult = new PartAnalysisResult("content");
+        cachedResults.addResult(partAnalysisResult);
+        when(this.cache.get("xwiki:Foo.Bar_1.3_foo")).thenReturn(cachedResults);
+
+        WordsAnalysisResults expectedResults =
+            new WordsAnalysisResults(this.documentVersionReference, wordsQuery, date);
+        expectedResults.addResult(partAnalysisResult);
+        assertEquals(Optional.of(expectedResults),
+            this.analysisResultCache.get(this.documentVersionReference, wordsQuery));
+        assertEquals(1, this.analysisResultCache.getHitCount());
+        assertEquals(1, this.analysisResultCache.getMissCount());
+    }
+
+    @Test
+    void set()
+    {
+        DocumentReference documentReference = this.documentVersionReference;
+        WordsAnalysisResults results =
+            new WordsAnalysisResults(this.documentVersionReference, new WordsQuery("foo", null), new Date());
+        PartAnalysisResult partAnalysisResult = new PartAnalysisResult("content");
+        partAnalysisResult.addRegion(new WordsMentionLocalization(documentReference, 0, 1, 4));
+        partAnalysisResult.addRegion(new WordsMentionLocalization(documentReference, 0, 8, 11));
+        results.addResult(partAnalysisResult);
+
+        this.analysisResultCache.set(results);
+        verify(this.cache).set("xwiki:Foo.Bar_1.3_foo", results);
+
+        // Results with too many regions are not cached.
+        WordsAnalysisResults biggerResults =
+            new WordsAnalysisResults(this.documentVersionReference, new WordsQuery("bar", null), new Date());
+        partAnalysisResult.addRegion(new WordsMentionLocalization(documentReference, 0, 12, 15));
+        biggerResults.addResult(partAnalysisResult);
+
+        this.analysisResultCache.set(biggerResults);
+        verify(this.cache, never()).set(eq("xwiki:Foo.Bar_1.3_bar"), any());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.FacetParams;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.internal.DefaultSolrUtils;
+import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisResultCompactor}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@ComponentList({ DefaultSolrUtils.class })
+@ComponentTest
+class AnalysisResultCompactorTest
+{
+    @InjectMockComponents
+    private AnalysisResultCompactor compactor;
+
+    @MockComponent
+    private Solr solr;
+
+    @MockComponent
+    private ConverterManager converterManager;
+
+    @MockComponent
+    private AnalysisResultStorageManager storageManager;
+
+    @MockComponent
+    private UsersWordsQueriesManager usersWordsQueriesManager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    private SolrClient solrClient;
+
+    private XWikiContext context;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        when(this.configuration.getStorageCompactionInterval()).thenReturn(0L);
+        when(this.configuration.getStorageCompactionKeptVersions()).thenReturn(1);
+        when(this.configuration.getStorageCompactionBatchSize()).thenReturn(10);
+        this.solrClient = mock(SolrClient.class);
+        when(this.solr.getClient(AnalysisResultSolrCoreInitializer.ANALYSIS_RESULT_SOLR_CORE))
+            .thenReturn(this.solrClient);
+        this.compactor.initialize();
+
+        this.context = mock(XWikiContext.class);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWiki()).thenReturn(mock(XWiki.class));
+    }
+
+    private QueryResponse getFacetResponse(String field, String... values)
+    {
+        FacetField facetField = new FacetField(field);
+        for (String value : values) {
+            facetField.add(value, 1);
+        }
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getFacetField(field)).thenReturn(facetField);
+        return response;
+    }
+
+    private QueryResponse getDocumentsResponse(long numFound, List<Map<String, Object>> fieldsList)
+    {
+        SolrDocumentList documents = new SolrDocumentList();
+        for (Map<String, Object> fields : fieldsList) {
+            documents.add(new SolrDocument(fields));
+        }
+        documents.setNumFound(numFound);
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getResults()).thenReturn(documents);
+        return response;
+    }
+
+    @Test
+    void compact() throws Exception
+    {
+        UserReference userReference = mock(UserReference.class);
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki"));
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(new WikiReference("xwiki")))
+            .thenReturn(Set.of(userReference));
+        when(this.usersWordsQueriesManager.getQueries(userReference))
+            .thenReturn(Set.of(new WordsQuery("kept", userReference)));
+
+        DocumentReference deletedDocument = new DocumentReference("xwiki", "Foo", "Deleted");
+        DocumentReference existingDocument = new DocumentReference("xwiki", "Foo", "Existing");
+        when(this.entityReferenceResolver.resolve("xwiki:Foo.Deleted", EntityType.DOCUMENT))
+            .thenReturn(deletedDocument);
+        when(this.entityReferenceResolver.resolve("xwiki:Foo.Existing", EntityType.DOCUMENT))
+            .thenReturn(existingDocument);
+        when(this.context.getWiki().exists(existingDocument, this.context)).thenReturn(true);
+
+        when(this.solrClient.query(any())).then(invocationOnMock -> {
+            SolrQuery solrQuery = invocationOnMock.getArgument(0);
+            String[] facetFields = solrQuery.getFacetFields();
+            String[] filterQueries = solrQuery.getFilterQueries();
+            QueryResponse response;
+            if (facetFields != null && solrQuery.getInt(FacetParams.FACET_OFFSET, 0) > 0) {
+                response = getFacetResponse(facetFields[0]);
+            } else if (facetFields != null
+                && AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD.equals(facetFields[0]))
+            {
+                response = getFacetResponse(facetFields[0], "kept", "removed");
+            } else if (facetFields != null
+                && AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD.equals(facetFields[0]))
+            {
+                response = getFacetResponse(facetFields[0], "xwiki:Foo.Deleted", "xwiki:Foo.Existing");
+            } else if (facetFields != null) {
+                // Only the first shared regions are still referenced.
+                response = getFacetResponse(facetFields[0], "fingerprint1");
+            } else if (filterQueries == null) {
+                response = getDocumentsResponse(10, List.of());
+            } else if (filterQueries[0].startsWith(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD)) {
+                response = getDocumentsResponse(3, List.of(
+                    Map.of(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, "2.1"),
+                    Map.of(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, "2.1"),
+                    Map.of(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, "1.1")));
+            } else {
+                response = getDocumentsResponse(2, List.of(
+                    Map.of(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, "content1",
+                        AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "fingerprint1"),
+                    Map.of(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, "content2",
+                        AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "fingerprint2")));
+            }
+            return response;
+        });
+
+        // The count of documents doesn't change in this test since nothing is actually removed.
+        assertEquals(0, this.compactor.compact());
+
+        InOrder inOrder = inOrder(this.storageManager, this.solrClient);
+        inOrder.verify(this.storageManager).flush();
+        inOrder.verify(this.solrClient).deleteByQuery("(wordsQuery:removed) OR (document:xwiki\\:Foo.Deleted) OR "
+            + "(document:xwiki\\:Foo.Existing AND -documentVersion:(2.1))");
+        inOrder.verify(this.solrClient).commit();
+        inOrder.verify(this.solrClient).deleteById(List.of("content2"));
+        inOrder.verify(this.solrClient).commit();
+    }
+}
@@ -24,7 +24,9 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -33,14 +35,18 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.contrib.wordnotification.PartAnalysisResult;
 import org.xwiki.contrib.wordnotification.WordsAnalysisException;
 import org.xwiki.contrib.wordnotification.WordsAnalysisResults;
 import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
 import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.WordsNotificationConfiguration;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentVersionReference;
@@ -52,16 +58,24 @@ import org.xwiki.properties.converter.Converter;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrException;
 import org.xwiki.search.solr.internal.DefaultSolrUtils;
+import org.xwiki.test.LogLevel;
 import org.xwiki.test.annotation.ComponentList;
+import org.xwiki.test.junit5.LogCaptureExtension;
 import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectComponentManager;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.test.mockito.MockitoComponentManager;
 import org.xwiki.user.UserReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -71,13 +85,16 @@ import static org.mockito.Mockito.when;
  * @version $Id$
  * @since 1.0
  */
-@ComponentList({ DefaultSolrUtils.class })
+@ComponentList({ DefaultSolrUtils.class, RegionsCodec.class })
 @ComponentTest
 class AnalysisResultStorageManagerTest
 {
     @InjectMockComponents
     private AnalysisResultStorageManager storageManager;
 
+    @InjectComponentManager
+    private MockitoComponentManager componentManager;
+
     @MockComponent
     private Solr solr;
 
@@ -90,11 +107,23 @@ class AnalysisResultStorageManagerTest
     @MockComponent
     private ConverterManager converterManager;
 
+    @MockComponent
+    private WordsNotificationConfiguration configuration;
+
+    @MockComponent
+    private AnalysisResultCache resultCache;
+
+    @RegisterExtension
+    private LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
     private SolrClient solrClient;
 
     @BeforeEach
     void beforeEach() throws SolrException, InitializationException
     {
+        when(this.configuration.getStorageBatchSize()).thenReturn(10);
+        when(this.configuration.getStorageFlushInterval()).thenReturn(0L);
+        when(this.configuration.getStorageCommitWithin()).thenReturn(5000);
         this.solrClient = mock(SolrClient.class);
         when(this.solr.getClient(AnalysisResultSolrCoreInitializer.ANALYSIS_RESULT_SOLR_CORE))
             .thenReturn(this.solrClient);
@@ -106,6 +135,14 @@ class AnalysisResultStorageManagerTest
             .then(invocationOnMock -> invocationOnMock.getArgument(1).toString());
     }
 
+    private List<WordsMentionLocalization> removeEncodedRegions(SolrInputDocument document)
+        throws ComponentLookupException, WordsAnalysisException
+    {
+        byte[] encodedRegions =
+            (byte[]) document.removeField(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD).getValue();
+        return this.componentManager.<RegionsCodec>getInstance(RegionsCodec.class).decode(encodedRegions);
+    }
+
     @Test
     void saveAnalysisResults() throws WordsAnalysisException, SolrServerException, IOException
     {
@@ -123,6 +160,8 @@ class AnalysisResultStorageManagerTest
         String serializedReference = "xwiki:Foo.Bar";
         when(this.entityReferenceSerializer.serialize(documentVersionReference)).thenReturn(serializedReference);
         when(this.entityReferenceSerializer.serialize(documentReference)).thenReturn(serializedReference);
+        when(this.entityReferenceResolver.resolve(serializedReference, EntityType.DOCUMENT))
+            .thenReturn(documentReference);
 
         PartAnalysisResult titleAnalysis = new PartAnalysisResult("title");
         titleAnalysis.addRegion(new WordsMentionLocalization(documentReference, 0, 12, 15));
@@ -131,12 +170,15 @@ class AnalysisResultStorageManagerTest
         PartAnalysisResult contentAnalysis = new PartAnalysisResult("content");
         contentAnalysis.addRegion(new WordsMentionLocalization(documentReference, 3, 4, 7));
         contentAnalysis.addRegion(new WordsMentionLocalization(documentReference, 3, 16, 19));
+        contentAnalysis.setFingerprint("contentFingerprint");
         wordsAnalysisResults.addResult(contentAnalysis);
 
         EntityReference xobject1 = new EntityReference("xobject1", EntityType.OBJECT);
         when(this.entityReferenceSerializer.serialize(xobject1)).thenReturn("xobject1");
+        when(this.entityReferenceResolver.resolve("xobject1", EntityType.OBJECT)).thenReturn(xobject1);
         EntityReference xobject2 = new EntityReference("xobject2", EntityType.OBJECT);
         when(this.entityReferenceSerializer.serialize(xobject2)).thenReturn("xobject2");
+        when(this.entityReferenceResolver.resolve("xobject2", EntityType.OBJECT)).thenReturn(xobject2);
 
         PartAnalysisResult commentsAnalysis = new PartAnalysisResult("comments");
         commentsAnalysis.addRegion(new WordsMentionLocalization(xobject1, 0, 0, 745));
@@ -150,8 +192,7 @@ class AnalysisResultStorageManagerTest
         solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, serializedReference);
         solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, version);
         solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query);
-        solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
-            "(DOCUMENT," + serializedReference + ",0,12,15)");
+        solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, 1L);
         solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "title");
         solrInputDocument1.addField(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID,
             expectedCommonIdentifier + "_title");
@@ -161,40 +202,179 @@ class AnalysisResultStorageManagerTest
         solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, serializedReference);
         solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, version);
         solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query);
-        solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
-            "(DOCUMENT," + serializedReference + ",3,4,7)");
-        solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
-            "(DOCUMENT," + serializedReference + ",3,16,19)");
+        solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, 2L);
         solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "content");
+        solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "contentFingerprint");
         solrInputDocument2.addField(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID,
             expectedCommonIdentifier + "_content");
 
+        // The regions of the fingerprinted part are stored apart, to be shared with other versions.
+        SolrInputDocument sharedContentDocument = new SolrInputDocument();
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, creationDate);
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query);
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, 2L);
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "content");
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "contentFingerprint");
+        sharedContentDocument.addField(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID,
+            "content_contentFingerprint_content_myQuery");
+
         SolrInputDocument solrInputDocument3 = new SolrInputDocument();
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, creationDate);
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_FIELD, serializedReference);
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.DOCUMENT_VERSION_FIELD, version);
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, query);
-        solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
-            "(OBJECT,xobject1,0,0,745)");
-        solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
-            "(OBJECT,xobject2,14,16,19878)");
+        solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, 2L);
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "comments");
         solrInputDocument3.addField(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID,
             expectedCommonIdentifier + "_comments");
 
-        when(this.solrClient.add(any(Collection.class))).then(invocationOnMock -> {
+        when(this.solrClient.add(any(Collection.class), eq(5000))).then(invocationOnMock -> {
             List<SolrInputDocument> documents = invocationOnMock.getArgument(0);
-            assertEquals(3, documents.size());
+            assertEquals(4, documents.size());
+
+            // The encoded regions are checked by decoding them, and removed before comparing the other fields.
+            assertEquals(List.copyOf(titleAnalysis.getRegions()), removeEncodedRegions(documents.get(0)));
+            assertNull(documents.get(1).getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD));
+            assertEquals(List.copyOf(contentAnalysis.getRegions()), removeEncodedRegions(documents.get(2)));
+            assertEquals(List.copyOf(commentsAnalysis.getRegions()), removeEncodedRegions(documents.get(3)));
 
             // We rely on toString since there's no proper equals method to rely on in SolrInputDocument
             assertEquals(solrInputDocument1.toString(), documents.get(0).toString());
             assertEquals(solrInputDocument2.toString(), documents.get(1).toString());
-            assertEquals(solrInputDocument3.toString(), documents.get(2).toString());
+            assertEquals(sharedContentDocument.toString(), documents.get(2).toString());
+            assertEquals(solrInputDocument3.toString(), documents.get(3).toString());
             return null;
         });
         this.storageManager.saveAnalysisResults(wordsAnalysisResults);
-        verify(this.solrClient).add(any(Collection.class));
-        verify(this.solrClient).commit();
+        verify(this.solrClient, never()).add(any(Collection.class), anyInt());
+        verify(this.resultCache).set(wordsAnalysisResults);
+
+        // Results waiting to be flushed are loaded without any Solr query.
+        WordsQuery otherUserQuery = new WordsQuery(query, mock(UserReference.class));
+        WordsAnalysisResults expectedPendingResults =
+            new WordsAnalysisResults(documentVersionReference, otherUserQuery, creationDate);
+        expectedPendingResults.addResult(titleAnalysis);
+        expectedPendingResults.addResult(contentAnalysis);
+        expectedPendingResults.addResult(commentsAnalysis);
+        assertEquals(Optional.of(expectedPendingResults),
+            this.storageManager.loadAnalysisResults(documentVersionReference, otherUserQuery));
+        verify(this.solrClient, never()).query(any());
+
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
+        verify(this.solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+        verify(this.solrClient, never()).commit();
+
+        // Results waiting to be committed by Solr are still loaded without any Solr query.
+        assertEquals(Optional.of(expectedPendingResults),
+            this.storageManager.loadAnalysisResults(documentVersionReference, otherUserQuery));
+        verify(this.solrClient, never()).query(any());
+
+        // Nothing left to flush.
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
+    }
+
+    @Test
+    void saveAnalysisResultsFlushWhenBatchIsFull() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        when(this.configuration.getStorageBatchSize()).thenReturn(4);
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "1.1");
+        when(this.entityReferenceSerializer.serialize(any())).thenReturn("xwiki:Foo.Bar");
+
+        for (String query : List.of("foo", "bar")) {
+            WordsAnalysisResults results =
+                new WordsAnalysisResults(documentVersionReference, new WordsQuery(query, null), new Date(42));
+            results.addResult(new PartAnalysisResult("title"));
+            results.addResult(new PartAnalysisResult("content"));
+            this.storageManager.saveAnalysisResults(results);
+        }
+
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
+        verify(this.solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void flushWithoutCommitDelay() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        when(this.configuration.getStorageCommitWithin()).thenReturn(0);
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "1.1");
+        when(this.entityReferenceSerializer.serialize(any())).thenReturn("xwiki:Foo.Bar");
+        WordsAnalysisResults results =
+            new WordsAnalysisResults(documentVersionReference, new WordsQuery("foo", null), new Date(42));
+        results.addResult(new PartAnalysisResult("title"));
+        this.storageManager.saveAnalysisResults(results);
+
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(0));
+        verify(this.solrClient).commit(false, false, true);
+    }
+
+    @Test
+    void flushFailureKeepsResults() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "1.1");
+        when(this.entityReferenceSerializer.serialize(any())).thenReturn("xwiki:Foo.Bar");
+        WordsQuery fooQuery = new WordsQuery("foo", null);
+        WordsAnalysisResults fooResults = new WordsAnalysisResults(documentVersionReference, fooQuery, new Date(42));
+        fooResults.addResult(new PartAnalysisResult("title"));
+        this.storageManager.saveAnalysisResults(fooResults);
+
+        when(this.solrClient.add(any(Collection.class), eq(5000))).thenThrow(new IOException("Solr is down"))
+            .then(invocationOnMock -> {
+                List<SolrInputDocument> documents = invocationOnMock.getArgument(0);
+                assertEquals(2, documents.size());
+                return null;
+            });
+        WordsAnalysisException exception = assertThrows(WordsAnalysisException.class, this.storageManager::flush);
+        assertEquals("Error while trying to add documents to Solr core.", exception.getMessage());
+
+        // The results which couldn't be sent are still loaded without any Solr query.
+        assertEquals(Optional.of(fooResults), this.storageManager.loadAnalysisResults(documentVersionReference,
+            fooQuery));
+        verify(this.solrClient, never()).query(any());
+
+        // They're sent again on the next flush, along with the results saved in the meantime.
+        WordsAnalysisResults barResults =
+            new WordsAnalysisResults(documentVersionReference, new WordsQuery("bar", null), new Date(42));
+        barResults.addResult(new PartAnalysisResult("title"));
+        this.storageManager.saveAnalysisResults(barResults);
+        this.storageManager.flush();
+        verify(this.solrClient, times(2)).add(any(Collection.class), eq(5000));
+    }
+
+    @Test
+    void removeAnalysisResults() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "1.1");
+        UserReference userReference = mock(UserReference.class);
+        WordsAnalysisResults removedResults =
+            new WordsAnalysisResults(documentVersionReference, new WordsQuery("removed", userReference), new Date());
+        removedResults.addResult(new PartAnalysisResult("title"));
+        this.storageManager.saveAnalysisResults(removedResults);
+        WordsAnalysisResults keptResults =
+            new WordsAnalysisResults(documentVersionReference, new WordsQuery("kept", userReference), new Date());
+        keptResults.addResult(new PartAnalysisResult("title"));
+        this.storageManager.saveAnalysisResults(keptResults);
+
+        this.storageManager.removeAnalysisResults(List.of("removed", "other query"));
+        verify(this.solrClient).deleteByQuery("wordsQuery:(removed OR other\\ query)", 5000);
+        verify(this.solrClient).commit(true, true, true);
+
+        // The buffered results of the removed query are not sent anymore.
+        when(this.solrClient.add(any(Collection.class), eq(5000))).then(invocationOnMock -> {
+            List<SolrInputDocument> documents = invocationOnMock.getArgument(0);
+            assertEquals(1, documents.size());
+            assertEquals("kept",
+                documents.get(0).getFieldValue(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD));
+            return null;
+        });
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
     }
 
     @Test
@@ -218,8 +398,9 @@ class AnalysisResultStorageManagerTest
         QueryResponse queryResponse = mock(QueryResponse.class);
         SolrQuery expectedSolrQuery = new SolrQuery()
             .addFilterQuery(expectedQuery)
-            .setStart(0)
-            .setRows(100);
+            .setSort(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, SolrQuery.ORDER.asc)
+            .setRows(1000)
+            .set(CursorMarkParams.CURSOR_MARK_PARAM, CursorMarkParams.CURSOR_MARK_START);
 
         when(this.solrClient.query(any())).then(invocationOnMock -> {
             SolrQuery solrQuery = invocationOnMock.getArgument(0);
@@ -227,9 +408,8 @@ class AnalysisResultStorageManagerTest
             return queryResponse;
         });
 
-        SolrDocumentList result = mock(SolrDocumentList.class);
+        SolrDocumentList result = new SolrDocumentList();
         when(queryResponse.getResults()).thenReturn(result);
-        when(result.getNumFound()).thenReturn(0L);
 
         assertEquals(Optional.empty(), this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery));
         verify(this.solrClient).query(any());
@@ -306,5 +486,269 @@ class AnalysisResultStorageManagerTest
 
         assertEquals(Optional.of(expectedWordsAnalysisResult),
             this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery));
+        verify(this.resultCache).set(expectedWordsAnalysisResult);
+
+        // Cached results are returned without querying Solr.
+        WordsAnalysisResults cachedResults =
+            new WordsAnalysisResults(documentVersionReference, wordsQuery, new Date(42));
+        when(this.resultCache.get(documentVersionReference, wordsQuery)).thenReturn(Optional.of(cachedResults));
+        assertEquals(Optional.of(cachedResults),
+            this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery));
+        verify(this.solrClient, times(2)).query(any());
+    }
+
+    @Test
+    void loadEncodedAnalysisResults() throws Exception
+    {
+        WordsQuery wordsQuery = new WordsQuery("myQuery", mock(UserReference.class));
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "2.3");
+        Date creationDate = new Date(489);
+        String serializedReference = "xwiki:Foo.Bar";
+        when(this.entityReferenceSerializer.serialize(documentReference)).thenReturn(serializedReference);
+        when(this.entityReferenceResolver.resolve(serializedReference, EntityType.DOCUMENT))
+            .thenReturn(documentReference);
+
+        List<WordsMentionLocalization> regions = List.of(
+            new WordsMentionLocalization(documentReference, 3, 4, 7),
+            new WordsMentionLocalization(documentReference, 3, 16, 19));
+        byte[] encodedRegions = this.componentManager.<RegionsCodec>getInstance(RegionsCodec.class).encode(regions);
+
+        SolrDocument solrDocument = new SolrDocument();
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, creationDate);
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, "myQuery");
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD, encodedRegions);
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "content");
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "contentFingerprint");
+        SolrDocumentList solrDocuments = new SolrDocumentList();
+        solrDocuments.add(solrDocument);
+        solrDocuments.setNumFound(1);
+
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(queryResponse.getResults()).thenReturn(solrDocuments);
+        when(this.solrClient.query(any())).thenReturn(queryResponse);
+
+        Optional<WordsAnalysisResults> results =
+            this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery);
+        assertTrue(results.isPresent());
+        assertEquals(2, results.get().getOccurrences());
+
+        PartAnalysisResult partAnalysisResult = results.get().getResults().get(0);
+        assertInstanceOf(EncodedPartAnalysisResult.class, partAnalysisResult);
+        assertEquals("contentFingerprint", partAnalysisResult.getFingerprint());
+        // Counting the occurrences doesn't need to decode the regions.
+        assertFalse(((EncodedPartAnalysisResult) partAnalysisResult).isDecoded());
+
+        // Reusing the result for another version doesn't need to decode the regions either.
+        DocumentVersionReference nextVersionReference = new DocumentVersionReference(documentReference, "2.4");
+        when(this.entityReferenceSerializer.serialize(nextVersionReference)).thenReturn(serializedReference);
+        WordsAnalysisResults nextResults = new WordsAnalysisResults(nextVersionReference, wordsQuery, creationDate);
+        nextResults.addResult(partAnalysisResult);
+        when(this.solrClient.add(any(Collection.class), eq(5000))).then(invocationOnMock -> {
+            List<SolrInputDocument> documents = invocationOnMock.getArgument(0);
+            assertEquals(2, documents.size());
+            assertSame(encodedRegions,
+                documents.get(1).getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD));
+            return null;
+        });
+        this.storageManager.saveAnalysisResults(nextResults);
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
+        assertFalse(((EncodedPartAnalysisResult) partAnalysisResult).isDecoded());
+
+        PartAnalysisResult expectedPartAnalysisResult = new PartAnalysisResult("content");
+        expectedPartAnalysisResult.addRegions(regions);
+        assertEquals(expectedPartAnalysisResult, partAnalysisResult);
+        assertTrue(((EncodedPartAnalysisResult) partAnalysisResult).isDecoded());
+    }
+
+    @Test
+    void loadSharedAnalysisResults() throws Exception
+    {
+        WordsQuery wordsQuery = new WordsQuery("myQuery", mock(UserReference.class));
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "2.3");
+        Date creationDate = new Date(489);
+        String serializedReference = "xwiki:Foo.Bar";
+        when(this.entityReferenceSerializer.serialize(any())).thenReturn(serializedReference);
+        when(this.entityReferenceResolver.resolve(serializedReference, EntityType.DOCUMENT))
+            .thenReturn(documentReference);
+
+        List<WordsMentionLocalization> regions = List.of(new WordsMentionLocalization(documentReference, 3, 4, 7));
+        byte[] encodedRegions = this.componentManager.<RegionsCodec>getInstance(RegionsCodec.class).encode(regions);
+
+        SolrDocument solrDocument = new SolrDocument();
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, creationDate);
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, "myQuery");
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, 1L);
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "content");
+        solrDocument.addField(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD, "contentFingerprint");
+        SolrDocumentList solrDocuments = new SolrDocumentList();
+        solrDocuments.add(solrDocument);
+        solrDocuments.setNumFound(1);
+
+        QueryResponse queryResponse = mock(QueryResponse.class);
+        when(queryResponse.getResults()).thenReturn(solrDocuments);
+        when(this.solrClient.query(any())).thenReturn(queryResponse);
+
+        // The shared regions are missing: the results are considered as missing too.
+        String contentIdentifier = "content_contentFingerprint_content_myQuery";
+        when(this.solrClient.getById(Set.of(contentIdentifier))).thenReturn(new SolrDocumentList());
+        assertEquals(Optional.empty(), this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery));
+        assertEquals(String.format("Some shared regions of the results of [%s] for query [myQuery] are missing.",
+            documentVersionReference), this.logCapture.getMessage(0));
+        verify(this.resultCache, never()).set(any());
+
+        SolrDocument contentDocument = new SolrDocument();
+        contentDocument.addField(AnalysisResultSolrCoreInitializer.SOLR_FIELD_ID, contentIdentifier);
+        contentDocument.addField(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD, encodedRegions);
+        SolrDocumentList contentDocuments = new SolrDocumentList();
+        contentDocuments.add(contentDocument);
+        when(this.solrClient.getById(Set.of(contentIdentifier))).thenReturn(contentDocuments);
+
+        Optional<WordsAnalysisResults> results =
+            this.storageManager.loadAnalysisResults(documentVersionReference, wordsQuery);
+        assertTrue(results.isPresent());
+        PartAnalysisResult partAnalysisResult = results.get().getResults().get(0);
+        assertEquals("contentFingerprint", partAnalysisResult.getFingerprint());
+        assertEquals(List.copyOf(regions), List.copyOf(partAnalysisResult.getRegions()));
+
+        // Reusing the result for another version only stores a new reference to the shared regions.
+        DocumentVersionReference nextVersionReference = new DocumentVersionReference(documentReference, "2.4");
+        WordsAnalysisResults nextResults = new WordsAnalysisResults(nextVersionReference, wordsQuery, creationDate);
+        nextResults.addResult(partAnalysisResult);
+        when(this.solrClient.add(any(Collection.class), eq(5000))).then(invocationOnMock -> {
+            List<SolrInputDocument> documents = invocationOnMock.getArgument(0);
+            assertEquals(1, documents.size());
+            assertNull(documents.get(0).getFieldValue(AnalysisResultSolrCoreInitializer.ENCODED_REGIONS_FIELD));
+            assertEquals("contentFingerprint",
+                documents.get(0).getFieldValue(AnalysisResultSolrCoreInitializer.FINGERPRINT_FIELD));
+            return null;
+        });
+        this.storageManager.saveAnalysisResults(nextResults);
+        this.storageManager.flush();
+        verify(this.solrClient).add(any(Collection.class), eq(5000));
+    }
+
+    @Test
+    void loadOccurrenceSummary() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "2.3");
+        when(this.entityReferenceSerializer.serialize(documentVersionReference)).thenReturn("xwiki:Foo.Bar");
+        WordsQuery fooQuery = new WordsQuery("foo", null);
+        WordsQuery barQuery = new WordsQuery("bar", null);
+        WordsQuery buzQuery = new WordsQuery("buz", null);
+        WordsQuery legacyQuery = new WordsQuery("legacy", null);
+        WordsQuery cachedQuery = new WordsQuery("cached", null);
+
+        WordsAnalysisResults cachedResults =
+            new WordsAnalysisResults(documentVersionReference, cachedQuery, new Date(42));
+        PartAnalysisResult cachedPart = new PartAnalysisResult("content");
+        cachedPart.addRegion(new WordsMentionLocalization(documentReference, 0, 1, 2));
+        cachedResults.addResult(cachedPart);
+        when(this.resultCache.get(documentVersionReference, cachedQuery)).thenReturn(Optional.of(cachedResults));
+
+        SolrDocumentList solrDocuments = new SolrDocumentList();
+        for (Object[] fields : new Object[][] {
+            { "foo", 2L }, { "foo", 3L }, { "bar", 0L }, { "legacy", 4L }, { "legacy", null }, { "other", 1L } })
+        {
+            SolrDocument solrDocument = new SolrDocument();
+            solrDocument.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, fields[0]);
+            if (fields[1] != null) {
+                solrDocument.addField(AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, fields[1]);
+            }
+            solrDocuments.add(solrDocument);
+        }
+        solrDocuments.setNumFound(solrDocuments.size());
+
+        when(this.solrClient.query(any())).then(invocationOnMock -> {
+            SolrQuery solrQuery = invocationOnMock.getArgument(0);
+            // Only the query and the occurrences are retrieved, not the regions.
+            assertEquals(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD + ","
+                + AnalysisResultSolrCoreInitializer.OCCURRENCES_FIELD, solrQuery.getFields());
+            QueryResponse queryResponse = mock(QueryResponse.class);
+            when(queryResponse.getResults()).thenReturn(solrDocuments);
+            return queryResponse;
+        });
+
+        // The results of the legacy query have been stored without the occurrences, so they're considered missing.
+        assertEquals(Map.of(cachedQuery, 1L, fooQuery, 5L, barQuery, 0L),
+            this.storageManager.loadOccurrenceSummary(documentVersionReference,
+                List.of(cachedQuery, fooQuery, barQuery, buzQuery, legacyQuery)));
+        verify(this.solrClient).query(any());
+    }
+
+    @Test
+    void loadAnalysisResultsForQueries() throws WordsAnalysisException, SolrServerException, IOException
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        DocumentVersionReference documentVersionReference = new DocumentVersionReference(documentReference, "2.3");
+        String serializedReference = "xwiki:Foo.Bar";
+        when(this.entityReferenceResolver.resolve(serializedReference, EntityType.DOCUMENT))
+            .thenReturn(documentReference);
+        Date creationDate = new Date(489);
+
+        String expectedQuery = "filter(document:xwiki\\:Foo.Bar) AND filter(documentVersion:2.3)";
+
+        // 1500 results are split in 2 pages: 750 for query foo, 750 for query bar and none for query buz.
+        SolrDocumentList firstPage = new SolrDocumentList();
+        SolrDocumentList secondPage = new SolrDocumentList();
+        for (int i = 0; i < 1500; i++) {
+            SolrDocument solrDocument = new SolrDocument();
+            solrDocument.addField(AnalysisResultSolrCoreInitializer.CREATED_DATE_FIELD, creationDate);
+            solrDocument.addField(AnalysisResultSolrCoreInitializer.WORDS_QUERY_FIELD, (i % 2 == 0) ? "foo" : "bar");
+            solrDocument.addField(AnalysisResultSolrCoreInitializer.REGIONS_FIELD,
+                "(DOCUMENT," + serializedReference + ",0,12,15)");
+            solrDocument.addField(AnalysisResultSolrCoreInitializer.ANALYZER_HINT, "analyzer" + i);
+            if (i < 1000) {
+                firstPage.add(solrDocument);
+            } else {
+                secondPage.add(solrDocument);
+            }
+        }
+        firstPage.setNumFound(1500);
+        secondPage.setNumFound(1500);
+
+        when(this.solrClient.query(any())).then(invocationOnMock -> {
+            SolrQuery solrQuery = invocationOnMock.getArgument(0);
+            // The queries are filtered in Solr.
+            assertArrayEquals(new String[] { expectedQuery,
+                "{!terms f=wordsQuery separator=$wordsQueriesSeparator v=$wordsQueries}" },
+                solrQuery.getFilterQueries());
+            assertEquals("\n", solrQuery.get("wordsQueriesSeparator"));
+            assertEquals("foo\nbar\nbuz", solrQuery.get("wordsQueries"));
+            assertEquals(1000, solrQuery.getRows());
+            assertNull(solrQuery.getStart());
+            QueryResponse queryResponse = mock(QueryResponse.class);
+            if (CursorMarkParams.CURSOR_MARK_START.equals(solrQuery.get(CursorMarkParams.CURSOR_MARK_PARAM))) {
+                when(queryResponse.getResults()).thenReturn(firstPage);
+                when(queryResponse.getNextCursorMark()).thenReturn("next");
+            } else {
+                assertEquals("next", solrQuery.get(CursorMarkParams.CURSOR_MARK_PARAM));
+                when(queryResponse.getResults()).thenReturn(secondPage);
+                when(queryResponse.getNextCursorMark()).thenReturn("last");
+            }
+            return queryResponse;
+        });
+
+        UserReference userReference = mock(UserReference.class);
+        WordsQuery fooQuery = new WordsQuery("foo", null);
+        WordsQuery userFooQuery = new WordsQuery("foo", userReference);
+        WordsQuery barQuery = new WordsQuery("bar", userReference);
+        WordsQuery buzQuery = new WordsQuery("buz", null);
+
+        Map<WordsQuery, WordsAnalysisResults> results = this.storageManager.loadAnalysisResults(
+            documentVersionReference, List.of(fooQuery, userFooQuery, barQuery, buzQuery));
+        verify(this.solrClient, times(2)).query(any());
+
+        assertEquals(Set.of(fooQuery, userFooQuery, barQuery), results.keySet());
+        assertEquals(750, results.get(fooQuery).getResults().size());
+        assertEquals(750, results.get(fooQuery).getOccurrences());
+        assertEquals(creationDate, results.get(fooQuery).getDate());
+        assertEquals(userFooQuery, results.get(userFooQuery).getQuery());
+        assertEquals(results.get(fooQuery).getResults(), results.get(userFooQuery).getResults());
+        assertEquals(750, results.get(barQuery).getResults().size());
+        assertEquals(barQuery, results.get(barQuery).getQuery());
     }
-}
\ No newline at end of file
+}
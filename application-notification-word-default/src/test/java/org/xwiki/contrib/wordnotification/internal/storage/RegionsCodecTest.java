@@ -0,0 +1,135 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.storage;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.WordsAnalysisException;
+import org.xwiki.contrib.wordnotification.WordsMentionLocalization;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RegionsCodec}.
+ *
+ * @version $Id$
+ * @since 1.2.3
+ */
+@ComponentTest
+class RegionsCodecTest
+{
+    @InjectMockComponents
+    private RegionsCodec regionsCodec;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private EntityReferenceResolver<String> entityReferenceResolver;
+
+    private DocumentReference documentReference;
+
+    private EntityReference xobject;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.documentReference = new DocumentReference("xwiki", "Foo", "Bar");
+        when(this.entityReferenceSerializer.serialize(this.documentReference)).thenReturn("xwiki:Foo.Bar");
+        when(this.entityReferenceResolver.resolve("xwiki:Foo.Bar", EntityType.DOCUMENT))
+            .thenReturn(this.documentReference);
+
+        this.xobject = new EntityReference("xobject", EntityType.OBJECT);
+        when(this.entityReferenceSerializer.serialize(this.xobject)).thenReturn("xobject");
+        when(this.entityReferenceResolver.resolve("xobject", EntityType.OBJECT)).thenReturn(this.xobject);
+    }
+
+    @Test
+    void encodeAndDecode() throws WordsAnalysisException
+    {
+        List<WordsMentionLocalization> regions = List.of(
+            new WordsMentionLocalization(this.documentReference, 0, 12, 15),
+            new WordsMentionLocalization(this.xobject, 14, 16, 19878),
+            new WordsMentionLocalization(this.documentReference, 3, 300000, 300004));
+
+        byte[] encodedRegions = this.regionsCodec.encode(regions);
+        assertEquals(RegionsCodec.FORMAT_VERSION, encodedRegions[0]);
+        assertEquals(3, this.regionsCodec.getRegionCount(encodedRegions));
+        assertEquals(regions, this.regionsCodec.decode(encodedRegions));
+
+        // Each distinct reference is serialized only once.
+        verify(this.entityReferenceSerializer).serialize(this.documentReference);
+        verify(this.entityReferenceResolver).resolve("xwiki:Foo.Bar", EntityType.DOCUMENT);
+    }
+
+    @Test
+    void encodeAndDecodeEmpty() throws WordsAnalysisException
+    {
+        byte[] encodedRegions = this.regionsCodec.encode(List.of());
+        assertEquals(0, this.regionsCodec.getRegionCount(encodedRegions));
+        assertEquals(List.of(), this.regionsCodec.decode(encodedRegions));
+    }
+
+    @Test
+    void getRegionCountDoesNotResolveReferences() throws WordsAnalysisException
+    {
+        byte[] encodedRegions =
+            this.regionsCodec.encode(List.of(new WordsMentionLocalization(this.documentReference, 0, 1, 2)));
+        assertEquals(1, this.regionsCodec.getRegionCount(encodedRegions));
+        verify(this.entityReferenceResolver, never()).resolve(any(), any());
+    }
+
+    @Test
+    void decodeUnsupportedFormat()
+    {
+        WordsAnalysisException exception =
+            assertThrows(WordsAnalysisException.class, () -> this.regionsCodec.decode(new byte[] { 42, 0, 0 }));
+        assertEquals("Unsupported format of encoded regions [42]", exception.getMessage());
+
+        assertThrows(WordsAnalysisException.class, () -> this.regionsCodec.getRegionCount(new byte[0]));
+    }
+
+    @Test
+    void decodeTruncated() throws WordsAnalysisException
+    {
+        byte[] encodedRegions =
+            this.regionsCodec.encode(List.of(new WordsMentionLocalization(this.documentReference, 0, 1, 2)));
+        byte[] truncated = new byte[encodedRegions.length - 1];
+        System.arraycopy(encodedRegions, 0, truncated, 0, truncated.length);
+
+        WordsAnalysisException exception =
+            assertThrows(WordsAnalysisException.class, () -> this.regionsCodec.decode(truncated));
+        assertEquals("Invalid encoded regions", exception.getMessage());
+    }
+}
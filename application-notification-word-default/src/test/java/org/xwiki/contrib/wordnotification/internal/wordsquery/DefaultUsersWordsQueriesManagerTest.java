@@ -39,6 +39,7 @@ import org.xwiki.model.reference.WikiReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryManager;
+import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -59,6 +60,7 @@ import com.xpn.xwiki.objects.BaseObject;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -74,6 +76,7 @@ import static org.mockito.Mockito.when;
  * @since 1.0
  */
 @ComponentTest
+@ComponentList(UserWikisResolver.class)
 class DefaultUsersWordsQueriesManagerTest
 {
     @InjectMockComponents
@@ -158,7 +161,7 @@ class DefaultUsersWordsQueriesManagerTest
 
         result = Set.of(wordsQuery1, wordsQuery2);
         assertEquals(result, this.usersWordsQueriesManager.getQueries(userReference));
-        verify(this.wordsQueryCache).setWordsQueries(userReference, result);
+        verify(this.wordsQueryCache).setWordsQueries(userReference, result, 0L);
     }
 
     @Test
@@ -280,7 +283,7 @@ class DefaultUsersWordsQueriesManagerTest
         when(this.userReferenceResolver.resolve("user2")).thenReturn(userReference2);
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
-        verify(this.wordsQueryCache).setUserReferences(result, wikiReference);
+        verify(this.wordsQueryCache).setUserReferences(result, wikiReference, 0L);
     }
 
     @Test
@@ -321,7 +324,7 @@ class DefaultUsersWordsQueriesManagerTest
         when(this.userReferenceResolver.resolve("user2")).thenReturn(userReference2);
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
-        verify(this.wordsQueryCache).setUserReferences(result, wikiReference);
+        verify(this.wordsQueryCache).setUserReferences(result, wikiReference, 0L);
     }
 
     @Test
@@ -362,7 +365,7 @@ class DefaultUsersWordsQueriesManagerTest
         when(this.userReferenceResolver.resolve("user2")).thenReturn(userReference2);
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
-        verify(this.wordsQueryCache).setUserReferences(result, mainWikiReference);
+        verify(this.wordsQueryCache).setUserReferences(result, mainWikiReference, 0L);
     }
 
     @Test
@@ -409,8 +412,8 @@ class DefaultUsersWordsQueriesManagerTest
         when(this.userReferenceResolver.resolve("user2")).thenReturn(userReference2);
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
-        verify(this.wordsQueryCache).setUserReferences(resultGlobal, mainWikiReference);
-        verify(this.wordsQueryCache, never()).setUserReferences(any(), eq(wikiReference));
+        verify(this.wordsQueryCache).setUserReferences(resultGlobal, mainWikiReference, 0L);
+        verify(this.wordsQueryCache, never()).setUserReferences(any(), eq(wikiReference), anyLong());
 
         when(this.wordsQueryCache.getUserReferences(mainWikiReference)).thenReturn(Optional.of(resultGlobal));
         when(this.wordsQueryCache.getUserReferences(wikiReference)).thenReturn(Optional.empty());
@@ -424,8 +427,8 @@ class DefaultUsersWordsQueriesManagerTest
         when(this.userReferenceResolver.resolve("user4")).thenReturn(userReference4);
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
-        verify(this.wordsQueryCache).setUserReferences(resultGlobal, mainWikiReference);
-        verify(this.wordsQueryCache).setUserReferences(resultLocal, wikiReference);
+        verify(this.wordsQueryCache).setUserReferences(resultGlobal, mainWikiReference, 0L);
+        verify(this.wordsQueryCache).setUserReferences(resultLocal, wikiReference, 0L);
 
         when(this.wordsQueryCache.getUserReferences(mainWikiReference)).thenReturn(Optional.empty());
         when(this.wordsQueryCache.getUserReferences(wikiReference)).thenReturn(Optional.empty());
@@ -439,7 +442,7 @@ class DefaultUsersWordsQueriesManagerTest
 
         assertEquals(result, this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(wikiReference));
 
-        verify(this.wordsQueryCache, times(2)).setUserReferences(resultGlobal, mainWikiReference);
-        verify(this.wordsQueryCache, times(2)).setUserReferences(resultLocal, wikiReference);
+        verify(this.wordsQueryCache, times(2)).setUserReferences(resultGlobal, mainWikiReference, 0L);
+        verify(this.wordsQueryCache, times(2)).setUserReferences(resultLocal, wikiReference, 0L);
     }
 }
\ No newline at end of file
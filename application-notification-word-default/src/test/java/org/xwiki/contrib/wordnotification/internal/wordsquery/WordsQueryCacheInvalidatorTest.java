@@ -19,11 +19,19 @@
  */
 package org.xwiki.contrib.wordnotification.internal.wordsquery;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 import javax.inject.Named;
 
 import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.analyzers.CompiledWordsQueryCache;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.remote.RemoteObservationManagerContext;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -38,6 +46,8 @@ import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
 import com.xpn.xwiki.objects.BaseObject;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -63,81 +73,182 @@ class WordsQueryCacheInvalidatorTest
     @MockComponent
     private WordsQueryCache wordsQueryCache;
 
+    @MockComponent
+    private CompiledWordsQueryCache compiledWordsQueryCache;
+
+    @MockComponent
+    private WordsQueryReferenceCounter queryReferenceCounter;
+
+    @MockComponent
+    private ObservationManager observationManager;
+
+    @MockComponent
+    private RemoteObservationManagerContext remoteObservationManagerContext;
+
+    private BaseObject mockQueryObject(String query)
+    {
+        BaseObject queryObject = mock(BaseObject.class, query);
+        when(queryObject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD)).thenReturn(query);
+        return queryObject;
+    }
+
     @Test
-    void onUpdatedEvent()
+    void onEventForNonUserDocument()
     {
         XWikiDocument sourceDoc = mock(XWikiDocument.class);
         XObjectUpdatedEvent event = new XObjectUpdatedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
         when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE)).thenReturn(null);
+        when(sourceDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(List.of(mockQueryObject("foo")));
 
         this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verifyNoInteractions(wordsQueryCache);
+        verifyNoInteractions(this.wordsQueryCache);
+        verifyNoInteractions(this.queryReferenceCounter);
+    }
 
+    @Test
+    void onAddedEvent()
+    {
+        XWikiDocument sourceDoc = mock(XWikiDocument.class);
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        XObjectAddedEvent event = new XObjectAddedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
+        when(sourceDoc.getOriginalDocument()).thenReturn(originalDoc);
         when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
             .thenReturn(mock(BaseObject.class));
+        when(originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(mock(BaseObject.class));
+        when(sourceDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(List.of(mockQueryObject("foo")));
 
-        DocumentReference documentReference = mock(DocumentReference.class);
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "Foo");
         when(sourceDoc.getDocumentReference()).thenReturn(documentReference);
-
         UserReference userReference = mock(UserReference.class);
         when(this.documentReferenceUserReferenceResolver.resolve(documentReference)).thenReturn(userReference);
 
         this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verify(this.wordsQueryCache).invalidateQueriesFrom(userReference);
-        verify(this.wordsQueryCache, never()).invalidateUsersWithQueriesFrom(any());
+        verify(this.wordsQueryCache).setWordsQueries(userReference, Set.of(new WordsQuery("foo", userReference)));
+        verify(this.wordsQueryCache).updateUserQueries(userReference, new WikiReference("xwiki"), Set.of(),
+            Set.of("foo"));
+        verify(this.wordsQueryCache, never()).invalidateQueriesFrom(any());
+        verify(this.queryReferenceCounter).setQueries(documentReference, Set.of(), Set.of("foo"), true);
+        verifyNoInteractions(this.compiledWordsQueryCache);
+        verify(this.observationManager).notify(any(WordsQueriesChangedEvent.class), isNull(), isNull());
     }
 
     @Test
-    void onAddedEvent()
+    void onDeletedEvent()
     {
         XWikiDocument sourceDoc = mock(XWikiDocument.class);
-        XObjectAddedEvent event = new XObjectAddedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
-        when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE)).thenReturn(null);
-
-        this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verifyNoInteractions(wordsQueryCache);
-
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        XObjectDeletedEvent event = new XObjectDeletedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
+        when(sourceDoc.getOriginalDocument()).thenReturn(originalDoc);
         when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
             .thenReturn(mock(BaseObject.class));
+        when(originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(mock(BaseObject.class));
+        when(originalDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(List.of(mockQueryObject("foo")));
 
-        DocumentReference documentReference = mock(DocumentReference.class);
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "Foo");
         when(sourceDoc.getDocumentReference()).thenReturn(documentReference);
-
-        WikiReference wikiReference = mock(WikiReference.class);
-        when(documentReference.getWikiReference()).thenReturn(wikiReference);
-
         UserReference userReference = mock(UserReference.class);
         when(this.documentReferenceUserReferenceResolver.resolve(documentReference)).thenReturn(userReference);
 
+        // The user doesn't have any query left.
         this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verify(this.wordsQueryCache).invalidateQueriesFrom(userReference);
-        verify(this.wordsQueryCache).invalidateUsersWithQueriesFrom(wikiReference);
+        verify(this.wordsQueryCache).setWordsQueries(userReference, Set.of());
+        verify(this.wordsQueryCache).updateUserQueries(userReference, new WikiReference("xwiki"), Set.of("foo"),
+            Set.of());
+        verify(this.compiledWordsQueryCache).invalidate("foo");
+        verify(this.queryReferenceCounter).setQueries(documentReference, Set.of("foo"), Set.of(), true);
     }
 
     @Test
-    void onDeletedEvent()
+    void onUpdatedEventInvalidateCompiledQueries()
     {
         XWikiDocument sourceDoc = mock(XWikiDocument.class);
-        XObjectDeletedEvent event = new XObjectDeletedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
-        when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE)).thenReturn(null);
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        XObjectUpdatedEvent event = new XObjectUpdatedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
+        when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(mock(BaseObject.class));
+        when(originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(mock(BaseObject.class));
+        when(sourceDoc.getOriginalDocument()).thenReturn(originalDoc);
+        when(sourceDoc.getDocumentReference()).thenReturn(mock(DocumentReference.class));
+
+        BaseObject fooObject = mock(BaseObject.class, "foo");
+        when(fooObject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD)).thenReturn("foo");
+        BaseObject barObject = mock(BaseObject.class, "bar");
+        when(barObject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD)).thenReturn("bar");
+        BaseObject buzObject = mock(BaseObject.class, "buz");
+        when(buzObject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD)).thenReturn("buz");
+
+        when(originalDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(Arrays.asList(fooObject, null, barObject));
+        when(sourceDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(List.of(fooObject, buzObject));
 
         this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verifyNoInteractions(wordsQueryCache);
+        verify(this.compiledWordsQueryCache).invalidate("bar");
+        verify(this.compiledWordsQueryCache, never()).invalidate("foo");
+        verify(this.compiledWordsQueryCache, never()).invalidate("buz");
+    }
 
-        when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+    @Test
+    void onDeletedUserDocumentUpdateQueryReferences()
+    {
+        XWikiDocument sourceDoc = mock(XWikiDocument.class);
+        XWikiDocument originalDoc = mock(XWikiDocument.class);
+        XObjectDeletedEvent event = new XObjectDeletedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE);
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "Foo");
+        when(sourceDoc.getDocumentReference()).thenReturn(documentReference);
+        when(sourceDoc.getOriginalDocument()).thenReturn(originalDoc);
+        when(originalDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
             .thenReturn(mock(BaseObject.class));
 
-        DocumentReference documentReference = mock(DocumentReference.class);
-        when(sourceDoc.getDocumentReference()).thenReturn(documentReference);
+        BaseObject fooObject = mock(BaseObject.class, "foo");
+        when(fooObject.getStringValue(WordsQueryXClassInitializer.QUERY_FIELD)).thenReturn("foo");
+        when(originalDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE)).thenReturn(List.of(fooObject));
 
-        WikiReference wikiReference = mock(WikiReference.class);
-        when(documentReference.getWikiReference()).thenReturn(wikiReference);
+        // The deleted document is not a user document anymore, so the user has no query left.
+        this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
+        verify(this.queryReferenceCounter).setQueries(documentReference, Set.of("foo"), Set.of(), true);
+        verify(this.wordsQueryCache).updateUserQueries(any(), eq(new WikiReference("xwiki")), any(), eq(Set.of()));
+    }
 
+    @Test
+    void onRemoteQueriesChangedEvent()
+    {
+        when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(true);
+        DocumentReference documentReference = new DocumentReference("xwiki", "XWiki", "Foo");
         UserReference userReference = mock(UserReference.class);
         when(this.documentReferenceUserReferenceResolver.resolve(documentReference)).thenReturn(userReference);
 
-        this.queryCacheInvalidator.onEvent(event, sourceDoc, null);
-        verify(this.wordsQueryCache).invalidateQueriesFrom(userReference);
-        verify(this.wordsQueryCache).invalidateUsersWithQueriesFrom(wikiReference);
+        this.queryCacheInvalidator.onEvent(
+            new WordsQueriesChangedEvent(documentReference, Set.of("foo", "bar"), Set.of("foo")), null, null);
+        verify(this.wordsQueryCache).setWordsQueries(userReference, Set.of(new WordsQuery("foo", userReference)));
+        verify(this.wordsQueryCache).updateUserQueries(userReference, new WikiReference("xwiki"),
+            Set.of("foo", "bar"), Set.of("foo"));
+        verify(this.compiledWordsQueryCache).invalidate("bar");
+        // The results of the removed queries are purged by the member where the change happened.
+        verify(this.queryReferenceCounter).setQueries(documentReference, Set.of("foo", "bar"), Set.of("foo"), false);
+        verifyNoInteractions(this.observationManager);
+    }
+
+    @Test
+    void onRemoteObjectEventIgnored()
+    {
+        when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(true);
+        XWikiDocument sourceDoc = mock(XWikiDocument.class);
+        when(sourceDoc.getXObject(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn(mock(BaseObject.class));
+        when(sourceDoc.getXObjects(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn(List.of(mockQueryObject("foo")));
+
+        // The change is applied from the event sent by the member where it's been performed.
+        this.queryCacheInvalidator.onEvent(new XObjectAddedEvent(WordsQueryXClassInitializer.XCLASS_REFERENCE),
+            sourceDoc, null);
+        verifyNoInteractions(this.wordsQueryCache);
+        verifyNoInteractions(this.queryReferenceCounter);
     }
-}
\ No newline at end of file
+}
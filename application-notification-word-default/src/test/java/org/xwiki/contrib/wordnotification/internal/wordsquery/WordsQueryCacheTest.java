@@ -0,0 +1,204 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.contrib.wordnotification.CompiledWordsQueries;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WordsQueryCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WordsQueryCacheTest
+{
+    private static final WikiReference MAIN_WIKI = new WikiReference("xwiki");
+
+    private static final WikiReference SUBWIKI = new WikiReference("subwiki");
+
+    private static final WikiReference LOCAL_SUBWIKI = new WikiReference("localsubwiki");
+
+    @InjectMockComponents
+    private WordsQueryCache wordsQueryCache;
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    private Cache<Set<WordsQuery>> queryCache;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.queryCache = mock(Cache.class);
+        when(this.cacheManager.<Set<WordsQuery>>createNewCache(any(CacheConfiguration.class)))
+            .thenReturn(this.queryCache);
+        this.wordsQueryCache.initialize();
+    }
+
+    @Test
+    void updateUserQueriesOfGlobalUserOnSubwiki()
+    {
+        UserReference localUser = mock(UserReference.class, "localUser");
+        UserReference globalUser = mock(UserReference.class, "globalUser");
+
+        // The subwiki includes the users of the main wiki, contrary to the other subwiki.
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(localUser)), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI),
+            0L);
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), LOCAL_SUBWIKI, Set.of(LOCAL_SUBWIKI), 0L);
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), MAIN_WIKI, Set.of(MAIN_WIKI), 0L);
+
+        this.wordsQueryCache.updateUserQueries(globalUser, MAIN_WIKI, Set.of(), Set.of("foo", "bar"));
+        assertEquals(Map.of("foo", Set.of(localUser, globalUser), "bar", Set.of(globalUser)),
+            this.wordsQueryCache.getUsersPerQuery(SUBWIKI).get());
+        assertEquals(Map.of("foo", Set.of(globalUser), "bar", Set.of(globalUser)),
+            this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).get());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(LOCAL_SUBWIKI).get().isEmpty());
+
+        this.wordsQueryCache.updateUserQueries(globalUser, MAIN_WIKI, Set.of("foo", "bar"), Set.of());
+        assertEquals(Map.of("foo", Set.of(localUser)), this.wordsQueryCache.getUsersPerQuery(SUBWIKI).get());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).get().isEmpty());
+    }
+
+    @Test
+    void updateUserQueriesOfLocalUser()
+    {
+        UserReference localUser = mock(UserReference.class, "localUser");
+
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI), 0L);
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), MAIN_WIKI, Set.of(MAIN_WIKI), 0L);
+        this.wordsQueryCache.setUserReferences(Set.of(), SUBWIKI, 0L);
+
+        this.wordsQueryCache.updateUserQueries(localUser, SUBWIKI, Set.of(), Set.of("foo"));
+        assertEquals(Map.of("foo", Set.of(localUser)), this.wordsQueryCache.getUsersPerQuery(SUBWIKI).get());
+        assertEquals(Set.of(localUser), this.wordsQueryCache.getUserReferences(SUBWIKI).get());
+        // The users of a subwiki are never notified about the documents of the main wiki.
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).get().isEmpty());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(LOCAL_SUBWIKI).isEmpty());
+    }
+
+    @Test
+    void setValuesLoadedBeforeQueriesChange()
+    {
+        UserReference user = mock(UserReference.class, "user");
+        long loadGeneration = this.wordsQueryCache.getGeneration();
+
+        // The queries changed while the users were being loaded: the loaded users might not include the change.
+        this.wordsQueryCache.updateUserQueries(user, MAIN_WIKI, Set.of(), Set.of("foo"));
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), MAIN_WIKI, Set.of(MAIN_WIKI), loadGeneration);
+        this.wordsQueryCache.setUserReferences(Set.of(), MAIN_WIKI, loadGeneration);
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).isEmpty());
+        assertTrue(this.wordsQueryCache.getUserReferences(MAIN_WIKI).isEmpty());
+
+        loadGeneration = this.wordsQueryCache.getGeneration();
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(user)), MAIN_WIKI, Set.of(MAIN_WIKI),
+            loadGeneration);
+        this.wordsQueryCache.setUserReferences(Set.of(user), MAIN_WIKI, loadGeneration);
+        assertEquals(Map.of("foo", Set.of(user)), this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).get());
+        assertEquals(Set.of(user), this.wordsQueryCache.getUserReferences(MAIN_WIKI).get());
+    }
+
+    @Test
+    void compiledQueriesDroppedWhenQueriesChange()
+    {
+        UserReference user = mock(UserReference.class, "user");
+        List<CompiledWordsQueries> compiledQueries = List.of(mock(CompiledWordsQueries.class));
+
+        // The compiled queries are only recorded along with the users following each query.
+        this.wordsQueryCache.setCompiledQueries(SUBWIKI, Set.of("foo"), compiledQueries);
+        assertTrue(this.wordsQueryCache.getCompiledQueries(SUBWIKI, Set.of("foo")).isEmpty());
+
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(user)), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI), 0L);
+        this.wordsQueryCache.setCompiledQueries(SUBWIKI, Set.of("foo"), compiledQueries);
+        assertEquals(compiledQueries, this.wordsQueryCache.getCompiledQueries(SUBWIKI, Set.of("foo")).get());
+        assertTrue(this.wordsQueryCache.getCompiledQueries(SUBWIKI, Set.of("foo", "bar")).isEmpty());
+
+        this.wordsQueryCache.updateUserQueries(user, MAIN_WIKI, Set.of(), Set.of("bar"));
+        assertTrue(this.wordsQueryCache.getCompiledQueries(SUBWIKI, Set.of("foo")).isEmpty());
+    }
+
+    @Test
+    void invalidateUsersPerQuery()
+    {
+        UserReference user = mock(UserReference.class, "user");
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(user)), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI), 0L);
+        this.wordsQueryCache.setUserReferences(Set.of(user), SUBWIKI, 0L);
+        long loadGeneration = this.wordsQueryCache.getGeneration();
+
+        // The user scope of some wiki changed.
+        this.wordsQueryCache.invalidateUsersPerQuery();
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(SUBWIKI).isEmpty());
+        assertEquals(Set.of(user), this.wordsQueryCache.getUserReferences(SUBWIKI).get());
+
+        // The users loaded according to the previous user scope are not recorded.
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(user)), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI),
+            loadGeneration);
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(SUBWIKI).isEmpty());
+    }
+
+    @Test
+    void invalidateWiki()
+    {
+        UserReference user = mock(UserReference.class, "user");
+        this.wordsQueryCache.setUsersPerQuery(Map.of("foo", Set.of(user)), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI), 0L);
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), LOCAL_SUBWIKI, Set.of(LOCAL_SUBWIKI), 0L);
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), MAIN_WIKI, Set.of(MAIN_WIKI), 0L);
+        this.wordsQueryCache.setUserReferences(Set.of(user), SUBWIKI, 0L);
+        this.wordsQueryCache.setUserReferences(Set.of(), MAIN_WIKI, 0L);
+
+        this.wordsQueryCache.invalidateWiki(SUBWIKI);
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(SUBWIKI).isEmpty());
+        assertTrue(this.wordsQueryCache.getUserReferences(SUBWIKI).isEmpty());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(LOCAL_SUBWIKI).isPresent());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).isPresent());
+        assertTrue(this.wordsQueryCache.getUserReferences(MAIN_WIKI).isPresent());
+        verify(this.queryCache).removeAll();
+
+        // The wikis including the users of a deleted wiki are dropped too.
+        this.wordsQueryCache.setUsersPerQuery(Map.of(), SUBWIKI, Set.of(SUBWIKI, MAIN_WIKI),
+            this.wordsQueryCache.getGeneration());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(SUBWIKI).isPresent());
+        this.wordsQueryCache.invalidateWiki(MAIN_WIKI);
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(SUBWIKI).isEmpty());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(MAIN_WIKI).isEmpty());
+        assertTrue(this.wordsQueryCache.getUsersPerQuery(LOCAL_SUBWIKI).isPresent());
+    }
+}
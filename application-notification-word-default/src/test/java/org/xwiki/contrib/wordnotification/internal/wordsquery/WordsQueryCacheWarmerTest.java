@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceResolver;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import com.xpn.xwiki.internal.mandatory.XWikiUsersDocumentInitializer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WordsQueryCacheWarmer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WordsQueryCacheWarmerTest
+{
+    @InjectMockComponents
+    private WordsQueryCacheWarmer cacheWarmer;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @MockComponent
+    private UserReferenceResolver<String> userReferenceResolver;
+
+    @MockComponent
+    private WordsQueryCache wordsQueryCache;
+
+    @MockComponent
+    private UserWikisResolver userWikisResolver;
+
+    @AfterEach
+    void afterEach() throws ComponentLifecycleException
+    {
+        this.cacheWarmer.dispose();
+    }
+
+    @Test
+    void warmUp() throws Exception
+    {
+        WikiReference wikiReference = new WikiReference("foo");
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("foo"));
+        when(this.userWikisResolver.getUserWikis(wikiReference)).thenReturn(Set.of(wikiReference));
+        when(this.entityReferenceSerializer.serialize(WordsQueryXClassInitializer.XCLASS_REFERENCE))
+            .thenReturn("NotificationWords.Code.WordsQueryXClass");
+        when(this.entityReferenceSerializer.serialize(XWikiUsersDocumentInitializer.XWIKI_USERS_DOCUMENT_REFERENCE))
+            .thenReturn("XWiki.XWikiUsers");
+
+        Query query = mock(Query.class);
+        when(this.queryManager.createQuery(anyString(), any())).thenReturn(query);
+        when(query.setWiki("foo")).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+        when(query.execute()).thenReturn(List.of(
+            new Object[] { "XWiki.Alice", "first" },
+            new Object[] { "XWiki.Bob", "second" },
+            new Object[] { "XWiki.Alice", "third" }));
+
+        UserReference alice = mock(UserReference.class, "alice");
+        UserReference bob = mock(UserReference.class, "bob");
+        when(this.userReferenceResolver.resolve("XWiki.Alice", wikiReference)).thenReturn(alice);
+        when(this.userReferenceResolver.resolve("XWiki.Bob", wikiReference)).thenReturn(bob);
+
+        this.cacheWarmer.startWarmUp();
+        this.cacheWarmer.awaitWarmUp();
+
+        verify(query).bindValue("queryClass", "NotificationWords.Code.WordsQueryXClass");
+        verify(query).bindValue("queryField", WordsQueryXClassInitializer.QUERY_FIELD);
+        verify(query).bindValue("userClass", "XWiki.XWikiUsers");
+        verify(this.wordsQueryCache)
+            .setWordsQueries(alice, Set.of(new WordsQuery("first", alice), new WordsQuery("third", alice)), 0L);
+        verify(this.wordsQueryCache).setWordsQueries(bob, Set.of(new WordsQuery("second", bob)), 0L);
+        verify(this.wordsQueryCache).setUserReferences(Set.of(alice, bob), wikiReference, 0L);
+        verify(this.wordsQueryCache).setUsersPerQuery(
+            Map.of("first", Set.of(alice), "second", Set.of(bob), "third", Set.of(alice)), wikiReference,
+            Set.of(wikiReference), 0L);
+    }
+
+    @Test
+    void warmUpWithGlobalUsers() throws Exception
+    {
+        WikiReference mainWikiReference = new WikiReference("xwiki");
+        WikiReference subwikiReference = new WikiReference("subwiki");
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki", "subwiki"));
+        when(this.userWikisResolver.getUserWikis(mainWikiReference)).thenReturn(Set.of(mainWikiReference));
+        when(this.userWikisResolver.getUserWikis(subwikiReference))
+            .thenReturn(Set.of(subwikiReference, mainWikiReference));
+
+        Query query = mock(Query.class);
+        Query mainWikiQuery = mock(Query.class, "mainWiki");
+        Query subwikiQuery = mock(Query.class, "subwiki");
+        when(this.queryManager.createQuery(anyString(), any())).thenReturn(query);
+        when(query.setWiki("xwiki")).thenReturn(mainWikiQuery);
+        when(query.setWiki("subwiki")).thenReturn(subwikiQuery);
+        when(mainWikiQuery.bindValue(anyString(), any())).thenReturn(mainWikiQuery);
+        when(subwikiQuery.bindValue(anyString(), any())).thenReturn(subwikiQuery);
+        when(mainWikiQuery.execute()).thenReturn(List.<Object[]>of(new Object[] { "XWiki.Alice", "first" }));
+        when(subwikiQuery.execute()).thenReturn(List.<Object[]>of(new Object[] { "XWiki.Bob", "first" }));
+
+        UserReference alice = mock(UserReference.class, "alice");
+        UserReference bob = mock(UserReference.class, "bob");
+        when(this.userReferenceResolver.resolve("XWiki.Alice", mainWikiReference)).thenReturn(alice);
+        when(this.userReferenceResolver.resolve("XWiki.Bob", subwikiReference)).thenReturn(bob);
+
+        this.cacheWarmer.startWarmUp();
+        this.cacheWarmer.awaitWarmUp();
+
+        // The users of the main wiki are included in the subwiki, as when they're loaded by the analysis.
+        verify(this.wordsQueryCache).setUsersPerQuery(Map.of("first", Set.of(alice)), mainWikiReference,
+            Set.of(mainWikiReference), 0L);
+        verify(this.wordsQueryCache).setUsersPerQuery(Map.of("first", Set.of(alice, bob)), subwikiReference,
+            Set.of(subwikiReference, mainWikiReference), 0L);
+        verify(this.wordsQueryCache).setUserReferences(Set.of(alice), mainWikiReference, 0L);
+        verify(this.wordsQueryCache).setUserReferences(Set.of(bob), subwikiReference, 0L);
+    }
+}
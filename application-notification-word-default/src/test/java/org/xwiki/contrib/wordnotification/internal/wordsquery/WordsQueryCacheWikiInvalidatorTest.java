@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link WordsQueryCacheWikiInvalidator}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WordsQueryCacheWikiInvalidatorTest
+{
+    @InjectMockComponents
+    private WordsQueryCacheWikiInvalidator wikiInvalidator;
+
+    @MockComponent
+    private WordsQueryCache wordsQueryCache;
+
+    @Test
+    void onWikiDeleted()
+    {
+        this.wikiInvalidator.onEvent(new WikiDeletedEvent("subwiki"), "subwiki", null);
+        verify(this.wordsQueryCache).invalidateWiki(new WikiReference("subwiki"));
+        verify(this.wordsQueryCache, never()).invalidateUsersPerQuery();
+    }
+
+    @Test
+    void onUserScopeChanged()
+    {
+        XObjectUpdatedEvent event = new XObjectUpdatedEvent(
+            BaseObjectReference.any(new LocalDocumentReference("WikiManager", "WikiUserClass").toString()));
+        this.wikiInvalidator.onEvent(event, mock(XWikiDocument.class), null);
+        verify(this.wordsQueryCache).invalidateUsersPerQuery();
+        verify(this.wordsQueryCache, never()).invalidateWiki(any());
+    }
+}
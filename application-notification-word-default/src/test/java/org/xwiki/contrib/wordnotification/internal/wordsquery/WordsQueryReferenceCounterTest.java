@@ -0,0 +1,142 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.wordnotification.internal.wordsquery;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Named;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.wordnotification.UsersWordsQueriesManager;
+import org.xwiki.contrib.wordnotification.WordsQuery;
+import org.xwiki.contrib.wordnotification.internal.storage.AnalysisResultStorageManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.UserReference;
+import org.xwiki.user.UserReferenceSerializer;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link WordsQueryReferenceCounter}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class WordsQueryReferenceCounterTest
+{
+    private static final DocumentReference ALICE = new DocumentReference("xwiki", "XWiki", "Alice");
+
+    private static final DocumentReference BOB = new DocumentReference("xwiki", "XWiki", "Bob");
+
+    @InjectMockComponents
+    private WordsQueryReferenceCounter referenceCounter;
+
+    @MockComponent
+    private UsersWordsQueriesManager usersWordsQueriesManager;
+
+    @MockComponent
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @MockComponent
+    @Named("document")
+    private UserReferenceSerializer<DocumentReference> documentReferenceUserReferenceSerializer;
+
+    @MockComponent
+    private AnalysisResultStorageManager storageManager;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        UserReference alice = mock(UserReference.class, "alice");
+        UserReference bob = mock(UserReference.class, "bob");
+        when(this.documentReferenceUserReferenceSerializer.serialize(alice)).thenReturn(ALICE);
+        when(this.documentReferenceUserReferenceSerializer.serialize(bob)).thenReturn(BOB);
+        when(this.wikiDescriptorManager.getAllIds()).thenReturn(List.of("xwiki"));
+        when(this.usersWordsQueriesManager.getUserReferenceWithWordsQuery(new WikiReference("xwiki")))
+            .thenReturn(Set.of(alice, bob));
+        when(this.usersWordsQueriesManager.getQueries(alice)).thenReturn(Set.of(new WordsQuery("shared", alice)));
+        when(this.usersWordsQueriesManager.getQueries(bob)).thenReturn(Set.of(new WordsQuery("shared", bob)));
+    }
+
+    @Test
+    void setQueries() throws Exception
+    {
+        // The counts are loaded in the background after Alice removed the query, and the change is applied once
+        // they're loaded.
+        this.referenceCounter.setQueries(ALICE, Set.of("shared", "foo"), Set.of("shared"), true);
+        verify(this.storageManager, timeout(5000)).removeAnalysisResults(Set.of("foo"));
+        assertEquals(2, this.referenceCounter.getReferenceCount("shared"));
+        assertEquals(0, this.referenceCounter.getReferenceCount("foo"));
+
+        // Bob still has the shared query.
+        this.referenceCounter.setQueries(ALICE, Set.of("shared"), Set.of("bar"), true);
+        assertEquals(1, this.referenceCounter.getReferenceCount("shared"));
+        assertEquals(1, this.referenceCounter.getReferenceCount("bar"));
+
+        // Events reporting the same change several times don't change the counts.
+        this.referenceCounter.setQueries(BOB, Set.of("shared"), Set.of(), true);
+        this.referenceCounter.setQueries(BOB, Set.of("shared"), Set.of(), true);
+        assertEquals(0, this.referenceCounter.getReferenceCount("shared"));
+        assertEquals(1, this.referenceCounter.getReferenceCount("bar"));
+        // The removal might be requested twice depending on when the first one runs.
+        verify(this.storageManager, timeout(5000).atLeastOnce()).removeAnalysisResults(Set.of("shared"));
+        verify(this.storageManager, never()).removeAnalysisResults(Set.of("bar"));
+
+        // The counts are only loaded once.
+        verify(this.usersWordsQueriesManager).getUserReferenceWithWordsQuery(any());
+    }
+
+    @Test
+    void setQueriesWhenAnotherUserKeepsTheQuery() throws Exception
+    {
+        this.referenceCounter.setQueries(ALICE, Set.of("shared"), Set.of("foo"), true);
+        verify(this.usersWordsQueriesManager, timeout(5000).times(2)).getQueries(any());
+        verify(this.storageManager, after(100).never()).removeAnalysisResults(any());
+        assertEquals(1, this.referenceCounter.getReferenceCount("shared"));
+        assertEquals(1, this.referenceCounter.getReferenceCount("foo"));
+    }
+
+    @Test
+    void setQueriesWithoutPurge() throws Exception
+    {
+        this.referenceCounter.setQueries(ALICE, Set.of("shared", "foo"), Set.of("shared"), true);
+        verify(this.storageManager, timeout(5000)).removeAnalysisResults(Set.of("foo"));
+
+        // The change happened on another member, which removes the results itself.
+        this.referenceCounter.setQueries(ALICE, Set.of("shared"), Set.of(), false);
+        this.referenceCounter.setQueries(BOB, Set.of("shared"), Set.of(), false);
+        assertEquals(0, this.referenceCounter.getReferenceCount("shared"));
+        verify(this.storageManager, after(100).never()).removeAnalysisResults(Set.of("shared"));
+    }
+}